@@ -0,0 +1,147 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.helpers.AttributesImpl;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.util.StartTagInfo;
+import com.sun.msv.verifier.Acceptor;
+import com.sun.msv.verifier.regexp.REDocumentDeclaration;
+
+/**
+ * measures the individual steps that {@link com.sun.msv.verifier.Verifier}
+ * performs for each start tag, attribute and text chunk,
+ * on the DocBook-style grammar.
+ *
+ * <p>
+ * Acceptors are stateful, so the benchmarks that change an acceptor
+ * work on a clone. The cost of {@link Acceptor#createClone()} is
+ * therefore included in them, and can be measured alone by {@link #createClone()}.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class AcceptorBenchmark
+{
+    @Param({"relaxng","dtd"})
+    public String schema;
+
+    private Acceptor top;
+    private StartTagInfo bookTag;
+    /** acceptor of the book element before its attributes are processed. */
+    private Acceptor bookBeforeAttributes;
+    /** acceptor of the title element (mixed content). */
+    private Acceptor title;
+    /** acceptor of the edition element (positiveInteger in RELAX NG). */
+    private Acceptor edition;
+
+    private static StartTagInfo tag( String name, AttributesImpl atts ) {
+        return new StartTagInfo("",name,name,atts,BenchmarkContext.theInstance);
+    }
+
+    private static Acceptor child( Acceptor parent, StartTagInfo sti ) {
+        Acceptor a = parent.createChildAcceptor(sti,null);
+        if( a==null || !feedAttributes(a,sti) )
+            throw new IllegalStateException("unexpected "+sti.qName);
+        return a;
+    }
+
+    /** processes a complete child element with text-only content. */
+    private static void textElement( Acceptor parent, String name, String text ) {
+        Acceptor a = child(parent,tag(name,new AttributesImpl()));
+        if( !a.onText2(text,BenchmarkContext.theInstance,null,null)
+        ||  !a.isAcceptState(null) || !parent.stepForward(a,null) )
+            throw new IllegalStateException("unexpected "+name);
+    }
+
+    private static boolean feedAttributes( Acceptor a, StartTagInfo sti ) {
+        for( int i=0; i<sti.attributes.getLength(); i++ )
+            if( !a.onAttribute2( sti.attributes.getURI(i), sti.attributes.getLocalName(i),
+                sti.attributes.getQName(i), sti.attributes.getValue(i),
+                BenchmarkContext.theInstance, null, null ) )
+                return false;
+        return a.onEndAttributes(sti,null);
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        Grammar g = Schemas.load(schema);
+        REDocumentDeclaration decl = Schemas.createDeclaration(g,false);
+
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("","id","id","CDATA","book");
+        atts.addAttribute("","lang","lang","CDATA","en");
+        atts.addAttribute("","role","role","CDATA","manual");
+        bookTag = tag("book",atts);
+
+        top = decl.createAcceptor();
+        bookBeforeAttributes = top.createChildAcceptor(bookTag,null);
+        Acceptor book = child(top,bookTag);
+
+        Acceptor info = child(book,tag("info",new AttributesImpl()));
+        // the DTD requires an author before the edition.
+        Acceptor author = child(info,tag("author",new AttributesImpl()));
+        textElement(author,"firstname","Jane");
+        textElement(author,"surname","Doe");
+        if( !author.isAcceptState(null) || !info.stepForward(author,null) )
+            throw new IllegalStateException("unexpected author");
+        edition = child(info,tag("edition",new AttributesImpl()));
+        title = child(book,tag("title",new AttributesImpl()));
+
+        if( !mixedText() || !dataText() )
+            throw new IllegalStateException("text was rejected");
+    }
+
+    @Benchmark
+    public Acceptor startElement() {
+        return top.createChildAcceptor(bookTag,null);
+    }
+
+    @Benchmark
+    public Acceptor createClone() {
+        return bookBeforeAttributes.createClone();
+    }
+
+    @Benchmark
+    public boolean attributes() {
+        return feedAttributes(bookBeforeAttributes.createClone(),bookTag);
+    }
+
+    @Benchmark
+    public boolean mixedText() {
+        return title.createClone().onText2(
+            "A benchmark book", BenchmarkContext.theInstance, null, null );
+    }
+
+    @Benchmark
+    public boolean dataText() {
+        return edition.createClone().onText2(
+            " 2 ", BenchmarkContext.theInstance, null, null );
+    }
+}
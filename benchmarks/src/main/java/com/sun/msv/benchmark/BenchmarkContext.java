@@ -0,0 +1,44 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import org.relaxng.datatype.Datatype;
+
+import com.sun.msv.grammar.IDContextProvider2;
+import com.sun.msv.verifier.regexp.StringToken;
+
+/**
+ * a validation context for benchmarks that bypass {@link com.sun.msv.verifier.Verifier}.
+ *
+ * No namespace prefix is declared, and ID/IDREF are not checked.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+final class BenchmarkContext implements IDContextProvider2
+{
+    static final BenchmarkContext theInstance = new BenchmarkContext();
+
+    private BenchmarkContext() {}
+
+    public String resolveNamespacePrefix( String prefix ) {
+        return prefix.length()==0 ? "" : null;
+    }
+    public String getBaseUri() {
+        return null;
+    }
+    public boolean isUnparsedEntity( String name ) {
+        return true;
+    }
+    public boolean isNotation( String name ) {
+        return true;
+    }
+    public void onID( Datatype datatype, StringToken literal ) {
+    }
+}
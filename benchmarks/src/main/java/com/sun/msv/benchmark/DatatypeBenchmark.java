@@ -0,0 +1,155 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.msv.datatype.xsd.DatatypeFactory;
+import com.sun.msv.datatype.xsd.TypeIncubator;
+import com.sun.msv.datatype.xsd.XSDatatype;
+
+/**
+ * measures {@link XSDatatype#isValid} for commonly used types.
+ *
+ * <p>
+ * Each invocation checks the same set of lexical values,
+ * a mix of valid and invalid values, some with surrounding whitespace.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class DatatypeBenchmark
+{
+    /**
+     * the type. The "union-" types are common shapes of unions:
+     * a token fallback, maxOccurs-like values, a family of dates,
+     * and members with unrelated lexical spaces.
+     * The "list-" types check one literal with 1000 items.
+     */
+    @Param({"int","decimal","dateTime","token","pattern","enumeration","NMTOKENS","union",
+        "union-fallback","union-occurs","union-dates","union-mixed",
+        "list-NMTOKENS","list-int","list-double"})
+    public String type;
+
+    private XSDatatype dt;
+    private String[] values;
+
+    @Setup
+    public void setup() throws Exception {
+        if( type.equals("int") ) {
+            dt = DatatypeFactory.getTypeByName("int");
+            values = new String[]{ "0", "12345", " -2147483648 ", "+42", "99999999999" };
+        } else
+        if( type.equals("decimal") ) {
+            dt = DatatypeFactory.getTypeByName("decimal");
+            values = new String[]{ "0", "3.14", " -1234567.890 ", "+.5", "1.2.3" };
+        } else
+        if( type.equals("dateTime") ) {
+            dt = DatatypeFactory.getTypeByName("dateTime");
+            values = new String[]{ "2001-06-01T12:00:00Z", " 1999-12-31T23:59:59.999+09:00 ",
+                "2000-02-29T00:00:00", "-0044-03-15T12:00:00Z", "2001-06-01 12:00:00" };
+        } else
+        if( type.equals("token") ) {
+            dt = DatatypeFactory.getTypeByName("token");
+            values = new String[]{ "abc", "  several   words\tand\nlines  ", "", "x", "a b c d e f" };
+        } else
+        if( type.equals("pattern") ) {
+            TypeIncubator ti = new TypeIncubator(DatatypeFactory.getTypeByName("string"));
+            ti.addFacet("pattern","[A-Z]{3}-[0-9]{4}-[A-Z0-9]{2}",false,null);
+            dt = ti.derive("urn:msv:benchmark","sku");
+            values = new String[]{ "ABC-1234-X9", "XYZ-0000-00", "QQQ-9876-AB", "ABC-123-X9", "abc-1234-x9" };
+        } else
+        if( type.equals("enumeration") ) {
+            TypeIncubator ti = new TypeIncubator(DatatypeFactory.getTypeByName("NMTOKEN"));
+            String[] currencies = { "USD","EUR","JPY","GBP","CHF","CAD","AUD","CNY" };
+            for( int i=0; i<currencies.length; i++ )
+                ti.addFacet("enumeration",currencies[i],false,null);
+            dt = ti.derive("urn:msv:benchmark","currency");
+            values = new String[]{ "USD", " JPY ", "CNY", "EUR", "XXX" };
+        } else
+        if( type.equals("NMTOKENS") ) {
+            dt = DatatypeFactory.getTypeByName("NMTOKENS");
+            values = new String[]{ "a", "alpha beta gamma", "  1 2 3 4 5 6 7 8 9 10  ", "x-y z.w", "" };
+        } else
+        if( type.equals("union") ) {
+            dt = DatatypeFactory.deriveByUnion("urn:msv:benchmark","intOrDate",new XSDatatype[]{
+                DatatypeFactory.getTypeByName("int"),
+                DatatypeFactory.getTypeByName("date"),
+                DatatypeFactory.getTypeByName("boolean") });
+            values = new String[]{ "42", "2001-06-01", "true", " 0 ", "maybe" };
+        } else
+        if( type.equals("union-fallback") ) {
+            dt = union( new String[]{"date","integer","token"} );
+            values = new String[]{ "2002-04-14", "12345", "-7", "N/A", "unknown" };
+        } else
+        if( type.equals("union-occurs") ) {
+            dt = union( new String[]{"nonNegativeInteger","NMTOKEN"} );
+            values = new String[]{ "0", "1", "unbounded", "-1", "" };
+        } else
+        if( type.equals("union-dates") ) {
+            dt = union( new String[]{"dateTime","date","gYearMonth","gYear"} );
+            values = new String[]{ "2002-04-14T12:00:00Z", "2002-04-14", "2002-04", "2002", "04-14" };
+        } else
+        if( type.equals("union-mixed") ) {
+            dt = union( new String[]{"duration","boolean","double","anyURI"} );
+            values = new String[]{ "P1Y", "true", "1.5E3", "http://www.example.com/", "1 0" };
+        } else
+        if( type.startsWith("list-") ) {
+            String item = type.substring(5);
+            if( item.equals("NMTOKENS") )
+                dt = DatatypeFactory.getTypeByName("NMTOKENS");
+            else
+                dt = DatatypeFactory.deriveByList("urn:msv:benchmark","l",DatatypeFactory.getTypeByName(item));
+            StringBuffer buf = new StringBuffer();
+            for( int i=0; i<1000; i++ ) {
+                if( i!=0 )  buf.append(' ');
+                if( item.equals("NMTOKENS") )   buf.append("token").append(i);
+                else
+                if( item.equals("int") )        buf.append(i*7919-1000000);
+                else                            buf.append(i).append(".5E-3");
+            }
+            values = new String[]{ buf.toString() };
+        } else
+            throw new IllegalArgumentException(type);
+    }
+
+    private static XSDatatype union( String[] memberNames ) throws Exception {
+        XSDatatype[] members = new XSDatatype[memberNames.length];
+        for( int i=0; i<members.length; i++ )
+            members[i] = DatatypeFactory.getTypeByName(memberNames[i]);
+        return DatatypeFactory.deriveByUnion("urn:msv:benchmark","u",members);
+    }
+
+    @Benchmark
+    public int isValid() {
+        int n=0;
+        for( int i=0; i<values.length; i++ )
+            if( dt.isValid(values[i],BenchmarkContext.theInstance) )
+                n++;
+        return n;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.msv.grammar.Expression;
+import com.sun.msv.grammar.ExpressionPool;
+import com.sun.msv.grammar.SimpleNameClass;
+import com.sun.msv.grammar.trex.ElementPattern;
+
+/**
+ * measures {@link ExpressionPool#createChoice} and
+ * {@link ExpressionPool#createSequence}.
+ *
+ * <p>
+ * Each benchmark builds a chain of 64 choices or sequences.
+ * The "warm" variants use a pool that already contains the whole chain,
+ * so every call is a successful look-up, which is the common case
+ * during validation. The "cold" variants use a new pool, so every call
+ * creates and registers a new expression, as during grammar parsing.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class ExpressionPoolBenchmark
+{
+    /** the concurrency level of the pool. 1 is the classic single-lock pool. */
+    @Param({"1","8"})
+    public int concurrencyLevel;
+
+    private Expression[] leaves;
+    private ExpressionPool warm;
+
+    @Setup
+    public void setup() {
+        leaves = new Expression[64];
+        for( int i=0; i<leaves.length; i++ )
+            leaves[i] = new ElementPattern( new SimpleNameClass("","e"+i), Expression.epsilon );
+
+        warm = new ExpressionPool(concurrencyLevel);
+        choice(warm);
+        sequence(warm);
+    }
+
+    private Expression choice( ExpressionPool pool ) {
+        Expression exp = Expression.nullSet;
+        for( int i=0; i<leaves.length; i++ )
+            exp = pool.createChoice(exp,leaves[i]);
+        return exp;
+    }
+
+    private Expression sequence( ExpressionPool pool ) {
+        Expression exp = Expression.epsilon;
+        for( int i=0; i<leaves.length; i++ )
+            exp = pool.createSequence(leaves[i],exp);
+        return exp;
+    }
+
+    @Benchmark
+    public Expression choiceWarm() {
+        return choice(warm);
+    }
+
+    @Benchmark
+    public Expression choiceCold() {
+        return choice(new ExpressionPool(concurrencyLevel));
+    }
+
+    @Benchmark
+    public Expression sequenceWarm() {
+        return sequence(warm);
+    }
+
+    @Benchmark
+    public Expression sequenceCold() {
+        return sequence(new ExpressionPool(concurrencyLevel));
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.io.Reader;
+
+/**
+ * generates a document on the fly, one chunk at a time.
+ *
+ * <p>
+ * The document never exists in memory as a whole, so that benchmarks
+ * can validate documents that are much larger than the heap.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public abstract class GeneratedDocument extends Reader
+{
+    private final int size;
+    private final String tail;
+    private int i = -1;
+    private String chunk;
+    private int pos = 0;
+
+    /**
+     * @param head
+     *      the text before the first item, typically the start tag of the root.
+     * @param size
+     *      the number of items.
+     * @param tail
+     *      the text after the last item.
+     */
+    protected GeneratedDocument( String head, int size, String tail ) {
+        this.chunk = head;
+        this.size = size;
+        this.tail = tail;
+    }
+
+    /** generates the i-th item. */
+    protected abstract String item( int i );
+
+    public int read( char[] buf, int off, int len ) {
+        if( pos==chunk.length() ) {
+            if( !next() )
+                return -1;
+        }
+        int n = Math.min(len,chunk.length()-pos);
+        chunk.getChars(pos,pos+n,buf,off);
+        pos += n;
+        return n;
+    }
+
+    private boolean next() {
+        i++;
+        if( i>size )
+            return false;
+        chunk = i==size ? tail : item(i);
+        pos = 0;
+        return true;
+    }
+
+    public void close() {}
+}
@@ -0,0 +1,82 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.grammar.snapshot.GrammarSnapshot;
+
+/**
+ * compares the time to obtain a grammar by parsing the schema,
+ * by reading a {@link GrammarSnapshot}, and by Java serialization.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class GrammarSnapshotBenchmark
+{
+    @Param({"relaxng","dtd","xsd"})
+    public String schema;
+
+    private byte[] snapshot;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws Exception {
+        Grammar grammar = Schemas.load(schema);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GrammarSnapshot.write(grammar,out);
+        snapshot = out.toByteArray();
+
+        out = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(grammar);
+        oos.close();
+        serialized = out.toByteArray();
+    }
+
+    @Benchmark
+    public Grammar parse() throws Exception {
+        return Schemas.load(schema);
+    }
+
+    @Benchmark
+    public Grammar snapshot() throws Exception {
+        return GrammarSnapshot.read(new ByteArrayInputStream(snapshot));
+    }
+
+    @Benchmark
+    public Object deserialize() throws Exception {
+        return new ObjectInputStream(new ByteArrayInputStream(serialized)).readObject();
+    }
+}
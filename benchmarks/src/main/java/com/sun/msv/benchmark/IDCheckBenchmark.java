@@ -0,0 +1,109 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.reader.util.IgnoreController;
+import com.sun.msv.verifier.Verifier;
+import com.sun.msv.verifier.regexp.REDocumentDeclaration;
+import com.sun.msv.verifier.util.IgnoreErrorHandler;
+
+/**
+ * checks IDs and IDREFs of a document with a large number of IDs,
+ * with the incremental IDREF check and with the check at the end
+ * of the document.
+ *
+ * <p>
+ * The document is generated on the fly. Each element has an ID,
+ * a backward IDREF, and IDREFS with one backward and one forward reference.
+ * Run with "-prof gc" to compare the memory footprint.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class IDCheckBenchmark
+{
+    /** true to check IDREFs as soon as the ID is found. */
+    @Param({"true","false"})
+    public boolean incremental;
+
+    /** the number of elements in the document. */
+    @Param({"100000"})
+    public int size;
+
+    private static final String schema =
+        "<element name='root' xmlns='http://relaxng.org/ns/structure/1.0' "+
+            "datatypeLibrary='http://relaxng.org/ns/compatibility/datatypes/1.0'>"+
+            "<zeroOrMore><element name='e'>"+
+                "<attribute name='id'><data type='ID'/></attribute>"+
+                "<attribute name='ref'><data type='IDREF'/></attribute>"+
+                "<attribute name='refs'><data type='IDREFS'/></attribute>"+
+            "</element></zeroOrMore>"+
+        "</element>";
+
+    private REDocumentDeclaration docDecl;
+    private XMLReader reader;
+
+    @Setup
+    public void setup() throws Exception {
+        Grammar grammar = GrammarLoader.loadSchema(
+            new InputSource(new StringReader(schema)),
+            new IgnoreController(), Schemas.createParserFactory() );
+        docDecl = new REDocumentDeclaration(grammar);
+        reader = Schemas.createReader();
+    }
+
+    @Benchmark
+    public boolean check() throws Exception {
+        Verifier verifier = new Verifier(docDecl,new IgnoreErrorHandler());
+        verifier.setIncrementalIDREFCheck(incremental);
+        reader.setContentHandler(verifier);
+        reader.parse(new InputSource(new DocumentReader(size)));
+        return verifier.isValid();
+    }
+
+    /** generates the document. */
+    private static class DocumentReader extends GeneratedDocument {
+        private final int size;
+
+        DocumentReader( int size ) {
+            super("<root>",size,"</root>");
+            this.size = size;
+        }
+
+        protected String item( int i ) {
+            int fwd = Math.min(i+1000,size-1);
+            return "<e id='id-"+i+"' ref='id-"+(i/2)+"' refs='id-"+(i/3)+" id-"+fwd+"'/>\n";
+        }
+    }
+}
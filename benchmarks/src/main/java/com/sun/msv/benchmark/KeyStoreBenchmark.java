@@ -0,0 +1,110 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.reader.util.IgnoreController;
+import com.sun.msv.verifier.identity.IDConstraintChecker;
+import com.sun.msv.verifier.util.IgnoreErrorHandler;
+
+/**
+ * checks a document with a large number of keys,
+ * with and without the key store limit of {@link IDConstraintChecker}.
+ *
+ * <p>
+ * The document is generated on the fly, so it never exists in memory as a whole.
+ * It has the given number of keys and twice as many keyrefs,
+ * half of which are forward references.
+ * Run with "-prof gc" to compare the memory footprint.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class KeyStoreBenchmark
+{
+    /** the number of values kept in memory. 0 keeps all of them in memory. */
+    @Param({"0","10000"})
+    public int limit;
+
+    /** the number of keys in the document. */
+    @Param({"100000"})
+    public int keys;
+
+    private static final String schema =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"+
+            "<xs:element name='root'>"+
+                "<xs:complexType><xs:choice minOccurs='0' maxOccurs='unbounded'>"+
+                    "<xs:element name='entry'><xs:complexType><xs:attribute name='id' type='xs:token'/></xs:complexType></xs:element>"+
+                    "<xs:element name='ref'><xs:complexType><xs:attribute name='to' type='xs:token'/></xs:complexType></xs:element>"+
+                "</xs:choice></xs:complexType>"+
+                "<xs:key name='k'><xs:selector xpath='entry'/><xs:field xpath='@id'/></xs:key>"+
+                "<xs:keyref name='r' refer='k'><xs:selector xpath='ref'/><xs:field xpath='@to'/></xs:keyref>"+
+            "</xs:element>"+
+        "</xs:schema>";
+
+    private XMLSchemaGrammar grammar;
+    private XMLReader reader;
+
+    @Setup
+    public void setup() throws Exception {
+        grammar = (XMLSchemaGrammar)GrammarLoader.loadSchema(
+            new InputSource(new StringReader(schema)),
+            new IgnoreController(), Schemas.createParserFactory() );
+        reader = Schemas.createReader();
+    }
+
+    @Benchmark
+    public boolean check() throws Exception {
+        IDConstraintChecker checker = new IDConstraintChecker(grammar,new IgnoreErrorHandler());
+        checker.setKeyStoreLimit(limit,null);
+        reader.setContentHandler(checker);
+        reader.parse(new InputSource(new DocumentReader(keys)));
+        return checker.isValid();
+    }
+
+    /** generates the document. */
+    private static class DocumentReader extends GeneratedDocument {
+        private final int keys;
+
+        DocumentReader( int keys ) {
+            super("<root>",keys,"</root>");
+            this.keys = keys;
+        }
+
+        protected String item( int i ) {
+            // a backward reference and a forward reference.
+            int fwd = Math.min(i+1000,keys-1);
+            return "<entry id='key-"+i+"'/><ref to='key-"+(i/2)+"'/><ref to='key-"+fwd+"'/>\n";
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.reader.util.IgnoreController;
+import com.sun.msv.verifier.Verifier;
+import com.sun.msv.verifier.regexp.REDocumentDeclaration;
+import com.sun.msv.verifier.util.IgnoreErrorHandler;
+
+/**
+ * loads and validates against a W3C XML Schema with large minOccurs/maxOccurs.
+ *
+ * <p>
+ * The schema has an element and a group whose items are all optional,
+ * each with minOccurs=maxOccurs/2, and the document repeats both
+ * maxOccurs times. {@link #validateCold()} uses a new document declaration
+ * every time, {@link #validateWarm()} reuses the residuals cached
+ * by the previous validations.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class OccurrenceBenchmark
+{
+    @Param({"100","1000","5000"})
+    public int maxOccurs;
+
+    private String schema;
+    private byte[] instance;
+    private Grammar grammar;
+    private REDocumentDeclaration warm;
+    private XMLReader reader;
+
+    @Setup
+    public void setup() throws Exception {
+        String occurs = " minOccurs='"+(maxOccurs/2)+"' maxOccurs='"+maxOccurs+"'";
+        schema =
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"+
+                "<xs:element name='root'><xs:complexType><xs:sequence>"+
+                    "<xs:element name='a'"+occurs+"/>"+
+                    "<xs:sequence"+occurs+">"+
+                        "<xs:element name='b' minOccurs='0'/><xs:element name='c' minOccurs='0'/>"+
+                    "</xs:sequence>"+
+                "</xs:sequence></xs:complexType></xs:element>"+
+            "</xs:schema>";
+
+        StringBuffer doc = new StringBuffer("<root>");
+        for( int i=0; i<maxOccurs; i++ )
+            doc.append("<a/>");
+        for( int i=0; i<maxOccurs; i++ )
+            doc.append("<b/><c/>");
+        doc.append("</root>");
+        try {
+            instance = doc.toString().getBytes("UTF-8");
+        } catch( UnsupportedEncodingException e ) {
+            throw new InternalError(e.toString());
+        }
+
+        grammar = load();
+        warm = new REDocumentDeclaration(grammar);
+        reader = Schemas.createReader();
+    }
+
+    @Benchmark
+    public Grammar load() throws Exception {
+        return GrammarLoader.loadSchema(
+            new InputSource(new StringReader(schema)),
+            new IgnoreController(), Schemas.createParserFactory() );
+    }
+
+    private boolean validate( REDocumentDeclaration docDecl ) throws Exception {
+        Verifier verifier = new Verifier(docDecl,new IgnoreErrorHandler());
+        reader.setContentHandler(verifier);
+        reader.parse(Schemas.asInputSource(instance));
+        return verifier.isValid();
+    }
+
+    @Benchmark
+    public boolean validateCold() throws Exception {
+        return validate(new REDocumentDeclaration(grammar));
+    }
+
+    @Benchmark
+    public boolean validateWarm() throws Exception {
+        return validate(warm);
+    }
+}
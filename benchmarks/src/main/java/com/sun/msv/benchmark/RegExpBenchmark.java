@@ -0,0 +1,102 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.msv.datatype.regexp.DFAImpl;
+import com.sun.msv.datatype.regexp.InternalImpl;
+import com.sun.msv.datatype.xsd.regex.RegExp;
+import com.sun.msv.datatype.xsd.regex.RegExpFactory;
+
+/**
+ * compares the regular expression engines on typical pattern facets
+ * and on a pattern that makes a backtracking engine run in exponential time.
+ *
+ * <p>
+ * Each engine is used the way {@link com.sun.msv.datatype.xsd.PatternFacet}
+ * uses it: engines that are not thread-safe are locked. The compiled
+ * expression is shared by all threads, so use "-t" to see the contention.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class RegExpBenchmark
+{
+    @Param({"internal","dfa"})
+    public String engine;
+
+    /** "pathological" is (a|aa)*c against a long run of 'a's. */
+    @Param({"zip","date","email","name","words","pathological"})
+    public String pattern;
+
+    /** the pattern, a valid literal, and an invalid literal of each case. */
+    private static final String[][] cases = {
+        { "zip", "[A-Z]{2}[0-9]{5}(-[0-9]{4})?", "CA94043-1351", "CA9404" },
+        { "date", "\\d{4}-\\d{2}-\\d{2}", "2002-04-14", "2002-4-14" },
+        { "email", "[a-zA-Z0-9._%+\\-]+@[a-zA-Z0-9.\\-]+\\.[a-zA-Z]{2,4}", "kohsuke.kawaguchi@eng.sun.com", "kohsuke@sun" },
+        { "name", "\\i\\c*", "xsd:complexType", "1abc" },
+        { "words", "\\p{Lu}\\p{Ll}+( \\p{Lu}\\p{Ll}+)*", "Multi Schema Validator", "Multi schema" },
+        { "pathological", "(a|aa)*c", "aaaaaaaaaaaaaaaaaaaaaaaaaaaac", "aaaaaaaaaaaaaaaaaaaaaaaaaaaa" },
+    };
+
+    private RegExp re;
+    private boolean lock;
+    private String valid, invalid;
+
+    @Setup
+    public void setup() throws Exception {
+        RegExpFactory factory;
+        if( engine.equals("internal") )     factory = new InternalImpl();
+        else
+        if( engine.equals("dfa") )          factory = new DFAImpl();
+        else
+            throw new IllegalArgumentException(engine);
+
+        for( int i=0; i<cases.length; i++ ) {
+            if( cases[i][0].equals(pattern) ) {
+                re = factory.compile(cases[i][1]);
+                valid = cases[i][2];
+                invalid = cases[i][3];
+            }
+        }
+        if( re==null )
+            throw new IllegalArgumentException(pattern);
+        lock = !factory.isThreadSafe();
+    }
+
+    /** matches the valid and the invalid literal. */
+    @Benchmark
+    public boolean matches() {
+        if( lock ) {
+            synchronized(re) {
+                return re.matches(valid) && !re.matches(invalid);
+            }
+        }
+        return re.matches(valid) && !re.matches(invalid);
+    }
+}
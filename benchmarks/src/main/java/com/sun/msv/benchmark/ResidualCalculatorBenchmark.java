@@ -0,0 +1,117 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.msv.grammar.ElementExp;
+import com.sun.msv.grammar.Expression;
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.grammar.SimpleNameClass;
+import com.sun.msv.grammar.util.ExpressionWalker;
+import com.sun.msv.verifier.regexp.AttributeRemover;
+import com.sun.msv.verifier.regexp.BoundedTransitionCache;
+import com.sun.msv.verifier.regexp.ElementToken;
+import com.sun.msv.verifier.regexp.ResidualCalculator;
+import com.sun.msv.verifier.regexp.TransitionCache;
+
+/**
+ * measures {@link ResidualCalculator} by deriving the content model of
+ * the DocBook-style "chapter" element by a typical sequence of children.
+ *
+ * <p>
+ * With the cache, most steps are cache hits after the warm-up.
+ * Without it, every step is recomputed.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class ResidualCalculatorBenchmark
+{
+    @Param({"true","false"})
+    public boolean cached;
+
+    /** creates caches that never remember anything. */
+    private static final TransitionCache.Factory noCache = new TransitionCache.Factory() {
+        public TransitionCache create() {
+            return new TransitionCache() {
+                public Object get( Object key ) { return null; }
+                public void put( Object key, Object value ) {}
+                public int size() { return 0; }
+            };
+        }
+    };
+
+    private static final String[] children = {
+        "title", "para", "itemizedlist", "programlisting", "note", "para",
+        "section", "section", "section"
+    };
+
+    private ResidualCalculator resCalc;
+    private Expression contentModel;
+    private ElementToken[] tokens;
+
+    @Setup
+    public void setup() throws Exception {
+        Grammar g = Schemas.load(Schemas.RELAXNG);
+        final Map<String,ElementExp> elements = new HashMap<String,ElementExp>();
+        g.getTopLevel().visit( new ExpressionWalker() {
+            private final Set<ElementExp> visited = new HashSet<ElementExp>();
+            public void onElement( ElementExp exp ) {
+                if( !visited.add(exp) )     return;
+                if( exp.getNameClass() instanceof SimpleNameClass ) {
+                    String name = ((SimpleNameClass)exp.getNameClass()).localName;
+                    if( !elements.containsKey(name) )
+                        elements.put(name,exp);
+                }
+                super.onElement(exp);
+            }
+        });
+
+        resCalc = new ResidualCalculator( g.getPool(),
+            cached ? BoundedTransitionCache.DEFAULT_FACTORY : noCache );
+        contentModel = elements.get("chapter").contentModel.visit(new AttributeRemover(g.getPool()));
+        tokens = new ElementToken[children.length];
+        for( int i=0; i<children.length; i++ )
+            tokens[i] = new ElementToken(new ElementExp[]{elements.get(children[i])});
+
+        if( !residual().isEpsilonReducible() )
+            throw new IllegalStateException("the sequence of children is not accepted");
+    }
+
+    @Benchmark
+    public Expression residual() {
+        Expression exp = contentModel;
+        for( int i=0; i<tokens.length; i++ )
+            exp = resCalc.calcResidual(exp,tokens[i]);
+        return exp;
+    }
+}
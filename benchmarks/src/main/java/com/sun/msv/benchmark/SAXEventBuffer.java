@@ -0,0 +1,131 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * records SAX events once and replays them to a {@link ContentHandler}.
+ *
+ * <p>
+ * This takes the XML parser out of the measurement, so that benchmarks
+ * see only the cost of the verifier.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public final class SAXEventBuffer extends DefaultHandler
+{
+    private static final int START_DOCUMENT = 0;
+    private static final int END_DOCUMENT = 1;
+    private static final int START_PREFIX = 2;
+    private static final int END_PREFIX = 3;
+    private static final int START_ELEMENT = 4;
+    private static final int END_ELEMENT = 5;
+    private static final int CHARACTERS = 6;
+    private static final int IGNORABLE_WHITESPACE = 7;
+
+    private int[] ops = new int[256];
+    private int size = 0;
+    private final List<Object> args = new ArrayList<Object>();
+
+    private void add( int op, Object a1, Object a2, Object a3, Object a4 ) {
+        if( size==ops.length ) {
+            int[] n = new int[size*2];
+            System.arraycopy(ops,0,n,0,size);
+            ops = n;
+        }
+        ops[size++] = op;
+        args.add(a1);
+        args.add(a2);
+        args.add(a3);
+        args.add(a4);
+    }
+
+    /** gets the number of recorded events. */
+    public int getEventCount() {
+        return size;
+    }
+
+    /** sends the recorded events to the specified handler. */
+    public void replay( ContentHandler handler ) throws SAXException {
+        for( int i=0; i<size; i++ ) {
+            int p = i*4;
+            switch(ops[i]) {
+            case START_DOCUMENT:
+                handler.startDocument();
+                break;
+            case END_DOCUMENT:
+                handler.endDocument();
+                break;
+            case START_PREFIX:
+                handler.startPrefixMapping( (String)args.get(p), (String)args.get(p+1) );
+                break;
+            case END_PREFIX:
+                handler.endPrefixMapping( (String)args.get(p) );
+                break;
+            case START_ELEMENT:
+                handler.startElement( (String)args.get(p), (String)args.get(p+1),
+                    (String)args.get(p+2), (Attributes)args.get(p+3) );
+                break;
+            case END_ELEMENT:
+                handler.endElement( (String)args.get(p), (String)args.get(p+1), (String)args.get(p+2) );
+                break;
+            case CHARACTERS: {
+                char[] ch = (char[])args.get(p);
+                handler.characters( ch, 0, ch.length );
+                break;
+            }
+            case IGNORABLE_WHITESPACE: {
+                char[] ch = (char[])args.get(p);
+                handler.ignorableWhitespace( ch, 0, ch.length );
+                break;
+            }
+            default:
+                throw new InternalError();
+            }
+        }
+    }
+
+    public void startDocument() {
+        add( START_DOCUMENT, null, null, null, null );
+    }
+    public void endDocument() {
+        add( END_DOCUMENT, null, null, null, null );
+    }
+    public void startPrefixMapping( String prefix, String uri ) {
+        add( START_PREFIX, prefix, uri, null, null );
+    }
+    public void endPrefixMapping( String prefix ) {
+        add( END_PREFIX, prefix, null, null, null );
+    }
+    public void startElement( String uri, String local, String qname, Attributes atts ) {
+        add( START_ELEMENT, uri, local, qname, new AttributesImpl(atts) );
+    }
+    public void endElement( String uri, String local, String qname ) {
+        add( END_ELEMENT, uri, local, qname, null );
+    }
+    public void characters( char[] ch, int start, int length ) {
+        char[] buf = new char[length];
+        System.arraycopy(ch,start,buf,0,length);
+        add( CHARACTERS, buf, null, null, null );
+    }
+    public void ignorableWhitespace( char[] ch, int start, int length ) {
+        char[] buf = new char[length];
+        System.arraycopy(ch,start,buf,0,length);
+        add( IGNORABLE_WHITESPACE, buf, null, null, null );
+    }
+}
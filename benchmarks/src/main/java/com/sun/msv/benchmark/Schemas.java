@@ -0,0 +1,230 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.reader.util.IgnoreController;
+import com.sun.msv.verifier.DocumentDeclaration;
+import com.sun.msv.verifier.Verifier;
+import com.sun.msv.verifier.identity.IDConstraintChecker;
+import com.sun.msv.verifier.regexp.CompiledDocumentDeclaration;
+import com.sun.msv.verifier.regexp.REDocumentDeclaration;
+import com.sun.msv.verifier.regexp.xmlschema.XSREDocDecl;
+import com.sun.msv.verifier.util.IgnoreErrorHandler;
+
+/**
+ * schemas and instance documents used by the benchmarks.
+ *
+ * <p>
+ * Three schemas are bundled as resources:
+ * <dl>
+ *  <dt>relaxng
+ *  <dd>a DocBook-style RELAX NG grammar (recursive sections, mixed content,
+ *      interleave, many optional attributes).
+ *  <dt>dtd
+ *  <dd>the same vocabulary as a DTD.
+ *  <dt>xsd
+ *  <dd>a product catalog in W3C XML Schema with key/keyref/unique constraints.
+ * </dl>
+ *
+ * <p>
+ * Instance documents are generated, so that their size can be
+ * given as a parameter.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public final class Schemas
+{
+    private Schemas() {}
+
+    public static final String RELAXNG = "relaxng";
+    public static final String DTD = "dtd";
+    public static final String XSD = "xsd";
+
+    /** gets the URL of the schema resource of the given kind. */
+    public static URL getSchemaURL( String kind ) {
+        String name;
+        if( kind.equals(RELAXNG) )  name = "docbook.rng";
+        else
+        if( kind.equals(DTD) )      name = "docbook.dtd";
+        else
+        if( kind.equals(XSD) )      name = "catalog.xsd";
+        else
+            throw new IllegalArgumentException(kind);
+
+        URL url = Schemas.class.getResource(name);
+        if( url==null )
+            throw new IllegalStateException("missing resource "+name);
+        return url;
+    }
+
+    /** parses the schema of the given kind. */
+    public static Grammar load( String kind ) throws Exception {
+        Grammar g = GrammarLoader.loadSchema(
+            new InputSource(getSchemaURL(kind).toExternalForm()),
+            new IgnoreController(), createParserFactory() );
+        if( g==null )
+            throw new IllegalStateException("unable to load the "+kind+" schema");
+        return g;
+    }
+
+    /**
+     * creates a {@link DocumentDeclaration} for the given grammar.
+     *
+     * @param compiled
+     *      if true, {@link CompiledDocumentDeclaration} is used
+     *      for RELAX NG and DTD.
+     */
+    public static REDocumentDeclaration createDeclaration( Grammar g, boolean compiled ) {
+        if( g instanceof XMLSchemaGrammar )
+            return new XSREDocDecl((XMLSchemaGrammar)g);
+        if( compiled )
+            return new CompiledDocumentDeclaration(g);
+        return new REDocumentDeclaration(g);
+    }
+
+    /**
+     * creates a verifier that validates one document.
+     * Identity constraints are checked for W3C XML Schema.
+     */
+    public static Verifier createVerifier( Grammar g, DocumentDeclaration decl ) {
+        if( g instanceof XMLSchemaGrammar )
+            return new IDConstraintChecker( (XMLSchemaGrammar)g, decl, new IgnoreErrorHandler() );
+        return new Verifier( decl, new IgnoreErrorHandler() );
+    }
+
+    public static SAXParserFactory createParserFactory() {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory;
+    }
+
+    public static XMLReader createReader() throws Exception {
+        return createParserFactory().newSAXParser().getXMLReader();
+    }
+
+    /**
+     * generates a valid instance of the schema of the given kind.
+     *
+     * @param size
+     *      the number of top-level units (chapters or products)
+     *      in the document.
+     */
+    public static byte[] createInstance( String kind, int size ) {
+        String doc;
+        if( kind.equals(RELAXNG) || kind.equals(DTD) )
+            doc = createBook(size);
+        else
+        if( kind.equals(XSD) )
+            doc = createCatalog(size);
+        else
+            throw new IllegalArgumentException(kind);
+
+        try {
+            return doc.getBytes("UTF-8");
+        } catch( UnsupportedEncodingException e ) {
+            throw new InternalError(e.toString());
+        }
+    }
+
+    public static InputSource asInputSource( byte[] instance ) {
+        return new InputSource(new ByteArrayInputStream(instance));
+    }
+
+    private static String createBook( int chapters ) {
+        StringBuffer buf = new StringBuffer();
+        buf.append("<book id='book' lang='en'>");
+        buf.append("<info>");
+        buf.append("<author><firstname>Jane</firstname><surname>Doe</surname><email>jane@example.org</email></author>");
+        buf.append("<author role='editor'><firstname>John</firstname><surname>Roe</surname></author>");
+        buf.append("<pubdate>2001-06-01</pubdate><edition>2</edition>");
+        buf.append("</info>");
+        buf.append("<title>A <emphasis>benchmark</emphasis> book</title>");
+        for( int c=0; c<chapters; c++ ) {
+            buf.append("<chapter id='c").append(c).append("' label='").append(c+1).append("'>");
+            buf.append("<title>Chapter ").append(c+1).append("</title>");
+            appendBlocks(buf,"c"+c);
+            for( int s=0; s<3; s++ ) {
+                String id = "c"+c+"s"+s;
+                buf.append("<section id='").append(id).append("' revision='r").append(s).append("'>");
+                buf.append("<title>Section <literal>").append(s+1).append("</literal></title>");
+                appendBlocks(buf,id);
+                buf.append("<section id='").append(id).append("x'><title>Details</title>");
+                appendBlocks(buf,id+"x");
+                buf.append("</section>");
+                buf.append("</section>");
+            }
+            buf.append("</chapter>");
+        }
+        buf.append("</book>");
+        return buf.toString();
+    }
+
+    private static void appendBlocks( StringBuffer buf, String id ) {
+        buf.append("<para role='intro'>This is the <emphasis role='strong'>first</emphasis> paragraph of ")
+           .append(id).append(", which refers to <link linkend='book'>the book</link> and to ")
+           .append("<ulink url='http://www.example.org/").append(id).append("'>a web page</ulink>.</para>");
+        buf.append("<itemizedlist mark='bullet'>");
+        for( int i=0; i<3; i++ )
+            buf.append("<listitem><para>item <literal>").append(i).append("</literal></para></listitem>");
+        buf.append("</itemizedlist>");
+        buf.append("<programlisting linenumbering='numbered'>for( int i=0; i&lt;10; i++ )\n    System.out.println(i);\n</programlisting>");
+        buf.append("<note><para>Notes can contain <emphasis>inline <literal>markup</literal></emphasis> too.</para></note>");
+        buf.append("<para>The last paragraph.</para>");
+    }
+
+    private static String createCatalog( int products ) {
+        StringBuffer buf = new StringBuffer();
+        buf.append("<catalog xmlns='urn:msv:benchmark:catalog'><products>");
+        for( int i=0; i<products; i++ ) {
+            String id = pad(i);
+            boolean book = (i%3)==0;
+            buf.append(book?"<book":"<product");
+            buf.append(" id='P").append(id).append("'");
+            buf.append(" sku='ABC-").append(id.substring(2)).append("-").append((char)('A'+i%26)).append(i%10).append("'");
+            buf.append(" added='2001-0").append(1+i%9).append("-1").append(i%10).append("'>");
+            buf.append("<name>Product ").append(i).append("</name>");
+            if( i%2==0 )
+                buf.append("<description>A product that is used for benchmarks.</description>");
+            buf.append("<price currency='").append(i%2==0?"USD":"EUR").append("'>").append(i%500).append(".").append(10+i%90).append("</price>");
+            buf.append("<tags>sample benchmark item").append(i%7).append("</tags>");
+            if( book )
+                buf.append("<isbn>0-000-").append(id).append("-0</isbn><pages>").append(100+i).append("</pages></book>");
+            else
+                buf.append("</product>");
+        }
+        buf.append("</products><orders>");
+        for( int i=0; i<products/2; i++ ) {
+            buf.append("<order placed='2001-06-0").append(1+i%9).append("T12:").append(10+i%50).append(":00Z'>");
+            for( int j=0; j<3; j++ )
+                buf.append("<line product='P").append(pad((i*7+j)%products)).append("' quantity='").append(j+1).append("'/>");
+            buf.append("</order>");
+        }
+        buf.append("</orders></catalog>");
+        return buf.toString();
+    }
+
+    private static String pad( int i ) {
+        String s = Integer.toString(i);
+        while( s.length()<6 )   s = "0"+s;
+        return s;
+    }
+}
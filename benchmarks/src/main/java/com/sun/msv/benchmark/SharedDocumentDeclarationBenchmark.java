@@ -0,0 +1,97 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.verifier.DocumentDeclaration;
+import com.sun.msv.verifier.Verifier;
+import com.sun.msv.verifier.regexp.CompiledDocumentDeclaration;
+import com.sun.msv.verifier.regexp.SharedDocumentDeclaration;
+
+/**
+ * validates one document from several threads
+ * with and without {@link SharedDocumentDeclaration}.
+ *
+ * <p>
+ * {@link #perDocument()} creates a new {@link CompiledDocumentDeclaration}
+ * for every validation, which is what applications had to do to use
+ * a grammar from multiple threads. {@link #shared()} uses one
+ * {@link SharedDocumentDeclaration} from all threads.
+ * Use "-t" to change the number of threads.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Threads(4)
+@Fork(1)
+public class SharedDocumentDeclarationBenchmark
+{
+    @Param({"relaxng","dtd"})
+    public String schema;
+
+    private Grammar grammar;
+    private DocumentDeclaration shared;
+    private byte[] instance;
+
+    @Setup
+    public void setup() throws Exception {
+        grammar = Schemas.load(schema);
+        shared = new SharedDocumentDeclaration(new CompiledDocumentDeclaration(grammar));
+        instance = Schemas.createInstance(schema,10);
+    }
+
+    /** the parser of each thread. */
+    @State(Scope.Thread)
+    public static class Parser {
+        XMLReader reader;
+
+        @Setup
+        public void setup() throws Exception {
+            reader = Schemas.createReader();
+        }
+    }
+
+    private boolean validate( Parser parser, DocumentDeclaration decl ) throws Exception {
+        Verifier verifier = Schemas.createVerifier(grammar,decl);
+        parser.reader.setContentHandler(verifier);
+        parser.reader.parse(Schemas.asInputSource(instance));
+        return verifier.isValid();
+    }
+
+    @Benchmark
+    public boolean perDocument( Parser parser ) throws Exception {
+        return validate(parser,new CompiledDocumentDeclaration(grammar));
+    }
+
+    @Benchmark
+    public boolean shared( Parser parser ) throws Exception {
+        return validate(parser,shared);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.verifier.DocumentDeclaration;
+import com.sun.msv.verifier.Verifier;
+
+/**
+ * validates a whole document.
+ *
+ * <p>
+ * {@link #replay()} feeds pre-recorded SAX events to the verifier, so it
+ * measures startElement, attribute and text processing without the parser.
+ * {@link #parseAndValidate()} includes the parser, which is what
+ * applications see.
+ *
+ * <p>
+ * The document declaration is created once and reused, so that
+ * its transition caches are warm, as in a long running server.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class VerifierBenchmark
+{
+    /**
+     * the schema. "-compiled" uses
+     * {@link com.sun.msv.verifier.regexp.CompiledDocumentDeclaration}.
+     */
+    @Param({"relaxng","relaxng-compiled","dtd","dtd-compiled","xsd"})
+    public String schema;
+
+    /** the number of chapters or products in the document. */
+    @Param({"10","100"})
+    public int size;
+
+    private Grammar grammar;
+    private DocumentDeclaration decl;
+    private byte[] instance;
+    private SAXEventBuffer events;
+    private XMLReader reader;
+
+    @Setup
+    public void setup() throws Exception {
+        boolean compiled = schema.endsWith("-compiled");
+        String kind = compiled ? schema.substring(0,schema.indexOf('-')) : schema;
+
+        grammar = Schemas.load(kind);
+        decl = Schemas.createDeclaration(grammar,compiled);
+        instance = Schemas.createInstance(kind,size);
+
+        reader = Schemas.createReader();
+        events = new SAXEventBuffer();
+        reader.setContentHandler(events);
+        reader.parse(Schemas.asInputSource(instance));
+
+        if( !replay() )
+            throw new IllegalStateException("the generated "+kind+" instance is invalid");
+    }
+
+    @Benchmark
+    public boolean replay() throws Exception {
+        Verifier verifier = Schemas.createVerifier(grammar,decl);
+        events.replay(verifier);
+        return verifier.isValid();
+    }
+
+    @Benchmark
+    public boolean parseAndValidate() throws Exception {
+        Verifier verifier = Schemas.createVerifier(grammar,decl);
+        reader.setContentHandler(verifier);
+        reader.parse(Schemas.asInputSource(instance));
+        return verifier.isValid();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.reader.util.IgnoreController;
+import com.sun.msv.verifier.Verifier;
+import com.sun.msv.verifier.regexp.REDocumentDeclaration;
+import com.sun.msv.verifier.util.IgnoreErrorHandler;
+
+/**
+ * validates an indented document and the same document without indentation.
+ *
+ * <p>
+ * The document is generated on the fly. Most of its elements have
+ * element-only content, so the indentation is whitespace that
+ * the verifier has to classify between every pair of tags.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class WhitespaceBenchmark
+{
+    /** "indented" uses four spaces per level, "minified" has no whitespace at all. */
+    @Param({"indented","minified"})
+    public String layout;
+
+    /** the number of records in the document. */
+    @Param({"10000"})
+    public int size;
+
+    private static final String schema =
+        "<element name='root' xmlns='http://relaxng.org/ns/structure/1.0' "+
+            "datatypeLibrary='http://www.w3.org/2001/XMLSchema-datatypes'>"+
+            "<zeroOrMore><element name='record'>"+
+                "<element name='name'><element name='first'><data type='token'/></element>"+
+                    "<element name='last'><data type='token'/></element></element>"+
+                "<element name='address'><element name='street'><text/></element>"+
+                    "<element name='zip'><data type='int'/></element></element>"+
+            "</element></zeroOrMore>"+
+        "</element>";
+
+    private REDocumentDeclaration docDecl;
+    private XMLReader reader;
+    private int indent;
+
+    @Setup
+    public void setup() throws Exception {
+        if( layout.equals("indented") )     indent = 4;
+        else
+        if( layout.equals("minified") )     indent = -1;
+        else
+            throw new IllegalArgumentException(layout);
+
+        Grammar grammar = GrammarLoader.loadSchema(
+            new InputSource(new StringReader(schema)),
+            new IgnoreController(), Schemas.createParserFactory() );
+        docDecl = new REDocumentDeclaration(grammar);
+        reader = Schemas.createReader();
+    }
+
+    @Benchmark
+    public boolean validate() throws Exception {
+        Verifier verifier = new Verifier(docDecl,new IgnoreErrorHandler());
+        reader.setContentHandler(verifier);
+        reader.parse(new InputSource(new DocumentReader(size,indent)));
+        return verifier.isValid();
+    }
+
+    /** generates the document. */
+    private static class DocumentReader extends GeneratedDocument {
+        private final String nl1, nl2, nl3;
+
+        /**
+         * @param indent
+         *        the number of spaces per level, or -1 to have no whitespace at all.
+         */
+        DocumentReader( int size, int indent ) {
+            super("<root>",size,indent<0 ? "</root>" : "\n</root>");
+            nl1 = newLine(indent,1);
+            nl2 = newLine(indent,2);
+            nl3 = newLine(indent,3);
+        }
+
+        private static String newLine( int indent, int level ) {
+            if( indent<0 )  return "";
+            StringBuffer buf = new StringBuffer("\n");
+            for( int i=0; i<indent*level; i++ )
+                buf.append(' ');
+            return buf.toString();
+        }
+
+        protected String item( int i ) {
+            return
+                nl1+"<record>"+
+                    nl2+"<name>"+
+                        nl3+"<first>John</first>"+
+                        nl3+"<last>Doe"+i+"</last>"+
+                    nl2+"</name>"+
+                    nl2+"<address>"+
+                        nl3+"<street>"+i+" Main Street</street>"+
+                        nl3+"<zip>"+(i%100000)+"</zip>"+
+                    nl2+"</address>"+
+                nl1+"</record>";
+        }
+    }
+}
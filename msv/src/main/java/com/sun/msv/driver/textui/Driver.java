@@ -28,6 +28,7 @@ import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 
+import com.sun.msv.grammar.ExpressionPool;
 import com.sun.msv.grammar.Grammar;
 import com.sun.msv.grammar.ReferenceExp;
 import com.sun.msv.grammar.relax.RELAXModule;
@@ -41,7 +42,11 @@ import com.sun.msv.relaxns.grammar.RELAXGrammar;
 import com.sun.msv.relaxns.verifier.SchemaProviderImpl;
 import com.sun.msv.util.Util;
 import com.sun.msv.verifier.DocumentDeclaration;
+import com.sun.msv.verifier.ValidationUnrecoverableException;
 import com.sun.msv.verifier.Verifier;
+import com.sun.msv.verifier.batch.BatchVerifier;
+import com.sun.msv.verifier.batch.VerificationListener;
+import com.sun.msv.verifier.batch.VerificationResult;
 import com.sun.msv.verifier.identity.IDConstraintChecker;
 import com.sun.msv.verifier.regexp.REDocumentDeclaration;
 
@@ -81,6 +86,7 @@ public class Driver {
         boolean standalone=false;
         boolean strict=false;
         boolean usePanicMode=true;
+        int threads=0;
         EntityResolver entityResolver=null;
         
         for( int i=0; i<args.length; i++ ) {
@@ -118,6 +124,23 @@ public class Driver {
             else
             if( args[i].equalsIgnoreCase("-maxerror") )         usePanicMode = false;
             else
+            if( args[i].equalsIgnoreCase("-threads") ) {
+                if( i+1<args.length ) {
+                    try {
+                        threads = Integer.parseInt(args[i+1]);
+                    } catch( NumberFormatException e ) {
+                        threads = 0;
+                    }
+                }
+                if( threads<1 ) {
+                    System.err.println(localize(MSG_UNRECOGNIZED_OPTION,
+                        i+1<args.length ? args[i]+" "+args[i+1] : args[i]));
+                    usage();
+                    return -1;
+                }
+                i++;
+            }
+            else
             if( args[i].equalsIgnoreCase("-locale") ) {
                 String code = args[++i];
                 
@@ -215,6 +238,9 @@ public class Driver {
             loader.setController( new DebugController(warning,false,entityResolver) );
             loader.setSAXParserFactory(factory);
             loader.setStrictCheck(strict);
+            if( threads>0 )
+                // let threads unify residuals without contention.
+                loader.setPool( new ExpressionPool(threads) );
             
             grammar = loader.parse(grammarName);
             
@@ -254,6 +280,10 @@ public class Driver {
         
     // validate documents
     //--------------------
+        if( threads>0 && !(grammar instanceof RELAXGrammar) )
+            return verifyBatch( grammar, fileNames, threads,
+                entityResolver, usePanicMode, verbose, parsingTime );
+        
         DocumentVerifier verifier;
         if( grammar instanceof RELAXGrammar )
             // use divide&validate framework to validate document
@@ -314,6 +344,68 @@ public class Driver {
         return allValid?0:-1;
     }
     
+    /**
+     * validates documents in parallel by using {@link BatchVerifier}.
+     * 
+     * The output of each document is printed as one block,
+     * in the order the validation completes.
+     */
+    private static int verifyBatch( Grammar grammar, List<String> fileNames, int threads,
+        EntityResolver entityResolver, boolean usePanicMode, boolean verbose, long parsingTime ) throws Exception {
+        
+        BatchVerifier bv = new BatchVerifier(grammar,factory);
+        bv.setThreadCount(threads);
+        bv.setEntityResolver(entityResolver);
+        bv.setPanicMode(usePanicMode);
+        
+        List<InputSource> documents = new ArrayList<InputSource>();
+        for( int i=0; i<fileNames.size(); i++ )
+            documents.add( Util.getInputSource(fileNames.get(i)) );
+        
+        final String[] names = (String[])fileNames.toArray(new String[fileNames.size()]);
+        boolean allValid = bv.verify( documents.iterator(), new VerificationListener() {
+            private int count = 0;
+            public void onResult( VerificationResult r ) {
+                printResult( names[r.getIndex()], r );
+                if( ++count!=names.length )
+                    System.out.println("--------------------------------------");
+            }
+        });
+        
+        if( verbose )
+            System.out.println( localize( MSG_VALIDATION_TIME, new Long(System.currentTimeMillis()-parsingTime) ) );
+        
+        return allValid?0:-1;
+    }
+    
+    private static void printResult( String instName, VerificationResult r ) {
+        System.out.println( localize( MSG_VALIDATING, instName) );
+        
+        Iterator<SAXParseException> itr = r.getWarnings().iterator();
+        while( itr.hasNext() )
+            ReportErrorHandler.printSAXParseException( itr.next(), ReportErrorHandler.MSG_WARNING );
+        itr = r.getErrors().iterator();
+        while( itr.hasNext() )
+            ReportErrorHandler.printSAXParseException( itr.next(), ReportErrorHandler.MSG_ERROR );
+        
+        Exception e = r.getException();
+        if( e instanceof ValidationUnrecoverableException ) {
+            System.out.println( localize(ReportErrorHandler.MSG_TOO_MANY_ERRORS) );
+            System.out.println( localize(MSG_BAILOUT) );
+        } else
+        if( e instanceof SAXParseException ) {
+            ReportErrorHandler.printSAXParseException( (SAXParseException)e, ReportErrorHandler.MSG_FATAL );
+            System.out.println( localize(MSG_BAILOUT) );
+        } else
+        if( e!=null )
+            System.out.println(e);
+        
+        if( r.isValid() )
+            System.out.println(localize(MSG_VALID));
+        else
+            System.out.println(localize(MSG_INVALID));
+    }
+    
     public static void dumpTREX( TREXGrammar g ) throws Exception {
         System.out.println("*** start ***");
         System.out.println(ExpressionPrinter.printFragment(g.exp));
@@ -9,6 +9,8 @@
  */
 package com.sun.msv.grammar;
 
+import com.sun.msv.grammar.util.SymbolTable;
+
 /**
  * a NameClass that matches any name.
  * 
@@ -21,6 +23,10 @@ public final class AnyNameClass extends NameClass {
         return true;
     }
     
+    public boolean accepts( SymbolTable.Symbol name ) {
+        return true;
+    }
+    
     public Object visit( NameClassVisitor visitor ) { return visitor.onAnyName(this); }
     
     /**
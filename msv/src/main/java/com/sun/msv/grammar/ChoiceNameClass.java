@@ -9,6 +9,8 @@
  */
 package com.sun.msv.grammar;
 
+import com.sun.msv.grammar.util.SymbolTable;
+
 /**
  * Union of two NameClasses.
  * 
@@ -24,6 +26,10 @@ public class ChoiceNameClass extends NameClass {
             || nc2.accepts(namespaceURI,localPart);
     }
     
+    public boolean accepts( SymbolTable.Symbol name ) {
+        return nc1.accepts(name) || nc2.accepts(name);
+    }
+    
     public Object visit( NameClassVisitor visitor ) { return visitor.onChoice(this); }
     
     public ChoiceNameClass( NameClass nc1, NameClass nc2 ) {
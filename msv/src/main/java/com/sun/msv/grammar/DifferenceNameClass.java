@@ -9,6 +9,8 @@
  */
 package com.sun.msv.grammar;
 
+import com.sun.msv.grammar.util.SymbolTable;
+
 /**
  * &lt;difference&gt; name class.
  * 
@@ -26,6 +28,10 @@ public class DifferenceNameClass extends NameClass {
             && !nc2.accepts(namespaceURI,localPart);
     }
     
+    public boolean accepts( SymbolTable.Symbol name ) {
+        return nc1.accepts(name) && !nc2.accepts(name);
+    }
+    
     public Object visit( NameClassVisitor visitor ) {
         return visitor.onDifference(this);
     }
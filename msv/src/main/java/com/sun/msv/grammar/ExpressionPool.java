@@ -229,9 +229,52 @@ public class ExpressionPool implements java.io.Serializable {
      * Furthermore, you can throw away a child pool after a certain time period to
      * prevent it from eating up memory.
      */
-    public ExpressionPool( ExpressionPool parent )    { expTable = new ClosedHash(parent.expTable); }
-    public ExpressionPool()                            { expTable = new ClosedHash(); }
+    public ExpressionPool( ExpressionPool parent )    { this(parent,1); }
+    public ExpressionPool()                            { this(1); }
     
+    /**
+     * creates a new expression pool that is tuned for the concurrent access.
+     * 
+     * <p>
+     * By default, all the updates to a pool are serialized by a single lock.
+     * When many threads validate documents against the same grammar, residual
+     * computation keeps adding new expressions to the pool and those threads
+     * end up waiting for each other.
+     * 
+     * <p>
+     * A pool created by this constructor splits its hash table into
+     * a number of independently locked stripes, so that threads
+     * that unify different expressions rarely contend.
+     * Lookups are lock-free regardless of the concurrency level.
+     * 
+     * @param concurrencyLevel
+     *        the estimated number of threads that concurrently update this pool.
+     *        The actual number of stripes is the next power of two.
+     *        1 gives the traditional single-lock behavior.
+     */
+    public ExpressionPool( int concurrencyLevel ) {
+        expTable = new ClosedHash(null,concurrencyLevel);
+    }
+    
+    /**
+     * creates a child pool of the given parent pool with the specified
+     * concurrency level.
+     * 
+     * @see #ExpressionPool(ExpressionPool)
+     * @see #ExpressionPool(int)
+     */
+    public ExpressionPool( ExpressionPool parent, int concurrencyLevel ) {
+        expTable = new ClosedHash(parent.expTable,concurrencyLevel);
+    }
+    
+    /**
+     * gets the number of stripes the hash table of this pool is split into.
+     * 
+     * @return 1 if this pool uses a single lock.
+     */
+    public final int getConcurrencyLevel() {
+        return expTable.getConcurrencyLevel();
+    }
     
     
     /**
@@ -249,18 +292,10 @@ public class ExpressionPool implements java.io.Serializable {
         // will work correctly.
         Object o = expTable.get(exp);
         
-        if(o==null) {
-            // expression may not be registered. So try it again with lock
-            synchronized(expTable) {
-                o = expTable.get(exp);
-                if(o==null) {
-                    // this check prevents two same expressions to be added simultaneously.
-                    // expression is not registered.
-                    expTable.put( exp );
-                    return exp;
-                }
-            }
-        }
+        if(o==null)
+            // expression may not be registered. So try it again with lock.
+            // putIfAbsent prevents two same expressions to be added simultaneously.
+            return expTable.putIfAbsent(exp);
         
         // expression is already registered.
         return (Expression)o;
@@ -272,23 +307,25 @@ public class ExpressionPool implements java.io.Serializable {
      * 
      * Special care has to be taken wrt threading.
      * This implementation allows get and put method to be called simulatenously.
+     * 
+     * <p>
+     * The table is split into one or more stripes. Each stripe is a closed hash
+     * with its own lock, and an expression always goes to the stripe
+     * determined by its hash code.
      */
     public final static class ClosedHash implements java.io.Serializable {
-        /** The hash table data. */
-        private Expression table[];
-
-        /** The total number of mappings in the hash table. */
-        private int count;
-
-        /**
-         * The table is rehashed when its size exceeds this threshold.  (The
-         * value of this field is (int)(capacity * loadFactor).)
-         */
-        private int threshold;
+        /** stripes of this hash table. The length is always a power of 2. */
+        private Stripe[] stripes;
+        
+        /** stripes.length-1 */
+        private int stripeMask;
 
         /** The load factor for the hashtable. */
         private static final float loadFactor = 0.3f;
         private static final int initialCapacity = 191;
+        
+        /** The maximum number of stripes. */
+        private static final int MAX_STRIPES = 256;
 
         /**
          * The parent hash table.
@@ -306,9 +343,46 @@ public class ExpressionPool implements java.io.Serializable {
         }
 
         public ClosedHash(ClosedHash parent) {
-            table = new Expression[initialCapacity];
-            threshold = (int) (initialCapacity * loadFactor);
+            this(parent,1);
+        }
+        
+        public ClosedHash(ClosedHash parent, int concurrencyLevel) {
             this.parent = parent;
+            initStripes(concurrencyLevel,initialCapacity);
+        }
+        
+        private void initStripes( int concurrencyLevel, int capacity ) {
+            int n = 1;
+            while( n<concurrencyLevel && n<MAX_STRIPES )
+                n <<= 1;
+            
+            // split the initial capacity evenly, keeping each stripe's capacity odd
+            int stripeCapacity = Math.max(capacity/n,15)|1;
+            
+            stripes = new Stripe[n];
+            for( int i=0; i<n; i++ )
+                stripes[i] = new Stripe(stripeCapacity);
+            stripeMask = n-1;
+        }
+        
+        /** gets the number of stripes. */
+        public int getConcurrencyLevel() {
+            return stripes.length;
+        }
+        
+        /** gets the total number of expressions in this table, excluding the parent. */
+        public int size() {
+            int sz = 0;
+            for( int i=0; i<stripes.length; i++ )
+                sz += stripes[i].count;
+            return sz;
+        }
+        
+        private Stripe stripeFor( int hash ) {
+            // fold the upper bits into the lower ones before masking,
+            // so that hash codes that differ only in the upper bits
+            // still spread over the stripes.
+            return stripes[(hash^(hash>>>16))&stripeMask];
         }
 
         public Expression getBinExp(Expression left, Expression right, Class<?> type) {
@@ -322,7 +396,7 @@ public class ExpressionPool implements java.io.Serializable {
                     return e;
             }
 
-            Expression tab[] = table;
+            Expression tab[] = stripeFor(hash).table;
             int index = (hash & 0x7FFFFFFF) % tab.length;
 
             while (true) {
@@ -345,7 +419,7 @@ public class ExpressionPool implements java.io.Serializable {
                     return e;
             }
 
-            Expression tab[] = table;
+            Expression tab[] = stripeFor(hash).table;
             int index = (hash & 0x7FFFFFFF) % tab.length;
 
             while (true) {
@@ -367,65 +441,131 @@ public class ExpressionPool implements java.io.Serializable {
                     return e;
             }
 
-            Expression tab[] = table;
-            int index = (key.hashCode() & 0x7FFFFFFF) % tab.length;
+            return stripeFor(key.hashCode()).get(key);
+        }
 
-            while (true) {
-                final Expression e = tab[index];
-                if (e == null)
-                    return null;
-                if (e.equals(key))
+        /**
+         * put method. No two threads can call this method simulatenously,
+         * and it's the caller's responsibility to enforce it.
+         */
+        public void put(Expression newExp) {
+            stripeFor(newExp.hashCode()).put(newExp);
+        }
+        
+        /**
+         * registers the given expression unless the equivalent expression
+         * is already registered.
+         * 
+         * <p>
+         * This method can be called by multiple threads simultaneously.
+         * Only the stripe that the expression belongs to is locked.
+         * 
+         * @return
+         *      the expression that is registered in this table,
+         *      which is either the given expression or the one found in the table.
+         */
+        public Expression putIfAbsent(Expression newExp) {
+            final Stripe stripe = stripeFor(newExp.hashCode());
+            synchronized(stripe) {
+                // another thread might have registered the same expression
+                // while we were waiting for the lock.
+                Expression e = (parent!=null)?parent.get(newExp):null;
+                if(e==null)
+                    e = stripe.get(newExp);
+                if(e!=null)
                     return e;
-                index = (index + 1) % tab.length;
+                
+                stripe.put(newExp);
+                return newExp;
             }
         }
-
+        
         /**
-         * rehash.
+         * A part of the closed hash.
          * 
-         * It is possible for one thread to call get method
-         * while another thread is performing rehash.
-         * Keep this in mind.
+         * Lookups are done without any lock, and updates are done while
+         * holding the lock of the stripe.
          */
-        private void rehash() {
-            // create a new table first.
-            // meanwhile, other threads can safely access get method.
-            int oldCapacity = table.length;
-            Expression oldMap[] = table;
-
-            int newCapacity = oldCapacity * 2 + 1;
-            Expression newMap[] = new Expression[newCapacity];
-
-            for (int i = oldCapacity; i-- > 0;)
-                if (oldMap[i] != null) {
-                    int index = (oldMap[i].hashCode() & 0x7FFFFFFF) % newMap.length;
-                    while (newMap[index] != null)
-                        index = (index + 1) % newMap.length;
-                    newMap[index] = oldMap[i];
+        private static final class Stripe {
+            /**
+             * The hash table data.
+             * 
+             * It is volatile so that a lock-free reader always sees
+             * the table that is fully populated by {@link #rehash()}.
+             */
+            volatile Expression table[];
+            
+            /** The total number of mappings in the hash table. */
+            int count;
+            
+            /**
+             * The table is rehashed when its size exceeds this threshold.  (The
+             * value of this field is (int)(capacity * loadFactor).)
+             */
+            int threshold;
+            
+            Stripe( int capacity ) {
+                table = new Expression[capacity];
+                threshold = (int) (capacity * loadFactor);
+            }
+            
+            Expression get(Expression key) {
+                Expression tab[] = table;
+                int index = (key.hashCode() & 0x7FFFFFFF) % tab.length;
+
+                while (true) {
+                    final Expression e = tab[index];
+                    if (e == null)
+                        return null;
+                    if (e.equals(key))
+                        return e;
+                    index = (index + 1) % tab.length;
                 }
+            }
 
-            // threshold is not accessed by get method.
-            threshold = (int) (newCapacity * loadFactor);
-            // switch!
-            table = newMap;
-        }
+            /**
+             * rehash.
+             * 
+             * It is possible for one thread to call get method
+             * while another thread is performing rehash.
+             * Keep this in mind.
+             */
+            private void rehash() {
+                // create a new table first.
+                // meanwhile, other threads can safely access get method.
+                int oldCapacity = table.length;
+                Expression oldMap[] = table;
+
+                int newCapacity = oldCapacity * 2 + 1;
+                Expression newMap[] = new Expression[newCapacity];
+
+                for (int i = oldCapacity; i-- > 0;)
+                    if (oldMap[i] != null) {
+                        int index = (oldMap[i].hashCode() & 0x7FFFFFFF) % newMap.length;
+                        while (newMap[index] != null)
+                            index = (index + 1) % newMap.length;
+                        newMap[index] = oldMap[i];
+                    }
+
+                // threshold is not accessed by get method.
+                threshold = (int) (newCapacity * loadFactor);
+                // switch!
+                table = newMap;
+            }
 
-        /**
-         * put method. No two threads can call this method simulatenously,
-         * and it's the caller's responsibility to enforce it.
-         */
-        public void put(Expression newExp) {
-            if (count >= threshold)
-                rehash();
+            void put(Expression newExp) {
+                if (count >= threshold)
+                    rehash();
 
-            Expression tab[] = table;
-            int index = (newExp.hashCode() & 0x7FFFFFFF) % tab.length;
+                Expression tab[] = table;
+                int index = (newExp.hashCode() & 0x7FFFFFFF) % tab.length;
 
-            while (tab[index] != null)
-                index = (index + 1) % tab.length;
-            tab[index] = newExp;
+                while (tab[index] != null)
+                    index = (index + 1) % tab.length;
+                tab[index] = newExp;
 
-            count++;
+                count++;
+            }
         }
         
         // serialization support
@@ -434,19 +574,24 @@ public class ExpressionPool implements java.io.Serializable {
         private static final ObjectStreamField[] serialPersistentFields = { 
             new ObjectStreamField("count", Integer.TYPE),
             new ObjectStreamField("streamVersion", Byte.TYPE),
-            new ObjectStreamField("parent", ExpressionPool.class) 
+            new ObjectStreamField("parent", ExpressionPool.class),
+            new ObjectStreamField("concurrencyLevel", Integer.TYPE)
         }; 
         
         private void writeObject(ObjectOutputStream s) throws IOException {
             ObjectOutputStream.PutField fields = s.putFields();
-            fields.put("count",count);
+            fields.put("count",size());
             fields.put("parent",parent);
             fields.put("streamVersion",(byte)1);
+            fields.put("concurrencyLevel",stripes.length);
             s.writeFields();
             
-            for( int i=0; i<table.length; i++ )
-                if( table[i]!=null )
-                    s.writeObject(table[i]);
+            for( int j=0; j<stripes.length; j++ ) {
+                final Expression[] table = stripes[j].table;
+                for( int i=0; i<table.length; i++ )
+                    if( table[i]!=null )
+                        s.writeObject(table[i]);
+            }
         }
         
         private void readObject(ObjectInputStream s) throws IOException,ClassNotFoundException {
@@ -454,23 +599,25 @@ public class ExpressionPool implements java.io.Serializable {
             ObjectInputStream.GetField fields = s.readFields();
             
             byte version = fields.get("streamVersion",(byte)0);
+            int concurrencyLevel = fields.get("concurrencyLevel",1);
             
             if( version==0 ) {
                 // read in the old version format
-                count = fields.get("count",0);
                 parent = (ClosedHash)fields.get("parent",null);
-                table = (Expression[])fields.get("table",null);
-                threshold = fields.get("threshold",0);
+                Expression[] table = (Expression[])fields.get("table",null);
+                
+                initStripes(concurrencyLevel,table.length);
+                stripes[0].table = table;
+                stripes[0].count = fields.get("count",0);
+                stripes[0].threshold = fields.get("threshold",0);
             } else {
                 // read the new format
                 int objCnt = fields.get("count",0);
                 parent = (ClosedHash)fields.get("parent",null);
                 
                 int size = (int)(objCnt/loadFactor)*2+10;
-                threshold = count*2;
-                count = 0;
-                table = new Expression[size];
-                for( int i=0; i<count; i++ )
+                initStripes(concurrencyLevel,size);
+                for( int i=0; i<objCnt; i++ )
                     put( (Expression)s.readObject() );
             }
         }
@@ -12,6 +12,7 @@ package com.sun.msv.grammar;
 import com.sun.msv.grammar.util.NameClassCollisionChecker;
 import com.sun.msv.grammar.util.NameClassComparator;
 import com.sun.msv.grammar.util.NameClassSimplifier;
+import com.sun.msv.grammar.util.SymbolTable;
 import com.sun.msv.util.StringPair;
 
 /**
@@ -45,6 +46,16 @@ public abstract class NameClass implements java.io.Serializable {
         return accepts( name.namespaceURI, name.localName );
     }
     
+    /**
+     * checks if this name class accepts the name of the given symbol.
+     * 
+     * Derived classes override this method to compare symbols,
+     * or interned strings, by identity.
+     */
+    public boolean accepts( SymbolTable.Symbol name ) {
+        return accepts( name.namespaceURI, name.localName );
+    }
+    
     /** Returns true if this name class is a superset of another name class. */
     public final boolean includes( NameClass rhs ) {
         boolean r = new NameClassComparator() {
@@ -9,6 +9,8 @@
  */
 package com.sun.msv.grammar;
 
+import com.sun.msv.grammar.util.SymbolTable;
+
 /**
  * NameClass that matchs any names in a particular namespace.
  * 
@@ -25,6 +27,17 @@ public class NamespaceNameClass extends NameClass {
         return this.namespaceURI.equals(namespaceURI);
     }
     
+    public boolean accepts( SymbolTable.Symbol name ) {
+        // namespace URIs of symbols are interned.
+        String uri = internedURI;
+        if( uri==null )
+            internedURI = uri = namespaceURI.intern();
+        return name.namespaceURI==uri;
+    }
+    
+    /** the interned namespace URI, or null until it's needed. */
+    private transient String internedURI;
+    
     public Object visit( NameClassVisitor visitor ) { return visitor.onNsName(this); }
     
     public NamespaceNameClass( String namespaceURI ) {
@@ -9,6 +9,8 @@
  */
 package com.sun.msv.grammar;
 
+import com.sun.msv.grammar.util.SymbolTable;
+
 /**
  * NameClass that acts a not operator.
  * 
@@ -27,6 +29,10 @@ public final class NotNameClass extends NameClass {
         return !child.accepts(namespaceURI,localName);
     }
     
+    public boolean accepts( SymbolTable.Symbol name ) {
+        return !child.accepts(name);
+    }
+    
     public Object visit( NameClassVisitor visitor ) { return visitor.onNot(this); }
 
     public NotNameClass( NameClass child ) {
@@ -9,6 +9,7 @@
  */
 package com.sun.msv.grammar;
 
+import com.sun.msv.grammar.util.SymbolTable;
 import com.sun.msv.util.StringPair;
 
 /**
@@ -26,6 +27,10 @@ public final class SimpleNameClass extends NameClass {
             &&  ( this.localName.equals(localName) || LOCALNAME_WILDCARD==localName );
     }
     
+    public boolean accepts( SymbolTable.Symbol name ) {
+        return getSymbol()==name;
+    }
+    
     public Object visit( NameClassVisitor visitor ) { return visitor.onSimple(this); }
 
     public SimpleNameClass( StringPair name ) {
@@ -37,6 +42,28 @@ public final class SimpleNameClass extends NameClass {
         this.localName        = localName;
     }
     
+    /**
+     * the symbol of the name, or null until it's needed.
+     * 
+     * Holding the symbol keeps it in {@link SymbolTable}
+     * as long as this name class is used.
+     */
+    private transient SymbolTable.Symbol symbol;
+    
+    /**
+     * gets the symbol of the name that this name class accepts,
+     * registering the name if necessary.
+     * 
+     * A name other than the wildcards is accepted by this name class if and
+     * only if {@link SymbolTable#get(String,String)} returns this symbol for it.
+     */
+    public SymbolTable.Symbol getSymbol() {
+        SymbolTable.Symbol s = symbol;
+        if(s==null)
+            symbol = s = SymbolTable.register(namespaceURI,localName);
+        return s;
+    }
+    
     public StringPair toStringPair() {
         return new StringPair(namespaceURI,localName);
     }
@@ -12,6 +12,7 @@ package com.sun.msv.grammar.dtd;
 import com.sun.msv.grammar.NameClass;
 import com.sun.msv.grammar.NameClassVisitor;
 import com.sun.msv.grammar.SimpleNameClass;
+import com.sun.msv.grammar.util.SymbolTable;
 
 /**
  * a NameClass that accepts any tag name as long as its local part is specified name.
@@ -25,6 +26,17 @@ public final class LocalNameClass extends NameClass {
         return    this.localName.equals(localName) || LOCALNAME_WILDCARD.equals(localName);
     }
     
+    public boolean accepts( SymbolTable.Symbol name ) {
+        // local names of symbols are interned.
+        String local = internedLocalName;
+        if( local==null )
+            internedLocalName = local = localName.intern();
+        return name.localName==local;
+    }
+    
+    /** the interned local name, or null until it's needed. */
+    private transient String internedLocalName;
+    
     public Object visit( NameClassVisitor visitor ) {
         // use the approximation.
         // FIXME
@@ -0,0 +1,140 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.grammar.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import com.sun.msv.grammar.ExpressionPool;
+import com.sun.msv.grammar.Grammar;
+
+/**
+ * saves a parsed {@link Grammar} into a compact binary snapshot
+ * and loads it back.
+ * 
+ * <p>
+ * Parsing a large schema is expensive, and the standard Java serialization
+ * of a grammar is not any faster at startup because of the reflection it
+ * needs for every class in the object graph. A snapshot instead stores the
+ * expression graph as a table of nodes that refer to each other by index,
+ * so that it can be restored without recursion and with the shared nodes
+ * kept shared. Name classes and built-in datatypes are stored by value;
+ * the other leaf objects, such as derived datatypes, are embedded by
+ * the Java serialization.
+ * 
+ * <p>
+ * RELAX NG, TREX, DTD and W3C XML Schema grammars are stored in this compact
+ * format. Other grammars are stored by the Java serialization, so
+ * {@link #write} can be used with any grammar.
+ * 
+ * <pre><xmp>
+ * // at build time
+ * Grammar g = GrammarLoader.loadSchema(url);
+ * GrammarSnapshot.write( g, new FileOutputStream("schema.msv") );
+ * 
+ * // at startup
+ * Grammar g = GrammarSnapshot.read( new FileInputStream("schema.msv") );
+ * </xmp></pre>
+ * 
+ * <p>
+ * The transient state used by the verifier, such as the transition caches,
+ * is not stored. The information that is only used while parsing a schema
+ * (for example {@link com.sun.msv.grammar.trex.TREXGrammar#dataTypes})
+ * is not restored either.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class GrammarSnapshot
+{
+    /** the first four bytes of a snapshot ("MSVS"). */
+    static final int MAGIC = 0x4D535653;
+    
+    /**
+     * version of the format. Snapshots of other versions are rejected
+     * rather than misinterpreted.
+     */
+    public static final int VERSION = 1;
+    
+    /** the grammar is stored in the compact format. */
+    static final byte MODE_NATIVE = 0;
+    /** the grammar is stored by the Java serialization. */
+    static final byte MODE_SERIALIZED = 1;
+    
+    /**
+     * writes a snapshot of the grammar.
+     * 
+     * <p>
+     * The stream is flushed but not closed.
+     */
+    public static void write( Grammar grammar, OutputStream out ) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(out));
+        oos.writeInt(MAGIC);
+        oos.writeShort(VERSION);
+        
+        SnapshotWriter writer = SnapshotWriter.create(grammar,oos);
+        if( writer!=null ) {
+            oos.writeByte(MODE_NATIVE);
+            writer.write();
+        } else {
+            oos.writeByte(MODE_SERIALIZED);
+            oos.writeObject(grammar);
+        }
+        oos.flush();
+    }
+    
+    /**
+     * reads a snapshot written by {@link #write}.
+     * 
+     * <p>
+     * The stream is not closed.
+     */
+    public static Grammar read( InputStream in ) throws IOException {
+        return read( in, new ExpressionPool() );
+    }
+    
+    /**
+     * reads a snapshot written by {@link #write} into the specified pool.
+     * 
+     * <p>
+     * This can be used to restore the grammar into a pool created with
+     * a concurrency level suitable for the application.
+     * The pool is not used if the grammar was stored by the Java
+     * serialization; such a grammar comes with its own pool.
+     */
+    public static Grammar read( InputStream in, ExpressionPool pool ) throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(in));
+        if( ois.readInt()!=MAGIC )
+            throw new java.io.StreamCorruptedException("not a grammar snapshot");
+        int version = ois.readShort();
+        if( version!=VERSION )
+            throw new java.io.InvalidClassException(
+                "unsupported snapshot version "+version+"; expected "+VERSION );
+        
+        switch(ois.readByte()) {
+        case MODE_NATIVE:
+            return new SnapshotReader(ois,pool).read();
+        case MODE_SERIALIZED:
+            try {
+                return (Grammar)ois.readObject();
+            } catch( ClassNotFoundException e ) {
+                IOException ioe = new java.io.InvalidClassException(e.getMessage());
+                ioe.initCause(e);
+                throw ioe;
+            }
+        default:
+            throw new java.io.StreamCorruptedException("unknown snapshot mode");
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.grammar.snapshot;
+
+/**
+ * constants of the compact snapshot format.
+ * 
+ * <p>
+ * After the header written by {@link GrammarSnapshot}, a snapshot consists of
+ * <ol>
+ *  <li>the kind of the grammar, and the list of schemas for W3C XML Schema.
+ *  <li>"shells"; expressions whose fields can be modified after they are
+ *      created (references, elements and the like). They are created first
+ *      so that cycles in the grammar can be restored.
+ *  <li>other expressions, in such an order that children always precede
+ *      their parents.
+ *  <li>the fields of the shells.
+ *  <li>grammar specific information, such as the top-level expression.
+ * </ol>
+ * Expressions are referred to by their index in this table.
+ * Indices 0,1 and 2 are reserved for epsilon, nullSet and anyString.
+ * Strings, name classes and other objects are written when they are
+ * used for the first time and referred to by index afterward.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+interface SnapshotFormat
+{
+    // kinds of grammars
+    byte GRAMMAR_TREX        = 0;
+    byte GRAMMAR_RELAXNG    = 1;
+    byte GRAMMAR_XMLSCHEMA    = 2;
+    
+    /** the number of reserved expression indices. */
+    int RESERVED = 3;
+    int ID_EPSILON        = 0;
+    int ID_NULLSET        = 1;
+    int ID_ANYSTRING    = 2;
+    /** a null expression. */
+    int ID_NULL            = -1;
+    
+    // shells
+    byte REFERENCE        = 1;
+    byte OTHER            = 2;
+    byte ELEMENT        = 3;
+    byte SKIP_ELEMENT    = 4;
+    /** a reference in the named pattern container of a TREX grammar. */
+    byte NAMED            = 5;
+    /** a reference created by its owner, such as {@link com.sun.msv.grammar.xmlschema.ComplexTypeExp#body}. */
+    byte OWNED            = 6;
+    byte TREX_GRAMMAR    = 7;
+    byte RELAXNG_GRAMMAR= 8;
+    byte COMPLEX_TYPE    = 9;
+    byte SIMPLE_TYPE    = 10;
+    byte ELEMENT_DECL    = 11;
+    byte ATTRIBUTE_DECL    = 12;
+    byte ATTRIBUTE_GROUP= 13;
+    byte GROUP_DECL        = 14;
+    byte XS_DATATYPE    = 15;
+    byte XS_ELEMENT        = 16;
+    
+    // other expressions
+    byte CHOICE            = 32;
+    byte SEQUENCE        = 33;
+    byte INTERLEAVE        = 34;
+    byte CONCUR            = 35;
+    byte ONE_OR_MORE    = 36;
+    byte MIXED            = 37;
+    byte LIST            = 38;
+    byte ATTRIBUTE        = 39;
+    byte DATA            = 40;
+    byte VALUE            = 41;
+    byte OCCURRENCE        = 42;
+    
+    // slots of owned references
+    byte SLOT_BODY            = 0;
+    byte SLOT_ATT_WILDCARD    = 1;
+    byte SLOT_SUBSTITUTIONS    = 2;
+    
+    // name classes
+    byte NC_SIMPLE        = 0;
+    byte NC_NAMESPACE    = 1;
+    byte NC_ANY            = 2;
+    byte NC_CHOICE        = 3;
+    byte NC_NOT            = 4;
+    byte NC_DIFFERENCE    = 5;
+    byte NC_LOCAL        = 6;
+    /** a name class stored by the Java serialization. */
+    byte NC_SERIALIZED    = 7;
+    
+    // objects
+    byte OBJ_NULL            = 0;
+    byte OBJ_STRING            = 1;
+    /** a built-in datatype of W3C XML Schema, stored by its name. */
+    byte OBJ_BUILTIN_TYPE    = 2;
+    /** an object stored by the Java serialization. */
+    byte OBJ_SERIALIZED        = 3;
+    
+    // markers used by the tables of strings, name classes and objects
+    /** null. */
+    int TABLE_NULL = -1;
+    /** the value follows. */
+    int TABLE_NEW = -2;
+    /** a long string follows. */
+    int TABLE_NEW_LONG = -3;
+}
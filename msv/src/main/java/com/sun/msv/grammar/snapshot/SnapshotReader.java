@@ -0,0 +1,476 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.grammar.snapshot;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.relaxng.datatype.Datatype;
+import org.relaxng.datatype.DatatypeException;
+
+import com.sun.msv.datatype.xsd.DatatypeFactory;
+import com.sun.msv.datatype.xsd.XSDatatype;
+import com.sun.msv.grammar.AttributeExp;
+import com.sun.msv.grammar.ChoiceNameClass;
+import com.sun.msv.grammar.DifferenceNameClass;
+import com.sun.msv.grammar.ElementExp;
+import com.sun.msv.grammar.Expression;
+import com.sun.msv.grammar.ExpressionPool;
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.grammar.NameClass;
+import com.sun.msv.grammar.NamespaceNameClass;
+import com.sun.msv.grammar.NotNameClass;
+import com.sun.msv.grammar.OtherExp;
+import com.sun.msv.grammar.ReferenceExp;
+import com.sun.msv.grammar.SimpleNameClass;
+import com.sun.msv.grammar.dtd.LocalNameClass;
+import com.sun.msv.grammar.relaxng.RELAXNGGrammar;
+import com.sun.msv.grammar.trex.ElementPattern;
+import com.sun.msv.grammar.trex.TREXGrammar;
+import com.sun.msv.grammar.xmlschema.AttributeDeclExp;
+import com.sun.msv.grammar.xmlschema.AttributeGroupExp;
+import com.sun.msv.grammar.xmlschema.AttributeWildcard;
+import com.sun.msv.grammar.xmlschema.ComplexTypeExp;
+import com.sun.msv.grammar.xmlschema.ElementDeclExp;
+import com.sun.msv.grammar.xmlschema.GroupDeclExp;
+import com.sun.msv.grammar.xmlschema.IdentityConstraint;
+import com.sun.msv.grammar.xmlschema.OccurrenceExp;
+import com.sun.msv.grammar.xmlschema.SimpleTypeExp;
+import com.sun.msv.grammar.xmlschema.SkipElementExp;
+import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
+import com.sun.msv.grammar.xmlschema.XMLSchemaSchema;
+import com.sun.msv.reader.datatype.xsd.XSDatatypeExp;
+import com.sun.msv.util.StringPair;
+
+/**
+ * restores a grammar written by {@link SnapshotWriter}.
+ *
+ * <p>
+ * Shells are created first with a placeholder child, then other expressions
+ * are created through the pool, and finally the actual children are
+ * set to the shells. The placeholder (epsilon or nullSet) is chosen so that
+ * {@link Expression#isEpsilonReducible()} of the shell returns the correct value
+ * even before the actual child is set, since the pool asks it while
+ * creating expressions.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+final class SnapshotReader implements SnapshotFormat
+{
+    private final ObjectInputStream in;
+    private final ExpressionPool pool;
+
+    private Expression[] exps;
+    private XMLSchemaSchema[] schemas;
+
+    private final List<String> strings = new ArrayList<String>();
+    private final List<NameClass> nameClasses = new ArrayList<NameClass>();
+    private final List<Object> objects = new ArrayList<Object>();
+
+    SnapshotReader( ObjectInputStream in, ExpressionPool pool ) {
+        this.in = in;
+        this.pool = pool;
+    }
+
+    Grammar read() throws IOException {
+        byte grammarKind = in.readByte();
+
+        XMLSchemaGrammar xg = null;
+        switch(grammarKind) {
+        case GRAMMAR_TREX:
+        case GRAMMAR_RELAXNG:
+            break;
+        case GRAMMAR_XMLSCHEMA:
+            xg = new XMLSchemaGrammar(pool);
+            schemas = new XMLSchemaSchema[in.readInt()];
+            for( int i=0; i<schemas.length; i++ )
+                schemas[i] = new XMLSchemaSchema( readString(), xg );
+            break;
+        default:
+            throw new StreamCorruptedException("unknown grammar kind");
+        }
+
+        int shellCount = in.readInt();
+        int nodeCount = in.readInt();
+        exps = new Expression[RESERVED+shellCount+nodeCount];
+        exps[ID_EPSILON]    = Expression.epsilon;
+        exps[ID_NULLSET]    = Expression.nullSet;
+        exps[ID_ANYSTRING]  = Expression.anyString;
+
+        byte[] shellKinds = new byte[shellCount];
+        for( int i=0; i<shellCount; i++ ) {
+            shellKinds[i] = in.readByte();
+            exps[RESERVED+i] = readShell(shellKinds[i]);
+        }
+        for( int i=0; i<nodeCount; i++ )
+            exps[RESERVED+shellCount+i] = readNode(in.readByte());
+        for( int i=0; i<shellCount; i++ )
+            readFields( shellKinds[i], exps[RESERVED+i] );
+
+        if( xg!=null ) {
+            xg.topLevel = readExp();
+            for( int i=0; i<schemas.length; i++ ) {
+                schemas[i].topLevel = readExp();
+                int len = in.readInt();
+                for( int j=0; j<len; j++ ) {
+                    IdentityConstraint idc = (IdentityConstraint)readObj();
+                    schemas[i].identityConstraints.add( idc.localName, idc );
+                }
+            }
+            return xg;
+        } else {
+            return (TREXGrammar)readExp();
+        }
+    }
+
+    private Expression readShell( byte kind ) throws IOException {
+        Expression exp;
+
+        switch(kind) {
+        case REFERENCE:
+            exp = new ReferenceExp(readString());
+            break;
+        case NAMED: {
+            TREXGrammar g = (TREXGrammar)readExp();
+            exp = g.namedPatterns.getOrCreate(readString());
+            break;
+        }
+        case OWNED: {
+            Expression owner = readExp();
+            byte slot = in.readByte();
+            if( owner instanceof ComplexTypeExp && slot==SLOT_BODY )
+                exp = ((ComplexTypeExp)owner).body;
+            else
+            if( owner instanceof ComplexTypeExp && slot==SLOT_ATT_WILDCARD )
+                exp = ((ComplexTypeExp)owner).attWildcard;
+            else
+            if( owner instanceof ElementDeclExp && slot==SLOT_BODY )
+                exp = ((ElementDeclExp)owner).body;
+            else
+            if( owner instanceof ElementDeclExp && slot==SLOT_SUBSTITUTIONS )
+                exp = ((ElementDeclExp)owner).substitutions;
+            else
+                throw new StreamCorruptedException("unknown slot");
+            break;
+        }
+        case OTHER:
+            exp = new OtherExp();
+            break;
+        case ELEMENT:
+            exp = new ElementPattern( readNameClass(), Expression.nullSet );
+            break;
+        case SKIP_ELEMENT:
+            exp = new SkipElementExp( readNameClass(), Expression.nullSet );
+            break;
+        case TREX_GRAMMAR:
+            exp = new TREXGrammar( pool, (TREXGrammar)readExp() );
+            break;
+        case RELAXNG_GRAMMAR: {
+            RELAXNGGrammar g = new RELAXNGGrammar( pool, (TREXGrammar)readExp() );
+            g.isIDcompatible = in.readBoolean();
+            g.isDefaultAttributeValueCompatible = in.readBoolean();
+            g.isAnnotationCompatible = in.readBoolean();
+            exp = g;
+            break;
+        }
+        case COMPLEX_TYPE: {
+            XMLSchemaSchema s = readSchema();
+            String name = readString();
+            if( in.readBoolean() )  exp = s.complexTypes.getOrCreate(name);
+            else                    exp = new ComplexTypeExp(s,name);
+            break;
+        }
+        case ELEMENT_DECL: {
+            XMLSchemaSchema s = readSchema();
+            String name = readString();
+            if( in.readBoolean() )  exp = s.elementDecls.getOrCreate(name);
+            else                    exp = new ElementDeclExp(s,name);
+            break;
+        }
+        case SIMPLE_TYPE: {
+            XMLSchemaSchema s = readSchema();
+            exp = s.simpleTypes.getOrCreate(readString());
+            break;
+        }
+        case ATTRIBUTE_DECL: {
+            XMLSchemaSchema s = readSchema();
+            String name = readString();
+            if( s!=null )   exp = s.attributeDecls.getOrCreate(name);
+            else            exp = new AttributeDeclExp(name);
+            break;
+        }
+        case ATTRIBUTE_GROUP: {
+            XMLSchemaSchema s = readSchema();
+            String name = readString();
+            if( s!=null )   exp = s.attributeGroups.getOrCreate(name);
+            else            exp = new AttributeGroupExp(name);
+            break;
+        }
+        case GROUP_DECL: {
+            XMLSchemaSchema s = readSchema();
+            String name = readString();
+            if( s!=null )   exp = s.groupDecls.getOrCreate(name);
+            else            exp = new GroupDeclExp(name);
+            break;
+        }
+        case XS_DATATYPE:
+            exp = new XSDatatypeExp( (XSDatatype)readObj(), pool );
+            break;
+        case XS_ELEMENT: {
+            ElementDeclExp.XSElementExp e = new ElementDeclExp.XSElementExp(
+                (ElementDeclExp)readExp(), (SimpleNameClass)readNameClass(),
+                Expression.nullSet, readString() );
+            int len = in.readInt();
+            for( int i=0; i<len; i++ )
+                e.identityConstraints.add( readObj() );
+            exp = e;
+            break;
+        }
+        default:
+            throw new StreamCorruptedException("unknown expression kind");
+        }
+
+        if( exp instanceof ReferenceExp )
+            ((ReferenceExp)exp).exp = readPlaceholder();
+        if( exp instanceof OtherExp )
+            ((OtherExp)exp).exp = readPlaceholder();
+
+        return exp;
+    }
+
+    private Expression readPlaceholder() throws IOException {
+        return in.readBoolean() ? Expression.epsilon : Expression.nullSet;
+    }
+
+    private Expression readNode( byte kind ) throws IOException {
+        switch(kind) {
+        case CHOICE:
+            return pool.createChoice( readExp(), readExp() );
+        case SEQUENCE:
+            return pool.createSequence( readExp(), readExp() );
+        case INTERLEAVE:
+            return pool.createInterleave( readExp(), readExp() );
+        case CONCUR:
+            return pool.createConcur( readExp(), readExp() );
+        case ONE_OR_MORE:
+            return pool.createOneOrMore( readExp() );
+        case MIXED:
+            return pool.createMixed( readExp() );
+        case LIST:
+            return pool.createList( readExp() );
+        case ATTRIBUTE: {
+            NameClass nc = readNameClass();
+            Expression content = readExp();
+            return pool.createAttribute( nc, content, readString() );
+        }
+        case DATA: {
+            Datatype dt = (Datatype)readObj();
+            StringPair name = new StringPair( readString(), readString() );
+            return pool.createData( dt, name, readExp() );
+        }
+        case VALUE: {
+            Datatype dt = (Datatype)readObj();
+            StringPair name = new StringPair( readString(), readString() );
+            return pool.createValue( dt, name, readObj() );
+        }
+        case OCCURRENCE: {
+            Expression precise = readExp();
+            int maxOccurs = in.readInt();
+            int minOccurs = in.readInt();
+            return new OccurrenceExp( precise, maxOccurs, minOccurs, readExp() );
+        }
+        default:
+            throw new StreamCorruptedException("unknown expression kind");
+        }
+    }
+
+    /** sets the actual fields of a shell. */
+    private void readFields( byte kind, Expression exp ) throws IOException {
+        switch(kind) {
+        case OTHER:
+            ((OtherExp)exp).exp = readExp();
+            return;
+        case ELEMENT:
+        case SKIP_ELEMENT:
+        case XS_ELEMENT:
+            ((ElementExp)exp).contentModel = readExp();
+            ((ElementExp)exp).ignoreUndeclaredAttributes = in.readBoolean();
+            return;
+        case COMPLEX_TYPE: {
+            ComplexTypeExp ct = (ComplexTypeExp)exp;
+            ct.exp = readExp();
+            ct.wildcard = (AttributeWildcard)readObj();
+            ct.complexBaseType = (ComplexTypeExp)readExp();
+            ct.simpleBaseType = (XSDatatypeExp)readExp();
+            ct.derivationMethod = in.readInt();
+            ct.finalValue = in.readInt();
+            ct.block = in.readInt();
+            return;
+        }
+        case SIMPLE_TYPE: {
+            SimpleTypeExp st = (SimpleTypeExp)exp;
+            Expression body = readExp();
+            XSDatatypeExp type = (XSDatatypeExp)readExp();
+            if( type!=null )    st.set(type);
+            st.exp = body;
+            return;
+        }
+        case ELEMENT_DECL: {
+            ElementDeclExp decl = (ElementDeclExp)exp;
+            Expression body = readExp();
+            decl.substitutionAffiliation = (ElementDeclExp)readExp();
+            ElementDeclExp.XSElementExp e = (ElementDeclExp.XSElementExp)readExp();
+            if( e!=null )   decl.setElementExp(e);
+            decl.isNillable = in.readBoolean();
+            decl.finalValue = in.readInt();
+            decl.block = in.readInt();
+            decl.exp = body;
+            return;
+        }
+        case ATTRIBUTE_DECL:
+            ((AttributeDeclExp)exp).exp = readExp();
+            ((AttributeDeclExp)exp).self = (AttributeExp)readExp();
+            return;
+        case ATTRIBUTE_GROUP:
+            ((AttributeGroupExp)exp).exp = readExp();
+            ((AttributeGroupExp)exp).wildcard = (AttributeWildcard)readObj();
+            return;
+        default:
+            ((ReferenceExp)exp).exp = readExp();
+            return;
+        }
+    }
+
+    private XMLSchemaSchema readSchema() throws IOException {
+        int idx = in.readInt();
+        if( idx==-1 )   return null;
+        if( schemas==null || idx<0 || idx>=schemas.length )
+            throw new StreamCorruptedException("bad schema index");
+        return schemas[idx];
+    }
+
+    private Expression readExp() throws IOException {
+        int id = in.readInt();
+        if( id==ID_NULL )   return null;
+        if( id<0 || id>=exps.length || exps[id]==null )
+            throw new StreamCorruptedException("bad expression index "+id);
+        return exps[id];
+    }
+
+    private String readString() throws IOException {
+        int i = in.readInt();
+        switch(i) {
+        case TABLE_NULL:
+            return null;
+        case TABLE_NEW: {
+            String s = in.readUTF();
+            strings.add(s);
+            return s;
+        }
+        case TABLE_NEW_LONG: {
+            char[] buf = new char[in.readInt()];
+            for( int j=0; j<buf.length; j++ )
+                buf[j] = in.readChar();
+            String s = new String(buf);
+            strings.add(s);
+            return s;
+        }
+        default:
+            return (String)strings.get(i);
+        }
+    }
+
+    private NameClass readNameClass() throws IOException {
+        int i = in.readInt();
+        if( i==TABLE_NULL )     return null;
+        if( i!=TABLE_NEW )      return (NameClass)nameClasses.get(i);
+
+        NameClass nc;
+        switch(in.readByte()) {
+        case NC_SIMPLE: {
+            String uri = readString();
+            nc = new SimpleNameClass( uri, readString() );
+            break;
+        }
+        case NC_NAMESPACE:
+            nc = new NamespaceNameClass( readString() );
+            break;
+        case NC_ANY:
+            nc = NameClass.ALL;
+            break;
+        case NC_CHOICE: {
+            NameClass nc1 = readNameClass();
+            nc = new ChoiceNameClass( nc1, readNameClass() );
+            break;
+        }
+        case NC_NOT:
+            nc = new NotNameClass( readNameClass() );
+            break;
+        case NC_DIFFERENCE: {
+            NameClass nc1 = readNameClass();
+            nc = new DifferenceNameClass( nc1, readNameClass() );
+            break;
+        }
+        case NC_LOCAL:
+            nc = new LocalNameClass( readString() );
+            break;
+        case NC_SERIALIZED:
+            nc = (NameClass)readSerialized();
+            break;
+        default:
+            throw new StreamCorruptedException("unknown name class");
+        }
+        nameClasses.add(nc);
+        return nc;
+    }
+
+    private Object readObj() throws IOException {
+        int i = in.readInt();
+        if( i==TABLE_NULL )     return null;
+        if( i!=TABLE_NEW )      return objects.get(i);
+
+        Object o;
+        switch(in.readByte()) {
+        case OBJ_STRING:
+            o = readString();
+            break;
+        case OBJ_BUILTIN_TYPE:
+            try {
+                o = DatatypeFactory.getTypeByName(readString());
+            } catch( DatatypeException e ) {
+                IOException ioe = new InvalidClassException(e.getMessage());
+                ioe.initCause(e);
+                throw ioe;
+            }
+            break;
+        case OBJ_SERIALIZED:
+            o = readSerialized();
+            break;
+        default:
+            throw new StreamCorruptedException("unknown object");
+        }
+        objects.add(o);
+        return o;
+    }
+
+    private Object readSerialized() throws IOException {
+        try {
+            return in.readObject();
+        } catch( ClassNotFoundException e ) {
+            IOException ioe = new InvalidClassException(e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+}
@@ -0,0 +1,824 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.grammar.snapshot;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.relaxng.datatype.DatatypeException;
+
+import com.sun.msv.datatype.xsd.DatatypeFactory;
+import com.sun.msv.datatype.xsd.XSDatatype;
+import com.sun.msv.grammar.AnyNameClass;
+import com.sun.msv.grammar.AttributeExp;
+import com.sun.msv.grammar.BinaryExp;
+import com.sun.msv.grammar.ChoiceExp;
+import com.sun.msv.grammar.ChoiceNameClass;
+import com.sun.msv.grammar.ConcurExp;
+import com.sun.msv.grammar.DataExp;
+import com.sun.msv.grammar.DifferenceNameClass;
+import com.sun.msv.grammar.ElementExp;
+import com.sun.msv.grammar.Expression;
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.grammar.InterleaveExp;
+import com.sun.msv.grammar.ListExp;
+import com.sun.msv.grammar.MixedExp;
+import com.sun.msv.grammar.NameClass;
+import com.sun.msv.grammar.NamespaceNameClass;
+import com.sun.msv.grammar.NotNameClass;
+import com.sun.msv.grammar.OneOrMoreExp;
+import com.sun.msv.grammar.OtherExp;
+import com.sun.msv.grammar.ReferenceContainer;
+import com.sun.msv.grammar.ReferenceExp;
+import com.sun.msv.grammar.SequenceExp;
+import com.sun.msv.grammar.SimpleNameClass;
+import com.sun.msv.grammar.UnaryExp;
+import com.sun.msv.grammar.ValueExp;
+import com.sun.msv.grammar.dtd.LocalNameClass;
+import com.sun.msv.grammar.relaxng.RELAXNGGrammar;
+import com.sun.msv.grammar.trex.ElementPattern;
+import com.sun.msv.grammar.trex.TREXGrammar;
+import com.sun.msv.grammar.xmlschema.AttributeDeclExp;
+import com.sun.msv.grammar.xmlschema.AttributeGroupExp;
+import com.sun.msv.grammar.xmlschema.ComplexTypeExp;
+import com.sun.msv.grammar.xmlschema.ElementDeclExp;
+import com.sun.msv.grammar.xmlschema.GroupDeclExp;
+import com.sun.msv.grammar.xmlschema.IdentityConstraint;
+import com.sun.msv.grammar.xmlschema.OccurrenceExp;
+import com.sun.msv.grammar.xmlschema.SimpleTypeExp;
+import com.sun.msv.grammar.xmlschema.SkipElementExp;
+import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
+import com.sun.msv.grammar.xmlschema.XMLSchemaSchema;
+import com.sun.msv.reader.datatype.xsd.XSDatatypeExp;
+
+/**
+ * writes a grammar in the compact snapshot format.
+ *
+ * <p>
+ * The whole grammar is examined by {@link #create} before anything is written,
+ * so that the caller can fall back to the Java serialization if the grammar
+ * contains something this format doesn't know.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+final class SnapshotWriter implements SnapshotFormat
+{
+    /** thrown when the grammar cannot be stored in the compact format. */
+    private static final class UnsupportedException extends Exception {
+        private static final long serialVersionUID = 1;
+    }
+
+    /**
+     * prepares a writer for the given grammar.
+     *
+     * @return
+     *      null if the grammar cannot be stored in the compact format.
+     */
+    static SnapshotWriter create( Grammar grammar, ObjectOutputStream out ) {
+        try {
+            SnapshotWriter w = new SnapshotWriter(grammar,out);
+            w.prepare();
+            return w;
+        } catch( UnsupportedException e ) {
+            return null;
+        }
+    }
+
+    private final Grammar grammar;
+    private final ObjectOutputStream out;
+    private final byte grammarKind;
+
+    /** schemas of the XML Schema grammar, in the order they are written. */
+    private final List<XMLSchemaSchema> schemas = new ArrayList<XMLSchemaSchema>();
+    private final Map<XMLSchemaSchema,Integer> schemaIndex = new IdentityHashMap<XMLSchemaSchema,Integer>();
+
+    /** all the collected expressions, in the order they are found. */
+    private final List<Expression> collected = new ArrayList<Expression>();
+    /** kind of each collected expression. */
+    private final Map<Expression,Byte> kinds = new IdentityHashMap<Expression,Byte>();
+
+    /**
+     * the grammar or the schema whose container has the reference.
+     * The value is either a {@link TREXGrammar} or a {@link XMLSchemaSchema}.
+     */
+    private final Map<Expression,Object> containers = new IdentityHashMap<Expression,Object>();
+    /** owner of each reference that is created by its owner. */
+    private final Map<Expression,Expression> owners = new IdentityHashMap<Expression,Expression>();
+    private final Map<Expression,Byte> slots = new IdentityHashMap<Expression,Byte>();
+
+    /** shells and other expressions in the order they are written. */
+    private final List<Expression> shells = new ArrayList<Expression>();
+    private final List<Expression> nodes = new ArrayList<Expression>();
+    /** index of each expression in the snapshot. */
+    private final Map<Expression,Integer> ids = new IdentityHashMap<Expression,Integer>();
+
+    private final Map<String,Integer> strings = new java.util.HashMap<String,Integer>();
+    private final Map<NameClass,Integer> nameClasses = new IdentityHashMap<NameClass,Integer>();
+    private final Map<Object,Integer> objects = new IdentityHashMap<Object,Integer>();
+
+    private SnapshotWriter( Grammar grammar, ObjectOutputStream out ) throws UnsupportedException {
+        this.grammar = grammar;
+        this.out = out;
+
+        Class<?> c = grammar.getClass();
+        if( c==TREXGrammar.class )              grammarKind = GRAMMAR_TREX;
+        else if( c==RELAXNGGrammar.class )      grammarKind = GRAMMAR_RELAXNG;
+        else if( c==XMLSchemaGrammar.class )    grammarKind = GRAMMAR_XMLSCHEMA;
+        else
+            throw new UnsupportedException();
+    }
+
+
+//
+// preparation
+//================================
+//
+    private void prepare() throws UnsupportedException {
+        List<Expression> stack = new ArrayList<Expression>();
+
+        if( grammarKind==GRAMMAR_XMLSCHEMA ) {
+            XMLSchemaGrammar xg = (XMLSchemaGrammar)grammar;
+            Iterator<Object> itr = xg.iterateSchemas();
+            while( itr.hasNext() ) {
+                XMLSchemaSchema s = (XMLSchemaSchema)itr.next();
+                schemaIndex.put( s, new Integer(schemas.size()) );
+                schemas.add(s);
+            }
+            push( stack, xg.topLevel );
+            for( int i=0; i<schemas.size(); i++ ) {
+                XMLSchemaSchema s = (XMLSchemaSchema)schemas.get(i);
+                push( stack, s.topLevel );
+                addContainer( stack, s, s.simpleTypes );
+                addContainer( stack, s, s.complexTypes );
+                addContainer( stack, s, s.attributeGroups );
+                addContainer( stack, s, s.attributeDecls );
+                addContainer( stack, s, s.elementDecls );
+                addContainer( stack, s, s.groupDecls );
+            }
+        } else {
+            push( stack, (TREXGrammar)grammar );
+        }
+
+        // collect every expression without recursion, since grammars can be deep.
+        while( !stack.isEmpty() ) {
+            Expression exp = (Expression)stack.remove(stack.size()-1);
+            if( isReserved(exp) || kinds.containsKey(exp) )
+                continue;
+            byte kind = classify(exp);
+            kinds.put( exp, new Byte(kind) );
+            collected.add(exp);
+            pushChildren( stack, exp, kind );
+        }
+
+        for( int i=0; i<collected.size(); i++ ) {
+            Expression exp = (Expression)collected.get(i);
+            if( isShell(kindOf(exp)) )
+                addShell(exp);
+        }
+        for( int i=0; i<collected.size(); i++ ) {
+            Expression exp = (Expression)collected.get(i);
+            if( !isShell(kindOf(exp)) )
+                addNode(exp);
+        }
+    }
+
+    private static void push( List<Expression> stack, Expression exp ) {
+        if( exp!=null )     stack.add(exp);
+    }
+
+    private void addContainer( List<Expression> stack, Object owner, ReferenceContainer container ) throws UnsupportedException {
+        Iterator<ReferenceExp> itr = container.iterator();
+        while( itr.hasNext() ) {
+            ReferenceExp exp = (ReferenceExp)itr.next();
+            // the reader recreates the reference by its name.
+            if( container._get(exp.name)!=exp )
+                throw new UnsupportedException();
+            containers.put( exp, owner );
+            stack.add(exp);
+        }
+    }
+
+    private void addOwned( List<Expression> stack, Expression owner, ReferenceExp exp, byte slot ) throws UnsupportedException {
+        if( exp.getClass()!=ReferenceExp.class || owners.containsKey(exp) )
+            throw new UnsupportedException();
+        owners.put( exp, owner );
+        slots.put( exp, new Byte(slot) );
+        stack.add(exp);
+    }
+
+    private static boolean isReserved( Expression exp ) {
+        return exp==Expression.epsilon || exp==Expression.nullSet || exp==Expression.anyString;
+    }
+
+    private byte kindOf( Expression exp ) {
+        return ((Byte)kinds.get(exp)).byteValue();
+    }
+
+    private static boolean isShell( byte kind ) {
+        return kind<CHOICE;
+    }
+
+    /**
+     * determines how the expression is stored.
+     * Only the exact classes known to this format are accepted,
+     * since a derived class may have additional state.
+     */
+    private byte classify( Expression exp ) throws UnsupportedException {
+        Class<?> c = exp.getClass();
+
+        if( c==ChoiceExp.class )        return CHOICE;
+        if( c==SequenceExp.class )      return SEQUENCE;
+        if( c==InterleaveExp.class )    return INTERLEAVE;
+        if( c==ConcurExp.class )        return CONCUR;
+        if( c==OneOrMoreExp.class )     return ONE_OR_MORE;
+        if( c==MixedExp.class )         return MIXED;
+        if( c==ListExp.class )          return LIST;
+        if( c==AttributeExp.class )     return ATTRIBUTE;
+        if( c==DataExp.class )          return DATA;
+        if( c==ValueExp.class )         return VALUE;
+        if( c==OccurrenceExp.class )    return OCCURRENCE;
+
+        if( c==ReferenceExp.class )     return REFERENCE;
+        if( c==OtherExp.class )         return OTHER;
+        if( c==ElementPattern.class )   return ELEMENT;
+        if( c==TREXGrammar.class )      return TREX_GRAMMAR;
+        if( c==RELAXNGGrammar.class )   return RELAXNG_GRAMMAR;
+
+        if( c==SkipElementExp.class )   return SKIP_ELEMENT;
+        if( c==ComplexTypeExp.class ) {
+            schemaOf(((ComplexTypeExp)exp).parent);
+            return COMPLEX_TYPE;
+        }
+        if( c==SimpleTypeExp.class ) {
+            // SimpleTypeExp can only be created through the container.
+            if( !containers.containsKey(exp) )
+                throw new UnsupportedException();
+            return SIMPLE_TYPE;
+        }
+        if( c==ElementDeclExp.class ) {
+            schemaOf(((ElementDeclExp)exp).parent);
+            return ELEMENT_DECL;
+        }
+        if( c==AttributeDeclExp.class )     return ATTRIBUTE_DECL;
+        if( c==AttributeGroupExp.class )    return ATTRIBUTE_GROUP;
+        if( c==GroupDeclExp.class )         return GROUP_DECL;
+        if( c==XSDatatypeExp.class ) {
+            // the type has to be already rendered.
+            if( ((XSDatatypeExp)exp).isLateBind() )
+                throw new UnsupportedException();
+            return XS_DATATYPE;
+        }
+        if( c==ElementDeclExp.XSElementExp.class )  return XS_ELEMENT;
+
+        throw new UnsupportedException();
+    }
+
+    private int schemaOf( XMLSchemaSchema schema ) throws UnsupportedException {
+        Integer i = (Integer)schemaIndex.get(schema);
+        if(i==null)     throw new UnsupportedException();
+        return i.intValue();
+    }
+
+    private void pushChildren( List<Expression> stack, Expression exp, byte kind ) throws UnsupportedException {
+        switch(kind) {
+        case CHOICE:
+        case SEQUENCE:
+        case INTERLEAVE:
+        case CONCUR:
+            push( stack, ((BinaryExp)exp).exp1 );
+            push( stack, ((BinaryExp)exp).exp2 );
+            return;
+        case ONE_OR_MORE:
+        case MIXED:
+        case LIST:
+            push( stack, ((UnaryExp)exp).exp );
+            return;
+        case ATTRIBUTE:
+            push( stack, ((AttributeExp)exp).exp );
+            return;
+        case DATA:
+            push( stack, ((DataExp)exp).except );
+            return;
+        case VALUE:
+            return;
+        case OCCURRENCE:
+            push( stack, ((OccurrenceExp)exp).exp );
+            push( stack, ((OccurrenceExp)exp).itemExp );
+            return;
+        case OTHER:
+            push( stack, ((OtherExp)exp).exp );
+            return;
+        case ELEMENT:
+        case SKIP_ELEMENT:
+            push( stack, ((ElementExp)exp).contentModel );
+            return;
+        case XS_ELEMENT:
+            push( stack, ((ElementExp)exp).contentModel );
+            push( stack, ((ElementDeclExp.XSElementExp)exp).parent );
+            return;
+        case TREX_GRAMMAR:
+        case RELAXNG_GRAMMAR: {
+            TREXGrammar g = (TREXGrammar)exp;
+            push( stack, g.exp );
+            push( stack, g.getParentGrammar() );
+            Iterator<ReferenceExp> itr = g.namedPatterns.iterator();
+            while( itr.hasNext() ) {
+                ReferenceExp r = (ReferenceExp)itr.next();
+                if( r.getClass()!=ReferenceExp.class )
+                    throw new UnsupportedException();
+            }
+            addContainer( stack, g, g.namedPatterns );
+            return;
+        }
+        case COMPLEX_TYPE: {
+            ComplexTypeExp ct = (ComplexTypeExp)exp;
+            push( stack, ct.exp );
+            addOwned( stack, ct, ct.body, SLOT_BODY );
+            addOwned( stack, ct, ct.attWildcard, SLOT_ATT_WILDCARD );
+            push( stack, ct.complexBaseType );
+            push( stack, ct.simpleBaseType );
+            return;
+        }
+        case SIMPLE_TYPE:
+            push( stack, ((SimpleTypeExp)exp).exp );
+            push( stack, ((SimpleTypeExp)exp).getType() );
+            return;
+        case ELEMENT_DECL: {
+            ElementDeclExp decl = (ElementDeclExp)exp;
+            push( stack, decl.exp );
+            addOwned( stack, decl, decl.body, SLOT_BODY );
+            addOwned( stack, decl, decl.substitutions, SLOT_SUBSTITUTIONS );
+            push( stack, decl.substitutionAffiliation );
+            push( stack, decl.getElementExp() );
+            return;
+        }
+        case ATTRIBUTE_DECL:
+            push( stack, ((AttributeDeclExp)exp).exp );
+            push( stack, ((AttributeDeclExp)exp).self );
+            return;
+        case REFERENCE:
+        case ATTRIBUTE_GROUP:
+        case GROUP_DECL:
+        case XS_DATATYPE:
+            push( stack, ((ReferenceExp)exp).exp );
+            return;
+        default:
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * assigns an index to a shell. Shells that are needed to create
+     * other shells (owners, containers and parents) are added first.
+     */
+    private void addShell( Expression exp ) {
+        if( ids.containsKey(exp) )  return;
+
+        Expression dep = null;
+        if( owners.containsKey(exp) ) {
+            kinds.put( exp, new Byte(OWNED) );
+            dep = (Expression)owners.get(exp);
+        } else
+        if( containers.get(exp) instanceof TREXGrammar ) {
+            kinds.put( exp, new Byte(NAMED) );
+            dep = (TREXGrammar)containers.get(exp);
+        } else
+        if( exp instanceof TREXGrammar )
+            dep = ((TREXGrammar)exp).getParentGrammar();
+        else
+        if( exp instanceof ElementDeclExp.XSElementExp )
+            dep = ((ElementDeclExp.XSElementExp)exp).parent;
+
+        if( dep!=null )     addShell(dep);
+
+        ids.put( exp, new Integer(RESERVED+shells.size()) );
+        shells.add(exp);
+    }
+
+    /**
+     * assigns indices to the expression and its descendants so that
+     * children always precede their parents.
+     */
+    private void addNode( Expression root ) throws UnsupportedException {
+        if( ids.containsKey(root) )     return;
+
+        // in-progress nodes; detects a cycle that doesn't go through a shell.
+        Map<Expression,Expression> visiting = new IdentityHashMap<Expression,Expression>();
+        List<Expression> stack = new ArrayList<Expression>();
+        stack.add(root);
+
+        while( !stack.isEmpty() ) {
+            Expression exp = (Expression)stack.get(stack.size()-1);
+            if( ids.containsKey(exp) ) {
+                stack.remove(stack.size()-1);
+                continue;
+            }
+            visiting.put(exp,exp);
+
+            boolean ready = true;
+            Expression[] children = getNodeChildren(exp);
+            for( int i=0; i<children.length; i++ ) {
+                Expression child = children[i];
+                if( child==null || isReserved(child) || ids.containsKey(child) )
+                    continue;
+                if( visiting.containsKey(child) )
+                    throw new UnsupportedException();
+                stack.add(child);
+                ready = false;
+            }
+
+            if( ready ) {
+                stack.remove(stack.size()-1);
+                visiting.remove(exp);
+                ids.put( exp, new Integer(RESERVED+shells.size()+nodes.size()) );
+                nodes.add(exp);
+            }
+        }
+    }
+
+    /** gets the expressions that are necessary to create the given expression. */
+    private Expression[] getNodeChildren( Expression exp ) {
+        switch(kindOf(exp)) {
+        case CHOICE:
+        case SEQUENCE:
+        case INTERLEAVE:
+        case CONCUR:
+            return new Expression[]{ ((BinaryExp)exp).exp1, ((BinaryExp)exp).exp2 };
+        case ONE_OR_MORE:
+        case MIXED:
+        case LIST:
+            return new Expression[]{ ((UnaryExp)exp).exp };
+        case ATTRIBUTE:
+            return new Expression[]{ ((AttributeExp)exp).exp };
+        case DATA:
+            return new Expression[]{ ((DataExp)exp).except };
+        case VALUE:
+            return new Expression[0];
+        case OCCURRENCE:
+            return new Expression[]{ ((OccurrenceExp)exp).exp, ((OccurrenceExp)exp).itemExp };
+        default:
+            throw new InternalError();
+        }
+    }
+
+
+//
+// writing
+//================================
+//
+    void write() throws IOException {
+        out.writeByte(grammarKind);
+
+        if( grammarKind==GRAMMAR_XMLSCHEMA ) {
+            out.writeInt(schemas.size());
+            for( int i=0; i<schemas.size(); i++ )
+                writeString( ((XMLSchemaSchema)schemas.get(i)).targetNamespace );
+        }
+
+        out.writeInt(shells.size());
+        out.writeInt(nodes.size());
+        for( int i=0; i<shells.size(); i++ )
+            writeShell( (Expression)shells.get(i) );
+        for( int i=0; i<nodes.size(); i++ )
+            writeNode( (Expression)nodes.get(i) );
+        for( int i=0; i<shells.size(); i++ )
+            writeFields( (Expression)shells.get(i) );
+
+        if( grammarKind==GRAMMAR_XMLSCHEMA ) {
+            writeId( ((XMLSchemaGrammar)grammar).topLevel );
+            for( int i=0; i<schemas.size(); i++ ) {
+                XMLSchemaSchema s = (XMLSchemaSchema)schemas.get(i);
+                writeId( s.topLevel );
+
+                List<IdentityConstraint> idcs = new ArrayList<IdentityConstraint>();
+                Iterator<IdentityConstraint> itr = s.identityConstraints.iterator();
+                while( itr.hasNext() )
+                    idcs.add( itr.next() );
+                out.writeInt(idcs.size());
+                for( int j=0; j<idcs.size(); j++ )
+                    writeObj( idcs.get(j) );
+            }
+        } else {
+            writeId( (TREXGrammar)grammar );
+        }
+    }
+
+    private void writeShell( Expression exp ) throws IOException {
+        byte kind = kindOf(exp);
+        out.writeByte(kind);
+
+        switch(kind) {
+        case REFERENCE:
+            writeString( ((ReferenceExp)exp).name );
+            break;
+        case NAMED:
+            writeId( (TREXGrammar)containers.get(exp) );
+            writeString( ((ReferenceExp)exp).name );
+            break;
+        case OWNED:
+            writeId( (Expression)owners.get(exp) );
+            out.writeByte( ((Byte)slots.get(exp)).byteValue() );
+            break;
+        case OTHER:
+            break;
+        case ELEMENT:
+        case SKIP_ELEMENT:
+            writeNameClass( ((ElementPattern)exp).nameClass );
+            break;
+        case TREX_GRAMMAR:
+            writeId( ((TREXGrammar)exp).getParentGrammar() );
+            break;
+        case RELAXNG_GRAMMAR: {
+            RELAXNGGrammar g = (RELAXNGGrammar)exp;
+            writeId( g.getParentGrammar() );
+            out.writeBoolean( g.isIDcompatible );
+            out.writeBoolean( g.isDefaultAttributeValueCompatible );
+            out.writeBoolean( g.isAnnotationCompatible );
+            break;
+        }
+        case COMPLEX_TYPE:
+            out.writeInt( schemaIndexOf(((ComplexTypeExp)exp).parent) );
+            writeString( ((ReferenceExp)exp).name );
+            out.writeBoolean( containers.containsKey(exp) );
+            break;
+        case ELEMENT_DECL:
+            out.writeInt( schemaIndexOf(((ElementDeclExp)exp).parent) );
+            writeString( ((ReferenceExp)exp).name );
+            out.writeBoolean( containers.containsKey(exp) );
+            break;
+        case SIMPLE_TYPE:
+        case ATTRIBUTE_DECL:
+        case ATTRIBUTE_GROUP:
+        case GROUP_DECL: {
+            XMLSchemaSchema s = (XMLSchemaSchema)containers.get(exp);
+            out.writeInt( s==null ? -1 : schemaIndexOf(s) );
+            writeString( ((ReferenceExp)exp).name );
+            break;
+        }
+        case XS_DATATYPE:
+            writeObj( ((XSDatatypeExp)exp).getCreatedType() );
+            break;
+        case XS_ELEMENT: {
+            ElementDeclExp.XSElementExp e = (ElementDeclExp.XSElementExp)exp;
+            writeId( e.parent );
+            writeNameClass( e.elementName );
+            writeString( e.defaultValue );
+            out.writeInt( e.identityConstraints.size() );
+            for( int i=0; i<e.identityConstraints.size(); i++ )
+                writeObj( e.identityConstraints.get(i) );
+            break;
+        }
+        default:
+            throw new InternalError();
+        }
+
+        // the reader uses this to answer isEpsilonReducible() correctly
+        // while the actual child is not available yet.
+        if( exp instanceof ReferenceExp || exp instanceof OtherExp )
+            out.writeBoolean( exp.isEpsilonReducible() );
+    }
+
+    private void writeNode( Expression exp ) throws IOException {
+        byte kind = kindOf(exp);
+        out.writeByte(kind);
+
+        switch(kind) {
+        case CHOICE:
+        case SEQUENCE:
+        case INTERLEAVE:
+        case CONCUR:
+            writeId( ((BinaryExp)exp).exp1 );
+            writeId( ((BinaryExp)exp).exp2 );
+            return;
+        case ONE_OR_MORE:
+        case MIXED:
+        case LIST:
+            writeId( ((UnaryExp)exp).exp );
+            return;
+        case ATTRIBUTE: {
+            AttributeExp a = (AttributeExp)exp;
+            writeNameClass( a.nameClass );
+            writeId( a.exp );
+            writeString( a.getDefaultValue() );
+            return;
+        }
+        case DATA: {
+            DataExp d = (DataExp)exp;
+            writeObj( d.dt );
+            writeString( d.name.namespaceURI );
+            writeString( d.name.localName );
+            writeId( d.except );
+            return;
+        }
+        case VALUE: {
+            ValueExp v = (ValueExp)exp;
+            writeObj( v.dt );
+            writeString( v.name.namespaceURI );
+            writeString( v.name.localName );
+            writeObj( v.value );
+            return;
+        }
+        case OCCURRENCE: {
+            OccurrenceExp o = (OccurrenceExp)exp;
+            writeId( o.exp );
+            out.writeInt( o.maxOccurs );
+            out.writeInt( o.minOccurs );
+            writeId( o.itemExp );
+            return;
+        }
+        default:
+            throw new InternalError();
+        }
+    }
+
+    /** writes the fields of a shell. */
+    private void writeFields( Expression exp ) throws IOException {
+        switch(kindOf(exp)) {
+        case OTHER:
+            writeId( ((OtherExp)exp).exp );
+            return;
+        case ELEMENT:
+        case SKIP_ELEMENT:
+        case XS_ELEMENT:
+            writeId( ((ElementExp)exp).contentModel );
+            out.writeBoolean( ((ElementExp)exp).ignoreUndeclaredAttributes );
+            return;
+        case COMPLEX_TYPE: {
+            ComplexTypeExp ct = (ComplexTypeExp)exp;
+            writeId( ct.exp );
+            writeObj( ct.wildcard );
+            writeId( ct.complexBaseType );
+            writeId( ct.simpleBaseType );
+            out.writeInt( ct.derivationMethod );
+            out.writeInt( ct.finalValue );
+            out.writeInt( ct.block );
+            return;
+        }
+        case SIMPLE_TYPE:
+            writeId( ((SimpleTypeExp)exp).exp );
+            writeId( ((SimpleTypeExp)exp).getType() );
+            return;
+        case ELEMENT_DECL: {
+            ElementDeclExp decl = (ElementDeclExp)exp;
+            writeId( decl.exp );
+            writeId( decl.substitutionAffiliation );
+            writeId( decl.getElementExp() );
+            out.writeBoolean( decl.isNillable );
+            out.writeInt( decl.finalValue );
+            out.writeInt( decl.block );
+            return;
+        }
+        case ATTRIBUTE_DECL:
+            writeId( ((AttributeDeclExp)exp).exp );
+            writeId( ((AttributeDeclExp)exp).self );
+            return;
+        case ATTRIBUTE_GROUP:
+            writeId( ((AttributeGroupExp)exp).exp );
+            writeObj( ((AttributeGroupExp)exp).wildcard );
+            return;
+        default:
+            // the other shells are references with no additional field.
+            writeId( ((ReferenceExp)exp).exp );
+            return;
+        }
+    }
+
+    private int schemaIndexOf( XMLSchemaSchema schema ) {
+        return ((Integer)schemaIndex.get(schema)).intValue();
+    }
+
+    private void writeId( Expression exp ) throws IOException {
+        if( exp==null )                     out.writeInt(ID_NULL);
+        else if( exp==Expression.epsilon )  out.writeInt(ID_EPSILON);
+        else if( exp==Expression.nullSet )  out.writeInt(ID_NULLSET);
+        else if( exp==Expression.anyString )out.writeInt(ID_ANYSTRING);
+        else
+            out.writeInt( ((Integer)ids.get(exp)).intValue() );
+    }
+
+    private void writeString( String s ) throws IOException {
+        if( s==null ) {
+            out.writeInt(TABLE_NULL);
+            return;
+        }
+        Integer i = (Integer)strings.get(s);
+        if( i!=null ) {
+            out.writeInt(i.intValue());
+            return;
+        }
+
+        // writeUTF can't handle more than 64K bytes.
+        if( s.length()<0x4000 ) {
+            out.writeInt(TABLE_NEW);
+            out.writeUTF(s);
+        } else {
+            out.writeInt(TABLE_NEW_LONG);
+            out.writeInt(s.length());
+            out.writeChars(s);
+        }
+        strings.put( s, new Integer(strings.size()) );
+    }
+
+    private void writeNameClass( NameClass nc ) throws IOException {
+        if( nc==null ) {
+            out.writeInt(TABLE_NULL);
+            return;
+        }
+        Integer i = (Integer)nameClasses.get(nc);
+        if( i!=null ) {
+            out.writeInt(i.intValue());
+            return;
+        }
+
+        out.writeInt(TABLE_NEW);
+        Class<?> c = nc.getClass();
+        if( c==SimpleNameClass.class ) {
+            out.writeByte(NC_SIMPLE);
+            writeString( ((SimpleNameClass)nc).namespaceURI );
+            writeString( ((SimpleNameClass)nc).localName );
+        } else
+        if( c==NamespaceNameClass.class ) {
+            out.writeByte(NC_NAMESPACE);
+            writeString( ((NamespaceNameClass)nc).namespaceURI );
+        } else
+        if( c==AnyNameClass.class ) {
+            out.writeByte(NC_ANY);
+        } else
+        if( c==ChoiceNameClass.class ) {
+            out.writeByte(NC_CHOICE);
+            writeNameClass( ((ChoiceNameClass)nc).nc1 );
+            writeNameClass( ((ChoiceNameClass)nc).nc2 );
+        } else
+        if( c==NotNameClass.class ) {
+            out.writeByte(NC_NOT);
+            writeNameClass( ((NotNameClass)nc).child );
+        } else
+        if( c==DifferenceNameClass.class ) {
+            out.writeByte(NC_DIFFERENCE);
+            writeNameClass( ((DifferenceNameClass)nc).nc1 );
+            writeNameClass( ((DifferenceNameClass)nc).nc2 );
+        } else
+        if( c==LocalNameClass.class ) {
+            out.writeByte(NC_LOCAL);
+            writeString( ((LocalNameClass)nc).localName );
+        } else {
+            // name classes never refer to expressions,
+            // so it is safe to serialize unknown ones as they are.
+            out.writeByte(NC_SERIALIZED);
+            out.writeObject(nc);
+        }
+        // the index is assigned after the children, just like the reader does.
+        nameClasses.put( nc, new Integer(nameClasses.size()) );
+    }
+
+    /** writes a datatype, a value, or another leaf object. */
+    private void writeObj( Object o ) throws IOException {
+        if( o==null ) {
+            out.writeInt(TABLE_NULL);
+            return;
+        }
+        Integer i = (Integer)objects.get(o);
+        if( i!=null ) {
+            out.writeInt(i.intValue());
+            return;
+        }
+
+        out.writeInt(TABLE_NEW);
+        if( o instanceof String ) {
+            out.writeByte(OBJ_STRING);
+            writeString((String)o);
+        } else
+        if( isBuiltinType(o) ) {
+            out.writeByte(OBJ_BUILTIN_TYPE);
+            writeString( ((XSDatatype)o).getName() );
+        } else {
+            out.writeByte(OBJ_SERIALIZED);
+            out.writeObject(o);
+        }
+        objects.put( o, new Integer(objects.size()) );
+    }
+
+    private static boolean isBuiltinType( Object o ) {
+        if(!(o instanceof XSDatatype))  return false;
+        XSDatatype dt = (XSDatatype)o;
+        if( dt.getName()==null || !XSDatatype.XMLSCHEMA_NSURI.equals(dt.getNamespaceUri()) )
+            return false;
+        try {
+            return DatatypeFactory.getTypeByName(dt.getName())==dt;
+        } catch( DatatypeException e ) {
+            return false;
+        }
+    }
+}
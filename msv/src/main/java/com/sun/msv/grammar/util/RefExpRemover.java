@@ -18,6 +18,7 @@ import com.sun.msv.grammar.ExpressionCloner;
 import com.sun.msv.grammar.ExpressionPool;
 import com.sun.msv.grammar.OtherExp;
 import com.sun.msv.grammar.ReferenceExp;
+import com.sun.msv.grammar.xmlschema.OccurrenceExp;
 
 /**
  * removes all ReferenceExp from AGM.
@@ -80,6 +81,9 @@ public class RefExpRemover extends ExpressionCloner {
         return exp.exp.visit(this);
     }
     public Expression onOther(OtherExp exp) {
+        // the occurrence constraint is kept so that the verifier can count it.
+        if (exp instanceof OccurrenceExp)
+            return ((OccurrenceExp)exp).cloneItem(this, pool);
         return exp.exp.visit(this);
     }
 }
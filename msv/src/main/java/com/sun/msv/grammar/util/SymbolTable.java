@@ -0,0 +1,262 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.grammar.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+import com.sun.msv.grammar.ChoiceNameClass;
+import com.sun.msv.grammar.NameClass;
+import com.sun.msv.grammar.SimpleNameClass;
+
+/**
+ * table of the (namespace URI,local name) pairs that appear in grammars.
+ *
+ * <p>
+ * Each name is represented by one {@link Symbol} object, which has an integer id.
+ * A name found in a document is converted to its symbol once, and then
+ * compared with names in the grammar by identity
+ * (see {@link NameClass#accepts(SymbolTable.Symbol)}). Symbols are
+ * used as keys of transition caches, and their ids index the transition
+ * table of a compiled grammar.
+ *
+ * <p>
+ * Names are registered lazily: a {@link SimpleNameClass} registers its name
+ * the first time it accepts a name, and a compiled grammar registers all
+ * the names it can accept. So loading a grammar doesn't touch this table.
+ *
+ * <p>
+ * The table holds symbols weakly. A symbol is discarded once no grammar
+ * refers to it, and its id is reused by a name registered later.
+ * So the ids of live symbols stay dense and unique.
+ *
+ * <p>
+ * Lookup is lock-free and never creates any object, so it can be
+ * done for every element and attribute. Since most SAX parsers intern
+ * names, the strings are first compared by identity.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public final class SymbolTable
+{
+    private SymbolTable() {}
+
+    /** a registered name. */
+    public static final class Symbol {
+        /** the interned namespace URI. */
+        public final String namespaceURI;
+        /** the interned local name. */
+        public final String localName;
+        /**
+         * a dense id, unique among the symbols that are alive.
+         * The id of a discarded symbol is reused.
+         */
+        public final int id;
+
+        private Symbol( String namespaceURI, String localName, int id ) {
+            this.namespaceURI = namespaceURI;
+            this.localName = localName;
+            this.id = id;
+        }
+
+        public int hashCode() {
+            return id;
+        }
+
+        public String toString() {
+            return "{"+namespaceURI+"}"+localName;
+        }
+    }
+
+    /** an entry of a hash bucket, which holds its symbol weakly. */
+    private static final class Node extends WeakReference<Symbol> {
+        final int hash;
+        final int id;
+        final Node next;
+        Node( Symbol symbol, int hash, Node next ) {
+            super(symbol,queue);
+            this.hash = hash;
+            this.id = symbol.id;
+            this.next = next;
+        }
+        /** creates a copy of this node that is chained to another node. */
+        Node( Node n, Symbol symbol, Node next ) {
+            super(symbol,queue);
+            this.hash = n.hash;
+            this.id = n.id;
+            this.next = next;
+        }
+    }
+
+    /** receives the nodes whose symbols are discarded. */
+    private static final ReferenceQueue<Symbol> queue = new ReferenceQueue<Symbol>();
+
+    /**
+     * hash buckets.
+     *
+     * <p>
+     * Nodes are immutable, so a thread that reads a bucket without the lock
+     * sees either the old chain or the new one. A reader that misses a symbol
+     * being registered just sees an unregistered name.
+     */
+    private static volatile Node[] buckets = new Node[256];
+    /** the number of nodes in the buckets. */
+    private static int size = 0;
+
+    /** the smallest id that has never been used. */
+    private static int nextId = 0;
+    /** ids of the discarded symbols. */
+    private static int[] freeIds = new int[16];
+    private static int numFreeIds = 0;
+
+    private static int hash( String namespaceURI, String localName ) {
+        return namespaceURI.hashCode()*31+localName.hashCode();
+    }
+
+    /**
+     * gets the symbol of a name.
+     *
+     * @return null
+     *        if the name is not registered.
+     */
+    public static Symbol get( String namespaceURI, String localName ) {
+        // wild cards are not names.
+        if( namespaceURI==NameClass.NAMESPACE_WILDCARD || localName==NameClass.LOCALNAME_WILDCARD )
+            return null;
+
+        final Node[] b = buckets;
+        final int h = hash(namespaceURI,localName);
+        for( Node n=b[h&(b.length-1)]; n!=null; n=n.next ) {
+            if( n.hash!=h )     continue;
+            final Symbol s = n.get();
+            if( s!=null
+            &&  (s.localName==localName || s.localName.equals(localName))
+            &&  (s.namespaceURI==namespaceURI || s.namespaceURI.equals(namespaceURI)) )
+                return s;
+        }
+        return null;
+    }
+
+    /**
+     * registers a name if it's not registered yet.
+     *
+     * <p>
+     * The caller has to keep the returned symbol as long as it uses the symbol,
+     * or its id.
+     *
+     * @return
+     *        the symbol of the name.
+     */
+    public static Symbol register( String namespaceURI, String localName ) {
+        Symbol s = get(namespaceURI,localName);
+        if( s!=null )   return s;
+
+        synchronized(SymbolTable.class) {
+            s = get(namespaceURI,localName);
+            if( s!=null )   return s;
+
+            // remove discarded symbols, and grow the table if it's still crowded.
+            if( queue.poll()!=null ) {
+                while( queue.poll()!=null )
+                    ;
+                rebuild(buckets.length);
+            }
+            if( size*2>=buckets.length )
+                rebuild(buckets.length*2);
+
+            final Node[] b = buckets;
+            int id = (numFreeIds>0)?freeIds[--numFreeIds]:nextId++;
+            int h = hash(namespaceURI,localName);
+            s = new Symbol(namespaceURI.intern(),localName.intern(),id);
+            int idx = h&(b.length-1);
+            b[idx] = new Node(s,h,b[idx]);
+            size++;
+            return s;
+        }
+    }
+
+    /**
+     * copies the nodes into new buckets of the given capacity.
+     *
+     * Nodes whose symbols are discarded are dropped, and
+     * their ids are made available for reuse.
+     * This method has to be called with the lock held.
+     */
+    private static void rebuild( int capacity ) {
+        final Node[] b = buckets;
+        final Node[] nb = new Node[capacity];
+        size = 0;
+        for( int i=0; i<b.length; i++ )
+            for( Node n=b[i]; n!=null; n=n.next ) {
+                Symbol live = n.get();
+                if( live==null ) {
+                    if( numFreeIds==freeIds.length ) {
+                        int[] buf = new int[freeIds.length*2];
+                        System.arraycopy(freeIds,0,buf,0,numFreeIds);
+                        freeIds = buf;
+                    }
+                    freeIds[numFreeIds++] = n.id;
+                    continue;
+                }
+                int idx = n.hash&(capacity-1);
+                nb[idx] = new Node(n,live,nb[idx]);
+                size++;
+            }
+        buckets = nb;
+    }
+
+    /**
+     * gets the symbol of a name if the name class accepts it
+     * by a {@link SimpleNameClass}, registering the name if necessary.
+     *
+     * @return null
+     *        if the name class doesn't name it by a {@link SimpleNameClass}.
+     */
+    public static Symbol register( NameClass nc, String namespaceURI, String localName ) {
+        if( nc instanceof SimpleNameClass ) {
+            SimpleNameClass snc = (SimpleNameClass)nc;
+            if( snc.localName.equals(localName) && snc.namespaceURI.equals(namespaceURI) )
+                return snc.getSymbol();
+            return null;
+        }
+        if( nc instanceof ChoiceNameClass ) {
+            ChoiceNameClass cnc = (ChoiceNameClass)nc;
+            Symbol s = register(cnc.nc1,namespaceURI,localName);
+            if( s!=null )   return s;
+            return register(cnc.nc2,namespaceURI,localName);
+        }
+        return null;
+    }
+
+    /**
+     * checks if a name class accepts a name.
+     *
+     * @param symbol
+     *        the symbol of the name, or null if the name is not registered.
+     *        If non-null, the name class tests the symbol rather than strings.
+     */
+    public static boolean accepts( NameClass nc, Symbol symbol, String namespaceURI, String localName ) {
+        if( symbol!=null )
+            return nc.accepts(symbol);
+        if( !nc.accepts(namespaceURI,localName) )
+            return false;
+        // register the name so that it is tested as a symbol from now on.
+        if( nc instanceof SimpleNameClass )
+            ((SimpleNameClass)nc).getSymbol();
+        return true;
+    }
+
+    /** gets the number of registered names, including discarded ones not removed yet. */
+    public static int size() {
+        synchronized(SymbolTable.class) {
+            return size;
+        }
+    }
+}
@@ -25,7 +25,7 @@ import com.sun.msv.grammar.ReferenceExp;
  * 
  * @author <a href="mailto:kohsuke.kawaguchi@sun.com">Kohsuke KAWAGUCHI</a>
  */
-public class AttributeWildcard {
+public class AttributeWildcard implements java.io.Serializable {
     
     public AttributeWildcard( NameClass name, int processMode ) {
         this.name = name;
@@ -15,6 +15,7 @@ import com.sun.msv.grammar.DifferenceNameClass;
 import com.sun.msv.grammar.NameClass;
 import com.sun.msv.grammar.NameClassVisitor;
 import com.sun.msv.grammar.SimpleNameClass;
+import com.sun.msv.grammar.util.SymbolTable;
 import com.sun.msv.util.StringPair;
 
 /**
@@ -86,6 +87,11 @@ public class LaxDefaultNameClass extends NameClass {
                 !names.contains( new StringPair(namespaceURI,localName) );
     }
     
+    public boolean accepts( SymbolTable.Symbol name ) {
+        return base.accepts(name) &&
+                !names.contains( new StringPair(name.namespaceURI,name.localName) );
+    }
+    
     /**
      * set of {@link StringPair}s.
      * each item represents one name.
@@ -9,7 +9,12 @@
  */
 package com.sun.msv.grammar.xmlschema;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.sun.msv.grammar.Expression;
+import com.sun.msv.grammar.ExpressionPool;
+import com.sun.msv.grammar.ExpressionVisitorExpression;
 import com.sun.msv.grammar.OtherExp;
 
 /**
@@ -17,21 +22,30 @@ import com.sun.msv.grammar.OtherExp;
  * be easily represented by primitive expressions.
  * 
  * <p>
- * This expression is just a marker, and the exp field
- * of this instance still contains the precise expression
- * of the occurrence constraint.
+ * The exp field of this instance still contains the precise
+ * expression of the occurrence constraint, so applications that don't
+ * know this marker can treat it just like any other {@link OtherExp}.
  * 
  * <p>
- * For example, if A is maxOccurs=5 and minOccurs=3,
- * then the exp field of this instance will be:
- * <code>A,A,A,(A,A?)?</code>, the maxOccurs field
- * will be 5, the minOccurs field will be 3, and
+ * Since a large maxOccurs would produce a huge expression if the item
+ * were simply repeated, the precise expression is built from blocks of
+ * 2<sup>k</sup> items, which are themselves <code>OccurrenceExp</code>s
+ * shared by all the constraints of the same item.
+ * For example, if A is maxOccurs=6 and minOccurs=3, then the exp field
+ * of this instance will be:
+ * <code>[A,A],A,[A?,A?],A?</code>, where [...] denotes an
+ * <code>OccurrenceExp</code> of 2 items.
+ * In general, such a block of 2<sup>k</sup> items is made of two
+ * blocks of 2<sup>k-1</sup> items, so the size of the precise
+ * expression is proportional to the logarithm of maxOccurs.
+ * The maxOccurs field will be 6, the minOccurs field will be 3, and
  * the itemExp field will hold a reference to <code>A</code>.
  * 
  * <p>
- * Note that MSV doesn't using this marker by itself.
- * It is intended to help other applications that use
- * the AGM of MSV.
+ * Because such an expression is ambiguous, the verifier doesn't use it.
+ * Instead, it counts the occurrences of the item: the residual of
+ * <code>A[3,6]</code> is the residual of <code>A</code> followed by
+ * <code>A[2,5]</code>, which is obtained by the {@link #getRest} method.
  * 
  * <p>
  * Also note that this expression will not
@@ -61,6 +75,13 @@ public class OccurrenceExp extends OtherExp {
         this.itemExp = itemExp;
     }
     
+    private OccurrenceExp(
+        Expression preciseExp,
+        int maxOccurs, int minOccurs, Blocks blocks ) {
+        this( preciseExp, maxOccurs, minOccurs, blocks.item );
+        this.blocks = blocks;
+    }
+    
     /** Maximum occurence. -1 to indicate "unbounded" */
     public final int maxOccurs;
     /** Minimum occurence. */
@@ -69,12 +90,217 @@ public class OccurrenceExp extends OtherExp {
     /** The unit of repetition. */
     public final Expression itemExp;
     
+    /**
+     * Creates an expression that repeats the item.
+     * 
+     * @param   maxOccurs
+     *      -1 to represent "unbounded".
+     * @return
+     *      an <code>OccurrenceExp</code>, or a primitive expression
+     *      if the constraint can be represented by primitives.
+     */
+    public static Expression create( ExpressionPool pool, Expression item, int minOccurs, int maxOccurs ) {
+        return create( new Blocks(pool,item), minOccurs, maxOccurs );
+    }
+    
+    private static Expression create( Blocks blocks, int minOccurs, int maxOccurs ) {
+        ExpressionPool pool = blocks.pool;
+        Expression item = blocks.item;
+        if(maxOccurs==1)
+            return minOccurs==0 ? pool.createOptional(item) : item;
+        if(maxOccurs==-1 && minOccurs<=1)
+            return minOccurs==0 ? pool.createZeroOrMore(item) : pool.createOneOrMore(item);
+        return blocks.get(minOccurs,maxOccurs);
+    }
+    
+    /**
+     * Creates a choice of two expressions.
+     * 
+     * <p>
+     * If both are occurrence constraints of the same item and
+     * their ranges overlap, they are merged into one constraint.
+     * For example, the choice of <code>A[2,5]</code> and <code>A[4,6]</code>
+     * is <code>A[2,6]</code>.
+     * Residuals often contain such a choice, and without merging,
+     * the number of distinct residuals would grow quadratically
+     * to maxOccurs.
+     */
+    public static Expression createChoice( ExpressionPool pool, Expression left, Expression right ) {
+        if( left instanceof OccurrenceExp && right instanceof OccurrenceExp ) {
+            OccurrenceExp l = (OccurrenceExp)left;
+            OccurrenceExp r = (OccurrenceExp)right;
+            if( l.blocks!=null && l.blocks==r.blocks ) {
+                int lmin = l.getEffectiveMinOccurs();
+                int rmin = r.getEffectiveMinOccurs();
+                if( (l.maxOccurs==-1 || rmin<=l.maxOccurs+1)
+                &&  (r.maxOccurs==-1 || lmin<=r.maxOccurs+1) ) {
+                    int max = (l.maxOccurs==-1 || r.maxOccurs==-1) ? -1 : Math.max(l.maxOccurs,r.maxOccurs);
+                    return create( l.blocks, Math.min(lmin,rmin), max );
+                }
+            }
+        }
+        return pool.createChoice(left,right);
+    }
+    
+    /**
+     * Gets minOccurs, or 0 if the item accepts the empty sequence,
+     * in which case minOccurs is meaningless.
+     */
+    private int getEffectiveMinOccurs() {
+        return itemExp.isEpsilonReducible() ? 0 : minOccurs;
+    }
+    
+    /**
+     * Gets the same occurrence constraint of the item transformed by
+     * the given visitor.
+     * 
+     * @return
+     *      this object if the visitor doesn't change the item.
+     */
+    public Expression cloneItem( ExpressionVisitorExpression visitor, ExpressionPool pool ) {
+        Expression item = itemExp.visit(visitor);
+        if( item==itemExp )     return this;
+        return create( pool, item, minOccurs, maxOccurs );
+    }
+    
+    /**
+     * Gets the expression that remains after one occurrence of the item.
+     * 
+     * <p>
+     * For example, the rest of <code>A[3,6]</code> is <code>A[2,5]</code>,
+     * and the rest of <code>A[0,2]</code> is <code>A?</code>.
+     * If the item accepts the empty sequence, minOccurs is meaningless,
+     * so the rest of <code>A?[3,6]</code> is <code>A?[0,5]</code>.
+     * 
+     * <p>
+     * The result is computed only once, so the residuals of the same
+     * occurrence constraint are always made of the same objects.
+     * This method can be called by multiple threads.
+     */
+    public Expression getRest( ExpressionPool pool ) {
+        Expression r = rest;
+        if(r==null) {
+            synchronized(this) {
+                if(rest==null)
+                    rest = createRest(pool);
+                r = rest;
+            }
+        }
+        return r;
+    }
+    
+    private Expression createRest( ExpressionPool pool ) {
+        if(maxOccurs==0)
+            return Expression.nullSet;
+        
+        if(blocks==null) {
+            // this object was created by the public constructor or deserialized.
+            blocks = new Blocks(pool,itemExp);
+            blocks.put(minOccurs,maxOccurs,this);
+        }
+        
+        return create( blocks,
+            Math.max(getEffectiveMinOccurs()-1,0),
+            maxOccurs==-1 ? -1 : maxOccurs-1 );
+    }
+    
     /** Obtains a string representation suitable for quick debugging. */
     public String toString() {
         return itemExp.toString()+"["+minOccurs+","+
             (maxOccurs==-1?"inf":String.valueOf(maxOccurs))+"]";
     }
     
+    /** Blocks used to build the precise expressions of the item. */
+    private transient Blocks blocks;
+    
+    /** The result of {@link #getRest}. */
+    private transient volatile Expression rest;
+    
+    /**
+     * Repetitions of 2<sup>k</sup> items and up to 2<sup>k</sup> items,
+     * shared by all the occurrence constraints of one item.
+     * It also keeps those constraints, so that each range has
+     * only one <code>OccurrenceExp</code>.
+     */
+    private static final class Blocks {
+        final ExpressionPool pool;
+        final Expression item;
+        
+        /** the occurrence constraints keyed by their ranges. */
+        private final Map<Long,OccurrenceExp> constraints = new HashMap<Long,OccurrenceExp>();
+        
+        /** exact[k] is <code>A[2<sup>k</sup>,2<sup>k</sup>]</code>. */
+        private final Expression[] exact = new Expression[31];
+        /** upTo[k] is <code>A[0,2<sup>k</sup>]</code>. */
+        private final Expression[] upTo = new Expression[31];
+        
+        Blocks( ExpressionPool pool, Expression item ) {
+            this.pool = pool;
+            this.item = item;
+        }
+        
+        /** gets the unique constraint of <code>item[min,max]</code>. */
+        synchronized OccurrenceExp get( int min, int max ) {
+            OccurrenceExp exp = constraints.get(key(min,max));
+            if(exp==null)
+                put( min, max, exp=new OccurrenceExp(precise(min,max),max,min,this) );
+            return exp;
+        }
+        
+        synchronized void put( int min, int max, OccurrenceExp exp ) {
+            constraints.put(key(min,max),exp);
+        }
+        
+        private static Long key( int min, int max ) {
+            return new Long( (((long)min)<<32) | (max&0xFFFFFFFFL) );
+        }
+        
+        /** builds the precise expression of <code>item[min,max]</code>. */
+        Expression precise( int min, int max ) {
+            Expression exp = Expression.epsilon;
+            // larger blocks come first, so that similar counts share their prefix.
+            for( int k=30; k>=0; k-- )
+                if( (min&(1<<k))!=0 )
+                    exp = pool.createSequence( exp, getExact(k) );
+            
+            if(max==-1)
+                return pool.createSequence( exp, pool.createZeroOrMore(item) );
+            
+            for( int k=30; k>=0; k-- )
+                if( ((max-min)&(1<<k))!=0 )
+                    exp = pool.createSequence( exp, getUpTo(k) );
+            return exp;
+        }
+        
+        private synchronized Expression getExact( int k ) {
+            if( exact[k]==null ) {
+                if(k==0)
+                    exact[k] = item;
+                else {
+                    Expression half = getExact(k-1);
+                    exact[k] = new OccurrenceExp(
+                        pool.createSequence(half,half), 1<<k, 1<<k, this );
+                }
+            }
+            return exact[k];
+        }
+        
+        private synchronized Expression getUpTo( int k ) {
+            if( upTo[k]==null ) {
+                if(k==0)
+                    upTo[k] = pool.createOptional(item);
+                else
+                    // A[0,2n] is (A[n,n])?,A[0,n], rather than A[0,n],A[0,n].
+                    // This keeps the expression small for visitors that don't
+                    // remember the visited expressions.
+                    upTo[k] = new OccurrenceExp(
+                        pool.createSequence( pool.createOptional(getExact(k-1)), getUpTo(k-1) ),
+                        1<<k, 0, this );
+            }
+            return upTo[k];
+        }
+    }
+    
     // serialization support
     private static final long serialVersionUID = 1;    
 }
@@ -138,6 +138,10 @@ public class XMLSchemaSchema implements java.io.Serializable {
         public void add( String name, IdentityConstraint idc ) {
             storage.put(name,idc);
         }
+        /** iterates all the identity constraints in this container. */
+        public java.util.Iterator<IdentityConstraint> iterator() {
+            return storage.values().iterator();
+        }
     }
     /** map from identity constraint name to IdentityConstraint object. */
     public final IdentityConstraintContainer identityConstraints = new IdentityConstraintContainer();
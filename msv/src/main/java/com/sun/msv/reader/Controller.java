@@ -37,8 +37,13 @@ public class Controller implements GrammarReaderController2, ErrorHandler
         this.core = _core;
     }
     
+    /**
+     * the reader and the tasks that prefetch documents for it
+     * may resolve entities from different threads, so
+     * the core controller is called by one thread at a time.
+     */
     @Deprecated
-    public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
+    public synchronized InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
         return core.resolveEntity(publicId, systemId);
     }
     
@@ -0,0 +1,229 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.reader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.sun.msv.util.Uri;
+
+/**
+ * parses schema documents and all the documents they refer to,
+ * directly or indirectly, concurrently into a {@link SchemaDocumentCache}.
+ *
+ * <p>
+ * Each document is parsed by a task of the given executor, and
+ * documents found in it are submitted as new tasks as soon as they
+ * are seen. So independent documents are parsed in parallel.
+ * A grammar reader submits the references of the document it is parsing
+ * through {@link #record(Locator)}, and later reads the submitted documents
+ * through the cache, waiting by {@link #await(String)} only for
+ * a document that is still being parsed.
+ *
+ * <p>
+ * Only fetching and parsing are done in parallel. The grammar reader
+ * still builds the grammar from the parsed documents one by one.
+ *
+ * <p>
+ * Errors are not reported. A document that can't be parsed is simply
+ * not cached, so the grammar reader parses it again and reports the error.
+ *
+ * <p>
+ * Derived classes tell which elements refer to other documents.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public abstract class DocumentPrefetcher
+{
+    private final SchemaDocumentCache cache;
+    private final SAXParserFactory parserFactory;
+    private final EntityResolver resolver;
+    private final Executor executor;
+
+    /** lets one thread at a time use the resolver. */
+    private final EntityResolver serializedResolver = new EntityResolver() {
+        public InputSource resolveEntity( String publicId, String systemId )
+                throws SAXException, IOException {
+            synchronized(resolver) {
+                return resolver.resolveEntity(publicId,systemId);
+            }
+        }
+    };
+
+    /** system ids that are already submitted. */
+    private final Set<String> submitted = new HashSet<String>();
+    /**
+     * resolved system ids of the documents that are not parsed yet.
+     * A system id appears once for each task that parses it.
+     */
+    private final List<String> loading = new ArrayList<String>();
+
+    /**
+     * @param resolver
+     *        used to resolve system ids, as
+     *        {@link GrammarReader#resolveLocation(State,String)} does.
+     *        This object is called by one thread at a time.
+     */
+    public DocumentPrefetcher( SchemaDocumentCache cache, SAXParserFactory parserFactory,
+        EntityResolver resolver, Executor executor ) {
+
+        this.cache = cache;
+        this.parserFactory = parserFactory;
+        this.resolver = resolver;
+        this.executor = executor;
+    }
+
+    /**
+     * gets the location of the document that the given element refers to.
+     *
+     * @return null
+     *        if the element doesn't refer to another document.
+     */
+    protected abstract String getReference( String namespaceURI, String localName, Attributes atts );
+
+    /**
+     * starts parsing the specified document and all the documents
+     * it refers to, without waiting for them.
+     *
+     * @param systemId
+     *        the absolute system id before it is resolved.
+     */
+    public void submit( String systemId ) {
+        synchronized(this) {
+            if( !submitted.add(systemId) )
+                return;
+        }
+
+        final InputSource source;
+        try {
+            source = serializedResolver.resolveEntity(null,systemId);
+        } catch( Exception e ) {
+            // ignore the error. The reader will report it.
+            return;
+        }
+        final InputSource resolved = (source!=null)?source:new InputSource(systemId);
+        final String id = resolved.getSystemId();
+
+        synchronized(this) {
+            loading.add(id);
+        }
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        load(resolved);
+                    } finally {
+                        done(id);
+                    }
+                }
+            });
+        } catch( RuntimeException e ) {
+            // the task was rejected. The reader will parse this document by itself.
+            done(id);
+        }
+    }
+
+    /**
+     * waits until the specified document is parsed,
+     * if it is submitted and not parsed yet.
+     *
+     * @param systemId
+     *        the system id of the document after it is resolved.
+     */
+    public synchronized void await( String systemId ) throws InterruptedException {
+        while( loading.contains(systemId) )
+            wait();
+    }
+
+    private synchronized void done( String systemId ) {
+        loading.remove(systemId);
+        notifyAll();
+    }
+
+    /**
+     * creates a recorder for a document that the caller parses by itself.
+     *
+     * <p>
+     * The documents that it refers to are submitted as soon as the recorder
+     * sees them, so they are parsed while the rest of the document is.
+     *
+     * @param locator
+     *        the locator of the document, which gives its system id.
+     */
+    public SchemaDocumentCache.Recorder record( Locator locator ) {
+        InputSource source = new InputSource();
+        if( locator!=null ) {
+            source.setSystemId(locator.getSystemId());
+            source.setPublicId(locator.getPublicId());
+        }
+        return new SchemaDocumentCache.Recorder(
+            new ReferenceSubmitter(source.getSystemId()), new DefaultHandler(), source );
+    }
+
+    private void load( InputSource source ) {
+        try {
+            SchemaDocumentCache.Content content = SchemaDocumentCache.Content.read(source);
+            if( content==null )     return;
+
+            ReferenceSubmitter submitter = new ReferenceSubmitter(source.getSystemId());
+            SchemaDocumentCache.Document doc = cache.get(content.key);
+            if( doc!=null ) {
+                doc.replay(submitter);
+                return;
+            }
+
+            SchemaDocumentCache.Recorder recorder =
+                new SchemaDocumentCache.Recorder(submitter,submitter,source);
+            XMLReader reader;
+            synchronized(parserFactory) {
+                reader = parserFactory.newSAXParser().getXMLReader();
+            }
+            reader.setContentHandler(recorder);
+            reader.setErrorHandler(recorder);
+            reader.setEntityResolver(serializedResolver);
+            reader.parse(content.createInputSource());
+
+            doc = recorder.getDocument();
+            if( doc!=null )
+                cache.put(content.key,doc);
+        } catch( Exception e ) {
+            // ignore the error. The reader will report it.
+        }
+    }
+
+    /** submits the documents that a document refers to. */
+    private class ReferenceSubmitter extends DefaultHandler {
+        private final String base;
+
+        ReferenceSubmitter( String base ) {
+            this.base = base;
+        }
+
+        public void startElement( String namespaceURI, String localName, String qName, Attributes atts ) {
+            String ref = getReference(namespaceURI,localName,atts);
+            if( ref!=null && ref.indexOf('#')<0 )
+                submit(Uri.resolve(base,ref));
+        }
+    }
+}
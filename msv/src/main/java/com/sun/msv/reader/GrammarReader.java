@@ -492,6 +492,9 @@ public abstract class GrammarReader
     		/* a sax parser will always set up a locator to the ID information
     		 * in the InputSource. TraX does not do this, so we have to.
     		 */
+    		parsedDocuments.add(null);
+    		parsedDigests.add(null);
+    		
     		LocatorImpl sourceLocator = new LocatorImpl();
     		sourceLocator.setSystemId(source.getSystemId());
     		setLocator(sourceLocator);
@@ -505,8 +508,16 @@ public abstract class GrammarReader
     
     /** parses a grammar from the specified source */
     public final void _parse( Object source, Locator errorSource ) {
+        final int index = parsedDocuments.size();
+        parsedDocuments.add( (source instanceof InputSource)?
+            ((InputSource)source).getSystemId() : (String)source );
+        parsedDigests.add(null);
+        
         try {
-            XMLReader reader = parserFactory.newSAXParser().getXMLReader();
+            if( (documentCache!=null || recordDigests) && parseContent(source,index) )
+                return;
+            
+            XMLReader reader = obtainXMLReader();
             reader.setContentHandler(this);
             reader.setErrorHandler(controller);
             reader.setEntityResolver(controller);
@@ -514,6 +525,7 @@ public abstract class GrammarReader
             // invoke XMLReader
             if( source instanceof InputSource )        reader.parse((InputSource)source);
             if( source instanceof String )            reader.parse((String)source);
+            releaseXMLReader(reader);
         } catch( ParserConfigurationException e ) {
             controller.error(e,errorSource);
         } catch( IOException e ) {
@@ -526,6 +538,169 @@ public abstract class GrammarReader
         // TODO: shall we throw AbortException here?
     }
     
+    /**
+     * XMLReaders that are ready to parse another document.
+     * 
+     * An included document is parsed while the including document
+     * is still being parsed, so one XMLReader is needed for each level
+     * of nesting, and XMLReaders are reused across siblings.
+     */
+    private final List<XMLReader> idleReaders = new ArrayList<XMLReader>();
+    
+    /** gets an XMLReader that is not in use, creating one if necessary. */
+    private XMLReader obtainXMLReader() throws ParserConfigurationException, SAXException {
+        if( !idleReaders.isEmpty() )
+            return idleReaders.remove(idleReaders.size()-1);
+        return parserFactory.newSAXParser().getXMLReader();
+    }
+    
+    /**
+     * makes an XMLReader available for the next document.
+     * This method is called only after a successful parse, so a reader
+     * left in an unknown state by an error is never reused.
+     */
+    private void releaseXMLReader( XMLReader reader ) {
+        idleReaders.add(reader);
+    }
+    
+    /** system ids of the documents parsed by this reader. */
+    private final List<String> parsedDocuments = new ArrayList<String>();
+    
+    /**
+     * gets the system ids of the documents that this reader has parsed
+     * by itself, in the order they were parsed.
+     * 
+     * Documents that are given to the reader as SAX events by the caller
+     * are not in this list. The list contains null for a document
+     * that has no system id or that was read through javax.xml.transform.
+     */
+    public List<String> getParsedDocuments() {
+        return Collections.unmodifiableList(parsedDocuments);
+    }
+    
+    /** SHA-1 digests of the documents in {@link #parsedDocuments}. */
+    private final List<byte[]> parsedDigests = new ArrayList<byte[]>();
+    
+    /**
+     * gets the SHA-1 digests of the bytes that were parsed for the documents
+     * returned by {@link #getParsedDocuments()}, in the same order.
+     * 
+     * The list contains null for a document whose digest is unknown.
+     * Digests are only computed if {@link #setRecordDigests(boolean)} is
+     * turned on or a document cache is set.
+     */
+    public List<byte[]> getParsedDocumentDigests() {
+        return Collections.unmodifiableList(parsedDigests);
+    }
+    
+    /** true to compute the digest of every document. */
+    private boolean recordDigests = false;
+    
+    /**
+     * makes this reader compute the digest of every document it parses,
+     * so that the documents can later be checked for changes.
+     * 
+     * Documents are then read into memory before they are parsed.
+     */
+    public void setRecordDigests( boolean recordDigests ) {
+        this.recordDigests = recordDigests;
+    }
+    public boolean isRecordDigests() {
+        return recordDigests;
+    }
+    
+    /**
+     * reads the whole source into memory, records its digest,
+     * and parses it through the document cache if there is one.
+     * 
+     * @param index
+     *        the index of the source in {@link #parsedDocuments}.
+     * @return false
+     *        if the source can't be read without the help of the parser.
+     *        In that case, nothing has been read from the source and
+     *        the caller should parse it normally.
+     */
+    private boolean parseContent( Object source, int index )
+            throws ParserConfigurationException, IOException, SAXException {
+        
+        InputSource is;
+        if( source instanceof String )  is = new InputSource((String)source);
+        else                            is = (InputSource)source;
+        
+        SchemaDocumentCache.Content content = SchemaDocumentCache.Content.read(is);
+        if( content==null )     return false;
+        parsedDigests.set( index, content.getDigest() );
+        
+        if( documentCache==null ) {
+            XMLReader reader = obtainXMLReader();
+            reader.setContentHandler(this);
+            reader.setErrorHandler(controller);
+            reader.setEntityResolver(controller);
+            reader.parse(content.createInputSource());
+            releaseXMLReader(reader);
+            return true;
+        }
+        
+        if( is.getSystemId()!=null )
+            awaitDocument(is.getSystemId());
+        SchemaDocumentCache.Document doc = documentCache.get(content.key);
+        if( doc!=null ) {
+            doc.replay(this);
+            return true;
+        }
+        
+        SchemaDocumentCache.Recorder recorder =
+            new SchemaDocumentCache.Recorder(this,controller,is);
+        XMLReader reader = obtainXMLReader();
+        reader.setContentHandler(recorder);
+        reader.setErrorHandler(recorder);
+        reader.setEntityResolver(controller);
+        reader.parse(content.createInputSource());
+        releaseXMLReader(reader);
+        
+        doc = recorder.getDocument();
+        if( doc!=null )
+            documentCache.put(content.key,doc);
+        return true;
+    }
+    
+    /**
+     * called before a document is looked up in the document cache.
+     * 
+     * Derived classes that fill the cache in the background
+     * override this method to wait until the document is stored.
+     * 
+     * @param systemId
+     *        the system id of the document after it is resolved.
+     */
+    protected void awaitDocument( String systemId ) {
+    }
+    
+    /**
+     * the cache of parsed schema documents, or null if
+     * every document is parsed by the XML parser.
+     */
+    private SchemaDocumentCache documentCache;
+    
+    /**
+     * sets the cache through which this reader parses included and
+     * imported documents.
+     * 
+     * <p>
+     * Documents are replayed from the cache without going through the
+     * XML parser, so a cache shouldn't be set when the parser factory
+     * does more than parsing, such as validating schema documents.
+     * 
+     * @param cache
+     *        null to parse every document by the XML parser, which is the default.
+     */
+    public void setDocumentCache( SchemaDocumentCache cache ) {
+        this.documentCache = cache;
+    }
+    public SchemaDocumentCache getDocumentCache() {
+        return documentCache;
+    }
+    
     
     
 
@@ -0,0 +1,483 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * keeps parsed schema documents so that a document included or imported
+ * by many schemas is parsed only once.
+ *
+ * <p>
+ * A document is kept as the recorded sequence of SAX events that the
+ * XML parser reported for it, and {@link GrammarReader} replays those
+ * events instead of parsing the document again. Documents are looked up
+ * by their system id plus a digest of their content, so an entry is
+ * never used for a document whose bytes have changed.
+ *
+ * <p>
+ * The cache holds at most a fixed number of documents and discards
+ * the least recently used one when it is full.
+ * Derived classes can override {@link #get(String)} and
+ * {@link #put(String,Document)} to keep documents elsewhere.
+ *
+ * <p>
+ * This class is thread-safe. One instance can be shared by
+ * all the readers of a process; see {@link #getShared()}.
+ *
+ * <p>
+ * Note that a replayed document doesn't go through the XML parser,
+ * so entities are not resolved again and a validating parser
+ * doesn't see it. Only documents that were parsed without any error
+ * are kept.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class SchemaDocumentCache
+{
+    /** the default maximum number of documents. */
+    public static final int DEFAULT_SIZE = 256;
+
+    private static final SchemaDocumentCache shared = new SchemaDocumentCache();
+
+    /** gets the cache shared by the whole process. */
+    public static SchemaDocumentCache getShared() {
+        return shared;
+    }
+
+    private final Map<String,Document> documents;
+
+    private int hits;
+    private int misses;
+
+    public SchemaDocumentCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param maxSize
+     *        the maximum number of documents kept by this cache.
+     */
+    public SchemaDocumentCache( final int maxSize ) {
+        if( maxSize<=0 )
+            throw new IllegalArgumentException("maxSize must be positive");
+        documents = new LinkedHashMap<String,Document>(16,0.75f,true) {
+            protected boolean removeEldestEntry( Map.Entry<String,Document> eldest ) {
+                return size()>maxSize;
+            }
+        };
+    }
+
+    /**
+     * gets the document stored with the given key.
+     *
+     * @return null
+     *        if no such document is in the cache.
+     */
+    public Document get( String key ) {
+        synchronized(documents) {
+            Document doc = documents.get(key);
+            if(doc==null)   misses++;
+            else            hits++;
+            return doc;
+        }
+    }
+
+    /** stores a document with the given key. */
+    public void put( String key, Document doc ) {
+        synchronized(documents) {
+            documents.put(key,doc);
+        }
+    }
+
+    /** discards all the documents and resets the statistics. */
+    public void clear() {
+        synchronized(documents) {
+            documents.clear();
+            hits = misses = 0;
+        }
+    }
+
+    /** gets the number of documents in this cache. */
+    public int size() {
+        synchronized(documents) {
+            return documents.size();
+        }
+    }
+
+    /** gets the number of lookups that found a document. */
+    public int getHitCount() {
+        synchronized(documents) {
+            return hits;
+        }
+    }
+
+    /** gets the number of lookups that didn't find a document. */
+    public int getMissCount() {
+        synchronized(documents) {
+            return misses;
+        }
+    }
+
+
+
+    /**
+     * the whole content of a schema document, read into memory
+     * so that it can be hashed before it is parsed.
+     */
+    public static final class Content {
+        private final InputSource source;
+        private final byte[] bytes;
+        private final char[] chars;
+        /** the SHA-1 digest of the content. */
+        private final byte[] digest;
+        /** the key of this document in the cache. */
+        final String key;
+
+        private Content( InputSource source, byte[] bytes, char[] chars ) {
+            this.source = source;
+            this.bytes = bytes;
+            this.chars = chars;
+
+            MessageDigest md;
+            try {
+                md = MessageDigest.getInstance("SHA-1");
+            } catch( NoSuchAlgorithmException e ) {
+                // every Java platform is required to support SHA-1.
+                throw new InternalError(e.getMessage());
+            }
+            if( bytes!=null ) {
+                md.update(bytes);
+            } else {
+                try {
+                    md.update(new String(chars).getBytes("UTF-8"));
+                } catch( UnsupportedEncodingException e ) {
+                    // every Java platform is required to support UTF-8.
+                    throw new InternalError(e.getMessage());
+                }
+            }
+
+            digest = md.digest();
+
+            StringBuffer buf = new StringBuffer();
+            if( source.getSystemId()!=null )
+                buf.append(source.getSystemId());
+            buf.append('#');
+            for( int i=0; i<digest.length; i++ ) {
+                buf.append(Character.forDigit((digest[i]>>4)&15,16));
+                buf.append(Character.forDigit(digest[i]&15,16));
+            }
+            key = buf.toString();
+        }
+
+        /**
+         * reads the whole document of the given source.
+         *
+         * @return null
+         *        if the document can't be read without the help of the parser.
+         *        In that case, nothing has been read from the source.
+         */
+        public static Content read( InputSource source ) throws IOException {
+            if( source.getCharacterStream()!=null ) {
+                Reader in = source.getCharacterStream();
+                CharArrayWriter out = new CharArrayWriter();
+                char[] buf = new char[8192];
+                int len;
+                while( (len=in.read(buf))>=0 )
+                    out.write(buf,0,len);
+                return new Content(source,null,out.toCharArray());
+            }
+
+            InputStream in = source.getByteStream();
+            boolean opened = false;
+            if( in==null ) {
+                if( source.getSystemId()==null )    return null;
+                try {
+                    in = new URL(source.getSystemId()).openStream();
+                } catch( MalformedURLException e ) {
+                    File f = new File(source.getSystemId());
+                    if( !f.isFile() )
+                        // let the parser deal with it.
+                        return null;
+                    // a file name.
+                    in = new FileInputStream(f);
+                }
+                opened = true;
+            }
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[8192];
+                int len;
+                while( (len=in.read(buf))>=0 )
+                    out.write(buf,0,len);
+                return new Content(source,out.toByteArray(),null);
+            } finally {
+                if(opened)  in.close();
+            }
+        }
+
+        /**
+         * gets the SHA-1 digest of the content.
+         *
+         * If the document was given as a character stream,
+         * this is the digest of its UTF-8 encoding.
+         */
+        public byte[] getDigest() {
+            return (byte[])digest.clone();
+        }
+
+        /** creates an InputSource that reads this content again. */
+        public InputSource createInputSource() {
+            InputSource is = new InputSource(source.getSystemId());
+            is.setPublicId(source.getPublicId());
+            if( bytes!=null ) {
+                is.setByteStream(new ByteArrayInputStream(bytes));
+                is.setEncoding(source.getEncoding());
+            } else {
+                is.setCharacterStream(new CharArrayReader(chars));
+            }
+            return is;
+        }
+    }
+
+
+
+    /**
+     * a parsed schema document.
+     *
+     * <p>
+     * Documents are immutable, so the same document can be replayed
+     * by several threads at once.
+     */
+    public static final class Document {
+        private final String systemId;
+        private final String publicId;
+        private final Event[] events;
+
+        Document( String systemId, String publicId, Event[] events ) {
+            this.systemId = systemId;
+            this.publicId = publicId;
+            this.events = events;
+        }
+
+        /**
+         * sends the events of this document to the given handler,
+         * as if the document was parsed again.
+         */
+        public void replay( ContentHandler handler ) throws SAXException {
+            LocatorImpl loc = new LocatorImpl();
+            loc.setSystemId(systemId);
+            loc.setPublicId(publicId);
+            handler.setDocumentLocator(loc);
+            for( int i=0; i<events.length; i++ ) {
+                loc.setLineNumber(events[i].line);
+                loc.setColumnNumber(events[i].column);
+                events[i].replay(handler);
+            }
+        }
+    }
+
+
+
+    /** one recorded SAX event. */
+    private static abstract class Event {
+        final int line;
+        final int column;
+        Event( Locator loc ) {
+            if( loc!=null ) {
+                this.line = loc.getLineNumber();
+                this.column = loc.getColumnNumber();
+            } else {
+                this.line = this.column = -1;
+            }
+        }
+        abstract void replay( ContentHandler handler ) throws SAXException;
+    }
+
+
+
+    /**
+     * passes events to another handler while recording them into a {@link Document}.
+     *
+     * <p>
+     * Errors are also passed to another handler, and a document is
+     * available only when no error was reported.
+     */
+    public static final class Recorder implements ContentHandler, ErrorHandler {
+        private final ContentHandler handler;
+        private final ErrorHandler errorHandler;
+        private final String systemId;
+        private final String publicId;
+        private final List<Event> events = new ArrayList<Event>();
+        private Locator locator;
+        private boolean hadError = false;
+        private boolean completed = false;
+
+        public Recorder( ContentHandler handler, ErrorHandler errorHandler, InputSource source ) {
+            this.handler = handler;
+            this.errorHandler = errorHandler;
+            this.systemId = source.getSystemId();
+            this.publicId = source.getPublicId();
+        }
+
+        /**
+         * gets the recorded document.
+         *
+         * @return null
+         *        if the document wasn't parsed successfully.
+         */
+        public Document getDocument() {
+            if( hadError || !completed )    return null;
+            return new Document(systemId,publicId,events.toArray(new Event[events.size()]));
+        }
+
+        public void setDocumentLocator( Locator loc ) {
+            this.locator = loc;
+            handler.setDocumentLocator(loc);
+        }
+
+        public void startDocument() throws SAXException {
+            events.add(new Event(locator) {
+                void replay( ContentHandler h ) throws SAXException {
+                    h.startDocument();
+                }
+            });
+            handler.startDocument();
+        }
+
+        public void endDocument() throws SAXException {
+            events.add(new Event(locator) {
+                void replay( ContentHandler h ) throws SAXException {
+                    h.endDocument();
+                }
+            });
+            handler.endDocument();
+            completed = true;
+        }
+
+        public void startPrefixMapping( final String prefix, final String uri ) throws SAXException {
+            events.add(new Event(locator) {
+                void replay( ContentHandler h ) throws SAXException {
+                    h.startPrefixMapping(prefix,uri);
+                }
+            });
+            handler.startPrefixMapping(prefix,uri);
+        }
+
+        public void endPrefixMapping( final String prefix ) throws SAXException {
+            events.add(new Event(locator) {
+                void replay( ContentHandler h ) throws SAXException {
+                    h.endPrefixMapping(prefix);
+                }
+            });
+            handler.endPrefixMapping(prefix);
+        }
+
+        public void startElement( final String uri, final String localName, final String qName, Attributes atts ) throws SAXException {
+            final Attributes copy = new AttributesImpl(atts);
+            events.add(new Event(locator) {
+                void replay( ContentHandler h ) throws SAXException {
+                    h.startElement(uri,localName,qName,copy);
+                }
+            });
+            handler.startElement(uri,localName,qName,atts);
+        }
+
+        public void endElement( final String uri, final String localName, final String qName ) throws SAXException {
+            events.add(new Event(locator) {
+                void replay( ContentHandler h ) throws SAXException {
+                    h.endElement(uri,localName,qName);
+                }
+            });
+            handler.endElement(uri,localName,qName);
+        }
+
+        public void characters( char[] ch, int start, int length ) throws SAXException {
+            final char[] copy = new char[length];
+            System.arraycopy(ch,start,copy,0,length);
+            events.add(new Event(locator) {
+                void replay( ContentHandler h ) throws SAXException {
+                    h.characters(copy,0,copy.length);
+                }
+            });
+            handler.characters(ch,start,length);
+        }
+
+        public void ignorableWhitespace( char[] ch, int start, int length ) throws SAXException {
+            final char[] copy = new char[length];
+            System.arraycopy(ch,start,copy,0,length);
+            events.add(new Event(locator) {
+                void replay( ContentHandler h ) throws SAXException {
+                    h.ignorableWhitespace(copy,0,copy.length);
+                }
+            });
+            handler.ignorableWhitespace(ch,start,length);
+        }
+
+        public void processingInstruction( final String target, final String data ) throws SAXException {
+            events.add(new Event(locator) {
+                void replay( ContentHandler h ) throws SAXException {
+                    h.processingInstruction(target,data);
+                }
+            });
+            handler.processingInstruction(target,data);
+        }
+
+        public void skippedEntity( final String name ) throws SAXException {
+            events.add(new Event(locator) {
+                void replay( ContentHandler h ) throws SAXException {
+                    h.skippedEntity(name);
+                }
+            });
+            handler.skippedEntity(name);
+        }
+
+        public void warning( SAXParseException e ) throws SAXException {
+            errorHandler.warning(e);
+        }
+
+        public void error( SAXParseException e ) throws SAXException {
+            hadError = true;
+            errorHandler.error(e);
+        }
+
+        public void fatalError( SAXParseException e ) throws SAXException {
+            hadError = true;
+            errorHandler.fatalError(e);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.reader.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.msv.grammar.Grammar;
+
+/**
+ * keeps grammars loaded by {@link GrammarLoader} so that loading
+ * the same schema again returns the grammar that was already built.
+ *
+ * <p>
+ * A grammar is stored with the list of all the documents it was read from,
+ * together with their time stamps and a digest of the bytes that were parsed.
+ * Before a stored grammar is returned, the time stamps are checked and the
+ * digest of every document whose time stamp changed is computed again.
+ * Documents other than local files have no time stamp, so they are
+ * read again on every lookup.
+ * If any document has changed, the grammar is discarded and the schema
+ * is loaded again.
+ *
+ * <p>
+ * The cache holds at most a fixed number of grammars, and grammars are
+ * only softly referenced, so the garbage collector can discard them
+ * when memory runs short.
+ *
+ * <p>
+ * This class is thread-safe. One instance can be shared by
+ * all the loaders of a process; see {@link #getShared()}.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class GrammarCache
+{
+    /** the default maximum number of grammars. */
+    public static final int DEFAULT_SIZE = 64;
+
+    private static final GrammarCache shared = new GrammarCache();
+
+    /** gets the cache shared by the whole process. */
+    public static GrammarCache getShared() {
+        return shared;
+    }
+
+    private final Map<String,Entry> entries;
+
+    private int hits;
+    private int misses;
+    private int reloads;
+
+    public GrammarCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param maxSize
+     *        the maximum number of grammars kept by this cache.
+     */
+    public GrammarCache( final int maxSize ) {
+        if( maxSize<=0 )
+            throw new IllegalArgumentException("maxSize must be positive");
+        entries = new LinkedHashMap<String,Entry>(16,0.75f,true) {
+            protected boolean removeEldestEntry( Map.Entry<String,Entry> eldest ) {
+                return size()>maxSize;
+            }
+        };
+    }
+
+    /**
+     * gets the grammar stored with the given key if none of its
+     * documents has changed since it was loaded.
+     *
+     * @return null
+     *        if no such grammar is in the cache, or if it is out of date.
+     */
+    public Grammar get( String key ) {
+        Entry e;
+        synchronized(entries) {
+            e = entries.get(key);
+        }
+
+        Grammar g = null;
+        boolean stale = false;
+        if( e!=null ) {
+            g = e.grammar.get();
+            if( g!=null && !e.isUpToDate() ) {
+                g = null;
+                stale = true;
+            }
+        }
+
+        synchronized(entries) {
+            if( g!=null ) {
+                hits++;
+            } else {
+                misses++;
+                if(stale)   reloads++;
+                // remove it unless another thread has already replaced it.
+                if( e!=null && entries.get(key)==e )
+                    entries.remove(key);
+            }
+        }
+        return g;
+    }
+
+    /**
+     * stores a grammar with the given key.
+     *
+     * @param systemIds
+     *        the system ids of all the documents the grammar was read from.
+     * @param digests
+     *        the SHA-1 digests of the bytes that were parsed for
+     *        those documents, in the same order.
+     *        If any of them is null, the grammar is not stored.
+     * @param loadTime
+     *        the time when the loading of the grammar started.
+     *        Time stamps that are not clearly older than this are not
+     *        trusted, since the document may have changed after it was read.
+     */
+    public void put( String key, Grammar grammar, List<String> systemIds, List<byte[]> digests, long loadTime ) {
+        if( systemIds.size()!=digests.size() )
+            throw new IllegalArgumentException();
+
+        Document[] docs = new Document[systemIds.size()];
+        for( int i=0; i<docs.length; i++ ) {
+            byte[] digest = digests.get(i);
+            if( systemIds.get(i)==null || digest==null )   return;
+            docs[i] = Document.create(systemIds.get(i),digest,loadTime);
+        }
+
+        Entry e = new Entry(grammar,docs);
+        synchronized(entries) {
+            entries.put(key,e);
+        }
+    }
+
+    /** discards all the grammars and resets the statistics. */
+    public void clear() {
+        synchronized(entries) {
+            entries.clear();
+            hits = misses = reloads = 0;
+        }
+    }
+
+    /** gets the number of grammars in this cache. */
+    public int size() {
+        synchronized(entries) {
+            return entries.size();
+        }
+    }
+
+    /** gets the number of lookups that found an up-to-date grammar. */
+    public int getHitCount() {
+        synchronized(entries) {
+            return hits;
+        }
+    }
+
+    /** gets the number of lookups that didn't find an up-to-date grammar. */
+    public int getMissCount() {
+        synchronized(entries) {
+            return misses;
+        }
+    }
+
+    /**
+     * gets the number of lookups that found a grammar
+     * but discarded it because a document had changed.
+     * These lookups are also counted as misses.
+     */
+    public int getReloadCount() {
+        synchronized(entries) {
+            return reloads;
+        }
+    }
+
+
+
+    /** a stored grammar. */
+    private static final class Entry {
+        final SoftReference<Grammar> grammar;
+        final Document[] documents;
+
+        Entry( Grammar grammar, Document[] documents ) {
+            this.grammar = new SoftReference<Grammar>(grammar);
+            this.documents = documents;
+        }
+
+        boolean isUpToDate() {
+            for( int i=0; i<documents.length; i++ )
+                if( !documents[i].isUpToDate() )
+                    return false;
+            return true;
+        }
+    }
+
+    /** the state of a document when the grammar was loaded. */
+    private static final class Document {
+        private final String systemId;
+        private final byte[] digest;
+        /**
+         * the last known time stamp, or 0 if unknown.
+         * Updated when the document is touched without being changed.
+         */
+        private volatile long timestamp;
+
+        private Document( String systemId, long timestamp, byte[] digest ) {
+            this.systemId = systemId;
+            this.timestamp = timestamp;
+            this.digest = digest;
+        }
+
+        /**
+         * the granularity of time stamps that we can rely on.
+         * Some file systems only keep time stamps in units of two seconds.
+         */
+        private static final long TIMESTAMP_PRECISION = 2000;
+
+        /**
+         * records the state of a document that was read after the given time.
+         */
+        static Document create( String systemId, byte[] digest, long loadTime ) {
+            long timestamp = getTimestamp(systemId);
+            if( timestamp>loadTime-TIMESTAMP_PRECISION )
+                // the document may have been modified after it was read.
+                // look at the content next time.
+                timestamp = 0;
+            return new Document(systemId,timestamp,digest);
+        }
+
+        boolean isUpToDate() {
+            long now = System.currentTimeMillis();
+            long t = getTimestamp(systemId);
+            if( t!=0 && t==timestamp )
+                return true;
+
+            // the time stamp has changed or is unknown. Look at the content.
+            if( !Arrays.equals(digest,digest(systemId)) )
+                return false;
+            if( t<=now-TIMESTAMP_PRECISION )
+                timestamp = t;
+            return true;
+        }
+
+        /**
+         * gets the time stamp of a document.
+         *
+         * @return 0
+         *        if the time stamp is unknown. Only local files have time stamps.
+         */
+        private static long getTimestamp( String systemId ) {
+            try {
+                URI uri = new URI(systemId);
+                if( !uri.isAbsolute() )
+                    // a file name.
+                    return new File(systemId).lastModified();
+                if( "file".equals(uri.getScheme()) )
+                    return new File(uri).lastModified();
+                return 0;
+            } catch( URISyntaxException e ) {
+                return 0;
+            } catch( IllegalArgumentException e ) {
+                return 0;
+            }
+        }
+
+        /**
+         * computes the digest of a document.
+         *
+         * @return null
+         *        if the document can't be read.
+         */
+        private static byte[] digest( String systemId ) {
+            try {
+                MessageDigest md = MessageDigest.getInstance("SHA-1");
+                InputStream in;
+                if( new URI(systemId).isAbsolute() )
+                    in = new URL(systemId).openStream();
+                else
+                    // a file name.
+                    in = new FileInputStream(systemId);
+                try {
+                    byte[] buf = new byte[8192];
+                    int len;
+                    while( (len=in.read(buf))>=0 )
+                        md.update(buf,0,len);
+                } finally {
+                    in.close();
+                }
+                return md.digest();
+            } catch( NoSuchAlgorithmException e ) {
+                // every Java platform is required to support SHA-1.
+                throw new InternalError(e.getMessage());
+            } catch( URISyntaxException e ) {
+                return null;
+            } catch( IOException e ) {
+                return null;
+            }
+        }
+    }
+}
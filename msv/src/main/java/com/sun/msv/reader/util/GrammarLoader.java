@@ -9,7 +9,10 @@
  */
 package com.sun.msv.reader.util;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Executor;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
@@ -33,6 +36,7 @@ import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
 import com.sun.msv.reader.Controller;
 import com.sun.msv.reader.GrammarReader;
 import com.sun.msv.reader.GrammarReaderController;
+import com.sun.msv.reader.SchemaDocumentCache;
 import com.sun.msv.reader.dtd.DTDReader;
 import com.sun.msv.reader.relax.core.RELAXCoreReader;
 import com.sun.msv.reader.trex.classic.TREXGrammarReader;
@@ -320,6 +324,121 @@ public class GrammarLoader
     }
     
     
+    private SchemaDocumentCache documentCache;
+    
+    /**
+     * Sets the cache of parsed schema documents that the readers will use
+     * for included and imported documents, so that documents shared by
+     * many schemas are parsed only once.
+     * 
+     * <p>
+     * Documents are replayed from the cache without being validated,
+     * so the cache is not used when the strict check flag is set.
+     * 
+     * @param cache
+     *        null to disable caching, which is the default.
+     *        {@link SchemaDocumentCache#getShared()} can be used
+     *        to share parsed documents with other loaders of this process.
+     */
+    public void setDocumentCache( SchemaDocumentCache cache ) {
+        this.documentCache = cache;
+    }
+    public SchemaDocumentCache getDocumentCache() {
+        return documentCache;
+    }
+    
+    
+    private static GrammarCache defaultGrammarCache;
+    
+    /**
+     * Sets the grammar cache that new GrammarLoaders will use,
+     * including the ones used by the static loadSchema and loadVGM methods.
+     * 
+     * @param cache
+     *        null to disable caching, which is the default.
+     *        {@link GrammarCache#getShared()} can be used as
+     *        the process-wide cache.
+     */
+    public static void setDefaultGrammarCache( GrammarCache cache ) {
+        defaultGrammarCache = cache;
+    }
+    public static GrammarCache getDefaultGrammarCache() {
+        return defaultGrammarCache;
+    }
+    
+    private GrammarCache grammarCache = defaultGrammarCache;
+    
+    /**
+     * Sets the cache of loaded grammars, so that loading the same schema
+     * again returns the same Grammar object unless one of its documents
+     * has changed.
+     * 
+     * <p>
+     * Only schemas given by system id, without a stream, are cached.
+     * Grammars are not cached when a pool is set, because a cached grammar
+     * lives in its own pool. A cached grammar is returned without
+     * going through the controller again, so an entity resolver that
+     * maps the same system id to different documents shouldn't be used
+     * with a cache shared by other loaders. DTDs are not cached.
+     * 
+     * @param cache
+     *        null to disable caching.
+     *        The default is {@link #getDefaultGrammarCache()}.
+     */
+    public void setGrammarCache( GrammarCache cache ) {
+        this.grammarCache = cache;
+    }
+    public GrammarCache getGrammarCache() {
+        return grammarCache;
+    }
+    
+    /**
+     * gets the key of a schema in the grammar cache.
+     * 
+     * @return null
+     *        if the schema can't be cached.
+     */
+    private String getCacheKey( Object source ) {
+        if( grammarCache==null || pool!=null )
+            return null;
+        
+        String systemId;
+        if( source instanceof String )
+            systemId = (String)source;
+        else {
+            InputSource is = (InputSource)source;
+            if( is.getByteStream()!=null || is.getCharacterStream()!=null )
+                return null;
+            systemId = is.getSystemId();
+        }
+        if( systemId==null )    return null;
+        
+        return strictCheck ? systemId+"#strict" : systemId;
+    }
+    
+    
+    private Executor loadingExecutor;
+    
+    /**
+     * Sets the executor that W3C XML Schema readers will use to parse
+     * included and imported documents in parallel.
+     * See {@link XMLSchemaReader#setLoadingExecutor(Executor)}.
+     * 
+     * <p>
+     * Like the document cache, the executor is not used when
+     * the strict check flag is set.
+     * 
+     * @param executor
+     *        null to parse documents one by one, which is the default.
+     */
+    public void setLoadingExecutor( Executor executor ) {
+        this.loadingExecutor = executor;
+    }
+    public Executor getLoadingExecutor() {
+        return loadingExecutor;
+    }
+    
+    
     public Grammar parse( InputSource source )
         throws SAXException, ParserConfigurationException, java.io.IOException {
         
@@ -396,6 +515,29 @@ public class GrammarLoader
 
         // otherwise this schema is an XML syntax based schema.
         
+        String key = getCacheKey(source);
+        long loadTime = 0;
+        byte[] rootDigest = null;
+        if( key!=null ) {
+            Grammar g = grammarCache.get(key);
+            if( g!=null )   return g;
+            
+            // read the schema into memory, so that the grammar can be stored
+            // with the digest of exactly the bytes that are parsed.
+            loadTime = System.currentTimeMillis();
+            InputSource is = (source instanceof String)?
+                new InputSource((String)source) : (InputSource)source;
+            SchemaDocumentCache.Content content = SchemaDocumentCache.Content.read(is);
+            if( content==null )
+                // don't cache the grammar if we can't tell when it changes.
+                key = null;
+            else {
+                rootDigest = content.getDigest();
+                source = content.createInputSource();
+            }
+        }
+        final String cacheKey = key;
+        
         
         // this field will receive the grammar reader 
         final GrammarReader[] reader = new GrammarReader[1];
@@ -467,8 +609,10 @@ public class GrammarLoader
                             getPool() );
                         winner = setupPipeline(s);
                     } else {
-                        winner = reader[0] = new XMLSchemaReader(
+                        XMLSchemaReader xsr = new XMLSchemaReader(
                             getController(),getSAXParserFactory(),getPool());
+                        xsr.setLoadingExecutor(loadingExecutor);
+                        winner = reader[0] = xsr;
                     }
                 } else
                 if( RELAXNSReader.RELAXNamespaceNamespace.equals(namespaceURI) )
@@ -496,6 +640,10 @@ public class GrammarLoader
                     }
                 }
                 
+                if( !strictCheck )
+                    reader[0].setDocumentCache(documentCache);
+                reader[0].setRecordDigests(cacheKey!=null);
+                
                 // simulate the start of the document.
                 winner.setDocumentLocator(locator);
                 winner.startDocument();
@@ -515,7 +663,18 @@ public class GrammarLoader
         else                            parser.parse( (InputSource)source );
         
         if(getController().hadError())  return null;
-        else            return reader[0].getResultAsGrammar();
+        
+        Grammar g = reader[0].getResultAsGrammar();
+        if( cacheKey!=null && g!=null ) {
+            List<String> documents = new ArrayList<String>();
+            List<byte[]> digests = new ArrayList<byte[]>();
+            documents.add( ((InputSource)source).getSystemId() );
+            digests.add(rootDigest);
+            documents.addAll(reader[0].getParsedDocuments());
+            digests.addAll(reader[0].getParsedDocumentDigests());
+            grammarCache.put(cacheKey,g,documents,digests,loadTime);
+        }
+        return g;
     }
     
     
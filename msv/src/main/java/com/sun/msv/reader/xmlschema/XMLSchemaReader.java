@@ -15,6 +15,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import javax.xml.XMLConstants;
 import javax.xml.parsers.SAXParserFactory;
@@ -26,9 +27,11 @@ import org.iso_relax.verifier.Schema;
 import org.relaxng.datatype.DatatypeException;
 import org.w3c.dom.ls.LSInput;
 import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.Attributes;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
 
 import com.sun.msv.datatype.xsd.DatatypeFactory;
 import com.sun.msv.datatype.xsd.StringType;
@@ -50,11 +53,13 @@ import com.sun.msv.grammar.xmlschema.XMLSchemaSchema;
 import com.sun.msv.grammar.xmlschema.XMLSchemaTypeExp;
 import com.sun.msv.reader.AbortException;
 import com.sun.msv.reader.ChoiceState;
+import com.sun.msv.reader.DocumentPrefetcher;
 import com.sun.msv.reader.GrammarReader;
 import com.sun.msv.reader.GrammarReaderController;
 import com.sun.msv.reader.IgnoreState;
 import com.sun.msv.reader.InterleaveState;
 import com.sun.msv.reader.RunAwayExpressionChecker;
+import com.sun.msv.reader.SchemaDocumentCache;
 import com.sun.msv.reader.SequenceState;
 import com.sun.msv.reader.State;
 import com.sun.msv.reader.datatype.xsd.FacetState;
@@ -272,6 +277,111 @@ public class XMLSchemaReader extends GrammarReader implements XSDatatypeResolver
      */
     public final Map<String, Set<String>> parsedFiles =	new HashMap<String, Set<String>>();
     
+    /**
+     * the executor that parses included and imported documents
+     * in parallel, or null to parse them one by one.
+     */
+    private Executor loadingExecutor;
+    
+    /** parses documents in the background, or null until the first document starts. */
+    private DocumentPrefetcher prefetcher;
+    
+    /** records the first document while it is parsed, or null. */
+    private SchemaDocumentCache.Recorder firstDocument;
+    
+    /** the state that will read the first document once it is recorded. */
+    private State firstDocumentState;
+    
+    /**
+     * enables parallel loading of included and imported documents.
+     * 
+     * <p>
+     * The first document is recorded while it is parsed, and each
+     * &lt;include&gt;, &lt;import&gt; and &lt;redefine&gt; element in it
+     * immediately submits the referenced document to a task of the given
+     * executor. Those tasks follow the references of their documents in
+     * the same way, so independent documents are parsed in parallel.
+     * Once the first document ends, the reader reads it from the recording,
+     * and reads other documents from the document cache in the usual order.
+     * It waits only for a document that is still being parsed,
+     * so the resulting grammar is the same as the one read without the executor.
+     * 
+     * <p>
+     * Only fetching and parsing documents run in parallel. Building the
+     * grammar stays sequential on the calling thread, and it doesn't start
+     * until the first document has been parsed completely. So this helps
+     * when documents are slow to fetch or there are many of them, but not
+     * when most of the time goes into building the grammar.
+     * 
+     * <p>
+     * If no document cache is set, a cache private to this reader is used.
+     * As with the document cache, an executor shouldn't be set
+     * when the parser factory validates schema documents.
+     * 
+     * @param executor
+     *        null to parse documents one by one, which is the default.
+     */
+    public void setLoadingExecutor( Executor executor ) {
+        this.loadingExecutor = executor;
+    }
+    public Executor getLoadingExecutor() {
+        return loadingExecutor;
+    }
+    
+    public void startDocument() throws SAXException {
+        if( loadingExecutor!=null && prefetcher==null ) {
+            prefetcher = createPrefetcher();
+            
+            // record the rest of this document, and read it when it ends.
+            firstDocumentState = getCurrentState();
+            firstDocument = prefetcher.record(getLocator());
+            firstDocument.setDocumentLocator(getLocator());
+            super.setContentHandler(firstDocument);
+        }
+        super.startDocument();
+    }
+    
+    public void endDocument() throws SAXException {
+        super.endDocument();
+        if( firstDocument!=null ) {
+            SchemaDocumentCache.Document doc = firstDocument.getDocument();
+            firstDocument = null;
+            super.setContentHandler(firstDocumentState);
+            firstDocumentState = null;
+            doc.replay(this);
+        }
+    }
+    
+    private DocumentPrefetcher createPrefetcher() {
+        if( getDocumentCache()==null )
+            setDocumentCache(new SchemaDocumentCache());
+        
+        return new DocumentPrefetcher(
+            getDocumentCache(), parserFactory, controller, loadingExecutor ) {
+            
+            protected String getReference( String namespaceURI, String localName, Attributes atts ) {
+                if( !namespaceURI.equals(XMLSchemaNamespace)
+                &&  !namespaceURI.equals(XMLSchemaNamespace_old) )
+                    return null;
+                if( localName.equals("include") || localName.equals("import")
+                ||  localName.equals("redefine") )
+                    return atts.getValue("schemaLocation");
+                return null;
+            }
+        };
+    }
+    
+    protected void awaitDocument( String systemId ) {
+        if( prefetcher==null )  return;
+        try {
+            prefetcher.await(systemId);
+        } catch( InterruptedException e ) {
+            // stop waiting. The document will be parsed
+            // again if it is not stored yet.
+            Thread.currentThread().interrupt();
+        }
+    }
+    
     public final XMLSchemaGrammar getResult() {
         if(controller.hadError())    return null;
         else                        return grammar;
@@ -683,31 +793,7 @@ public class XMLSchemaReader extends GrammarReader implements XSDatatypeResolver
      *      -1 to represent "unbounded".
      */
     public Expression processOccurs( Expression item, int minOccurs, int maxOccurs ) {
-        Expression precise = _processOccurs(item,minOccurs,maxOccurs);
-        if(maxOccurs==1)                    return precise;
-        if(maxOccurs==-1 && minOccurs<=1 )  return precise;
-        return new OccurrenceExp(precise,maxOccurs,minOccurs,item);
-    }
-    
-    private Expression _processOccurs( Expression item, int minOccurs, int maxOccurs ) {
-
-        Expression exp = Expression.epsilon;
-        for( int i=0; i<minOccurs; i++ )
-            exp = pool.createSequence( item, exp );
-        
-        if(maxOccurs==-1) {
-            if( minOccurs==1 )
-                return pool.createOneOrMore(item);
-            else
-                return pool.createSequence( exp, pool.createZeroOrMore(item) );
-        }
-                
-        // create (A,(A, ... (A?)? ... )?
-        Expression tmp = Expression.epsilon;
-        for( int i=minOccurs; i<maxOccurs; i++ )
-            tmp = pool.createOptional( pool.createSequence( item, tmp ) );
-                
-        return pool.createSequence( exp, tmp );
+        return OccurrenceExp.create(pool,item,minOccurs,maxOccurs);
     }
 
     
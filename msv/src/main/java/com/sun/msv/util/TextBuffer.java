@@ -0,0 +1,131 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.util;
+
+/**
+ * accumulates character data between two tags.
+ *
+ * <p>
+ * Unlike {@link StringBuffer}, this object is reused for all the text
+ * chunks of a document, and {@link #toString()} returns the same String
+ * object for a short literal that was seen recently. Documents tend to
+ * repeat the same values (enumerations, flags, codes) over and over,
+ * so in the common case, validating text doesn't allocate anything.
+ *
+ * <p>
+ * Whether the text consists only of whitespace is tracked as characters
+ * are appended, so indentation between tags is classified without
+ * scanning the buffer again or creating a String.
+ *
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public final class TextBuffer implements CharSequence
+{
+    /** literals longer than this are never cached. */
+    private static final int MAX_CACHED_LENGTH = 32;
+
+    /** the size of the literal cache. must be a power of 2. */
+    private static final int CACHE_SIZE = 64;
+
+    private char[] buf = new char[256];
+    private int len = 0;
+    /** true if all the accumulated characters are whitespace. */
+    private boolean whitespace = true;
+
+    /** recently returned literals. direct-mapped by the hash code. */
+    private final String[] cache = new String[CACHE_SIZE];
+
+    public void append( char[] ch, int start, int length ) {
+        if( len+length>buf.length ) {
+            char[] n = new char[Math.max(buf.length*2,len+length)];
+            System.arraycopy(buf,0,n,0,len);
+            buf = n;
+        }
+        System.arraycopy(ch,start,buf,len,length);
+        len += length;
+
+        if( whitespace ) {
+            // once a non-whitespace character is seen, no more scan is necessary.
+            final int end = start+length;
+            for( int i=start; i<end; i++ ) {
+                final char c = ch[i];
+                if( c!=' ' && c!='\t' && c!='\r' && c!='\n' ) {
+                    whitespace = false;
+                    break;
+                }
+            }
+        }
+    }
+
+    /** discards the accumulated characters. */
+    public void clear() {
+        len = 0;
+        whitespace = true;
+    }
+
+    public int length() {
+        return len;
+    }
+
+    public char charAt( int index ) {
+        if( index>=len )
+            throw new IndexOutOfBoundsException();
+        return buf[index];
+    }
+
+    public CharSequence subSequence( int start, int end ) {
+        return toString().subSequence(start,end);
+    }
+
+    /**
+     * checks if the accumulated characters are all XML whitespaces.
+     *
+     * This method runs in constant time.
+     *
+     * @return true if the buffer is empty.
+     */
+    public boolean isWhitespace() {
+        return whitespace;
+    }
+
+    /**
+     * returns the accumulated characters as a String.
+     *
+     * If the same short literal was returned recently, the same object is
+     * returned again.
+     */
+    public String toString() {
+        if( len==0 )
+            return "";
+        if( len>MAX_CACHED_LENGTH )
+            return new String(buf,0,len);
+
+        int h = 0;
+        for( int i=0; i<len; i++ )
+            h = 31*h+buf[i];
+        final int idx = (h^(h>>>7))&(CACHE_SIZE-1);
+
+        String s = cache[idx];
+        if( s!=null && s.length()==len && s.hashCode()==h ) {
+            int i=0;
+            while( i<len && s.charAt(i)==buf[i] )
+                i++;
+            if( i==len )
+                return s;
+        }
+
+        s = new String(buf,0,len);
+        cache[idx] = s;
+        return s;
+    }
+}
@@ -9,10 +9,7 @@
  */
 package com.sun.msv.verifier;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
 
 import org.relaxng.datatype.Datatype;
 import org.xml.sax.Attributes;
@@ -23,8 +20,10 @@ import org.xml.sax.SAXException;
 import org.xml.sax.helpers.LocatorImpl;
 import org.xml.sax.helpers.NamespaceSupport;
 
+import com.sun.msv.datatype.xsd.ListTokenizer;
 import com.sun.msv.grammar.IDContextProvider2;
 import com.sun.msv.verifier.regexp.StringToken;
+import com.sun.msv.verifier.util.IDRegistry;
 
 /**
  * Base implementation for various Verifier implementations.
@@ -59,10 +58,39 @@ public abstract class AbstractVerifier implements
      */
     protected boolean performIDcheck = true;
     
-    /** this map remembers every ID token encountered in this document */
-    protected final Map<Object,Object> ids = new HashMap<Object,Object>();
-    /** this map remembers every IDREF token encountered in this document */
-    protected final Set<Object> idrefs = new java.util.HashSet<Object>();
+    /** this set remembers every ID value encountered in this document */
+    protected final IDRegistry ids = new IDRegistry();
+    /**
+     * this set remembers IDREF values encountered in this document.
+     * If IDREFs are checked incrementally, values that refer to
+     * IDs already seen are not stored.
+     */
+    protected final IDRegistry idrefs = new IDRegistry();
+    
+    /** see {@link #setIncrementalIDREFCheck(boolean)}. */
+    private boolean incrementalIDREFCheck = true;
+    
+    /**
+     * turns on/off the incremental IDREF check.
+     * 
+     * <p>
+     * If it's on, which is the default, an IDREF is resolved as soon as it's
+     * found, and only IDREFs that refer to IDs not seen so far are remembered
+     * until the end of the document. If it's off, every IDREF is remembered
+     * in the <code>idrefs</code> field and checked at the end of the document.
+     * Either way, the same errors are reported. 
+     * 
+     * This value cannot be modified in the middle of the validation.
+     */
+    public void setIncrementalIDREFCheck( boolean value ) {
+        this.incrementalIDREFCheck = value;
+    }
+    
+    /**
+     * the last token that has added a new ID.
+     * A token can report the same ID more than once, and that's not a duplicate.
+     */
+    private StringToken lastIdToken;
     
     public void setDocumentLocator( Locator loc ) {
         this.locator = loc;
@@ -93,6 +121,12 @@ public abstract class AbstractVerifier implements
     protected void init() {
         ids.clear();
         idrefs.clear();
+        lastIdToken = null;
+        // the previous document may have been abandoned in the middle.
+        namespaceSupport.reset();
+        contextPushed = false;
+        unparsedEntities.clear();
+        notations.clear();
     }
     
     public void notationDecl( String name, String publicId, String systemId ) {
@@ -141,31 +175,52 @@ public abstract class AbstractVerifier implements
         if (!performIDcheck)
             return;
 
+        final String literal = token.literal;
         int idType = dt.getIdType();
         if (idType == Datatype.ID_TYPE_ID) {
-            String literal = token.literal.trim();
-            StringToken existing = (StringToken)ids.get(literal);
-            if( existing==null ) {
-                // the first tiem this ID is used
-                ids.put(literal,token);
+            // trim the value
+            int start = 0, end = literal.length();
+            while (start < end && literal.charAt(start) <= ' ')
+                start++;
+            while (end > start && literal.charAt(end - 1) <= ' ')
+                end--;
+            
+            if (ids.add(literal, start, end)) {
+                // the first time this ID is used
+                lastIdToken = token;
             } else
-            if( existing!=token ) {
+            if (lastIdToken != token) {
                 // duplicate id value
-                onDuplicateId(literal);
+                onDuplicateId(literal.substring(start, end));
             }
             return;
         }
         if (idType == Datatype.ID_TYPE_IDREF) {
-            idrefs.add(token.literal.trim());
+            int start = 0, end = literal.length();
+            while (start < end && literal.charAt(start) <= ' ')
+                start++;
+            while (end > start && literal.charAt(end - 1) <= ' ')
+                end--;
+            onIDREF(literal, start, end);
             return;
         }
         if (idType == Datatype.ID_TYPE_IDREFS) {
-            StringTokenizer tokens = new StringTokenizer(token.literal);
-            while (tokens.hasMoreTokens())
-                idrefs.add(tokens.nextToken());
+            // tokenize the value by whitespace
+            final int len = literal.length();
+            for (int start = ListTokenizer.skipDelimiters(literal, 0); start < len;) {
+                int end = ListTokenizer.skipItem(literal, start);
+                onIDREF(literal, start, end);
+                start = ListTokenizer.skipDelimiters(literal, end);
+            }
             return;
         }
 
         throw new Error(); // assertion failed. unknown Id type.
     }
+    
+    private void onIDREF(String literal, int start, int end) {
+        if (incrementalIDREFCheck && ids.contains(literal, start, end))
+            return; // already resolved.
+        idrefs.add(literal, start, end);
+    }
 }
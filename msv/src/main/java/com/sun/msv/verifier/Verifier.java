@@ -22,6 +22,7 @@ import com.sun.msv.grammar.IDContextProvider2;
 import com.sun.msv.util.DatatypeRef;
 import com.sun.msv.util.StartTagInfo;
 import com.sun.msv.util.StringRef;
+import com.sun.msv.util.TextBuffer;
 
 /**
  * SAX ContentHandler that verifies incoming SAX event stream.
@@ -55,7 +56,7 @@ public class Verifier extends AbstractVerifier implements IVerifier {
     private int stringCareLevel = Acceptor.STRING_STRICT;
 
     /** characters that were read (but not processed)  */
-    private StringBuffer text = new StringBuffer();
+    private final TextBuffer text = new TextBuffer();
 
     /** Error handler */
     protected ErrorHandler errorHandler;
@@ -122,19 +123,13 @@ public class Verifier extends AbstractVerifier implements IVerifier {
         switch (stringCareLevel) {
             case Acceptor.STRING_PROHIBITED :
                 // only whitespace is allowed.
-                final int len = text.length();
-                for (int i = 0; i < len; i++) {
-                    final char ch = text.charAt(i);
-                    if (ch != ' ' && ch != '\t' && ch != '\r' && ch != '\n') {
-                        // error
-                        onError(null, localizeMessage(ERR_UNEXPECTED_TEXT, null), new ErrorInfo.BadText(text));
-                        break; // recover by ignoring this token
-                    }
-                }
+                if (!text.isWhitespace())
+                    // error. recover by ignoring this token
+                    onError(null, localizeMessage(ERR_UNEXPECTED_TEXT, null), new ErrorInfo.BadText(text.toString()));
                 break;
     
             case Acceptor.STRING_STRICT :
-                final String txt = new String(text);
+                final String txt = text.toString();
                 if (!current.onText2(txt, this, null, characterType)) {
                     // error
                     // diagnose error, if possible
@@ -143,7 +138,7 @@ public class Verifier extends AbstractVerifier implements IVerifier {
                     current.onText2(txt, this, err, characterType);
     
                     // report an error
-                    onError(err, localizeMessage(ERR_UNEXPECTED_TEXT, null), new ErrorInfo.BadText(text));
+                    onError(err, localizeMessage(ERR_UNEXPECTED_TEXT, null), new ErrorInfo.BadText(txt));
                 }
                 break;
     
@@ -157,8 +152,7 @@ public class Verifier extends AbstractVerifier implements IVerifier {
                 throw new Error(); //assertion failed
         }
     
-        if (text.length() != 0)
-            text = new StringBuffer();
+        text.clear();
     }
     
     public void startElement(String namespaceUri, String localName, String qName, Attributes atts) throws SAXException {
@@ -392,12 +386,26 @@ public class Verifier extends AbstractVerifier implements IVerifier {
         super.init();
         hadError = false;
         isFinished = false;
-        text = new StringBuffer();
+        text.clear();
         stack = null;
         if (duplicateIds != null)
             duplicateIds.clear();
     }
     
+    /**
+     * discards the state of the current document.
+     * 
+     * <p>
+     * {@link #startDocument()} resets the state anyway, so this method
+     * doesn't have to be called to reuse a Verifier. But it lets an idle
+     * Verifier release the memory used for the last document, and the
+     * Verifier can be reused even if that document was abandoned in the middle.
+     */
+    public void reset() {
+        init();
+        current = null;
+    }
+    
     public void startDocument() throws SAXException {
         // reset everything.
         // since Verifier maybe reused, initialization is better done here
@@ -415,13 +423,12 @@ public class Verifier extends AbstractVerifier implements IVerifier {
     public void endDocument() throws SAXException {
         // ID/IDREF check
         if (performIDcheck) {
-            if (!ids.keySet().containsAll(idrefs)) {
-                hadError = true;
-                Iterator<Object> itr = idrefs.iterator();
-                while (itr.hasNext()) {
-                    Object idref = itr.next();
-                    if (!ids.keySet().contains(idref))
-                        onError(localizeMessage(ERR_UNSOLD_IDREF, new Object[] { idref }), null);
+            Iterator<String> refs = idrefs.iterator();
+            while (refs.hasNext()) {
+                String idref = refs.next();
+                if (!ids.contains(idref)) {
+                    hadError = true;
+                    onError(localizeMessage(ERR_UNSOLD_IDREF, new Object[] { idref }), null);
                 }
             }
             if (duplicateIds != null) {
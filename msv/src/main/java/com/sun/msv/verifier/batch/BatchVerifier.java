@@ -0,0 +1,352 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.verifier.batch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
+import com.sun.msv.relaxns.grammar.RELAXGrammar;
+import com.sun.msv.verifier.ValidationUnrecoverableException;
+import com.sun.msv.verifier.Verifier;
+import com.sun.msv.verifier.identity.IDConstraintChecker;
+import com.sun.msv.verifier.regexp.CompiledDocumentDeclaration;
+import com.sun.msv.verifier.regexp.REDocumentDeclaration;
+import com.sun.msv.verifier.regexp.xmlschema.XSREDocDecl;
+
+/**
+ * validates many documents against one grammar by using multiple threads.
+ *
+ * <p>
+ * The grammar is compiled into a VGM only once. Each worker thread gets its
+ * own copy of the VGM (see {@link REDocumentDeclaration#copy()}), its own
+ * {@link XMLReader}, and its own {@link Verifier}, and reuses them for all
+ * the documents it validates. Workers pick the next document as soon as
+ * they are done with the current one, so one large document doesn't hold
+ * up the others.
+ *
+ * <pre><xmp>
+ * BatchVerifier bv = new BatchVerifier(grammar,factory);
+ * bv.setThreadCount(8);
+ * boolean allValid = bv.verify( documents.iterator(), new VerificationListener() {
+ *     public void onResult( VerificationResult r ) {
+ *         System.out.println(r);
+ *     }
+ * });
+ * </xmp></pre>
+ *
+ * <p>
+ * By default, workers run on new platform threads. Call
+ * {@link #setThreadFactory(ThreadFactory)} or {@link #setExecutor(Executor)}
+ * to run them elsewhere; for example, on Java 21 or later,
+ * <code>setThreadFactory(Thread.ofVirtual().factory())</code>
+ * runs each worker on a virtual thread.
+ *
+ * <p>
+ * For the best scalability, load the grammar with an
+ * {@link com.sun.msv.grammar.ExpressionPool} whose concurrency level
+ * matches the number of threads.
+ *
+ * <p>
+ * A BatchVerifier can be used for more than one batch, but not for
+ * two batches at the same time.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class BatchVerifier
+{
+    /** the grammar against which documents are validated. */
+    private final Grammar grammar;
+
+    /** the VGM that is copied for each worker. */
+    private final REDocumentDeclaration prototype;
+
+    /** used to create an XMLReader for each worker. */
+    private final SAXParserFactory factory;
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private Executor executor;
+    private ThreadFactory threadFactory;
+    private EntityResolver entityResolver;
+    private boolean panicMode = true;
+    private int maxErrors = 20;
+
+    /**
+     * @param factory
+     *      used to create parsers. It must be namespace-aware.
+     *
+     * @exception IllegalArgumentException
+     *      if the grammar is a RELAX namespace grammar, which has to be
+     *      validated by the divide&amp;validate framework.
+     */
+    public BatchVerifier( Grammar grammar, SAXParserFactory factory ) {
+        if( grammar instanceof RELAXGrammar )
+            throw new IllegalArgumentException("RELAX namespace grammars are not supported");
+
+        this.grammar = grammar;
+        this.factory = factory;
+        if( grammar instanceof XMLSchemaGrammar )
+            this.prototype = new XSREDocDecl((XMLSchemaGrammar)grammar);
+        else
+            this.prototype = new CompiledDocumentDeclaration(grammar);
+    }
+
+    /**
+     * sets the number of documents that are validated at the same time.
+     * Defaults to the number of available processors.
+     */
+    public void setThreadCount( int threadCount ) {
+        if( threadCount<1 )
+            throw new IllegalArgumentException(Integer.toString(threadCount));
+        this.threadCount = threadCount;
+    }
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * sets the executor that runs the workers.
+     *
+     * <p>
+     * One task is submitted for each worker, and each task runs until
+     * all the documents are validated. If set, the thread factory is ignored.
+     */
+    public void setExecutor( Executor executor ) {
+        this.executor = executor;
+    }
+
+    /** sets the factory of the worker threads. */
+    public void setThreadFactory( ThreadFactory threadFactory ) {
+        this.threadFactory = threadFactory;
+    }
+
+    /** sets the entity resolver that is used to parse documents. */
+    public void setEntityResolver( EntityResolver entityResolver ) {
+        this.entityResolver = entityResolver;
+    }
+
+    /** @see Verifier#setPanicMode(boolean) */
+    public void setPanicMode( boolean panicMode ) {
+        this.panicMode = panicMode;
+    }
+
+    /**
+     * sets the number of errors after which the validation of
+     * a document is abandoned. Defaults to 20.
+     */
+    public void setMaxErrors( int maxErrors ) {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * validates documents.
+     *
+     * <p>
+     * This method returns after all the documents are validated.
+     * Results are sent to the listener in the order they complete.
+     *
+     * @param documents
+     *      documents to be validated. This iterator is accessed
+     *      by the worker threads, but never concurrently.
+     * @param listener
+     *      receives the result of each document. Can be null.
+     *
+     * @return
+     *      true if all the documents are valid.
+     */
+    public boolean verify( Iterator<? extends InputSource> documents, VerificationListener listener )
+            throws ParserConfigurationException, SAXException, InterruptedException {
+
+        final Batch batch = new Batch(documents,listener);
+
+        // parsers and VGMs are created in this thread, since
+        // SAXParserFactory is not thread-safe.
+        Worker[] workers = new Worker[threadCount];
+        for( int i=0; i<workers.length; i++ )
+            workers[i] = new Worker(batch);
+
+        ThreadFactory tf = threadFactory;
+        if( tf==null )
+            tf = Executors.defaultThreadFactory();
+
+        int started = 0;
+        try {
+            for( ; started<workers.length; started++ ) {
+                if( executor!=null )
+                    executor.execute(workers[started]);
+                else
+                    tf.newThread(workers[started]).start();
+            }
+        } finally {
+            if( started<workers.length ) {
+                // couldn't start all the workers. let the others finish.
+                batch.cancel();
+                for( int i=started; i<workers.length; i++ )
+                    batch.done.countDown();
+                batch.done.await();
+            }
+        }
+
+        batch.done.await();
+
+        if( batch.failure instanceof RuntimeException )
+            throw (RuntimeException)batch.failure;
+        if( batch.failure instanceof Error )
+            throw (Error)batch.failure;
+
+        return batch.allValid;
+    }
+
+    /** the state shared by the workers of one batch. */
+    private final class Batch
+    {
+        private final Iterator<? extends InputSource> documents;
+        private final VerificationListener listener;
+        final CountDownLatch done = new CountDownLatch(threadCount);
+
+        private int index = 0;
+        private boolean cancelled = false;
+        private boolean allValid = true;
+        /** set if a worker died unexpectedly. */
+        private Throwable failure;
+
+        Batch( Iterator<? extends InputSource> documents, VerificationListener listener ) {
+            this.documents = documents;
+            this.listener = listener;
+        }
+
+        /**
+         * gets the next document to be validated, or null if there's none.
+         * The index of the document is stored to the specified worker.
+         */
+        synchronized InputSource next( Worker w ) {
+            if( cancelled || !documents.hasNext() )
+                return null;
+            w.index = index++;
+            return documents.next();
+        }
+
+        synchronized void report( VerificationResult r ) {
+            if( !r.isValid() )
+                allValid = false;
+            if( listener!=null )
+                listener.onResult(r);
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+        }
+
+        synchronized void fail( Throwable t ) {
+            if( failure==null )
+                failure = t;
+            cancelled = true;
+        }
+    }
+
+    /**
+     * validates documents one by one until there's no more.
+     *
+     * This object also collects errors of the current document.
+     */
+    private final class Worker implements Runnable, ErrorHandler
+    {
+        private final Batch batch;
+        private final XMLReader reader;
+        private final Verifier verifier;
+
+        /** the index of the current document. */
+        int index;
+
+        private List<SAXParseException> errors;
+        private List<SAXParseException> warnings;
+
+        Worker( Batch batch ) throws ParserConfigurationException, SAXException {
+            this.batch = batch;
+
+            REDocumentDeclaration docDecl = prototype.copy();
+            if( grammar instanceof XMLSchemaGrammar )
+                verifier = new IDConstraintChecker( (XMLSchemaGrammar)grammar, docDecl, this );
+            else
+                verifier = new Verifier( docDecl, this );
+            verifier.setPanicMode(panicMode);
+
+            reader = factory.newSAXParser().getXMLReader();
+            reader.setContentHandler(verifier);
+            reader.setDTDHandler(verifier);
+            reader.setErrorHandler(this);
+            if( entityResolver!=null )
+                reader.setEntityResolver(entityResolver);
+        }
+
+        public void run() {
+            try {
+                InputSource source;
+                while( (source=batch.next(this))!=null )
+                    batch.report(verify(source));
+            } catch( Throwable t ) {
+                batch.fail(t);
+            } finally {
+                batch.done.countDown();
+            }
+        }
+
+        private VerificationResult verify( InputSource source ) {
+            errors = new ArrayList<SAXParseException>();
+            warnings = new ArrayList<SAXParseException>();
+            final long start = System.currentTimeMillis();
+
+            Exception exception = null;
+            try {
+                reader.parse(source);
+            } catch( SAXException e ) {
+                exception = e;
+            } catch( IOException e ) {
+                exception = e;
+            }
+
+            boolean valid = exception==null && errors.isEmpty() && verifier.isValid();
+
+            return new VerificationResult( index, source.getSystemId(), valid,
+                errors, warnings, exception, System.currentTimeMillis()-start );
+        }
+
+        public void error( SAXParseException e ) throws SAXException {
+            errors.add(e);
+            if( errors.size()>=maxErrors )
+                throw new ValidationUnrecoverableException(e);
+        }
+
+        public void fatalError( SAXParseException e ) throws SAXException {
+            throw e;
+        }
+
+        public void warning( SAXParseException e ) {
+            warnings.add(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.verifier.batch;
+
+/**
+ * receives the results of {@link BatchVerifier} as soon as each document
+ * is validated.
+ *
+ * <p>
+ * This method is called from the worker threads, but never concurrently,
+ * so implementations don't need to be thread-safe.
+ * A slow listener slows down all the workers, though.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public interface VerificationListener
+{
+    void onResult( VerificationResult result );
+}
@@ -0,0 +1,97 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.verifier.batch;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.xml.sax.SAXParseException;
+
+/**
+ * the outcome of validating one document by {@link BatchVerifier}.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public final class VerificationResult
+{
+    private final int index;
+    private final String systemId;
+    private final boolean valid;
+    private final List<SAXParseException> errors;
+    private final List<SAXParseException> warnings;
+    private final Exception exception;
+    private final long time;
+
+    VerificationResult( int index, String systemId, boolean valid,
+        List<SAXParseException> errors, List<SAXParseException> warnings,
+        Exception exception, long time ) {
+
+        this.index = index;
+        this.systemId = systemId;
+        this.valid = valid;
+        this.errors = Collections.unmodifiableList(errors);
+        this.warnings = Collections.unmodifiableList(warnings);
+        this.exception = exception;
+        this.time = time;
+    }
+
+    /**
+     * gets the position of the document in the input sequence, starting from 0.
+     *
+     * Results are reported in the order they complete, so this number
+     * can be used to restore the original order.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /** gets the system id of the document, or null if it wasn't given. */
+    public String getSystemId() {
+        return systemId;
+    }
+
+    /** returns true if the document is valid. */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /** gets the validation errors found in the document, in the document order. */
+    public List<SAXParseException> getErrors() {
+        return errors;
+    }
+
+    /** gets the warnings reported while the document was processed. */
+    public List<SAXParseException> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * gets the exception that stopped the processing of the document.
+     *
+     * @return
+     *      a {@link SAXParseException} for a well-formedness error,
+     *      a {@link com.sun.msv.verifier.ValidationUnrecoverableException}
+     *      if too many errors were found, an {@link java.io.IOException}
+     *      if the document couldn't be read, or null if the whole document
+     *      was processed.
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    /** gets the time spent for this document, in milliseconds. */
+    public long getTime() {
+        return time;
+    }
+
+    public String toString() {
+        return systemId+(valid?": valid":": invalid");
+    }
+}
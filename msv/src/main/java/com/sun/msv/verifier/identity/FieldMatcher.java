@@ -10,7 +10,6 @@
 package com.sun.msv.verifier.identity;
 
 import org.relaxng.datatype.Datatype;
-import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
 import com.sun.msv.grammar.xmlschema.Field;
@@ -22,9 +21,8 @@ import com.sun.msv.grammar.xmlschema.Field;
  * finds a match to its selector. This object is responsible for finding
  * a match to one field of the constraint.
  * 
- * A field XPath may consist of "A|B|C". Each sub case A,B, and C is
- * tested by a child FieldPathMatcher object. This class coordinates
- * the work of those children and collects actual text that matches
+ * A field XPath may consist of "A|B|C". All of them are tested by one
+ * automaton. This class collects actual text that matches
  * the given XPath.
  * 
  * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
@@ -69,6 +67,8 @@ public class FieldMatcher extends PathMatcher {
         // this field matches this element.
         // wait for the corresponding endElement call and
         // obtain text.
+        if( elementText==null )
+            owner.collectText(this);
         elementText = new StringBuffer();
     }
 
@@ -84,34 +84,23 @@ public class FieldMatcher extends PathMatcher {
         setValue( value, type );
     }
     
-    protected void startElement( String namespaceURI, String localName, Attributes attributes ) 
-                                throws SAXException {
-        if( elementText!=null ) {
-            // this situation is an error because a matched element
-            // cannot contain any child element.
-            // But what I don't know is how to treat this situation.
-            
-            // 1. to make the document invalid?
-            // 2. cancel the match?
-            
-            // the current implementation choose the 2nd.
-            elementText = null;
-        }
-        super.startElement(namespaceURI,localName);
-    }
-    
-    protected void endElement( Datatype type ) throws SAXException {
-        super.endElement(type);
-        // double match error is already checked in the corresponding
-        // startElement method.
+    /**
+     * called at the first endElement after the match.
+     * 
+     * <p>
+     * A matched element cannot contain any child element.
+     * But what I don't know is how to treat this situation.
+     * Currently, the text is collected until the first endElement,
+     * even if that is the end of a child element.
+     */
+    void endElement( Datatype type ) throws SAXException {
         if( elementText!=null ) {
             setValue( elementText.toString(), type );
             elementText = null;
         }
     }
 
-    protected void characters( char[] buf, int start, int len ) throws SAXException {
-        super.characters(buf,start,len);
+    void characters( char[] buf, int start, int len ) {
         if( elementText!=null )
             // collect text
             elementText.append(buf,start,len);
@@ -30,7 +30,7 @@ import com.sun.msv.grammar.xmlschema.KeyRefConstraint;
  * 
  * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
  */
-public class FieldsMatcher extends MatcherBundle {
+public class FieldsMatcher extends Matcher {
     
     /**
      * location of the start tag.
@@ -43,6 +43,9 @@ public class FieldsMatcher extends MatcherBundle {
      */
     protected final SelectorMatcher selector;
     
+    /** child matchers. One for each field. */
+    protected final FieldMatcher[] children;
+    
     protected FieldsMatcher( SelectorMatcher selector, String namespaceURI, String localName ) throws SAXException {
         super(selector.owner);
         
@@ -52,7 +55,7 @@ public class FieldsMatcher extends MatcherBundle {
         else
             this.startTag = new LocatorImpl(owner.getLocator());
         
-        children = new Matcher[selector.idConst.fields.length];
+        children = new FieldMatcher[selector.idConst.fields.length];
         for( int i=0; i<selector.idConst.fields.length; i++ )
             children[i] = new FieldMatcher(
                 this,selector.idConst.fields[i], namespaceURI,localName);
@@ -64,7 +67,7 @@ public class FieldsMatcher extends MatcherBundle {
         // copy matched values into "values" variable,
         // while checking any unmatched fields.
         for( int i=0; i<children.length; i++ )
-            if( (values[i]=((FieldMatcher)children[i]).value) == null ) {
+            if( (values[i]=children[i].value) == null ) {
                 if(!(selector.idConst instanceof KeyConstraint))
                     // some fields didn't match to anything.
                     // In case of KeyRef and Unique constraints,
@@ -97,11 +100,7 @@ public class FieldsMatcher extends MatcherBundle {
             return;
         
         // find a value that collides with kv
-        Object[] items = owner.getKeyValues(selector);
-        int i;
-        for( i=0; i<values.length; i++ )
-            if( items[i].equals(kv) )
-                break;
+        KeyValue existing = owner.getKeyValue(selector,kv);
         
         // violates uniqueness constraint.
         // this set already has this value.
@@ -111,7 +110,7 @@ public class FieldsMatcher extends MatcherBundle {
             new Object[]{
                 selector.idConst.namespaceURI, selector.idConst.localName} );
         owner.reportError(
-            ((KeyValue)items[i]).locator, null,
+            existing.locator, null,
             IDConstraintChecker.ERR_NOT_UNIQUE_DIAG,
             new Object[]{
                 selector.idConst.namespaceURI, selector.idConst.localName} );
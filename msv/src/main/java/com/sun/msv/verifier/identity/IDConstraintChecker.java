@@ -9,9 +9,13 @@
  */
 package com.sun.msv.verifier.identity;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.Vector;
 
 import org.relaxng.datatype.Datatype;
 import org.xml.sax.ErrorHandler;
@@ -22,11 +26,13 @@ import com.sun.msv.grammar.xmlschema.ElementDeclExp;
 import com.sun.msv.grammar.xmlschema.IdentityConstraint;
 import com.sun.msv.grammar.xmlschema.KeyRefConstraint;
 import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
+import com.sun.msv.grammar.xmlschema.XPath;
 import com.sun.msv.util.LightStack;
 import com.sun.msv.util.StartTagInfo;
 import com.sun.msv.verifier.Acceptor;
 import com.sun.msv.verifier.ErrorInfo;
 import com.sun.msv.verifier.ValidityViolation;
+import com.sun.msv.verifier.DocumentDeclaration;
 import com.sun.msv.verifier.Verifier;
 import com.sun.msv.verifier.regexp.xmlschema.XSREDocDecl;
 
@@ -42,21 +48,104 @@ import com.sun.msv.verifier.regexp.xmlschema.XSREDocDecl;
 public class IDConstraintChecker extends Verifier {
 
     public IDConstraintChecker( XMLSchemaGrammar grammar, ErrorHandler errorHandler ) {
-        super(new XSREDocDecl(grammar),errorHandler);
+        this(grammar,new XSREDocDecl(grammar),errorHandler);
+    }
+    
+    /**
+     * creates a checker that uses the specified VGM.
+     * 
+     * <p>
+     * The VGM has to be created from the same grammar. This constructor
+     * can be used to share one VGM among multiple checkers, for example by
+     * passing <code>new SharedDocumentDeclaration(new XSREDocDecl(grammar))</code>.
+     */
+    public IDConstraintChecker( XMLSchemaGrammar grammar, DocumentDeclaration docDecl, ErrorHandler errorHandler ) {
+        super(docDecl,errorHandler);
         this.grammar = grammar;
+        this.automata = PathAutomaton.getTable(grammar);
     }
     
     /** the grammar object against which we are validating. */
     protected final XMLSchemaGrammar grammar;
     
-    /** active mathcers. */
-    protected final Vector<Matcher> matchers = new Vector<Matcher>();
+    /** compiled selectors and fields, shared by all the checkers of the grammar. */
+    private final PathAutomaton.Table automata;
+    
+    PathAutomaton getAutomaton( XPath[] paths ) {
+        return automata.get(paths);
+    }
+    
+    /** the depth of the current element. The document element is at depth 1. */
+    private int depth = 0;
+    
+    /**
+     * active mathcers, and the depths of the elements where they were created.
+     * Inner ones come later.
+     */
+    private Matcher[] matchers = new Matcher[16];
+    private int[] matcherDepths = new int[16];
+    private int matcherCount = 0;
     
+    /**
+     * registers a matcher. The matcher is notified when the current element ends.
+     */
     protected void add( Matcher matcher ) {
-        matchers.add(matcher);
+        if( matcherCount==matchers.length ) {
+            matchers = Arrays.copyOf(matchers,matcherCount*2);
+            matcherDepths = Arrays.copyOf(matcherDepths,matcherCount*2);
+        }
+        matchers[matcherCount] = matcher;
+        matcherDepths[matcherCount++] = depth;
     }
-    protected void remove( Matcher matcher ) {
-        matchers.remove(matcher);
+    
+    /**
+     * path matchers that can still find a match, and their states.
+     * 
+     * Those of the element at depth d are stored from
+     * <code>pathStart[d]</code> to <code>pathStart[d+1]</code>.
+     * Only these matchers are notified of child elements, so the cost of
+     * an element doesn't grow with the number of active scopes.
+     */
+    private PathMatcher[] paths = new PathMatcher[16];
+    private PathAutomaton.State[] pathStates = new PathAutomaton.State[16];
+    private int pathCount = 0;
+    private int[] pathStart = new int[16];
+    
+    /** path matchers that test the attributes of the current element, and their states. */
+    private PathMatcher[] attributePaths = new PathMatcher[16];
+    private PathAutomaton.State[] attributeStates = new PathAutomaton.State[16];
+    private int attributeCount = 0;
+    
+    /** field matchers that collect text. */
+    private final List<FieldMatcher> textCollectors = new ArrayList<FieldMatcher>();
+    
+    /**
+     * sets the state of a path matcher at the current element.
+     */
+    void track( PathMatcher matcher, PathAutomaton.State state, String namespaceURI, String localName ) throws SAXException {
+        if( !state.isTerminal ) {
+            if( pathCount==paths.length ) {
+                paths = Arrays.copyOf(paths,pathCount*2);
+                pathStates = Arrays.copyOf(pathStates,pathCount*2);
+            }
+            paths[pathCount] = matcher;
+            pathStates[pathCount++] = state;
+        }
+        if( state.attributeSteps!=null ) {
+            if( attributeCount==attributePaths.length ) {
+                attributePaths = Arrays.copyOf(attributePaths,attributeCount*2);
+                attributeStates = Arrays.copyOf(attributeStates,attributeCount*2);
+            }
+            attributePaths[attributeCount] = matcher;
+            attributeStates[attributeCount++] = state;
+        }
+        if( state.elementMatched )
+            matcher.onElementMatched(namespaceURI,localName);
+    }
+    
+    /** lets a field matcher receive text until the next endElement. */
+    void collectText( FieldMatcher matcher ) {
+        textCollectors.add(matcher);
     }
     
     /**
@@ -64,7 +153,45 @@ public class IDConstraintChecker extends Verifier {
      * 
      * One SelectorMatcher correponds to one scope of the identity constraint.
      */
-    private final Map<SelectorMatcher,Set<Object>> keyValues = new java.util.HashMap<SelectorMatcher,Set<Object>>();
+    private final Map<SelectorMatcher,KeyStore> keyValues = new java.util.HashMap<SelectorMatcher,KeyStore>();
+    
+    /**
+     * the maximum number of key values that each scope keeps in memory,
+     * or 0 if unlimited.
+     */
+    private int keyStoreLimit = 0;
+    
+    /** the directory where key values are spilled. null to use the default. */
+    private File keyStoreDirectory;
+    
+    /**
+     * bounds the memory used for identity constraints.
+     * 
+     * <p>
+     * By default, every key value is kept in memory until the end of the
+     * document. If a limit is set, each scope keeps at most that many values
+     * in memory, and the rest are spilled to a temporary file. Keyrefs are
+     * also checked as soon as the scope of their key ends, rather than at
+     * the end of the document, so that the values of closed scopes can be
+     * discarded early. This makes it possible to validate documents with
+     * millions of keys, at the expense of speed.
+     * 
+     * <p>
+     * This must not be changed in the middle of a document.
+     * 
+     * @param limit
+     *      the maximum number of values of one scope held in memory,
+     *      or 0 to keep all of them in memory.
+     * @param dir
+     *      the directory of temporary files. null to use the default
+     *      temporary-file directory.
+     */
+    public void setKeyStoreLimit( int limit, File dir ) {
+        if( limit<0 )
+            throw new IllegalArgumentException(Integer.toString(limit));
+        this.keyStoreLimit = limit;
+        this.keyStoreDirectory = dir;
+    }
     
     /**
      * a map from keyref <code>SelectorMatcher</code> to key/unique
@@ -107,30 +234,105 @@ public class IDConstraintChecker extends Verifier {
     }
         
     
+    private KeyStore getKeyStore( SelectorMatcher scope ) {
+        KeyStore keys = keyValues.get(scope);
+        if(keys==null) {
+            keyValues.put(scope, keys = new KeyStore(keyStoreLimit,keyStoreDirectory));
+        }
+        return keys;
+    }
+    
     /**
      * adds a new KeyValue to the value set.
      * @return true        if this is a new value.
      */
-    protected boolean addKeyValue( SelectorMatcher scope, KeyValue value ) {
-        Set<Object> keys = keyValues.get(scope);
+    protected boolean addKeyValue( SelectorMatcher scope, KeyValue value ) throws SAXException {
+        try {
+            if( scope.idConst instanceof KeyRefConstraint ) {
+                // if the key is already there, this keyref is resolved.
+                // so there's no need to remember it.
+                KeyStore keys = keyValues.get( referenceScope.get(scope) );
+                if( keys!=null && keys.find(value)!=null )
+                    return true;
+                // equal keyrefs are stored once, so that each of them
+                // is reported only once however the values are spilled.
+                getKeyStore(scope).add(value);
+                return true;
+            }
+            return getKeyStore(scope).add(value)==null;
+        } catch( IOException e ) {
+            throw new SAXException(e);
+        }
+    }
+    /**
+     * finds the KeyValue that was added within the specified scope and
+     * is equal to the given value. Returns null if none is found.
+     */
+    protected KeyValue getKeyValue( SelectorMatcher scope, KeyValue value ) throws SAXException {
+        KeyStore keys = keyValues.get(scope);
         if(keys==null) {
-            keyValues.put(scope, keys = new java.util.HashSet<Object>());
+            return null;
+        }
+        try {
+            return keys.find(value);
+        } catch( IOException e ) {
+            throw new SAXException(e);
         }
-        return keys.add(value);
     }
     /**
      * gets the all <code>KeyValue</code>s that were added within the specified scope.
+     * 
+     * @deprecated
+     *      this method reads all the values into memory.
+     *      use {@link #getKeyValue(SelectorMatcher, KeyValue)}.
      */
-    protected KeyValue[] getKeyValues( SelectorMatcher scope ) {
-        Set<Object> keys = keyValues.get(scope);
+    protected KeyValue[] getKeyValues( SelectorMatcher scope ) throws SAXException {
+        KeyStore keys = keyValues.get(scope);
         if(keys==null) {
             return new KeyValue[0];
         }
-        return (KeyValue[])keys.toArray(new KeyValue[keys.size()]);
+        final List<KeyValue> r = new ArrayList<KeyValue>();
+        try {
+            keys.findMissing( null, new KeyStore.Receiver() {
+                public void receive( KeyValue value ) {
+                    r.add(value);
+                }
+            });
+        } catch( IOException e ) {
+            throw new SAXException(e);
+        }
+        return r.toArray(new KeyValue[r.size()]);
+    }
+    
+    protected void init() {
+        super.init();
+        // the previous document may have been aborted in the middle,
+        // so matchers and scopes can be left over.
+        Arrays.fill(matchers,null);
+        Arrays.fill(paths,null);
+        Arrays.fill(pathStates,null);
+        Arrays.fill(attributePaths,null);
+        Arrays.fill(attributeStates,null);
+        textCollectors.clear();
+        depth = 0;
+        matcherCount = 0;
+        pathCount = 0;
+        attributeCount = 0;
+        disposeKeyStores();
+        referenceScope.clear();
+        activeScopes.clear();
     }
     
-    public void startDocument() throws SAXException {
-        super.startDocument();
+    /** discards all the key values, including the temporary files. */
+    private void disposeKeyStores() {
+        Iterator<KeyStore> itr = keyValues.values().iterator();
+        while( itr.hasNext() ) {
+            try {
+                itr.next().dispose();
+            } catch( IOException e ) {
+                ; // the file is just left behind. nothing we can do.
+            }
+        }
         keyValues.clear();
     }
     
@@ -144,35 +346,108 @@ public class IDConstraintChecker extends Verifier {
         if(com.sun.msv.driver.textui.Debug.debug)
             System.out.println("key/keyref check: there are "+keyValues.size()+" scope(s)");
         
-        for( int i=0; i<scopes.length; i++ ) {
-            final SelectorMatcher key = (SelectorMatcher)scopes[i].getKey();
-            final Set<?> value = (Set<?>)scopes[i].getValue();
-            
-            if( key.idConst instanceof KeyRefConstraint ) {
-                // get the set of corresponding keys.
-                Set<Object> keys = keyValues.get( referenceScope.get(key) );
-                KeyValue[] keyrefs = (KeyValue[])
-                    value.toArray(new KeyValue[value.size()]);
+        try {
+            for( int i=0; i<scopes.length; i++ ) {
+                final SelectorMatcher key = (SelectorMatcher)scopes[i].getKey();
                 
-                for( int j=0; j<keyrefs.length; j++ ) {
-                    if( keys==null || !keys.contains(keyrefs[j]) )
-                        // this keyref doesn't have a corresponding key.
-                        reportError( keyrefs[j].locator, null, ERR_UNDEFINED_KEY,
-                            new Object[]{
-                                key.idConst.namespaceURI,
-                                key.idConst.localName} );
+                if( key.idConst instanceof KeyRefConstraint )
+                    checkKeyRefs(key);
+            }
+        } finally {
+            disposeKeyStores();
+        }
+    }
+    
+    /**
+     * reports keyrefs of the given scope that don't have corresponding keys.
+     */
+    private void checkKeyRefs( final SelectorMatcher keyref ) throws SAXException {
+        KeyStore keyrefs = keyValues.get(keyref);
+        if( keyrefs==null )
+            return;
+        
+        // get the set of corresponding keys.
+        KeyStore keys = keyValues.get( referenceScope.get(keyref) );
+        try {
+            keyrefs.findMissing( keys, new KeyStore.Receiver() {
+                public void receive( KeyValue value ) throws SAXException {
+                    // this keyref doesn't have a corresponding key.
+                    reportError( value.locator, null, ERR_UNDEFINED_KEY,
+                        new Object[]{
+                            keyref.idConst.namespaceURI,
+                            keyref.idConst.localName} );
                 }
+            });
+        } catch( IOException e ) {
+            throw new SAXException(e);
+        }
+    }
+    
+    /**
+     * called when a scope of an identity constraint ends.
+     * 
+     * <p>
+     * If the memory is bounded, keyrefs are checked as soon as possible,
+     * and values of the scope are discarded once they are no longer necessary.
+     * A keyref scope is always inside the scope of the key it refers to,
+     * so when a key scope ends, no more values can be added to any of the
+     * keyref scopes that refer to it.
+     */
+    protected void onScopeClosed( SelectorMatcher scope ) throws SAXException {
+        if( keyStoreLimit==0 )
+            return;     // the check is done at the end of the document.
+        
+        try {
+            if( scope.idConst instanceof KeyRefConstraint ) {
+                if( referenceScope.get(scope)==null ) {
+                    // there was no key scope, so all the keyrefs are errors.
+                    checkKeyRefs(scope);
+                    discard(scope);
+                }
+                // otherwise wait for the key scope to end.
+                return;
             }
+            
+            Iterator<Map.Entry<SelectorMatcher,SelectorMatcher>> itr = referenceScope.entrySet().iterator();
+            List<SelectorMatcher> keyrefs = new ArrayList<SelectorMatcher>();
+            while( itr.hasNext() ) {
+                Map.Entry<SelectorMatcher,SelectorMatcher> e = itr.next();
+                if( e.getValue()==scope )
+                    keyrefs.add(e.getKey());
+            }
+            for( int i=0; i<keyrefs.size(); i++ ) {
+                checkKeyRefs(keyrefs.get(i));
+                discard(keyrefs.get(i));
+            }
+            discard(scope);
+        } catch( IOException e ) {
+            throw new SAXException(e);
         }
     }
     
+    private void discard( SelectorMatcher scope ) throws IOException {
+        referenceScope.remove(scope);
+        KeyStore keys = keyValues.remove(scope);
+        if( keys!=null )
+            keys.dispose();
+    }
+    
     protected void onNextAcceptorReady( StartTagInfo sti, Acceptor next ) throws SAXException {
         
-        // call matchers
-        int len = matchers.size();
-        for( int i=0; i<len; i++ ) {
-            Matcher m = (Matcher)matchers.get(i);
-            m.startElement(sti.namespaceURI,sti.localName);
+        final int from = pathStart[depth];
+        final int to = pathCount;
+        
+        depth++;
+        if( depth==pathStart.length )
+            pathStart = Arrays.copyOf(pathStart,depth*2);
+        pathStart[depth] = to;
+        clearAttributePaths();
+        
+        // call matchers that can match this element.
+        for( int i=from; i<to; i++ ) {
+            PathAutomaton.State s = pathStates[i].next(sti.namespaceURI,sti.localName);
+            if( s!=null )
+                track( paths[i], s, sti.namespaceURI, sti.localName );
         }
         
         // introduce newly found identity constraints.
@@ -182,9 +457,9 @@ public class IDConstraintChecker extends Verifier {
             if( exp.identityConstraints!=null ) {
                 int m = exp.identityConstraints.size();
                 for( int i=0; i<m; i++ )
-                    add( new SelectorMatcher( this,
+                    new SelectorMatcher( this,
                             (IdentityConstraint)exp.identityConstraints.get(i),
-                            sti.namespaceURI, sti.localName ) );
+                            sti.namespaceURI, sti.localName );
                 
                 // SelectorMathcers will register themselves as active scopes 
                 // in their constructor.
@@ -211,12 +486,11 @@ public class IDConstraintChecker extends Verifier {
     protected Datatype[] feedAttribute( Acceptor child, String uri, String localName, String qName, String value ) throws SAXException {
         Datatype[] result = super.feedAttribute( child, uri, localName, qName, value );
         
-        final int len = matchers.size();
         // call matchers for attributes.
-        for( int i=0; i<len; i++ ) {
-            Matcher m = (Matcher)matchers.get(i);
-            m.onAttribute( uri, localName, value, 
-                (result==null || result.length==0)?null:result[0] );
+        for( int i=0; i<attributeCount; i++ ) {
+            if( attributeStates[i].acceptsAttribute(uri,localName) )
+                attributePaths[i].onAttributeMatched( uri, localName, value, 
+                    (result==null || result.length==0)?null:result[0] );
         }
         
         return result;
@@ -227,9 +501,9 @@ public class IDConstraintChecker extends Verifier {
     public void characters( char[] buf, int start, int len ) throws SAXException {
         super.characters(buf,start,len);
         
-        int m = matchers.size();
+        int m = textCollectors.size();
         for( int i=0; i<m; i++ )
-            ((Matcher)matchers.get(i)).characters(buf,start,len);
+            textCollectors.get(i).characters(buf,start,len);
     }
 
 
@@ -243,18 +517,40 @@ public class IDConstraintChecker extends Verifier {
         Datatype[] lastType = getLastCharacterType();
         if( lastType==null || lastType.length==0 )    dt = null;
         else                                        dt = getLastCharacterType()[0];
-            
-        // call matchers
-        int len = matchers.size();
-        for( int i=len-1; i>=0; i-- ) {
-            // Matcher may remove itself from the vector.
-            // Therefore, to make it work correctly, we have to
-            // enumerate Matcher in reverse direction.
-            ((Matcher)matchers.get(i)).endElement( dt );
+        
+        clearAttributePaths();
+        
+        // fields that matched an element obtain the text.
+        int m = textCollectors.size();
+        if( m!=0 ) {
+            for( int i=0; i<m; i++ )
+                textCollectors.get(i).endElement(dt);
+            textCollectors.clear();
+        }
+        
+        // remove matchers created at this element, in the reverse order.
+        while( matcherCount>0 && matcherDepths[matcherCount-1]==depth ) {
+            Matcher r = matchers[--matcherCount];
+            matchers[matcherCount] = null;
+            r.onRemoved();
         }
+        
+        // path matchers of this element are no longer necessary.
+        for( int i=pathStart[depth]; i<pathCount; i++ ) {
+            paths[i] = null;
+            pathStates[i] = null;
+        }
+        pathCount = pathStart[depth];
+        depth--;
     }
     
-
+    private void clearAttributePaths() {
+        for( int i=0; i<attributeCount; i++ ) {
+            attributePaths[i] = null;
+            attributeStates[i] = null;
+        }
+        attributeCount = 0;
+    }
     
     /** reports an error. */
     protected void reportError( ErrorInfo ei, String propKey, Object[] args ) throws SAXException {
@@ -0,0 +1,144 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.verifier.identity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.xml.sax.SAXException;
+
+/**
+ * {@link KeyValue}s found in one scope of an identity constraint.
+ *
+ * <p>
+ * By default, all the values are kept in memory. If a limit is given,
+ * values are moved to a {@link SpillFile} whenever that many of them
+ * are accumulated in memory, so that the memory footprint stays small
+ * no matter how many values a scope has.
+ *
+ * <p>
+ * If a value can't be written to the disk because it is not serializable,
+ * this object gives up spilling and keeps all the subsequent values in memory.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+final class KeyStore
+{
+    /** receives values from {@link KeyStore#findMissing(KeyStore,Receiver)}. */
+    interface Receiver {
+        void receive( KeyValue value ) throws SAXException;
+    }
+
+    /** the maximum number of values kept in memory, or 0 if unlimited. */
+    private final int limit;
+
+    /** the directory of the spill file. null to use the default temporary directory. */
+    private final File dir;
+
+    /** values in memory. The key and the value are the same. */
+    private final Map<KeyValue,KeyValue> memory = new HashMap<KeyValue,KeyValue>();
+
+    /** values on the disk. null until the first spill. */
+    private SpillFile file;
+
+    /** set to true when a value turned out to be not serializable. */
+    private boolean pinned = false;
+
+    KeyStore( int limit, File dir ) {
+        this.limit = limit;
+        this.dir = dir;
+    }
+
+    /**
+     * adds a value unless an equal value is already in this store.
+     *
+     * @return
+     *      null if the value is added. Otherwise the value that is
+     *      already in this store.
+     */
+    KeyValue add( KeyValue value ) throws IOException {
+        KeyValue existing = find(value);
+        if( existing!=null )
+            return existing;
+        memory.put(value,value);
+        if( limit!=0 && !pinned && memory.size()>=limit )
+            spill();
+        return null;
+    }
+
+    /** finds a value that is equal to the given one, or returns null. */
+    KeyValue find( KeyValue value ) throws IOException {
+        KeyValue v = memory.get(value);
+        if( v==null && file!=null )
+            v = file.find(value);
+        return v;
+    }
+
+    /**
+     * sends all the values of this store that are not in the given store
+     * to the receiver.
+     *
+     * @param keys
+     *      can be null, in which case every value is sent.
+     */
+    void findMissing( KeyStore keys, Receiver receiver ) throws IOException, SAXException {
+        Iterator<KeyValue> itr = memory.keySet().iterator();
+        while( itr.hasNext() ) {
+            KeyValue v = itr.next();
+            if( keys==null || keys.find(v)==null )
+                receiver.receive(v);
+        }
+        if( file!=null ) {
+            final KeyStore k = keys;
+            final Receiver r = receiver;
+            file.scan( new Receiver() {
+                public void receive( KeyValue v ) throws SAXException {
+                    try {
+                        if( k==null || k.find(v)==null )
+                            r.receive(v);
+                    } catch( IOException e ) {
+                        throw new SAXException(e);
+                    }
+                }
+            });
+        }
+    }
+
+    /** returns true if some values are on the disk. */
+    boolean hasSpilled() {
+        return file!=null;
+    }
+
+    /** discards all the values and deletes the spill file. */
+    void dispose() throws IOException {
+        memory.clear();
+        if( file!=null ) {
+            SpillFile f = file;
+            file = null;
+            f.close();
+        }
+    }
+
+    private void spill() throws IOException {
+        if( file==null )
+            file = new SpillFile(dir);
+        try {
+            file.write( memory.keySet().toArray(new KeyValue[memory.size()]) );
+        } catch( ObjectStreamException e ) {
+            pinned = true;
+            return;
+        }
+        memory.clear();
+    }
+}
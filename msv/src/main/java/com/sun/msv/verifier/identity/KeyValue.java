@@ -32,11 +32,19 @@ class KeyValue {
         else            this.locator = new LocatorImpl(loc);
     }
     
+    /** the hash code. computed lazily, since it can be expensive for some values. */
+    private int hash;
+    private boolean hashComputed;
+    
     public int hashCode() {
-        int code = 0;
-        for( int i=0; i<values.length; i++ )
-            code ^= values[i].hashCode();
-        return code;
+        if( !hashComputed ) {
+            int code = 0;
+            for( int i=0; i<values.length; i++ )
+                code ^= values[i].hashCode();
+            hash = code;
+            hashComputed = true;
+        }
+        return hash;
     }
     
     public boolean equals( Object o ) {
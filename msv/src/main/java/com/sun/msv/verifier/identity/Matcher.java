@@ -9,14 +9,13 @@
  */
 package com.sun.msv.verifier.identity;
 
-import org.relaxng.datatype.Datatype;
 import org.xml.sax.SAXException;
 
 /**
- * Base abstract implementation of XPath matcher.
+ * Base abstract implementation of identity constraint matchers.
  * 
- * XPath mathcer tracks the startElement event and the endElement event.
- * The characters event is also used by some derived classes.
+ * A matcher is created at an element, and it is notified
+ * when that element ends.
  * 
  * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
  */
@@ -27,11 +26,10 @@ public abstract class Matcher {
         this.owner = owner;
     }
     
-    protected abstract void startElement( String namespaceURI, String localName ) throws SAXException;
-    protected abstract void onAttribute( String namespaceURI, String localName, String value, Datatype type ) throws SAXException;
-    protected abstract void endElement( Datatype type ) throws SAXException;
-    
-    protected void characters( char[] buf, int start, int len ) throws SAXException {
-        // do nothing by default.
+    /**
+     * called when the element where this matcher was created ends.
+     * A derived class can override this method to do whatever necessary.
+     */
+    protected void onRemoved() throws SAXException {
     }
 }
@@ -0,0 +1,279 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.verifier.identity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.msv.grammar.NameClass;
+import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
+import com.sun.msv.grammar.xmlschema.XPath;
+
+/**
+ * deterministic automaton compiled from a selector or a field.
+ *
+ * <p>
+ * It only supports the subset defined in XML Schema Part 1.
+ * A selector or a field "A|B|C" is compiled into one automaton.
+ * Each state of the automaton is a set of "positions", where a position
+ * is a pair of a path and the number of its steps that are matched
+ * so far. Position 0 of a path represents the context node, and
+ * it stays active at every depth if the path starts with ".//".
+ *
+ * <p>
+ * Automata are shared by all the verifiers of the same grammar.
+ * States are created lazily, and the transition from a state by an element
+ * name is cached in the state, so once a document is processed,
+ * moving to the next state usually costs only a lookup by the name.
+ * Automata can be used by multiple threads concurrently.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+final class PathAutomaton {
+
+    /**
+     * the maximum number of cached transitions per automaton.
+     * Past this limit, transitions are computed every time, so that
+     * documents with a huge vocabulary don't fill up the memory.
+     */
+    private static final int MAX_TRANSITIONS = 4096;
+
+    /** name tests of each step. */
+    private final NameClass[][] steps;
+    /** true if the path starts with ".//". */
+    private final boolean[] isAnyDescendant;
+    /** the attribute step of each path, or null. */
+    private final NameClass[] attributeSteps;
+
+    /** the first position of each path. Position (p,i) is numbered base[p]+i. */
+    private final int[] base;
+    /** the path and the step of each position. */
+    private final int[] pathOf;
+    private final int[] stepOf;
+
+    /** the state where the matching starts. */
+    final State initial;
+
+    /** the state that never matches. */
+    private final State dead;
+
+    /** all the states, keyed by their positions. */
+    private final Map<Positions,State> states = new HashMap<Positions,State>();
+
+    /** the number of cached transitions. */
+    private final AtomicInteger transitions = new AtomicInteger();
+
+    private PathAutomaton( XPath[] paths ) {
+        steps = new NameClass[paths.length][];
+        isAnyDescendant = new boolean[paths.length];
+        attributeSteps = new NameClass[paths.length];
+        base = new int[paths.length];
+
+        int n=0;
+        for( int p=0; p<paths.length; p++ ) {
+            steps[p] = paths[p].steps;
+            isAnyDescendant[p] = paths[p].isAnyDescendant;
+            attributeSteps[p] = paths[p].attributeStep;
+            base[p] = n;
+            n += steps[p].length+1;
+        }
+        pathOf = new int[n];
+        stepOf = new int[n];
+        for( int p=0; p<paths.length; p++ )
+            for( int i=0; i<=steps[p].length; i++ ) {
+                pathOf[base[p]+i] = p;
+                stepOf[base[p]+i] = i;
+            }
+
+        dead = getState(new int[0]);
+        initial = getState((int[])base.clone());
+    }
+
+    /**
+     * one state of the automaton.
+     */
+    final class State {
+        /** sorted positions. */
+        private final int[] positions;
+
+        /** true if the current element matches a path that doesn't have an attribute step. */
+        final boolean elementMatched;
+
+        /**
+         * attribute steps to be tested against the attributes of the current element,
+         * or null if there is none.
+         */
+        final NameClass[] attributeSteps;
+
+        /**
+         * true if no descendant of the current element can match,
+         * no matter what they are.
+         */
+        final boolean isTerminal;
+
+        /**
+         * cached transitions. A map from a namespace URI to
+         * a map from a local name to the next state.
+         */
+        private final ConcurrentMap<String,ConcurrentMap<String,State>> next =
+            new ConcurrentHashMap<String,ConcurrentMap<String,State>>();
+
+        private State( int[] positions ) {
+            this.positions = positions;
+
+            boolean matched = false;
+            boolean terminal = true;
+            int attributes = 0;
+            for( int i=0; i<positions.length; i++ ) {
+                int p = pathOf[positions[i]];
+                if( stepOf[positions[i]]==steps[p].length ) {
+                    if( PathAutomaton.this.attributeSteps[p]==null )
+                        matched = true;
+                    else
+                        attributes++;
+                } else
+                    terminal = false;
+            }
+            this.elementMatched = matched;
+            this.isTerminal = terminal;
+
+            if( attributes==0 )
+                this.attributeSteps = null;
+            else {
+                this.attributeSteps = new NameClass[attributes];
+                for( int i=0; i<positions.length; i++ ) {
+                    int p = pathOf[positions[i]];
+                    if( stepOf[positions[i]]==steps[p].length
+                    &&  PathAutomaton.this.attributeSteps[p]!=null )
+                        this.attributeSteps[--attributes] = PathAutomaton.this.attributeSteps[p];
+                }
+            }
+        }
+
+        /**
+         * gets the state after a child element of the given name.
+         *
+         * @return
+         *      null if neither the child nor its descendants can match.
+         */
+        State next( String namespaceURI, String localName ) {
+            ConcurrentMap<String,State> m = next.get(namespaceURI);
+            State s = (m==null) ? null : m.get(localName);
+            if( s==null ) {
+                s = computeNext(namespaceURI,localName);
+                if( transitions.get()<MAX_TRANSITIONS ) {
+                    if( m==null ) {
+                        m = new ConcurrentHashMap<String,State>();
+                        ConcurrentMap<String,State> old = next.putIfAbsent(namespaceURI,m);
+                        if( old!=null )     m = old;
+                    }
+                    if( m.putIfAbsent(localName,s)==null )
+                        transitions.incrementAndGet();
+                }
+            }
+            return s==dead ? null : s;
+        }
+
+        private State computeNext( String namespaceURI, String localName ) {
+            int[] r = new int[positions.length+isAnyDescendant.length];
+            int len = 0;
+
+            // the context node can be any descendant.
+            for( int p=0; p<isAnyDescendant.length; p++ )
+                if( isAnyDescendant[p] && steps[p].length!=0 )
+                    r[len++] = base[p];
+
+            // advance each position by the name test.
+            for( int i=0; i<positions.length; i++ ) {
+                int x = positions[i];
+                NameClass[] s = steps[pathOf[x]];
+                int step = stepOf[x];
+                if( step<s.length && s[step].accepts(namespaceURI,localName) )
+                    r[len++] = x+1;
+            }
+
+            int[] sorted = new int[len];
+            System.arraycopy(r,0,sorted,0,len);
+            Arrays.sort(sorted);
+            return getState(sorted);
+        }
+
+        /** returns true if an attribute of the given name matches. */
+        boolean acceptsAttribute( String namespaceURI, String localName ) {
+            for( int i=0; i<attributeSteps.length; i++ )
+                if( attributeSteps[i].accepts(namespaceURI,localName) )
+                    return true;
+            return false;
+        }
+    }
+
+    /** gets the unique state of the given positions. */
+    private synchronized State getState( int[] positions ) {
+        Positions key = new Positions(positions);
+        State s = states.get(key);
+        if( s==null )
+            states.put(key, s=new State(positions));
+        return s;
+    }
+
+    /** a set of positions as a key of a map. */
+    private static final class Positions {
+        private final int[] positions;
+        Positions( int[] positions ) { this.positions = positions; }
+        public int hashCode() { return Arrays.hashCode(positions); }
+        public boolean equals( Object o ) {
+            return (o instanceof Positions) && Arrays.equals(positions,((Positions)o).positions);
+        }
+    }
+
+
+
+    /**
+     * automata of all the selectors and the fields of one grammar.
+     */
+    static final class Table {
+        /**
+         * a map from <code>XPath[]</code> to the automaton.
+         * Arrays are compared by their identity.
+         */
+        private final ConcurrentMap<XPath[],PathAutomaton> automata =
+            new ConcurrentHashMap<XPath[],PathAutomaton>();
+
+        /** gets the automaton of the given selector or field. */
+        PathAutomaton get( XPath[] paths ) {
+            PathAutomaton a = automata.get(paths);
+            if( a==null ) {
+                a = new PathAutomaton(paths);
+                PathAutomaton old = automata.putIfAbsent(paths,a);
+                if( old!=null )     a = old;
+            }
+            return a;
+        }
+    }
+
+    /**
+     * tables of the grammars in use.
+     * Tables don't refer to the grammar, so they are discarded with the grammar.
+     */
+    private static final Map<XMLSchemaGrammar,Table> tables = new WeakHashMap<XMLSchemaGrammar,Table>();
+
+    /** gets the table of automata shared by all the verifiers of the given grammar. */
+    static synchronized Table getTable( XMLSchemaGrammar grammar ) {
+        Table t = tables.get(grammar);
+        if( t==null )
+            tables.put(grammar, t=new Table());
+        return t;
+    }
+}
@@ -39,6 +39,9 @@ public class SelectorMatcher extends PathMatcher {
         
         // register this scope as active.
         owner.pushActiveScope(idConst,this);
+        // register this object before any FieldsMatcher is created by
+        // the match below, so that this scope ends after them.
+        owner.add(this);
         
         if(com.sun.msv.driver.textui.Debug.debug) {
             System.out.println("new id scope is available for {"+idConst.localName+"}");
@@ -51,6 +54,7 @@ public class SelectorMatcher extends PathMatcher {
         super.onRemoved();
         // this scope is no longer active.
         owner.popActiveScope(idConst,this);
+        owner.onScopeClosed(this);
     }
 
     
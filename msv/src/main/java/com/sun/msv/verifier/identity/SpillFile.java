@@ -0,0 +1,421 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.verifier.identity;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * temporary file that stores {@link KeyValue}s that don't fit in memory.
+ *
+ * <p>
+ * Values are written in batches called "runs". Each run is sorted by the
+ * hash code, and the following are kept in memory for each run:
+ * <ul>
+ *  <li>a Bloom filter of the hash codes, so that most lookups of values
+ *      that are not in a run don't touch the disk at all.
+ *  <li>the hash code and the file offset of every {@link #INDEX_INTERVAL}th
+ *      value, so that a lookup reads only a small block of the file.
+ * </ul>
+ *
+ * <p>
+ * Strings, integers and longs are encoded compactly. Other values are
+ * written by Java serialization, so they have to be {@link java.io.Serializable}.
+ * Since a lookup compares values by {@link Object#equals(Object)},
+ * equal values must be equal after they are deserialized.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+final class SpillFile
+{
+    /** one value out of this many is indexed. */
+    private static final int INDEX_INTERVAL = 32;
+
+    /** bits of the Bloom filter per value. */
+    private static final int BLOOM_BITS = 8;
+
+    private static final int TAG_STRING = 0;
+    private static final int TAG_INTEGER = 1;
+    private static final int TAG_LONG = 2;
+    private static final int TAG_OBJECT = 3;
+
+    /** strings longer than this can't be written by writeUTF. */
+    private static final int MAX_UTF_LENGTH = 65535/3;
+
+    private final File file;
+    private final RandomAccessFile raf;
+
+    /** the number of bytes written so far. */
+    private long size = 0;
+
+    private final List<Run> runs = new ArrayList<Run>();
+
+    /**
+     * public id/system id pairs of the locators.
+     * Records refer to them by their index.
+     */
+    private final List<String[]> locations = new ArrayList<String[]>();
+
+    SpillFile( File dir ) throws IOException {
+        file = File.createTempFile("msv-keys",".tmp",dir);
+        file.deleteOnExit();
+        raf = new RandomAccessFile(file,"rw");
+    }
+
+    /** one batch of values, sorted by the hash code. */
+    private static final class Run {
+        /** file offsets of the first byte and the byte after the last record. */
+        final long start, end;
+
+        /** every {@link #INDEX_INTERVAL}th hash code and its file offset. */
+        final int[] indexHash;
+        final long[] indexOffset;
+
+        final long[] bloom;
+        final int bloomMask;
+
+        Run( long start, long end, int[] indexHash, long[] indexOffset, long[] bloom ) {
+            this.start = start;
+            this.end = end;
+            this.indexHash = indexHash;
+            this.indexOffset = indexOffset;
+            this.bloom = bloom;
+            this.bloomMask = bloom.length*64-1;
+        }
+
+        boolean mightContain( int hash ) {
+            int h1 = mix(hash);
+            int h2 = mix(h1)|1;
+            for( int i=0; i<3; i++ ) {
+                int bit = (h1+i*h2)&bloomMask;
+                if( (bloom[bit>>>6]&(1L<<bit))==0 )
+                    return false;
+            }
+            return true;
+        }
+
+        /** gets the file offset from which records of the given hash code should be looked for. */
+        long seek( int hash ) {
+            // find the last index entry whose hash is smaller than the given one.
+            // records of the same hash code may span across index entries.
+            int i = search(hash);
+            return i==0 ? start : indexOffset[i-1];
+        }
+
+        /** gets the file offset after which no record of the given hash code can be found. */
+        long limit( int hash ) {
+            int i = search(hash+1);
+            return (hash==Integer.MAX_VALUE || i==indexHash.length) ? end : indexOffset[i];
+        }
+
+        /** finds the first index entry whose hash is not smaller than the given one. */
+        private int search( int hash ) {
+            int lo=0, hi=indexHash.length;
+            while( lo<hi ) {
+                int mid = (lo+hi)>>>1;
+                if( indexHash[mid]<hash )   lo = mid+1;
+                else                        hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    private static void setBloom( long[] bloom, int hash ) {
+        int mask = bloom.length*64-1;
+        int h1 = mix(hash);
+        int h2 = mix(h1)|1;
+        for( int i=0; i<3; i++ ) {
+            int bit = (h1+i*h2)&mask;
+            bloom[bit>>>6] |= 1L<<bit;
+        }
+    }
+
+    private static int mix( int h ) {
+        h ^= h>>>16;
+        h *= 0x85ebca6b;
+        h ^= h>>>13;
+        h *= 0xc2b2ae35;
+        h ^= h>>>16;
+        return h;
+    }
+
+    private static final Comparator<KeyValue> hashOrder = new Comparator<KeyValue>() {
+        public int compare( KeyValue o1, KeyValue o2 ) {
+            int h1 = o1.hashCode();
+            int h2 = o2.hashCode();
+            return h1<h2 ? -1 : (h1==h2 ? 0 : 1);
+        }
+    };
+
+    /**
+     * writes values as a new run.
+     *
+     * @exception java.io.ObjectStreamException
+     *      if some of the values can't be serialized. In this case,
+     *      nothing is written and this object stays intact.
+     */
+    void write( KeyValue[] values ) throws IOException {
+        values = (KeyValue[])values.clone();
+        Arrays.sort(values,hashOrder);
+
+        int bloomLongs = 1;
+        while( bloomLongs*64 < values.length*BLOOM_BITS )
+            bloomLongs *= 2;
+        long[] bloom = new long[bloomLongs];
+        int[] indexHash = new int[(values.length+INDEX_INTERVAL-1)/INDEX_INTERVAL];
+        long[] indexOffset = new long[indexHash.length];
+
+        // encode everything first, so that nothing is written
+        // if a value turns out to be not serializable.
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(values.length*32);
+        DataOutputStream out = new DataOutputStream(buf);
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream rout = new DataOutputStream(record);
+        int locationsSize = locations.size();
+        try {
+            for( int i=0; i<values.length; i++ ) {
+                int hash = values[i].hashCode();
+                setBloom(bloom,hash);
+                if( i%INDEX_INTERVAL==0 ) {
+                    indexHash[i/INDEX_INTERVAL] = hash;
+                    indexOffset[i/INDEX_INTERVAL] = size+out.size();
+                }
+
+                record.reset();
+                encode(values[i],rout);
+                rout.flush();
+                out.writeInt(hash);
+                out.writeInt(record.size());
+                record.writeTo(out);
+            }
+            out.flush();
+        } catch( IOException e ) {
+            // forget locations added for this run.
+            while( locations.size()>locationsSize )
+                locations.remove(locations.size()-1);
+            throw e;
+        }
+
+        raf.seek(size);
+        buf.writeTo(new RandomAccessFileOutput(raf));
+        long start = size;
+        size += buf.size();
+        runs.add(new Run(start,size,indexHash,indexOffset,bloom));
+    }
+
+    /** buffer to read a block of a run. */
+    private byte[] block = new byte[4096];
+    private final BlockStream blockStream = new BlockStream();
+    private final DataInputStream blockIn = new DataInputStream(blockStream);
+
+    /** reads a part of {@link #block}. */
+    private final class BlockStream extends ByteArrayInputStream {
+        BlockStream() { super(new byte[0]); }
+        void reset( int offset, int length ) {
+            buf = block;
+            pos = offset;
+            count = offset+length;
+        }
+    }
+
+    private static int readInt( byte[] buf, int p ) {
+        return (buf[p]<<24) | ((buf[p+1]&0xFF)<<16) | ((buf[p+2]&0xFF)<<8) | (buf[p+3]&0xFF);
+    }
+
+    /** finds a value that is equal to the given one, or returns null. */
+    KeyValue find( KeyValue value ) throws IOException {
+        final int hash = value.hashCode();
+
+        // newer runs first.
+        for( int r=runs.size()-1; r>=0; r-- ) {
+            Run run = runs.get(r);
+            if( !run.mightContain(hash) )
+                continue;
+
+            // read the block that can contain the value at once.
+            long pos = run.seek(hash);
+            int len = (int)(run.limit(hash)-pos);
+            if( block.length<len )
+                block = new byte[Math.max(len,block.length*2)];
+            raf.seek(pos);
+            raf.readFully(block,0,len);
+
+            // skip records by looking at the headers directly.
+            int p = 0;
+            while( p<len ) {
+                int h = readInt(block,p);
+                if( h>hash )
+                    break;
+                int rlen = readInt(block,p+4);
+                if( h==hash ) {
+                    blockStream.reset(p+8,rlen);
+                    KeyValue v = decode(blockIn);
+                    if( v.equals(value) )
+                        return v;
+                }
+                p += 8+rlen;
+            }
+        }
+        return null;
+    }
+
+    /** sends all the values in this file to the specified receiver. */
+    void scan( KeyStore.Receiver receiver ) throws IOException, SAXException {
+        for( int r=0; r<runs.size(); r++ ) {
+            Run run = runs.get(r);
+            long pos = run.start;
+            DataInputStream in = open(pos,8192);
+            while( pos<run.end ) {
+                in.readInt();   // hash code
+                int len = in.readInt();
+                receiver.receive(decode(in));
+                pos += 8+len;
+            }
+        }
+    }
+
+    /** closes and deletes the file. */
+    void close() throws IOException {
+        runs.clear();
+        try {
+            raf.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private DataInputStream open( long pos, int bufSize ) throws IOException {
+        raf.getChannel().position(pos);
+        // note that closing this stream would close the file.
+        return new DataInputStream(new BufferedInputStream(
+            Channels.newInputStream(raf.getChannel()),bufSize));
+    }
+
+    private void encode( KeyValue kv, DataOutputStream out ) throws IOException {
+        if( kv.locator==null ) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(getLocationIndex(kv.locator.getPublicId(),kv.locator.getSystemId()));
+            out.writeInt(kv.locator.getLineNumber());
+            out.writeInt(kv.locator.getColumnNumber());
+        }
+
+        out.writeByte(kv.values.length);
+        for( int i=0; i<kv.values.length; i++ ) {
+            Object v = kv.values[i];
+            if( v instanceof String && ((String)v).length()<=MAX_UTF_LENGTH ) {
+                out.writeByte(TAG_STRING);
+                out.writeUTF((String)v);
+            } else
+            if( v instanceof Integer ) {
+                out.writeByte(TAG_INTEGER);
+                out.writeInt(((Integer)v).intValue());
+            } else
+            if( v instanceof Long ) {
+                out.writeByte(TAG_LONG);
+                out.writeLong(((Long)v).longValue());
+            } else {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(baos);
+                oos.writeObject(v);
+                oos.close();
+                out.writeByte(TAG_OBJECT);
+                out.writeInt(baos.size());
+                baos.writeTo(out);
+            }
+        }
+    }
+
+    private KeyValue decode( DataInputStream in ) throws IOException {
+        LocatorImpl loc = null;
+        int idx = in.readInt();
+        if( idx>=0 ) {
+            loc = new LocatorImpl();
+            String[] location = locations.get(idx);
+            loc.setPublicId(location[0]);
+            loc.setSystemId(location[1]);
+            loc.setLineNumber(in.readInt());
+            loc.setColumnNumber(in.readInt());
+        }
+
+        Object[] values = new Object[in.readByte()];
+        for( int i=0; i<values.length; i++ ) {
+            switch(in.readByte()) {
+            case TAG_STRING:
+                values[i] = in.readUTF();
+                break;
+            case TAG_INTEGER:
+                values[i] = new Integer(in.readInt());
+                break;
+            case TAG_LONG:
+                values[i] = new Long(in.readLong());
+                break;
+            case TAG_OBJECT: {
+                byte[] buf = new byte[in.readInt()];
+                in.readFully(buf);
+                ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(buf));
+                try {
+                    values[i] = ois.readObject();
+                } catch( ClassNotFoundException e ) {
+                    throw new StreamCorruptedException(e.toString());
+                }
+                break;
+            }
+            default:
+                throw new StreamCorruptedException();
+            }
+        }
+        return new KeyValue(values,loc);
+    }
+
+    private int getLocationIndex( String publicId, String systemId ) {
+        // there are usually only a few of them, so the linear search is fine.
+        for( int i=0; i<locations.size(); i++ ) {
+            String[] location = locations.get(i);
+            if( eq(location[0],publicId) && eq(location[1],systemId) )
+                return i;
+        }
+        locations.add(new String[]{publicId,systemId});
+        return locations.size()-1;
+    }
+
+    private static boolean eq( String a, String b ) {
+        return a==null ? b==null : a.equals(b);
+    }
+
+    /** writes to the current position of a {@link RandomAccessFile}. */
+    private static final class RandomAccessFileOutput extends java.io.OutputStream {
+        private final RandomAccessFile raf;
+        RandomAccessFileOutput( RandomAccessFile raf ) { this.raf = raf; }
+        public void write( int b ) throws IOException {
+            raf.write(b);
+        }
+        public void write( byte[] b, int off, int len ) throws IOException {
+            raf.write(b,off,len);
+        }
+    }
+}
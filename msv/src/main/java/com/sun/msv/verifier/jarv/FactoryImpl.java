@@ -27,9 +27,11 @@ import org.xml.sax.SAXParseException;
 import com.sun.msv.grammar.Grammar;
 import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
 import com.sun.msv.reader.GrammarReaderController;
-import com.sun.msv.verifier.IVerifier;
+import com.sun.msv.verifier.DocumentDeclaration;
+import com.sun.msv.verifier.Verifier;
 import com.sun.msv.verifier.identity.IDConstraintChecker;
 import com.sun.msv.verifier.regexp.REDocumentDeclaration;
+import com.sun.msv.verifier.regexp.xmlschema.XSREDocDecl;
 import com.sun.msv.verifier.util.ErrorHandlerImpl;
 
 /**
@@ -116,15 +118,27 @@ public abstract class FactoryImpl extends VerifierFactory {
      * <p>
      * To validate XML Schema correctly, we need to use the specialized VGM.
      */
-    static IVerifier createVerifier( Grammar g ) {
+    static REDocumentDeclaration createDocumentDeclaration( Grammar g ) {
+        if( g instanceof XMLSchemaGrammar )
+            return new XSREDocDecl((XMLSchemaGrammar)g);
+        else
+            return new REDocumentDeclaration(g);
+    }
+    
+    /**
+     * creates a verifier that uses the specified VGM.
+     * 
+     * @param docDecl
+     *      VGM created by {@link #createDocumentDeclaration(Grammar)}
+     *      from the same grammar.
+     */
+    static Verifier createVerifier( Grammar g, DocumentDeclaration docDecl ) {
         if( g instanceof XMLSchemaGrammar )
             return new IDConstraintChecker(
-                (XMLSchemaGrammar)g,
+                (XMLSchemaGrammar)g, docDecl,
                 new ErrorHandlerImpl() );
         else
-            return new com.sun.msv.verifier.Verifier(
-                new REDocumentDeclaration(g),
-                new ErrorHandlerImpl() );
+            return new Verifier( docDecl, new ErrorHandlerImpl() );
     }
     
     
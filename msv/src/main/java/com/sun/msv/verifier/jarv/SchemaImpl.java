@@ -9,6 +9,9 @@
  */
 package com.sun.msv.verifier.jarv;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
 
@@ -19,11 +22,28 @@ import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
 import com.sun.msv.grammar.Grammar;
-import com.sun.msv.verifier.IVerifier;
+import com.sun.msv.verifier.regexp.REDocumentDeclaration;
 
 /**
  * base implementation of RELAXFactoryImpl and TREXFactoryImpl
  * 
+ * <p>
+ * In addition to {@link #newVerifier()}, this class keeps a bounded pool
+ * of verifiers. A verifier obtained by {@link #acquireVerifier()} should be
+ * given back by {@link #releaseVerifier(Verifier)} once the application is
+ * done with it, so that its parser and other internal objects can be reused
+ * for the next request.
+ * 
+ * <pre><xmp>
+ * Verifier v = schema.acquireVerifier();
+ * try {
+ *     v.setErrorHandler(handler);
+ *     valid = v.verify(source);
+ * } finally {
+ *     schema.releaseVerifier(v);
+ * }
+ * </xmp></pre>
+ * 
  * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
  */
 public class SchemaImpl implements Schema
@@ -47,9 +67,79 @@ public class SchemaImpl implements Schema
     }
     
     public Verifier newVerifier() throws VerifierConfigurationException {
-        IVerifier core = FactoryImpl.createVerifier(grammar);
+        com.sun.msv.verifier.Verifier core = FactoryImpl.createVerifier(
+            grammar, getDocumentDeclaration().copy() );
         core.setPanicMode(usePanicMode);
-        return new VerifierImpl( core, createXMLReader() );
+        return new VerifierImpl( this, core, createXMLReader() );
+    }
+    
+    /**
+     * gets a verifier from the pool, or creates a new one if the pool is empty.
+     */
+    public Verifier acquireVerifier() throws VerifierConfigurationException {
+        synchronized(pool) {
+            int size = pool.size();
+            if( size!=0 )
+                return pool.remove(size-1);
+        }
+        return newVerifier();
+    }
+    
+    /**
+     * gives back a verifier so that it can be handed out again by
+     * {@link #acquireVerifier()}.
+     * 
+     * <p>
+     * The error handler and the entity resolver of the verifier are
+     * reset to the initial state. The verifier must not be used by the
+     * caller after this method is called. Verifiers that are not created
+     * by this schema are ignored, and so is the verifier if the pool is full.
+     */
+    public void releaseVerifier( Verifier verifier ) {
+        if( !(verifier instanceof VerifierImpl) )
+            return;
+        VerifierImpl v = (VerifierImpl)verifier;
+        if( v.owner!=this )
+            return;
+        
+        v.reset();
+        synchronized(pool) {
+            if( pool.size()<maxPoolSize )
+                pool.add(v);
+        }
+    }
+    
+    /**
+     * sets the maximum number of idle verifiers kept by this object.
+     * Defaults to the number of available processors.
+     * 
+     * Setting 0 disables pooling.
+     */
+    public void setPoolSize( int size ) {
+        if( size<0 )
+            throw new IllegalArgumentException(Integer.toString(size));
+        synchronized(pool) {
+            maxPoolSize = size;
+            while( pool.size()>size )
+                pool.remove(pool.size()-1);
+        }
+    }
+    
+    /** idle verifiers. */
+    private final List<VerifierImpl> pool = new ArrayList<VerifierImpl>();
+    
+    private int maxPoolSize = Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * the VGM from which the VGM of each verifier is copied.
+     * created lazily, and never used to validate documents by itself.
+     */
+    private REDocumentDeclaration docDecl;
+    
+    private synchronized REDocumentDeclaration getDocumentDeclaration() {
+        if( docDecl==null )
+            docDecl = FactoryImpl.createDocumentDeclaration(grammar);
+        return docDecl;
     }
     
     private synchronized XMLReader createXMLReader() throws VerifierConfigurationException {
@@ -9,12 +9,17 @@
  */
 package com.sun.msv.verifier.jarv;
 
+import java.io.IOException;
+
 import org.iso_relax.verifier.VerifierConfigurationException;
 import org.iso_relax.verifier.VerifierHandler;
+import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
-import com.sun.msv.verifier.IVerifier;
+import com.sun.msv.verifier.Verifier;
 
 /**
  * Verifier implementation.
@@ -23,11 +28,39 @@ import com.sun.msv.verifier.IVerifier;
  */
 class VerifierImpl extends org.iso_relax.verifier.impl.VerifierImpl
 {
-    private final IVerifier verifier;
+    private final Verifier verifier;
+    
+    /** the schema that created this object. */
+    final SchemaImpl owner;
+    
+    /** error handlers that were set initially. restored by {@link #reset()}. */
+    private final ErrorHandler initialErrorHandler;
+    private final ErrorHandler initialCoreErrorHandler;
+    
+    /**
+     * the entity resolver set by the application. Can be null.
+     * 
+     * <p>
+     * This is not passed to the base class, which would set it to
+     * the parser and leave it there for the next user of this object.
+     */
+    private EntityResolver resolver;
     
-    VerifierImpl( IVerifier verifier, XMLReader reader ) throws VerifierConfigurationException {
+    VerifierImpl( SchemaImpl owner, Verifier verifier, XMLReader reader ) throws VerifierConfigurationException {
+        this.owner = owner;
         this.verifier = verifier;
         super.reader    = reader;
+        
+        initialErrorHandler = super.errorHandler;
+        initialCoreErrorHandler = verifier.getErrorHandler();
+        
+        reader.setEntityResolver( new EntityResolver() {
+            public InputSource resolveEntity( String publicId, String systemId ) throws SAXException, IOException {
+                if( resolver==null )
+                    return null;    // use the default behavior
+                return resolver.resolveEntity(publicId,systemId);
+            }
+        });
     }
     
     // we obtain XMLReader through the constructor.
@@ -39,7 +72,22 @@ class VerifierImpl extends org.iso_relax.verifier.impl.VerifierImpl
         verifier.setErrorHandler(handler);
     }
     
+    public void setEntityResolver( EntityResolver resolver ) {
+        this.resolver = resolver;
+    }
+    
     public VerifierHandler getVerifierHandler() {
         return verifier;
     }
+    
+    /**
+     * brings this object back to the state it was created,
+     * so that it can be handed out again.
+     */
+    void reset() {
+        verifier.reset();
+        super.setErrorHandler(initialErrorHandler);
+        verifier.setErrorHandler(initialCoreErrorHandler);
+        resolver = null;
+    }
 }
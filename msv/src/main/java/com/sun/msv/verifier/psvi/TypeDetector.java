@@ -21,6 +21,7 @@ import com.sun.msv.grammar.ElementExp;
 import com.sun.msv.util.DatatypeRef;
 import com.sun.msv.util.StartTagInfo;
 import com.sun.msv.util.StringRef;
+import com.sun.msv.util.TextBuffer;
 import com.sun.msv.verifier.Acceptor;
 import com.sun.msv.verifier.DocumentDeclaration;
 import com.sun.msv.verifier.ErrorInfo;
@@ -43,7 +44,7 @@ public class TypeDetector extends Verifier {
     
     
     /** characters that were read (but not processed)  */
-    private StringBuffer text = new StringBuffer();
+    private final TextBuffer text = new TextBuffer();
     
     protected TypedContentHandler handler;
     
@@ -68,7 +69,7 @@ public class TypeDetector extends Verifier {
     
     protected void verifyText() throws SAXException {
         if(text.length()!=0) {
-            final String txt = new String(text);
+            final String txt = text.toString();
             if(!current.onText2( txt, this, null, characterType )) {
                 // error
                 // diagnose error, if possible
@@ -84,7 +85,7 @@ public class TypeDetector extends Verifier {
             // characters are validated. report to the handler.
             reportCharacterChunks( txt, characterType.types );
             
-            text = new StringBuffer();
+            text.clear();
         }
     }
 
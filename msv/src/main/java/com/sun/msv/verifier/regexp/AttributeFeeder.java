@@ -25,6 +25,7 @@ import com.sun.msv.grammar.OtherExp;
 import com.sun.msv.grammar.ReferenceExp;
 import com.sun.msv.grammar.SequenceExp;
 import com.sun.msv.grammar.ValueExp;
+import com.sun.msv.grammar.xmlschema.OccurrenceExp;
 
 /**
  * Feeds AttributeToken to the expression and obtains the residual (content model).
@@ -112,6 +113,11 @@ public class AttributeFeeder implements ExpressionVisitorExpression {
         return exp.exp.visit(this);
     }
     public Expression onOther( OtherExp exp ) {
+        if( exp instanceof OccurrenceExp
+        &&  ((OccurrenceExp)exp).itemExp.visit(this)==Expression.nullSet )
+            // the item doesn't accept this attribute, so the repetition doesn't, either.
+            // checking the item is cheaper than visiting the precise expression.
+            return Expression.nullSet;
         return exp.exp.visit(this);
     }
     public Expression onSequence( SequenceExp exp ) {
@@ -16,6 +16,7 @@ import com.sun.msv.grammar.ExpressionCloner;
 import com.sun.msv.grammar.ExpressionPool;
 import com.sun.msv.grammar.OtherExp;
 import com.sun.msv.grammar.ReferenceExp;
+import com.sun.msv.grammar.xmlschema.OccurrenceExp;
 
 /**
  * Creates an expression whose AttributeExp is completely replaced by epsilon.
@@ -32,6 +33,11 @@ public class AttributeRemover extends ExpressionCloner
     
     public Expression onAttribute( AttributeExp exp )    { return Expression.epsilon; }
     public Expression onRef( ReferenceExp exp )            { return exp.exp.visit(this); }
-    public Expression onOther( OtherExp exp )            { return exp.exp.visit(this); }
+    public Expression onOther( OtherExp exp ) {
+        // keep the occurrence constraint so that the verifier can count it.
+        if( exp instanceof OccurrenceExp )
+            return ((OccurrenceExp)exp).cloneItem(this,pool);
+        return exp.exp.visit(this);
+    }
     public Expression onElement( ElementExp exp )        { return exp; }
 }
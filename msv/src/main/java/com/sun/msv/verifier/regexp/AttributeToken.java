@@ -11,6 +11,7 @@ package com.sun.msv.verifier.regexp;
 
 import com.sun.msv.grammar.AttributeExp;
 import com.sun.msv.grammar.IDContextProvider2;
+import com.sun.msv.grammar.util.SymbolTable;
 import com.sun.msv.util.DatatypeRef;
 
 /**
@@ -62,9 +63,14 @@ public class AttributeToken extends Token
         reinit( namespaceURI, localName, qName, value );
     }
     
+    /** the symbol of the attribute name, or null if the name is not in the symbol table. */
+    private SymbolTable.Symbol symbol;
+    
     void reinit( String namespaceURI, String localName, String qName, StringToken value ) {
         this.namespaceURI    = namespaceURI;
         this.localName        = localName;
+        this.symbol            = (namespaceURI==null || localName==null)?
+                                    null : SymbolTable.get(namespaceURI,localName);
         this.qName            = qName;
         this.value            = value;
         
@@ -84,7 +90,7 @@ public class AttributeToken extends Token
     
     public boolean match( AttributeExp exp ) {
         // Attribute name must meet the constraint of NameClass
-        if(!exp.nameClass.accepts(namespaceURI,localName))    return false;
+        if(!SymbolTable.accepts(exp.nameClass,symbol,namespaceURI,localName))    return false;
         
         // content model of the attribute must consume the value
         boolean satisfied = false;
@@ -0,0 +1,94 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.verifier.regexp;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.msv.util.StringPair;
+
+/**
+ * {@link TransitionCache} that bounds the number of entries created by wildcards.
+ * 
+ * <p>
+ * Most keys are objects of the grammar (element declarations or
+ * the symbols of names that appear in the grammar), so the number
+ * of them is bounded by the size of the grammar. Those entries are
+ * never discarded.
+ * 
+ * <p>
+ * Names that do not appear in the grammar are keyed by {@link StringPair}s.
+ * They can only be accepted by name classes like &lt;anyName/&gt;,
+ * and a document can contain any number of them. When more than the
+ * specified number of such entries are cached, all of them are discarded.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public final class BoundedTransitionCache implements TransitionCache {
+    
+    /** the default maximum number of entries keyed by names that are not in the grammar. */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+    
+    /** the factory that creates caches of the default size. */
+    public static final TransitionCache.Factory DEFAULT_FACTORY = createFactory(DEFAULT_MAX_SIZE);
+    
+    /** creates a factory that creates caches of the specified size. */
+    public static TransitionCache.Factory createFactory( final int maxSize ) {
+        if(maxSize<1)
+            throw new IllegalArgumentException();
+        return new TransitionCache.Factory() {
+            public TransitionCache create() {
+                return new BoundedTransitionCache(maxSize);
+            }
+        };
+    }
+    
+    private final int maxSize;
+    
+    /**
+     * cached transitions. Most expressions only have a handful of transitions,
+     * so the map starts small.
+     */
+    private final Map<Object,Object> map = new ConcurrentHashMap<Object,Object>(4,0.75f,1);
+    
+    /** the number of entries keyed by {@link StringPair}s. */
+    private final AtomicInteger foreignCount = new AtomicInteger();
+    
+    public BoundedTransitionCache( int maxSize ) {
+        this.maxSize = maxSize;
+    }
+    
+    public Object get( Object key ) {
+        return map.get(key);
+    }
+    
+    public void put( Object key, Object value ) {
+        if( map.put(key,value)==null && key instanceof StringPair
+        &&  foreignCount.incrementAndGet()>maxSize )
+            purgeForeignEntries();
+    }
+    
+    /** discards all the entries keyed by names that are not in the grammar. */
+    private void purgeForeignEntries() {
+        Iterator<Object> itr = map.keySet().iterator();
+        while( itr.hasNext() ) {
+            if( itr.next() instanceof StringPair ) {
+                itr.remove();
+                foreignCount.decrementAndGet();
+            }
+        }
+    }
+    
+    public int size() {
+        return map.size();
+    }
+}
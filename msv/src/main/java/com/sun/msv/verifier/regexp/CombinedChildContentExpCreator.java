@@ -25,6 +25,8 @@ import com.sun.msv.grammar.OtherExp;
 import com.sun.msv.grammar.ReferenceExp;
 import com.sun.msv.grammar.SequenceExp;
 import com.sun.msv.grammar.ValueExp;
+import com.sun.msv.grammar.util.SymbolTable;
+import com.sun.msv.grammar.xmlschema.OccurrenceExp;
 import com.sun.msv.util.StartTagInfo;
 import com.sun.msv.util.StringPair;
 
@@ -123,6 +125,8 @@ public class CombinedChildContentExpCreator implements ExpressionVisitorVoid {
     private ElementExp[] result = new ElementExp[4];
     private int numElements;
     private boolean checkTagName;
+    /** the symbol of the tag name, or null. */
+    private SymbolTable.Symbol tagSymbol;
 
     // TODO: do we gain some performance if we stop creating combined child content expression
     // (for RELAX, c.c.c.e is unnecessary)
@@ -155,8 +159,30 @@ public class CombinedChildContentExpCreator implements ExpressionVisitorVoid {
     private Expression content;
     private Expression continuation;
 
+    /** creates caches of transitions. */
+    private final TransitionCache.Factory cacheFactory;
+
+    /** the number of transitions found in the cache. */
+    private long cacheHits;
+    /** the number of transitions computed because they were not in the cache. */
+    private long cacheMisses;
+
     protected CombinedChildContentExpCreator(ExpressionPool pool) {
+        this(pool, BoundedTransitionCache.DEFAULT_FACTORY);
+    }
+
+    protected CombinedChildContentExpCreator(ExpressionPool pool, TransitionCache.Factory cacheFactory) {
         this.pool = pool;
+        this.cacheFactory = cacheFactory;
+    }
+
+    /** gets the number of times the transition is found in the cache. */
+    public final long getCacheHitCount() {
+        return cacheHits;
+    }
+    /** gets the number of times the transition is not found in the cache. */
+    public final long getCacheMissCount() {
+        return cacheMisses;
     }
 
     /**
@@ -174,20 +200,35 @@ public class CombinedChildContentExpCreator implements ExpressionVisitorVoid {
      *        if this flag is false, tag name check is skipped.
      */
     public ExpressionPair get(Expression combinedPattern, StartTagInfo info, boolean checkTagName) {
+        reset();
+        return continueGet(combinedPattern, info, checkTagName);
+    }
 
+    private void reset() {
         if (com.sun.msv.driver.textui.Debug.debug)
             // clear the buffer to make it easier to find a bug.
             for (int i = 0; i < result.length; i++)
                 result[i] = null;
 
         numElements = 0;
-        return continueGet(combinedPattern, info, checkTagName);
     }
 
     public final ExpressionPair continueGet(Expression combinedPattern, StartTagInfo info, boolean checkTagName) {
+        return continueGet(combinedPattern, info, checkTagName,
+            checkTagName ? SymbolTable.get(info.namespaceURI, info.localName) : null);
+    }
+
+    /**
+     * @param symbol
+     *        the symbol of the tag name, or null if the name is not
+     *        in the symbol table or the tag name is not checked.
+     */
+    private ExpressionPair continueGet(Expression combinedPattern, StartTagInfo info, boolean checkTagName,
+        SymbolTable.Symbol symbol) {
         foundConcur = false;
         this.tagInfo = info;
         this.checkTagName = checkTagName;
+        this.tagSymbol = symbol;
         combinedPattern.visit(this);
 
         // when more than one element of concern is found,
@@ -199,23 +240,32 @@ public class CombinedChildContentExpCreator implements ExpressionVisitorVoid {
 
     /** computes a combined child content pattern and (,if possible,) its continuation. */
     public ExpressionPair get(Expression combinedPattern, StartTagInfo info) {
-        StringPair sp = null;
+        // the name is converted to its symbol once, and the symbol is used
+        // both as the key of the cache, which is hashed by the symbol id,
+        // and to test name classes.
+        // names that are not registered are keyed by StringPairs.
+        SymbolTable.Symbol symbol = SymbolTable.get(info.namespaceURI, info.localName);
+        Object key = symbol;
 
         // check the cache
         if (combinedPattern.verifierTag != null) {
             OptimizationTag ot = (OptimizationTag)combinedPattern.verifierTag;
-            sp = new StringPair(info.namespaceURI, info.localName);
-            OptimizationTag.OwnerAndCont cache = (OptimizationTag.OwnerAndCont)ot.transitions.get(sp);
+            if (key == null)
+                key = new StringPair(info.namespaceURI, info.localName);
+            OptimizationTag.OwnerAndCont cache = (OptimizationTag.OwnerAndCont)ot.getTransitions(cacheFactory).get(key);
 
             if (cache != null) {
                 // cache hit
+                cacheHits++;
                 numElements = 1;
                 result[0] = cache.owner;
                 return new ExpressionPair(cache.owner.contentModel.getExpandedExp(pool), cache.continuation);
             }
         }
+        cacheMisses++;
 
-        ExpressionPair r = (ExpressionPair)get(combinedPattern, info, true);
+        reset();
+        ExpressionPair r = continueGet(combinedPattern, info, true, symbol);
 
         if (numElements == 1) {
             // only one element matchs this tag name. cache this result
@@ -223,10 +273,16 @@ public class CombinedChildContentExpCreator implements ExpressionVisitorVoid {
             if (ot == null)
                 combinedPattern.verifierTag = ot = new OptimizationTag();
 
-            if (sp == null)
-                sp = new StringPair(info.namespaceURI, info.localName);
+            // the name of the element is registered now,
+            // so that the next lookup finds this entry by the symbol.
+            if (symbol == null)
+                symbol = SymbolTable.register(result[0].getNameClass(), info.namespaceURI, info.localName);
+            if (symbol != null)
+                key = symbol;
+            else if (key == null)
+                key = new StringPair(info.namespaceURI, info.localName);
 
-            ot.transitions.put(sp, new OptimizationTag.OwnerAndCont(result[0], r.continuation));
+            ot.getTransitions(cacheFactory).put(key, new OptimizationTag.OwnerAndCont(result[0], r.continuation));
         }
         return r;
     }
@@ -329,7 +385,7 @@ public class CombinedChildContentExpCreator implements ExpressionVisitorVoid {
         // TODO: may check result and remove duplicate result
 
         // if tag name is invalid, then remove this element from candidate.
-        if (checkTagName && !exp.getNameClass().accepts(tagInfo.namespaceURI, tagInfo.localName)) {
+        if (checkTagName && !SymbolTable.accepts(exp.getNameClass(), tagSymbol, tagInfo.namespaceURI, tagInfo.localName)) {
             content = continuation = Expression.nullSet;
             return;
         }
@@ -383,6 +439,19 @@ public class CombinedChildContentExpCreator implements ExpressionVisitorVoid {
         exp.exp.visit(this);
     }
     public void onOther(OtherExp exp) {
+        if (exp instanceof OccurrenceExp) {
+            // count the occurrence instead of using the precise expression.
+            OccurrenceExp oexp = (OccurrenceExp)exp;
+            Expression rest = oexp.getRest(pool);
+            if (rest == Expression.nullSet) {
+                // no more occurrence is allowed.
+                content = continuation = Expression.nullSet;
+                return;
+            }
+            oexp.itemExp.visit(this);
+            continuation = pool.createSequence(continuation, rest);
+            return;
+        }
         exp.exp.visit(this);
     }
     public void onChoice(ChoiceExp exp) {
@@ -423,6 +492,7 @@ public class CombinedChildContentExpCreator implements ExpressionVisitorVoid {
         // say,
         // exp = (A,X)?,(A,Y)
         content = pool.createChoice(content, content1);
-        continuation = pool.createChoice(continuation1, continuation);
+        // merge occurrence constraints, as in (A?,A[0,5]) -> A[0,5].
+        continuation = OccurrenceExp.createChoice(pool, continuation1, continuation);
     }
 }
@@ -0,0 +1,116 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.verifier.regexp;
+
+import com.sun.msv.grammar.ElementExp;
+import com.sun.msv.grammar.Expression;
+import com.sun.msv.grammar.util.SymbolTable;
+import com.sun.msv.util.StartTagInfo;
+import com.sun.msv.util.StringRef;
+import com.sun.msv.verifier.Acceptor;
+
+/**
+ * {@link SimpleAcceptor} that follows the transitions of a precomputed
+ * {@link ContentModelAutomaton}.
+ * 
+ * <p>
+ * As long as the residual is a state of the automaton, start tags are
+ * processed by table lookups. Otherwise, or if the transition is not
+ * deterministic or is an error, this class falls back to the
+ * derivative engine of the super class.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class CompiledAcceptor extends SimpleAcceptor {
+    
+    private final ContentModelAutomaton automaton;
+    
+    /** the state id of the continuation, or -1 if it's not a state of the automaton. */
+    private final int continuationState;
+    
+    /** the expression whose state id is cached in {@link #state}. */
+    private Expression stateExp;
+    /** the state id of {@link #stateExp}, or -1. */
+    private int state = -1;
+    
+    CompiledAcceptor(
+        REDocumentDeclaration docDecl,
+        ContentModelAutomaton automaton,
+        Expression combined,
+        ElementExp owner,
+        Expression continuation,
+        int continuationState ) {
+        
+        super(docDecl,combined,owner,continuation);
+        this.automaton = automaton;
+        this.continuationState = continuationState;
+    }
+    
+    /** gets the state id of the current residual, or -1. */
+    private int getState() {
+        final Expression exp = getExpression();
+        if( exp!=stateExp ) {
+            stateExp = exp;
+            state = automaton.getState(exp);
+        }
+        return state;
+    }
+    
+    public Acceptor createChildAcceptor( StartTagInfo tag, StringRef errRef ) {
+        final int s = getState();
+        if( s>=0 ) {
+            final int t = automaton.getTransition(s,SymbolTable.get(tag.namespaceURI,tag.localName));
+            if( t>=0 ) {
+                final int target = automaton.getTarget(t);
+                if( target>=0 ) {
+                    final ElementExp child = automaton.getOwner(t);
+                    return new CompiledAcceptor( docDecl, automaton,
+                        child.contentModel.getExpandedExp(docDecl.pool), child,
+                        automaton.getExpression(target), target );
+                }
+            }
+        }
+        
+        // compute it by the derivative engine.
+        return super.createChildAcceptor(tag,errRef);
+    }
+    
+    public boolean stepForward( Acceptor child, StringRef errRef ) {
+        if( child instanceof CompiledAcceptor ) {
+            final CompiledAcceptor ca = (CompiledAcceptor)child;
+            if( ca.continuationState>=0 ) {
+                if(!stepForwardByContinuation(ca.continuation,errRef))
+                    return false;
+                // we already know the state id of the new residual.
+                stateExp = ca.continuation;
+                state = ca.continuationState;
+                return true;
+            }
+        }
+        return super.stepForward(child,errRef);
+    }
+    
+    protected Acceptor createAcceptor(
+        Expression combined, Expression continuation,
+        ElementExp[] primitives, int numPrimitives ) {
+        
+        if( primitives==null || numPrimitives<=1 )
+            // keep using the automaton for descendants.
+            return new CompiledAcceptor( docDecl, automaton, combined,
+                (primitives==null)?null:primitives[0],
+                continuation, automaton.getState(continuation) );
+        
+        return super.createAcceptor(combined,continuation,primitives,numPrimitives);
+    }
+    
+    public Acceptor createClone() {
+        return new CompiledAcceptor( docDecl, automaton, getExpression(), owner, continuation, continuationState );
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.verifier.regexp;
+
+import com.sun.msv.grammar.Expression;
+import com.sun.msv.grammar.ExpressionPool;
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.verifier.Acceptor;
+
+/**
+ * {@link REDocumentDeclaration} that precomputes the element transitions
+ * of the grammar into an automaton.
+ * 
+ * <p>
+ * {@link REDocumentDeclaration} computes residuals lazily for each start tag.
+ * This implementation computes them once when it is created, and stores them
+ * into a dense table, so that the validation of element structure
+ * doesn't require any hash lookup nor expression unification.
+ * This makes the creation of this object slower, so this class is suitable
+ * for servers that validate many documents against the same grammar.
+ * 
+ * <p>
+ * Attributes, text, and any element transition that can't be
+ * precomputed (for example, names that are only accepted by wild cards)
+ * are handled by the derivative engine, exactly as {@link REDocumentDeclaration}
+ * does. Grammars that use &lt;interleave&gt; or &lt;concur&gt; are not compiled
+ * at all, in which case this object behaves just like {@link REDocumentDeclaration}.
+ * 
+ * <p>
+ * This class can be used wherever {@link REDocumentDeclaration} is used.
+ * To avoid compiling the grammar for every validation, create one instance
+ * and share it by {@link SharedDocumentDeclaration}.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class CompiledDocumentDeclaration extends REDocumentDeclaration
+{
+    /** null if the grammar couldn't be compiled. */
+    private final ContentModelAutomaton automaton;
+    
+    public CompiledDocumentDeclaration( Grammar grammar ) {
+        this( grammar.getTopLevel(), grammar.getPool() );
+    }
+    
+    /**
+     * creates an object that validates the specified expression.
+     */
+    public CompiledDocumentDeclaration( Expression topLevel, ExpressionPool pool ) {
+        super(topLevel,pool);
+        automaton = ContentModelAutomaton.compile(this,topLevel);
+    }
+    
+    /**
+     * creates an object that shares the automaton of the given object.
+     */
+    protected CompiledDocumentDeclaration( CompiledDocumentDeclaration base ) {
+        super(base);
+        automaton = base.automaton;
+    }
+    
+    public REDocumentDeclaration copy() {
+        return new CompiledDocumentDeclaration(this);
+    }
+    
+    /**
+     * checks if the grammar was compiled into an automaton.
+     * 
+     * @return false
+     *      if the grammar uses constructs that cannot be compiled.
+     *      In this case, this object always uses the derivative engine.
+     */
+    public final boolean isCompiled() {
+        return automaton!=null;
+    }
+    
+    /**
+     * gets the number of states of the compiled automaton.
+     * 
+     * @return 0 if the grammar is not compiled.
+     */
+    public final int getStateCount() {
+        return automaton==null?0:automaton.getStateCount();
+    }
+    
+    public Acceptor createAcceptor() {
+        if(automaton==null)
+            return super.createAcceptor();
+        
+        // top-level Acceptor cannot have continuation.
+        return new CompiledAcceptor(this, automaton, topLevel, null, Expression.epsilon, -1);
+    }
+}
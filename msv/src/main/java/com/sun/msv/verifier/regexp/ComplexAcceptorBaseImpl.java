@@ -36,9 +36,14 @@ public abstract class ComplexAcceptorBaseImpl extends ContentModelAcceptor
 
     /** eats string literal */
     public final boolean onText2( String literal, IDContextProvider2 context, StringRef refErr, DatatypeRef refType ) {
-        if(!super.onText2(literal,context,refErr,refType))    return false;
+        // one token is used for both the combined expression and the contents.
+        // the same token must be reported to ID checks, and it avoids
+        // an allocation per text chunk.
+        final StringToken token = new StringToken(docDecl,literal,context,refType);
+        if(!stepForward(token,refErr))    return false;
         
-        final StringToken token = new StringToken(docDecl,literal,context);
+        // the type is assigned by the combined expression.
+        token.refType = null;
         final ResidualCalculator res = docDecl.resCalc;
         
         // some may become invalid, but at least one always remain valid
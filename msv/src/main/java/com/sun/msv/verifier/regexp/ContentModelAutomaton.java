@@ -0,0 +1,337 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.verifier.regexp;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.msv.grammar.AttributeExp;
+import com.sun.msv.grammar.ConcurExp;
+import com.sun.msv.grammar.ElementExp;
+import com.sun.msv.grammar.Expression;
+import com.sun.msv.grammar.ExpressionPool;
+import com.sun.msv.grammar.IDContextProvider2;
+import com.sun.msv.grammar.InterleaveExp;
+import com.sun.msv.grammar.util.ExpressionWalker;
+import com.sun.msv.grammar.util.PossibleNamesCollector;
+import com.sun.msv.grammar.util.SymbolTable;
+import com.sun.msv.util.StartTagInfo;
+import com.sun.msv.util.StringPair;
+
+/**
+ * precomputed automaton of element transitions.
+ * 
+ * <p>
+ * Each state is a (unified) residual expression, and each transition is keyed
+ * by the name of a child element. The target of a transition is the
+ * continuation computed by {@link CombinedChildContentExpCreator}, so following
+ * a transition of this automaton is equivalent to computing the residual
+ * by the derivative engine.
+ * 
+ * <p>
+ * Transitions are stored in a dense table indexed by the state id and the name,
+ * which is found from the id of its {@link SymbolTable.Symbol}. So once the name
+ * is converted to its symbol, the transition can be found without any hash lookup
+ * or object creation.
+ * 
+ * <p>
+ * This object is immutable once it is built, thus it can be shared by
+ * multiple threads.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+final class ContentModelAutomaton {
+    
+    /** no element can be accepted. the derivative engine will diagnose the error. */
+    static final int REJECT = -1;
+    /** the transition is not deterministic. the derivative engine has to be used. */
+    static final int FALLBACK = -2;
+    
+    /** the maximum number of entries in the transition table. */
+    private static final int MAX_TABLE_SIZE = 1<<21;
+    
+    /**
+     * names of all the elements that appear in the grammar, indexed by the name
+     * number used in the transition table.
+     * 
+     * Holding the symbols also keeps their ids from being reused.
+     */
+    private final List<SymbolTable.Symbol> names = new ArrayList<SymbolTable.Symbol>();
+    
+    /**
+     * the name number of each symbol, indexed by the symbol id.
+     * -1 if the symbol is not a name of this automaton.
+     */
+    private int[] nameOf = new int[0];
+    
+    /** state id to the expression. */
+    private Expression[] states;
+    /** expression to its state id. */
+    private final Map<Expression,Integer> stateIds = new IdentityHashMap<Expression,Integer>();
+    
+    /**
+     * transition table.
+     * 
+     * <code>targets[state*numNames+name]</code> is the target state id,
+     * {@link #REJECT}, or {@link #FALLBACK}.
+     */
+    private int[] targets;
+    /** ElementExps that accept the child element for each transition. */
+    private ElementExp[] owners;
+    
+    /** the number of names in {@link #names}. */
+    private int numNames;
+    
+    private ContentModelAutomaton() {}
+    
+    /** gets the number of states. */
+    int getStateCount() { return states.length; }
+    
+    /**
+     * gets the state id of the given expression.
+     * 
+     * @return -1
+     *      if the expression is not a state of this automaton.
+     */
+    int getState( Expression exp ) {
+        if(exp==null)   return -1;
+        Integer id = stateIds.get(exp);
+        if(id==null)    return -1;
+        return id.intValue();
+    }
+    
+    /** gets the expression of the given state. */
+    Expression getExpression( int state ) {
+        return states[state];
+    }
+    
+    /**
+     * finds the transition from the given state by the given element name.
+     * 
+     * @param name
+     *      the symbol of the element name, or null if the name is not registered.
+     * @return
+     *      the index of the transition, which can be then passed to
+     *      {@link #getTarget(int)} and {@link #getOwner(int)}.
+     *      -1 if the name doesn't appear in the grammar.
+     */
+    int getTransition( int state, SymbolTable.Symbol name ) {
+        if(name==null || name.id>=nameOf.length)    return -1;
+        int n = nameOf[name.id];
+        if(n<0)     return -1;
+        return state*numNames+n;
+    }
+    
+    /** gets the target state id, {@link #REJECT}, or {@link #FALLBACK}. */
+    int getTarget( int transition ) {
+        return targets[transition];
+    }
+    
+    /** gets the ElementExp that accepts the element of the transition. */
+    ElementExp getOwner( int transition ) {
+        return owners[transition];
+    }
+    
+    
+    /**
+     * builds an automaton for the given expression.
+     * 
+     * @return null
+     *      if the expression uses a construct that cannot be handled by
+     *      an automaton (interleave and concur.)
+     */
+    static ContentModelAutomaton compile( REDocumentDeclaration docDecl, Expression topLevel ) {
+        ElementCollector col = new ElementCollector();
+        topLevel.visit(col);
+        if(col.unsupported)
+            return null;
+        
+        ContentModelAutomaton a = new ContentModelAutomaton();
+        
+        // name ids of each element. null if the name class is a wild card.
+        Map<ElementExp,int[]> elementNames = new IdentityHashMap<ElementExp,int[]>();
+        Iterator<ElementExp> itr = col.elements.iterator();
+        while(itr.hasNext()) {
+            ElementExp e = itr.next();
+            elementNames.put(e,a.addNames(e));
+        }
+        a.numNames = a.names.size();
+        if(a.numNames==0)
+            return null;
+        
+        a.build(docDecl,topLevel,col.elements,elementNames);
+        return a;
+    }
+    
+    /**
+     * registers names of the element.
+     * 
+     * @return
+     *      name ids of the element, or null if its name class accepts
+     *      names that are not enumerable.
+     */
+    private int[] addNames( ElementExp e ) {
+        Set<StringPair> s = PossibleNamesCollector.calc(e.getNameClass());
+        int[] ids = new int[s.size()];
+        int i=0;
+        boolean wildcard = false;
+        Iterator<StringPair> itr = s.iterator();
+        while(itr.hasNext()) {
+            StringPair name = itr.next();
+            if( name.namespaceURI.equals(PossibleNamesCollector.MAGIC)
+            ||  name.localName.equals(PossibleNamesCollector.MAGIC) ) {
+                wildcard = true;
+                continue;
+            }
+            ids[i++] = addName(SymbolTable.register(name.namespaceURI,name.localName));
+        }
+        return wildcard?null:ids;
+    }
+    
+    /**
+     * adds a name to this automaton if it's not added yet.
+     * 
+     * @return
+     *      the name number.
+     */
+    private int addName( SymbolTable.Symbol name ) {
+        if(name.id>=nameOf.length) {
+            int[] buf = new int[Math.max(name.id+1,nameOf.length*2)];
+            System.arraycopy(nameOf,0,buf,0,nameOf.length);
+            java.util.Arrays.fill(buf,nameOf.length,buf.length,-1);
+            nameOf = buf;
+        }
+        if(nameOf[name.id]<0) {
+            nameOf[name.id] = names.size();
+            names.add(name);
+        }
+        return nameOf[name.id];
+    }
+    
+    private void build( REDocumentDeclaration docDecl, Expression topLevel,
+        Set<ElementExp> elements, Map<ElementExp,int[]> elementNames ) {
+        
+        final ExpressionPool pool = docDecl.pool;
+        final List<Expression> stateList = new ArrayList<Expression>();
+        
+        // the initial states. The content model of an element becomes
+        // a state after its attributes are consumed, so add the typical ones.
+        addState(stateList,topLevel);
+        Iterator<ElementExp> itr = elements.iterator();
+        while(itr.hasNext()) {
+            Expression content = itr.next().contentModel.getExpandedExp(pool);
+            addState(stateList,content.visit(docDecl.attRemover));
+            addState(stateList,docDecl.attPruner.prune(content));
+        }
+        
+        final List<int[]> targetRows = new ArrayList<int[]>();
+        final List<ElementExp[]> ownerRows = new ArrayList<ElementExp[]>();
+        final List<Expression> eocs = new ArrayList<Expression>();
+        final boolean[] candidates = new boolean[numNames];
+        final StartTagInfo sti = new StartTagInfo(null,null,null,null,(IDContextProvider2)null);
+        
+        for( int s=0; s<stateList.size(); s++ ) {
+            final Expression state = stateList.get(s);
+            final int[] targetRow = new int[numNames];
+            final ElementExp[] ownerRow = new ElementExp[numNames];
+            
+            // only names of the elements of concern can be accepted.
+            java.util.Arrays.fill(targetRow,REJECT);
+            java.util.Arrays.fill(candidates,false);
+            eocs.clear();
+            docDecl.ecc.collect(state,eocs);
+            for( int i=0; i<eocs.size(); i++ ) {
+                int[] ids = elementNames.get(eocs.get(i));
+                if(ids==null)
+                    java.util.Arrays.fill(candidates,true);
+                else
+                    for( int j=0; j<ids.length; j++ )
+                        candidates[ids[j]] = true;
+            }
+            
+            for( int n=0; n<numNames; n++ ) {
+                if(!candidates[n])  continue;
+                
+                final SymbolTable.Symbol name = names.get(n);
+                sti.reinit(name.namespaceURI,name.localName,name.localName,null,(IDContextProvider2)null);
+                CombinedChildContentExpCreator.ExpressionPair r = docDecl.cccec.get(state,sti,true);
+                
+                if(r.content==Expression.nullSet)
+                    continue;   // REJECT
+                
+                if(docDecl.cccec.numMatchedElements()!=1 || r.continuation==null) {
+                    targetRow[n] = FALLBACK;
+                    continue;
+                }
+                
+                int target = getState(r.continuation);
+                if(target<0) {
+                    if( (stateList.size()+1)*(long)numNames > MAX_TABLE_SIZE ) {
+                        // too many states. let the derivative engine handle it.
+                        targetRow[n] = FALLBACK;
+                        continue;
+                    }
+                    target = addState(stateList,r.continuation);
+                }
+                targetRow[n] = target;
+                ownerRow[n] = docDecl.cccec.getMatchedElements()[0];
+            }
+            
+            targetRows.add(targetRow);
+            ownerRows.add(ownerRow);
+        }
+        
+        // pack them into the dense table.
+        states = stateList.toArray(new Expression[stateList.size()]);
+        targets = new int[states.length*numNames];
+        owners = new ElementExp[states.length*numNames];
+        for( int s=0; s<states.length; s++ ) {
+            System.arraycopy(targetRows.get(s),0,targets,s*numNames,numNames);
+            System.arraycopy(ownerRows.get(s),0,owners,s*numNames,numNames);
+        }
+    }
+    
+    private int addState( List<Expression> stateList, Expression exp ) {
+        int id = getState(exp);
+        if(id>=0)   return id;
+        
+        id = stateList.size();
+        stateList.add(exp);
+        stateIds.put(exp,new Integer(id));
+        return id;
+    }
+    
+    /**
+     * collects all the reachable elements and checks if the grammar
+     * uses unsupported constructs.
+     */
+    private static final class ElementCollector extends ExpressionWalker {
+        final Set<ElementExp> elements = new java.util.LinkedHashSet<ElementExp>();
+        boolean unsupported = false;
+        
+        public void onElement( ElementExp exp ) {
+            if(elements.add(exp))
+                exp.contentModel.visit(this);
+        }
+        public void onAttribute( AttributeExp exp ) {
+            // attribute values are validated by the derivative engine.
+        }
+        public void onInterleave( InterleaveExp exp ) {
+            unsupported = true;
+        }
+        public void onConcur( ConcurExp exp ) {
+            unsupported = true;
+        }
+    }
+}
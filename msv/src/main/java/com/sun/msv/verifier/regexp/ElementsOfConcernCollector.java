@@ -26,6 +26,7 @@ import com.sun.msv.grammar.OtherExp;
 import com.sun.msv.grammar.ReferenceExp;
 import com.sun.msv.grammar.SequenceExp;
 import com.sun.msv.grammar.ValueExp;
+import com.sun.msv.grammar.xmlschema.OccurrenceExp;
 
 /**
  * Collects "elements of concern".
@@ -88,6 +89,13 @@ public class ElementsOfConcernCollector implements ExpressionVisitor
     }
     
     public final Object onOther( OtherExp exp ) {
+        if( exp instanceof OccurrenceExp ) {
+            // the first element of the repetition is the first element of the item.
+            OccurrenceExp oexp = (OccurrenceExp)exp;
+            if( oexp.maxOccurs!=0 )
+                oexp.itemExp.visit(this);
+            return null;
+        }
         return exp.exp.visit(this);
     }
     
@@ -9,11 +9,8 @@
  */
 package com.sun.msv.verifier.regexp;
 
-import java.util.Map;
-
 import com.sun.msv.grammar.ElementExp;
 import com.sun.msv.grammar.Expression;
-import com.sun.msv.util.StringPair;
 
 /**
  * this object will be added to Expression.verifierTag
@@ -41,9 +38,22 @@ final class OptimizationTag
      *  residual(exp,elem1|elem2) = residual(exp,elem1) | residual(exp,elem2)
      * 
      * Since it is possible for multiple threads to access the same OptimizationTag
-     * concurrently, it has to be serialized.
+     * concurrently, it has to be thread-safe.
+     * 
+     * The cache is created when it's used for the first time.
      */
-    final Map<Object,Object> simpleElementTokenResidual = new java.util.Hashtable<Object,Object>();
+    private volatile TransitionCache simpleElementTokenResidual;
+    
+    /** gets the cache of residuals by ElementExps, creating it if necessary. */
+    TransitionCache getSimpleElementTokenResidual( TransitionCache.Factory factory ) {
+        TransitionCache c = simpleElementTokenResidual;
+        if(c!=null)     return c;
+        synchronized(this) {
+            if(simpleElementTokenResidual==null)
+                simpleElementTokenResidual = factory.create();
+            return simpleElementTokenResidual;
+        }
+    }
     
     protected static final class OwnerAndCont
     {
@@ -52,8 +62,23 @@ final class OptimizationTag
         public OwnerAndCont( ElementExp owner, Expression cont )
         { this.owner=owner; this.continuation=cont; }
     };
-    /** map from (namespaceURI,tagName) pair to OwnerAndContinuation. */
-    final Map<StringPair,Object> transitions = new java.util.Hashtable<StringPair,Object>();
+    /**
+     * map from (namespaceURI,tagName) pair to OwnerAndContinuation.
+     * 
+     * The cache is created when it's used for the first time.
+     */
+    private volatile TransitionCache transitions;
+    
+    /** gets the cache of transitions by tag names, creating it if necessary. */
+    TransitionCache getTransitions( TransitionCache.Factory factory ) {
+        TransitionCache c = transitions;
+        if(c!=null)     return c;
+        synchronized(this) {
+            if(transitions==null)
+                transitions = factory.create();
+            return transitions;
+        }
+    }
 
     /** AttributePruner.prune(exp) */
     Expression attributePrunedExpression;
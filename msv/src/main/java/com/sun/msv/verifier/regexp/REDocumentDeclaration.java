@@ -19,7 +19,8 @@ import com.sun.msv.verifier.DocumentDeclaration;
  * {@link DocumentDeclaration} implementation
  * 
  * Grammar object can be shared among multiple threads, but this object
- * cannot be shared.
+ * cannot be shared. Use {@link SharedDocumentDeclaration} to share
+ * one object among multiple threads.
  * 
  * <p>
  * REDocumentDeclaration always returns subclasses of {@link ExpressionAcceptor}
@@ -43,21 +44,70 @@ public class REDocumentDeclaration implements DocumentDeclaration
      * creates an object that validates the specified expression.
      */
     public REDocumentDeclaration( Expression topLevel, ExpressionPool pool ) {
+        this( topLevel, pool, BoundedTransitionCache.DEFAULT_FACTORY );
+    }
+    
+    /**
+     * creates an object that validates the specified expression
+     * with the specified transition cache implementation.
+     * 
+     * <p>
+     * Transition caches are attached to expressions, thus they are shared by
+     * all the REDocumentDeclarations that validate the same grammar. When
+     * different factories are used for the same grammar, the cache
+     * of an expression is created by whichever uses the expression first.
+     * 
+     * @param cacheFactory
+     *      creates caches that memorize residuals and transitions.
+     */
+    public REDocumentDeclaration( Expression topLevel, ExpressionPool pool,
+        TransitionCache.Factory cacheFactory ) {
         this.topLevel = topLevel;
         this.pool = pool;
+        this.cacheFactory = cacheFactory;
         
-        resCalc        = new ResidualCalculator(pool);
+        resCalc        = new ResidualCalculator(pool,cacheFactory);
         attFeeder    = new AttributeFeeder(this);
         attPicker    = new AttributePicker(pool);
         attPruner    = new AttributePruner(pool);
         attRemover    = new AttributeRemover(pool);
-        cccec        = new CombinedChildContentExpCreator(pool);
+        cccec        = new CombinedChildContentExpCreator(pool,cacheFactory);
         ecc            = new ElementsOfConcernCollector();
         
         attToken    = new AttributeToken(this,null,null,null,null);
     }
     
     
+    /**
+     * creates an object that validates the same grammar as the given object,
+     * but has its own function objects.
+     * 
+     * <p>
+     * Derived classes should use this constructor to implement {@link #copy()}.
+     */
+    protected REDocumentDeclaration( REDocumentDeclaration base ) {
+        this( base.topLevel, base.pool, base.cacheFactory );
+    }
+    
+    /**
+     * creates a copy of this object that can be used by another thread.
+     * 
+     * <p>
+     * The copy shares everything that is immutable (the grammar and
+     * anything precomputed from it), and has its own function objects.
+     * So creating a copy is cheap.
+     * 
+     * <p>
+     * Derived classes must override this method to return an object of
+     * the same class.
+     */
+    public REDocumentDeclaration copy() {
+        return new REDocumentDeclaration(this);
+    }
+    
+    /** creates caches for the function objects. */
+    private final TransitionCache.Factory cacheFactory;
+    
     // thread local objects.
     // for these function objects, one per a thread is enough.
     protected final ResidualCalculator                resCalc;
@@ -87,6 +137,22 @@ public class REDocumentDeclaration implements DocumentDeclaration
      */
     public final AttributeToken                    attToken;
 
+    /**
+     * gets the number of residuals and transitions that were
+     * found in the transition caches by this object.
+     */
+    public long getCacheHitCount() {
+        return resCalc.getCacheHitCount()+cccec.getCacheHitCount();
+    }
+    
+    /**
+     * gets the number of residuals and transitions that had to be
+     * computed by this object because they were not in the transition caches.
+     */
+    public long getCacheMissCount() {
+        return resCalc.getCacheMissCount()+cccec.getCacheMissCount();
+    }
+
     public Acceptor createAcceptor() {
         // top-level Acceptor cannot have continuation.
         return new SimpleAcceptor(this, topLevel, null, Expression.epsilon);
@@ -25,6 +25,7 @@ import com.sun.msv.grammar.OtherExp;
 import com.sun.msv.grammar.ReferenceExp;
 import com.sun.msv.grammar.SequenceExp;
 import com.sun.msv.grammar.ValueExp;
+import com.sun.msv.grammar.xmlschema.OccurrenceExp;
 
 /**
  * computes regular expression derivative.
@@ -38,26 +39,48 @@ public class ResidualCalculator implements ExpressionVisitorExpression {
     protected Token token;
     protected final ExpressionPool pool;
     
-    public ResidualCalculator( ExpressionPool pool )    { this.pool=pool; }
+    /** creates caches of residuals. */
+    private final TransitionCache.Factory cacheFactory;
+    
+    /** the number of residuals found in the cache. */
+    private long cacheHits;
+    /** the number of residuals computed because they were not in the cache. */
+    private long cacheMisses;
+    
+    public ResidualCalculator( ExpressionPool pool ) {
+        this(pool,BoundedTransitionCache.DEFAULT_FACTORY);
+    }
+    
+    public ResidualCalculator( ExpressionPool pool, TransitionCache.Factory cacheFactory ) {
+        this.pool=pool;
+        this.cacheFactory=cacheFactory;
+    }
+    
+    /** gets the number of times the residual is found in the cache. */
+    public final long getCacheHitCount() { return cacheHits; }
+    /** gets the number of times the residual is not found in the cache. */
+    public final long getCacheMissCount() { return cacheMisses; }
     
     /** compute the residual */
     final Expression calcResidual( Expression exp, ElementToken token ) {
         if( token.acceptedPatterns!=null && token.acceptedPatterns.length==1 ) {
             // we can use optimization table
-            OptimizationTag ot;
-            if(exp.verifierTag==null)
+            OptimizationTag ot = (OptimizationTag)exp.verifierTag;
+            if(ot==null)
                 exp.verifierTag = ot = new OptimizationTag();
-            else {
-                ot = (OptimizationTag)exp.verifierTag;
-                Expression residual = (Expression)ot.simpleElementTokenResidual.get(token.acceptedPatterns[0]);
-                if(residual!=null)
-                    return residual;    // cache hit.
+            
+            final TransitionCache cache = ot.getSimpleElementTokenResidual(cacheFactory);
+            Expression residual = (Expression)cache.get(token.acceptedPatterns[0]);
+            if(residual!=null) {
+                cacheHits++;
+                return residual;    // cache hit.
             }
+            cacheMisses++;
             
             this.token = token;
-            Expression residual = exp.visit(this);
+            residual = exp.visit(this);
             // cache this residual
-            ot.simpleElementTokenResidual.put(token.acceptedPatterns[0],residual);
+            cache.put(token.acceptedPatterns[0],residual);
             return residual;
         }
         
@@ -120,13 +143,19 @@ public class ResidualCalculator implements ExpressionVisitorExpression {
         return exp.exp.visit(this);
     }
     public Expression onOther( OtherExp exp ) {
+        if( exp instanceof OccurrenceExp ) {
+            // count the occurrence instead of using the precise expression.
+            OccurrenceExp oexp = (OccurrenceExp)exp;
+            return pool.createSequence( oexp.itemExp.visit(this), oexp.getRest(pool) );
+        }
         return exp.exp.visit(this);
     }
     public Expression onSequence( SequenceExp exp ) {
         Expression r = pool.createSequence( exp.exp1.visit(this), exp.exp2 );
         
         if( exp.exp1.isEpsilonReducible() )
-            return pool.createChoice( r, exp.exp2.visit(this) );
+            // merge occurrence constraints, as in (A?,A[0,5]) -> A[0,5].
+            return OccurrenceExp.createChoice( pool, r, exp.exp2.visit(this) );
         else
             return r;
     }
@@ -0,0 +1,79 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.verifier.regexp;
+
+import com.sun.msv.verifier.Acceptor;
+import com.sun.msv.verifier.DocumentDeclaration;
+
+/**
+ * {@link DocumentDeclaration} that can be shared among multiple threads.
+ * 
+ * <p>
+ * {@link REDocumentDeclaration} owns function objects that cannot be
+ * used by more than one thread at the same time. This class keeps
+ * one {@link REDocumentDeclaration} as a prototype, and lazily creates a copy
+ * of it for each thread by {@link REDocumentDeclaration#copy()}.
+ * The copies share the grammar and everything precomputed from it
+ * (for example, the automaton of {@link CompiledDocumentDeclaration}),
+ * so one instance of this class can be cached and used
+ * by any number of {@link com.sun.msv.verifier.Verifier}s concurrently.
+ * 
+ * <pre><xmp>
+ * // once
+ * DocumentDeclaration docDecl = new SharedDocumentDeclaration(
+ *     new CompiledDocumentDeclaration(grammar));
+ * 
+ * // in any thread
+ * Verifier verifier = new Verifier(docDecl,errorHandler);
+ * </xmp></pre>
+ * 
+ * <p>
+ * For the concurrent validation, consider creating the grammar with
+ * a striped {@link com.sun.msv.grammar.ExpressionPool} so that threads do not
+ * contend when residuals are unified.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class SharedDocumentDeclaration implements DocumentDeclaration
+{
+    /** the object that is copied for each thread. never used directly to validate documents. */
+    private final REDocumentDeclaration prototype;
+    
+    /** the per-thread copy of the prototype. */
+    private final ThreadLocal<REDocumentDeclaration> local = new ThreadLocal<REDocumentDeclaration>() {
+        protected REDocumentDeclaration initialValue() {
+            return prototype.copy();
+        }
+    };
+    
+    public SharedDocumentDeclaration( REDocumentDeclaration prototype ) {
+        this.prototype = prototype;
+    }
+    
+    /**
+     * gets the {@link REDocumentDeclaration} that the current thread uses.
+     * 
+     * <p>
+     * The returned object must not be passed to other threads.
+     */
+    public REDocumentDeclaration getLocalDeclaration() {
+        return local.get();
+    }
+    
+    public Acceptor createAcceptor() {
+        // acceptors propagate the declaration to their children,
+        // so the whole document is validated by this thread's copy.
+        return getLocalDeclaration().createAcceptor();
+    }
+    
+    public String localizeMessage( String propertyName, Object[] args ) {
+        return prototype.localizeMessage(propertyName,args);
+    }
+}
@@ -9,10 +9,9 @@
  */
 package com.sun.msv.verifier.regexp;
 
-import java.util.StringTokenizer;
-
 import org.relaxng.datatype.Datatype;
 
+import com.sun.msv.datatype.xsd.ListTokenizer;
 import com.sun.msv.datatype.xsd.StringType;
 import com.sun.msv.grammar.DataExp;
 import com.sun.msv.grammar.Expression;
@@ -57,12 +56,24 @@ public class StringToken extends Token {
         this.literal = literal;
         this.context = context;
         this.refType = refType;
-        this.ignorable = literal.trim().length() == 0;
+        this.ignorable = isBlank(literal);
 
         if (ignorable && refType != null)
             refType.types = ignoredType;
     }
 
+    /**
+     * checks if the string only contains characters that
+     * {@link String#trim()} removes, without creating a new string.
+     */
+    private static boolean isBlank(String literal) {
+        final int len = literal.length();
+        for (int i = 0; i < len; i++)
+            if (literal.charAt(i) > ' ')
+                return false;
+        return true;
+    }
+
     /** DataExp can consume this token if its datatype can accept this string */
     public boolean match(DataExp exp) {
 
@@ -110,7 +121,7 @@ public class StringToken extends Token {
 
     /** ListExp can consume this token if its pattern accepts this string */
     public boolean match(ListExp exp) {
-        StringTokenizer tokens = new StringTokenizer(literal);
+        final int len = literal.length();
         Expression residual = exp.exp;
 
         // if the application needs type information,
@@ -121,11 +132,14 @@ public class StringToken extends Token {
 
         if (this.refType != null) {
             dtRef = new DatatypeRef();
-            childTypes = new Datatype[tokens.countTokens()];
+            childTypes = new Datatype[ListTokenizer.countItems(literal)];
         }
 
-        while (tokens.hasMoreTokens()) {
-            StringToken child = createChildStringToken(tokens.nextToken(), dtRef);
+        // tokenize the value by whitespace, as StringTokenizer does.
+        for (int start = ListTokenizer.skipDelimiters(literal, 0); start < len;) {
+            int end = ListTokenizer.skipItem(literal, start);
+            StringToken child = createChildStringToken(literal.substring(start, end), dtRef);
+            start = ListTokenizer.skipDelimiters(literal, end);
             residual = resCalc.calcResidual(residual, child);
 
             if (residual == Expression.nullSet)
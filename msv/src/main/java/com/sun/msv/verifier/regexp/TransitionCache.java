@@ -0,0 +1,53 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.verifier.regexp;
+
+/**
+ * cache of transitions from one expression.
+ * 
+ * <p>
+ * One instance is attached to each expression
+ * (through {@link OptimizationTag}) to memorize the result of residual
+ * computations. Since a grammar can be shared by multiple threads,
+ * implementations must allow concurrent access.
+ * 
+ * <p>
+ * A cache may forget entries at any time, because the value can
+ * always be recomputed.
+ * 
+ * @see BoundedTransitionCache
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public interface TransitionCache {
+    
+    /**
+     * gets the cached value.
+     * 
+     * @return null
+     *      if the value is not cached.
+     */
+    Object get( Object key );
+    
+    /** memorizes the value. */
+    void put( Object key, Object value );
+    
+    /** gets the number of entries currently cached. */
+    int size();
+    
+    /**
+     * creates {@link TransitionCache}s.
+     * 
+     * This object is used to plug a different cache implementation to
+     * {@link REDocumentDeclaration}.
+     */
+    public interface Factory {
+        TransitionCache create();
+    }
+}
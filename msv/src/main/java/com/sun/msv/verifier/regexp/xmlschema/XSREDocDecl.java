@@ -42,6 +42,18 @@ public class XSREDocDecl extends REDocumentDeclaration {
         this.grammar = grammar;
     }
 
+    /**
+     * creates an object that validates the same grammar as the given object.
+     */
+    protected XSREDocDecl( XSREDocDecl base ) {
+        super(base);
+        this.grammar = base.grammar;
+    }
+    
+    public REDocumentDeclaration copy() {
+        return new XSREDocDecl(this);
+    }
+
     public Acceptor createAcceptor() {
         // use XSAcceptor instead
         return new XSAcceptor(this, topLevel, null, Expression.epsilon);
@@ -0,0 +1,250 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.verifier.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * compact set of strings, used to remember ID and IDREF values.
+ *
+ * <p>
+ * Characters are copied into large shared arrays, each string preceded
+ * by its length, and no {@link String} object is kept.
+ * The strings are found through an open-addressing hash table
+ * of their addresses and hash codes, and the characters are compared
+ * only when the hash codes are equal. So one entry usually costs
+ * about 10 bytes plus 2 bytes per character, a fraction of what a
+ * <code>HashSet</code> of <code>String</code>s needs.
+ *
+ * <p>
+ * Strings can be added as a part of a larger string, so that
+ * values can be registered without creating substrings.
+ * Strings can't be removed, except by clearing the whole set.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public final class IDRegistry
+{
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1<<PAGE_BITS;
+    private static final int MAX_PAGES = 1<<(31-PAGE_BITS);
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    /**
+     * characters of the strings. A string longer than a page gets a page of its own.
+     * The address of a string is its page number times PAGE_SIZE plus its offset.
+     */
+    private char[][] pages = new char[4][];
+    /** the number of characters used in each page. */
+    private int[] fill = new int[4];
+    private int pageCount = 0;
+
+    /** the address of each string plus one, or 0 for an empty slot. */
+    private int[] table = new int[INITIAL_TABLE_SIZE];
+    /** the hash code of each string in the table. */
+    private int[] hashes = new int[INITIAL_TABLE_SIZE];
+
+    private int size = 0;
+
+    /** gets the number of strings in this set. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * adds a string.
+     *
+     * @return
+     *      true if the string is added, false if it was already in this set.
+     */
+    public boolean add( String s ) {
+        return add(s,0,s.length());
+    }
+
+    /**
+     * adds <code>s.substring(start,end)</code>.
+     *
+     * @return
+     *      true if the string is added, false if it was already in this set.
+     */
+    public boolean add( String s, int start, int end ) {
+        final int hash = hash(s,start,end);
+        final int mask = table.length-1;
+        int i = mix(hash)&mask;
+        while( table[i]!=0 ) {
+            if( hashes[i]==hash && equals(table[i]-1,s,start,end) )
+                return false;
+            i = (i+1)&mask;
+        }
+        table[i] = store(s,start,end)+1;
+        hashes[i] = hash;
+        if( ++size*4 > table.length*3 )
+            rehash();
+        return true;
+    }
+
+    /** returns true if this set contains the given string. */
+    public boolean contains( String s ) {
+        return contains(s,0,s.length());
+    }
+
+    /** returns true if this set contains <code>s.substring(start,end)</code>. */
+    public boolean contains( String s, int start, int end ) {
+        final int hash = hash(s,start,end);
+        final int mask = table.length-1;
+        int i = mix(hash)&mask;
+        while( table[i]!=0 ) {
+            if( hashes[i]==hash && equals(table[i]-1,s,start,end) )
+                return true;
+            i = (i+1)&mask;
+        }
+        return false;
+    }
+
+    /** removes all the strings. */
+    public void clear() {
+        if( size==0 )
+            return;
+        size = 0;
+        if( table.length>1024 ) {
+            // don't keep a large table for the next document.
+            table = new int[INITIAL_TABLE_SIZE];
+            hashes = new int[INITIAL_TABLE_SIZE];
+        } else
+            Arrays.fill(table,0);
+
+        // keep the first page for the next document.
+        char[] first = (pageCount>0 && pages[0].length==PAGE_SIZE) ? pages[0] : null;
+        Arrays.fill(pages,null);
+        pages[0] = first;
+        pageCount = 0;
+    }
+
+    /**
+     * iterates the strings in the order they were added.
+     * This set must not be modified during the iteration.
+     */
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int page = 0;
+            private int offset = 0;
+
+            public boolean hasNext() {
+                while( page<pageCount && offset==fill[page] ) {
+                    page++;
+                    offset = 0;
+                }
+                return page<pageCount;
+            }
+            public String next() {
+                if( !hasNext() )
+                    throw new NoSuchElementException();
+                char[] p = pages[page];
+                int len = p[offset];
+                int start = offset+1;
+                if( len>=0x8000 ) {
+                    len = ((len&0x7FFF)<<16) | p[offset+1];
+                    start++;
+                }
+                offset = start+len;
+                return new String(p,start,len);
+            }
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /** copies a string to the pages and returns its address. */
+    private int store( String s, int start, int end ) {
+        final int len = end-start;
+        final int need = len + (len<0x8000 ? 1 : 2);
+
+        int page = pageCount-1;
+        if( page<0 || pages[page].length-fill[page]<need ) {
+            page = addPage( need>PAGE_SIZE ? need : PAGE_SIZE );
+        }
+
+        char[] p = pages[page];
+        int offset = fill[page];
+        int idx = offset;
+        if( len<0x8000 )
+            p[idx++] = (char)len;
+        else {
+            p[idx++] = (char)(0x8000|(len>>>16));
+            p[idx++] = (char)len;
+        }
+        s.getChars(start,end,p,idx);
+        fill[page] = idx+len;
+        return (page<<PAGE_BITS)|offset;
+    }
+
+    private int addPage( int size ) {
+        if( pageCount==MAX_PAGES )
+            throw new IllegalStateException("too many strings");
+        if( pageCount==pages.length ) {
+            pages = Arrays.copyOf(pages,pageCount*2);
+            fill = Arrays.copyOf(fill,pageCount*2);
+        }
+        if( pages[pageCount]==null || pages[pageCount].length!=size )
+            pages[pageCount] = new char[size];
+        fill[pageCount] = 0;
+        return pageCount++;
+    }
+
+    /** compares the string at the given address with <code>s.substring(start,end)</code>. */
+    private boolean equals( int address, String s, int start, int end ) {
+        char[] p = pages[address>>>PAGE_BITS];
+        int idx = address&(PAGE_SIZE-1);
+        int len = p[idx++];
+        if( len>=0x8000 )
+            len = ((len&0x7FFF)<<16) | p[idx++];
+        if( len!=end-start )
+            return false;
+        for( int i=start; i<end; i++ )
+            if( p[idx++]!=s.charAt(i) )
+                return false;
+        return true;
+    }
+
+    private void rehash() {
+        int[] newTable = new int[table.length*2];
+        int[] newHashes = new int[newTable.length];
+        final int mask = newTable.length-1;
+        for( int i=0; i<table.length; i++ ) {
+            if( table[i]==0 )   continue;
+            int j = mix(hashes[i])&mask;
+            while( newTable[j]!=0 )
+                j = (j+1)&mask;
+            newTable[j] = table[i];
+            newHashes[j] = hashes[i];
+        }
+        table = newTable;
+        hashes = newHashes;
+    }
+
+    /** computes the same hash code as <code>s.substring(start,end).hashCode()</code>. */
+    private static int hash( String s, int start, int end ) {
+        int h = 0;
+        for( int i=start; i<end; i++ )
+            h = 31*h + s.charAt(i);
+        return h;
+    }
+
+    /** spreads the hash code, since similar strings have similar hash codes. */
+    private static int mix( int h ) {
+        h ^= h>>>16;
+        h *= 0x85ebca6b;
+        h ^= h>>>13;
+        return h;
+    }
+}
@@ -31,4 +31,11 @@ public class DriverTest extends TestCase
                 }
             });
     }
+    
+    /** a malformed thread count is reported instead of crashing the driver. */
+    public void testBadThreadCount() throws Exception {
+        assertEquals( -1, Driver.run(new String[]{"-threads","many","a.rng","a.xml"}) );
+        assertEquals( -1, Driver.run(new String[]{"-threads","0","a.rng","a.xml"}) );
+        assertEquals( -1, Driver.run(new String[]{"a.rng","a.xml","-threads"}) );
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.grammar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * tests ExpressionPool.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class ExpressionPoolTest extends TestCase {
+    
+    public ExpressionPoolTest( String name ) { super(name); }
+    
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+    
+    public static Test suite() {
+        return new TestSuite(ExpressionPoolTest.class);
+    }
+    
+    private static Expression[] createLeaves( int n ) {
+        Expression[] leaves = new Expression[n];
+        for( int i=0; i<n; i++ )
+            leaves[i] = new ReferenceExp("e"+i,Expression.epsilon);
+        return leaves;
+    }
+    
+    /** the concurrency level is rounded up to a power of two. */
+    public void testConcurrencyLevel() {
+        assertEquals( 1, new ExpressionPool().getConcurrencyLevel() );
+        assertEquals( 1, new ExpressionPool(0).getConcurrencyLevel() );
+        assertEquals( 8, new ExpressionPool(5).getConcurrencyLevel() );
+        assertEquals( 16, new ExpressionPool(new ExpressionPool(),16).getConcurrencyLevel() );
+    }
+    
+    /** a striped pool unifies expressions just like the default one. */
+    public void testUnification() {
+        ExpressionPool pool = new ExpressionPool(8);
+        Expression[] leaves = createLeaves(500);
+        
+        for( int i=0; i<leaves.length-1; i++ ) {
+            Expression s = pool.createSequence(leaves[i],leaves[i+1]);
+            assertSame( s, pool.createSequence(leaves[i],leaves[i+1]) );
+            assertSame( pool.createOneOrMore(s), pool.createOneOrMore(s) );
+            assertNotSame( s, pool.createChoice(leaves[i],leaves[i+1]) );
+        }
+    }
+    
+    /** expressions in the parent pool are visible from a striped child pool. */
+    public void testParentChain() {
+        ExpressionPool parent = new ExpressionPool(4);
+        Expression[] leaves = createLeaves(100);
+        Expression[] fromParent = new Expression[leaves.length-1];
+        for( int i=0; i<fromParent.length; i++ )
+            fromParent[i] = parent.createChoice(leaves[i],leaves[i+1]);
+        
+        ExpressionPool child = new ExpressionPool(parent,16);
+        for( int i=0; i<fromParent.length; i++ )
+            assertSame( fromParent[i], child.createChoice(leaves[i],leaves[i+1]) );
+    }
+    
+    /** many threads unifying the same expressions must get the same objects. */
+    public void testConcurrentUnification() throws Exception {
+        final ExpressionPool pool = new ExpressionPool(16);
+        final Expression[] leaves = createLeaves(300);
+        final int nThreads = 8;
+        final Expression[][] results = new Expression[nThreads][];
+        final Throwable[] errors = new Throwable[1];
+        
+        Thread[] threads = new Thread[nThreads];
+        for( int t=0; t<nThreads; t++ ) {
+            final int id = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        Expression[] r = new Expression[leaves.length*2];
+                        // visit the leaves in a different order in each thread
+                        // to maximize the chance of racing on the same expression.
+                        for( int i=0; i<leaves.length; i++ ) {
+                            int j = (i*(id+1))%leaves.length;
+                            int k = (j+1)%leaves.length;
+                            r[j*2] = pool.createSequence(leaves[j],leaves[k]);
+                            r[j*2+1] = pool.createChoice(r[j*2],leaves[j]);
+                        }
+                        results[id] = r;
+                    } catch( Throwable e ) {
+                        errors[0] = e;
+                    }
+                }
+            };
+        }
+        for( int t=0; t<nThreads; t++ )     threads[t].start();
+        for( int t=0; t<nThreads; t++ )     threads[t].join();
+        
+        assertNull( errors[0] );
+        for( int t=1; t<nThreads; t++ )
+            for( int i=0; i<results[0].length; i++ )
+                if( results[0][i]!=null && results[t][i]!=null )
+                    assertSame( results[0][i], results[t][i] );
+    }
+    
+    /** a striped pool survives the serialization. */
+    public void testSerialization() throws Exception {
+        ExpressionPool pool = new ExpressionPool(4);
+        Expression[] leaves = createLeaves(10);
+        for( int i=0; i<leaves.length-1; i++ )
+            pool.createSequence(leaves[i],leaves[i+1]);
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(pool);
+        oos.close();
+        
+        ExpressionPool restored = (ExpressionPool)new ObjectInputStream(
+            new ByteArrayInputStream(baos.toByteArray())).readObject();
+        assertEquals( 4, restored.getConcurrencyLevel() );
+        
+        // the restored pool must be still usable.
+        Expression[] others = createLeaves(2);
+        Expression s = restored.createSequence(others[0],others[1]);
+        assertSame( s, restored.createSequence(others[0],others[1]) );
+    }
+}
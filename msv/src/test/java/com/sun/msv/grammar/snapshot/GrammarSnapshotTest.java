@@ -0,0 +1,242 @@
+package com.sun.msv.grammar.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.ElementExp;
+import com.sun.msv.grammar.ExpressionPool;
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.grammar.NameClass;
+import com.sun.msv.grammar.NameClassAndExpression;
+import com.sun.msv.grammar.util.ExpressionWalker;
+import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.verifier.Verifier;
+import com.sun.msv.verifier.identity.IDConstraintChecker;
+import com.sun.msv.verifier.regexp.REDocumentDeclaration;
+import com.sun.msv.verifier.util.IgnoreErrorHandler;
+
+/**
+ * writes grammars to snapshots, reads them back and
+ * checks that the restored grammar validates the same way.
+ */
+public class GrammarSnapshotTest extends TestCase {
+
+    public GrammarSnapshotTest( String name ) { super(name); }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(GrammarSnapshotTest.class);
+    }
+
+    private static final String rng =
+        "<grammar xmlns='http://relaxng.org/ns/structure/1.0' "+
+                "datatypeLibrary='http://www.w3.org/2001/XMLSchema-datatypes'>"+
+            "<start><ref name='list'/></start>"+
+            "<define name='list'>"+
+                "<element name='list'>"+
+                    "<optional><attribute name='name'/></optional>"+
+                    "<interleave>"+
+                        "<zeroOrMore>"+
+                            "<element name='item'>"+
+                                "<attribute name='id'><data type='int'><param name='minInclusive'>0</param></data></attribute>"+
+                                "<choice><value>red</value><value>blue</value><list><oneOrMore><data type='token'/></oneOrMore></list></choice>"+
+                            "</element>"+
+                        "</zeroOrMore>"+
+                        "<zeroOrMore><ref name='list'/></zeroOrMore>"+
+                        "<optional><element><anyName><except><name>list</name><name>item</name></except></anyName><text/></element></optional>"+
+                    "</interleave>"+
+                "</element>"+
+            "</define>"+
+        "</grammar>";
+
+    private static final String[] rngValid = {
+        "<list name='a'><item id='1'>red</item><list><item id='2'>a b</item></list><foo>x</foo></list>",
+        "<list/>",
+    };
+    private static final String[] rngInvalid = {
+        "<list name='a'><item id='-1'>red</item></list>",
+        "<list><item id='1'>red</item><foo/><bar/></list>",
+        "<list><item>red</item></list>",
+    };
+
+    private static final String xsd =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' "+
+                "xmlns='urn:test' xmlns:t='urn:test' targetNamespace='urn:test' elementFormDefault='qualified'>"+
+            "<xs:simpleType name='code'>"+
+                "<xs:restriction base='xs:string'><xs:pattern value='[A-Z]{3}'/></xs:restriction>"+
+            "</xs:simpleType>"+
+            "<xs:attributeGroup name='common'>"+
+                "<xs:attribute name='lang' type='xs:language'/>"+
+                "<xs:anyAttribute namespace='##other' processContents='skip'/>"+
+            "</xs:attributeGroup>"+
+            "<xs:complexType name='base'>"+
+                "<xs:sequence><xs:element name='label' type='xs:string'/></xs:sequence>"+
+                "<xs:attribute name='code' type='code' use='required'/>"+
+                "<xs:attributeGroup ref='common'/>"+
+            "</xs:complexType>"+
+            "<xs:complexType name='derived'>"+
+                "<xs:complexContent><xs:extension base='base'>"+
+                    "<xs:sequence><xs:element name='note' type='xs:string' minOccurs='0' maxOccurs='3'/></xs:sequence>"+
+                "</xs:extension></xs:complexContent>"+
+            "</xs:complexType>"+
+            "<xs:element name='entry' type='base'/>"+
+            "<xs:element name='special' type='derived' substitutionGroup='entry'/>"+
+            "<xs:element name='ref'><xs:complexType><xs:attribute name='to' type='code'/></xs:complexType></xs:element>"+
+            "<xs:element name='root'>"+
+                "<xs:complexType><xs:sequence>"+
+                    "<xs:element ref='entry' maxOccurs='unbounded'/>"+
+                    "<xs:element ref='ref' minOccurs='0' maxOccurs='unbounded'/>"+
+                    "<xs:any namespace='##other' processContents='lax' minOccurs='0'/>"+
+                "</xs:sequence></xs:complexType>"+
+                "<xs:key name='entryKey'>"+
+                    "<xs:selector xpath='t:entry|t:special'/><xs:field xpath='@code'/>"+
+                "</xs:key>"+
+                "<xs:keyref name='entryRef' refer='entryKey'>"+
+                    "<xs:selector xpath='t:ref'/><xs:field xpath='@to'/>"+
+                "</xs:keyref>"+
+            "</xs:element>"+
+        "</xs:schema>";
+
+    private static final String[] xsdValid = {
+        "<root xmlns='urn:test'>"+
+            "<entry code='ABC' lang='en'><label>a</label></entry>"+
+            "<special code='DEF' xmlns:o='urn:other' o:x='1'><label>b</label><note>n</note><note>m</note></special>"+
+            "<ref to='ABC'/><ref to='DEF'/>"+
+        "</root>",
+    };
+    private static final String[] xsdInvalid = {
+        // bad pattern
+        "<root xmlns='urn:test'><entry code='abc'><label>a</label></entry></root>",
+        // duplicate key
+        "<root xmlns='urn:test'><entry code='ABC'><label>a</label></entry><entry code='ABC'><label>b</label></entry></root>",
+        // dangling keyref
+        "<root xmlns='urn:test'><entry code='ABC'><label>a</label></entry><ref to='XYZ'/></root>",
+        // too many notes
+        "<root xmlns='urn:test'><special code='ABC'><label>a</label><note/><note/><note/><note/></special></root>",
+        // note is not allowed in the base type
+        "<root xmlns='urn:test'><entry code='ABC'><label>a</label><note/></entry></root>",
+    };
+
+    private static Grammar load( String schema ) throws Exception {
+        Grammar g = GrammarLoader.loadSchema( new InputSource(new StringReader(schema)) );
+        assertNotNull(g);
+        return g;
+    }
+
+    private static Grammar roundTrip( Grammar g ) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        GrammarSnapshot.write(g,baos);
+        return GrammarSnapshot.read(new ByteArrayInputStream(baos.toByteArray()),new ExpressionPool());
+    }
+
+    private static boolean validate( Grammar g, String doc ) throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        Verifier verifier;
+        if( g instanceof XMLSchemaGrammar )
+            verifier = new IDConstraintChecker((XMLSchemaGrammar)g,new IgnoreErrorHandler());
+        else
+            verifier = new Verifier(new REDocumentDeclaration(g),new IgnoreErrorHandler());
+        reader.setContentHandler(verifier);
+        reader.parse(new InputSource(new StringReader(doc)));
+        return verifier.isValid();
+    }
+
+    private static void checkSame( Grammar original, Grammar restored, String[] valid, String[] invalid ) throws Exception {
+        for( int i=0; i<valid.length; i++ ) {
+            assertTrue( valid[i], validate(original,valid[i]) );
+            assertTrue( valid[i], validate(restored,valid[i]) );
+        }
+        for( int i=0; i<invalid.length; i++ ) {
+            assertFalse( invalid[i], validate(original,invalid[i]) );
+            assertFalse( invalid[i], validate(restored,invalid[i]) );
+        }
+    }
+
+    private static boolean isNative( Grammar g ) throws IOException {
+        return SnapshotWriter.create(g,new ObjectOutputStream(new ByteArrayOutputStream()))!=null;
+    }
+
+    public void testRELAXNG() throws Exception {
+        Grammar g = load(rng);
+        assertTrue( isNative(g) );
+
+        Grammar r = roundTrip(g);
+        assertSame( g.getClass(), r.getClass() );
+        checkSame( g, r, rngValid, rngInvalid );
+
+        // a restored grammar can be written again.
+        checkSame( g, roundTrip(r), rngValid, rngInvalid );
+    }
+
+    public void testXMLSchema() throws Exception {
+        Grammar g = load(xsd);
+        assertTrue( isNative(g) );
+
+        XMLSchemaGrammar r = (XMLSchemaGrammar)roundTrip(g);
+        assertNotNull( r.getByNamespace("urn:test") );
+        assertNotNull( r.getByNamespace("urn:test").identityConstraints.get("entryKey") );
+        assertNotNull( r.getByNamespace("urn:test").complexTypes.get("derived") );
+        checkSame( g, r, xsdValid, xsdInvalid );
+        checkSame( g, roundTrip(r), xsdValid, xsdInvalid );
+    }
+
+    /** anyName is restored as the shared instance. */
+    public void testAnyName() throws Exception {
+        Grammar r = roundTrip(load(
+            "<element xmlns='http://relaxng.org/ns/structure/1.0'><anyName/><empty/></element>"));
+        final NameClass[] found = new NameClass[1];
+        r.getTopLevel().visit( new ExpressionWalker() {
+            public void onElement( ElementExp exp ) {
+                found[0] = ((NameClassAndExpression)exp).getNameClass();
+            }
+        });
+        assertSame( NameClass.ALL, found[0] );
+    }
+
+    public void testPoolIsUsed() throws Exception {
+        ExpressionPool pool = new ExpressionPool();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        GrammarSnapshot.write(load(rng),baos);
+        Grammar r = GrammarSnapshot.read(new ByteArrayInputStream(baos.toByteArray()),pool);
+        assertSame( pool, r.getPool() );
+    }
+
+    public void testCorruptedSnapshot() throws Exception {
+        try {
+            GrammarSnapshot.read(new ByteArrayInputStream(new byte[]{1,2,3,4,5,6,7,8}));
+            fail();
+        } catch( IOException e ) {
+            ; // as expected
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        GrammarSnapshot.write(load(rng),baos);
+        byte[] data = baos.toByteArray();
+        byte[] truncated = new byte[data.length/2];
+        System.arraycopy(data,0,truncated,0,truncated.length);
+        try {
+            GrammarSnapshot.read(new ByteArrayInputStream(truncated));
+            fail();
+        } catch( IOException e ) {
+            ; // as expected
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.grammar.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.sun.msv.grammar.ChoiceNameClass;
+import com.sun.msv.grammar.DifferenceNameClass;
+import com.sun.msv.grammar.NameClass;
+import com.sun.msv.grammar.NamespaceNameClass;
+import com.sun.msv.grammar.NotNameClass;
+import com.sun.msv.grammar.SimpleNameClass;
+
+/**
+ * tests {@link SymbolTable}.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class SymbolTableTest extends TestCase {
+
+    public SymbolTableTest( String name ) { super(name); }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(SymbolTableTest.class);
+    }
+
+    public void testRegister() {
+        SymbolTable.Symbol s = SymbolTable.register("urn:symbol-test","a");
+        assertSame(s,SymbolTable.register("urn:symbol-test","a"));
+        // strings that are equal but not identical find the same symbol.
+        assertSame(s,SymbolTable.get(new String("urn:symbol-test"),new String("a")));
+        assertNotSame(s,SymbolTable.register("urn:symbol-test","b"));
+        assertNull(SymbolTable.get("urn:symbol-test","unregistered"));
+        assertNull(SymbolTable.get(NameClass.NAMESPACE_WILDCARD,"a"));
+    }
+
+    public void testManyNames() {
+        SymbolTable.Symbol[] symbols = new SymbolTable.Symbol[5000];
+        for( int i=0; i<symbols.length; i++ )
+            symbols[i] = SymbolTable.register("urn:symbol-test-many","e"+i);
+        // symbols survive the growth of the table.
+        for( int i=0; i<symbols.length; i++ )
+            assertSame(symbols[i],SymbolTable.get("urn:symbol-test-many","e"+i));
+    }
+
+    public void testAccepts() throws Exception {
+        SimpleNameClass nc = new SimpleNameClass("urn:symbol-test","c");
+        // creating a name class doesn't register the name.
+        assertNull(SymbolTable.get("urn:symbol-test","c"));
+        SymbolTable.Symbol c = nc.getSymbol();
+        SymbolTable.Symbol d = SymbolTable.register("urn:symbol-test","d");
+        assertSame(c,SymbolTable.get("urn:symbol-test","c"));
+
+        assertTrue(SymbolTable.accepts(nc,c,"urn:symbol-test","c"));
+        assertFalse(SymbolTable.accepts(nc,d,"urn:symbol-test","d"));
+        assertFalse(SymbolTable.accepts(nc,null,"urn:symbol-test","x"));
+        assertTrue(SymbolTable.accepts(nc,null,"urn:symbol-test",NameClass.LOCALNAME_WILDCARD));
+        assertTrue(SymbolTable.accepts(new NamespaceNameClass(new String("urn:symbol-test")),d,"urn:symbol-test","d"));
+        assertFalse(SymbolTable.accepts(new NamespaceNameClass("urn:other"),d,"urn:symbol-test","d"));
+        assertTrue(SymbolTable.accepts(new ChoiceNameClass(new SimpleNameClass("urn:symbol-test","d"),nc),c,"urn:symbol-test","c"));
+        assertFalse(SymbolTable.accepts(new NotNameClass(nc),c,"urn:symbol-test","c"));
+        assertTrue(SymbolTable.accepts(new DifferenceNameClass(NameClass.ALL,nc),d,"urn:symbol-test","d"));
+
+        // a deserialized name class finds its symbol again.
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(nc);
+        oos.close();
+        SimpleNameClass copy = (SimpleNameClass)new ObjectInputStream(
+            new ByteArrayInputStream(baos.toByteArray())).readObject();
+        assertSame(c,copy.getSymbol());
+        assertTrue(copy.accepts(c));
+    }
+
+    public void testLazyRegistration() {
+        SimpleNameClass nc = new SimpleNameClass("urn:symbol-test-lazy","e");
+        assertFalse(SymbolTable.accepts(nc,null,"urn:symbol-test-lazy","f"));
+        assertNull(SymbolTable.get("urn:symbol-test-lazy","e"));
+        // a name that is accepted is registered, so that it is compared as a symbol next time.
+        assertTrue(SymbolTable.accepts(nc,null,"urn:symbol-test-lazy","e"));
+        assertSame(nc.getSymbol(),SymbolTable.get("urn:symbol-test-lazy","e"));
+        assertSame(nc.getSymbol(),SymbolTable.register(
+            new ChoiceNameClass(new SimpleNameClass("urn:symbol-test-lazy","g"),nc),"urn:symbol-test-lazy","e"));
+        assertNull(SymbolTable.register(NameClass.ALL,"urn:symbol-test-lazy","e"));
+    }
+
+    public void testDiscard() throws Exception {
+        SymbolTable.Symbol kept = SymbolTable.register("urn:symbol-test-discard","kept");
+        for( int i=0; i<100; i++ )
+            SymbolTable.register("urn:symbol-test-discard","e"+i);
+
+        // symbols that are not used by anyone are discarded.
+        for( int i=0; i<50 && SymbolTable.get("urn:symbol-test-discard","e0")!=null; i++ ) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(SymbolTable.get("urn:symbol-test-discard","e0"));
+        assertSame(kept,SymbolTable.get("urn:symbol-test-discard","kept"));
+
+        // the discarded symbols are removed when another name is registered.
+        int size = SymbolTable.size();
+        for( int i=0; i<50 && SymbolTable.size()>=size; i++ ) {
+            SymbolTable.register("urn:symbol-test-discard","new"+i);
+            Thread.sleep(10);
+        }
+        assertTrue(SymbolTable.size()<size);
+
+        SymbolTable.Symbol e0 = SymbolTable.register("urn:symbol-test-discard","e0");
+        assertTrue(e0.id!=kept.id);
+    }
+}
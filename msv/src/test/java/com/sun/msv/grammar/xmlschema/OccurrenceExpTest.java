@@ -0,0 +1,179 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.grammar.xmlschema;
+
+import java.io.StringReader;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.ElementExp;
+import com.sun.msv.grammar.Expression;
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.grammar.OtherExp;
+import com.sun.msv.grammar.util.ExpressionWalker;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.verifier.DocumentDeclaration;
+import com.sun.msv.verifier.Verifier;
+import com.sun.msv.verifier.regexp.CompiledDocumentDeclaration;
+import com.sun.msv.verifier.regexp.REDocumentDeclaration;
+
+/**
+ * tests {@link OccurrenceExp} and the validation of minOccurs/maxOccurs.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class OccurrenceExpTest extends TestCase {
+
+    public OccurrenceExpTest( String name ) { super(name); }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(OccurrenceExpTest.class);
+    }
+
+    private static Grammar load( String particle ) throws Exception {
+        return GrammarLoader.loadSchema( new InputSource(new StringReader(
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"+
+                "<xs:element name='root'><xs:complexType><xs:sequence>"+
+                    particle+
+                    "<xs:element name='z' minOccurs='0'/>"+
+                "</xs:sequence></xs:complexType></xs:element>"+
+            "</xs:schema>")) );
+    }
+
+    private static String occurs( int min, int max ) {
+        return " minOccurs='"+min+"' maxOccurs='"+(max==-1?"unbounded":String.valueOf(max))+"'";
+    }
+
+    private static boolean validate( DocumentDeclaration decl, String doc ) throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        Verifier verifier = new Verifier(decl,null);
+        reader.setContentHandler(verifier);
+        reader.parse(new InputSource(new StringReader(doc)));
+        return verifier.isValid();
+    }
+
+    /**
+     * validates documents that repeat the unit from 0 to max+2 times,
+     * and checks that the valid ones are exactly those in the given counts.
+     */
+    private static void check( String particle, String unit, int max, boolean[] expected ) throws Exception {
+        Grammar g = load(particle);
+        DocumentDeclaration[] decls = new DocumentDeclaration[]{
+            new REDocumentDeclaration(g), new CompiledDocumentDeclaration(g) };
+
+        for( int c=0; c<=max+2; c++ ) {
+            StringBuffer doc = new StringBuffer("<root>");
+            for( int i=0; i<c; i++ )
+                doc.append(unit);
+            boolean valid = c<expected.length && expected[c];
+            for( int d=0; d<decls.length; d++ ) {
+                assertEquals( particle+" x"+c, valid, validate(decls[d],doc+"</root>") );
+                assertEquals( particle+" x"+c+",z", valid, validate(decls[d],doc+"<z/></root>") );
+            }
+        }
+    }
+
+    private static boolean[] range( int min, int max, int size ) {
+        boolean[] r = new boolean[size];
+        for( int i=min; i<size && (max==-1 || i<=max); i++ )
+            r[i] = true;
+        return r;
+    }
+
+    private static final int[][] bounds = {
+        {0,2}, {2,2}, {3,6}, {0,5}, {7,8}, {0,100}, {64,64}, {2,-1}, {5,-1}, {0,0},
+    };
+
+    public void testElement() throws Exception {
+        for( int i=0; i<bounds.length; i++ ) {
+            int min=bounds[i][0], max=bounds[i][1];
+            int top = max==-1 ? min+5 : max;
+            check( "<xs:element name='a'"+occurs(min,max)+"/>", "<a/>", top, range(min,max,top+3) );
+        }
+    }
+
+    /** the item has variable length. */
+    public void testSequence() throws Exception {
+        for( int i=0; i<bounds.length; i++ ) {
+            int min=bounds[i][0], max=bounds[i][1];
+            int top = max==-1 ? min+5 : max;
+            String particle = "<xs:sequence"+occurs(min,max)+">"+
+                "<xs:element name='a'/><xs:element name='b' minOccurs='0'/></xs:sequence>";
+            check( particle, "<a/><b/>", top, range(min,max,top+3) );
+            check( particle, "<a/>", top, range(min,max,top+3) );
+        }
+    }
+
+    /** the item accepts the empty sequence, so minOccurs doesn't matter. */
+    public void testOptionalItem() throws Exception {
+        for( int i=0; i<bounds.length; i++ ) {
+            int min=bounds[i][0], max=bounds[i][1];
+            int top = max==-1 ? min+5 : max;
+            String particle = "<xs:sequence"+occurs(min,max)+">"+
+                "<xs:element name='a' minOccurs='0'/><xs:element name='b' minOccurs='0'/></xs:sequence>";
+            check( particle, "<a/><b/>", top, range(0,max,top+3) );
+            check( particle, "<b/>", top, range(0,max,top+3) );
+        }
+    }
+
+    public void testNested() throws Exception {
+        String particle = "<xs:sequence"+occurs(1,3)+">"+
+            "<xs:element name='a'"+occurs(2,2)+"/></xs:sequence>";
+        boolean[] expected = new boolean[9];
+        expected[2] = expected[4] = expected[6] = true;
+        check( particle, "<a/>", 6, expected );
+
+        particle = "<xs:choice"+occurs(2,4)+">"+
+            "<xs:element name='a'"+occurs(0,3)+"/><xs:element name='b'/></xs:choice>";
+        check( particle, "<a/>", 12, range(0,12,15) );
+        check( particle, "<b/>", 4, range(0,4,7) );
+    }
+
+    /** the expression of a large maxOccurs doesn't repeat the item. */
+    public void testLargeBounds() throws Exception {
+        Grammar g = load("<xs:element name='a'"+occurs(100000,200000)+"/>");
+        final Map<Expression,Expression> visited = new IdentityHashMap<Expression,Expression>();
+        g.getTopLevel().visit(new ExpressionWalker() {
+            public void onElement( ElementExp exp ) {
+                if( visited.put(exp,exp)==null )
+                    super.onElement(exp);
+            }
+            public void onOther( OtherExp exp ) {
+                if( visited.put(exp,exp)==null ) {
+                    super.onOther(exp);
+                    if( exp instanceof OccurrenceExp )
+                        ((OccurrenceExp)exp).itemExp.visit(this);
+                }
+            }
+        });
+        assertTrue( visited.size()<200 );
+
+        StringBuffer doc = new StringBuffer("<root>");
+        for( int i=0; i<100000; i++ )
+            doc.append("<a/>");
+        assertTrue( validate(new REDocumentDeclaration(g),doc+"</root>") );
+        assertFalse( validate(new REDocumentDeclaration(g),"<root><a/></root>") );
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+
+import com.sun.msv.reader.xmlschema.XMLSchemaReader;
+
+/**
+ * tests how {@link GrammarReader} parses included documents.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class GrammarReaderTest extends TestCase {
+
+    public GrammarReaderTest( String name ) { super(name); }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(GrammarReaderTest.class);
+    }
+
+    private File dir;
+
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("msv",".dir");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    protected void tearDown() {
+        File[] files = dir.listFiles();
+        for( int i=0; i<files.length; i++ )
+            files[i].delete();
+        dir.delete();
+    }
+
+    private String write( String name, String content ) throws Exception {
+        File f = new File(dir,name);
+        Writer w = new OutputStreamWriter(new FileOutputStream(f),"UTF-8");
+        w.write(content);
+        w.close();
+        return f.toURI().toString();
+    }
+
+    private static String schema( String body ) {
+        return "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n"+body+"</xs:schema>\n";
+    }
+
+    /** counts the parsers created by the reader. */
+    private static class CountingFactory extends SAXParserFactory {
+        private final SAXParserFactory core = SAXParserFactory.newInstance();
+        int count;
+
+        CountingFactory() {
+            core.setNamespaceAware(true);
+            setNamespaceAware(true);
+        }
+
+        public SAXParser newSAXParser() throws ParserConfigurationException, SAXException {
+            count++;
+            return core.newSAXParser();
+        }
+        public void setFeature( String name, boolean value )
+                throws ParserConfigurationException, SAXNotRecognizedException, SAXNotSupportedException {
+            core.setFeature(name,value);
+        }
+        public boolean getFeature( String name )
+                throws ParserConfigurationException, SAXNotRecognizedException, SAXNotSupportedException {
+            return core.getFeature(name);
+        }
+    }
+
+    /** errors reported by a load. */
+    private static class Recorder implements GrammarReaderController {
+        final List<String> errors = new ArrayList<String>();
+        public void warning( Locator[] locs, String errorMessage ) {}
+        public void error( Locator[] locs, String errorMessage, Exception nestedException ) {
+            StringBuffer buf = new StringBuffer(errorMessage);
+            for( int i=0; i<locs.length; i++ )
+                if( locs[i]!=null )
+                    buf.append(" @"+locs[i].getSystemId());
+            errors.add(buf.toString());
+        }
+        public InputSource resolveEntity( String p, String s ) { return null; }
+    }
+
+    public void testIncludes() throws Exception {
+        String nested = write("nested.xsd",schema("  <xs:element name='n'/>\n"));
+        String first = write("first.xsd",schema(
+            "  <xs:include schemaLocation='nested.xsd'/>\n"+
+            "  <xs:element name='a'/>\n"));
+        String broken = write("broken.xsd","<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n<xs:element name='b'>\n");
+        String last = write("last.xsd",schema("  <xs:element name='c'/>\n"));
+        String root = write("root.xsd",schema(
+            "  <xs:include schemaLocation='first.xsd'/>\n"+
+            "  <xs:include schemaLocation='broken.xsd'/>\n"+
+            "  <xs:include schemaLocation='last.xsd'/>\n"));
+
+        CountingFactory factory = new CountingFactory();
+        Recorder controller = new Recorder();
+        XMLSchemaReader reader = new XMLSchemaReader(controller,factory);
+        reader.parse(root);
+
+        // the malformed document is reported.
+        assertFalse(controller.errors.isEmpty());
+        for( int i=0; i<controller.errors.size(); i++ )
+            assertTrue( controller.errors.get(i), controller.errors.get(i).indexOf("broken.xsd")>=0 );
+
+        // the sibling after the malformed document is still loaded.
+        List<String> parsed = reader.getParsedDocuments();
+        assertEquals(5,parsed.size());
+        assertEquals(root,parsed.get(0));
+        assertEquals(first,parsed.get(1));
+        assertEquals(nested,parsed.get(2));
+        assertEquals(broken,parsed.get(3));
+        assertEquals(last,parsed.get(4));
+        assertNotNull(reader.getOrCreateSchema("").elementDecls._get("c"));
+        assertNotNull(reader.getOrCreateSchema("").elementDecls._get("n"));
+
+        // one parser for each level of nesting. The reader that saw the
+        // malformed document is discarded, so the last one is reused for "last.xsd".
+        assertEquals(3,factory.count);
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.reader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.reader.xmlschema.XMLSchemaReader;
+import com.sun.msv.verifier.Verifier;
+import com.sun.msv.verifier.regexp.REDocumentDeclaration;
+
+/**
+ * tests {@link SchemaDocumentCache}.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class SchemaDocumentCacheTest extends TestCase {
+
+    public SchemaDocumentCacheTest( String name ) { super(name); }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(SchemaDocumentCacheTest.class);
+    }
+
+    private File dir;
+
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("msv",".dir");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    protected void tearDown() {
+        File[] files = dir.listFiles();
+        for( int i=0; i<files.length; i++ )
+            files[i].delete();
+        dir.delete();
+    }
+
+    private String write( String name, String content ) throws Exception {
+        File f = new File(dir,name);
+        Writer w = new OutputStreamWriter(new FileOutputStream(f),"UTF-8");
+        w.write(content);
+        w.close();
+        return f.toURI().toString();
+    }
+
+    private static final String COMMON =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:common'>\n"+
+        "  <xs:simpleType name='code'>\n"+
+        "    <xs:restriction base='xs:string'><xs:pattern value='[A-Z]{3}'/></xs:restriction>\n"+
+        "  </xs:simpleType>\n"+
+        "</xs:schema>\n";
+
+    private String writeImporter( String name, String root ) throws Exception {
+        return write(name,
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:c='urn:common'>\n"+
+            "  <xs:import namespace='urn:common' schemaLocation='common.xsd'/>\n"+
+            "  <xs:element name='"+root+"' type='c:code'/>\n"+
+            "</xs:schema>\n");
+    }
+
+    /** error locations reported by a load. */
+    private static class Recorder implements GrammarReaderController {
+        final List<String> errors = new ArrayList<String>();
+        public void warning( Locator[] locs, String errorMessage ) {}
+        public void error( Locator[] locs, String errorMessage, Exception nestedException ) {
+            StringBuffer buf = new StringBuffer(errorMessage);
+            for( int i=0; i<locs.length; i++ )
+                if( locs[i]!=null )
+                    buf.append(" @"+locs[i].getSystemId()+":"+locs[i].getLineNumber());
+            errors.add(buf.toString());
+        }
+        public InputSource resolveEntity( String p, String s ) { return null; }
+    }
+
+    private static Grammar load( String url, SchemaDocumentCache cache, GrammarReaderController controller ) throws Exception {
+        GrammarLoader loader = new GrammarLoader();
+        loader.setController(controller);
+        loader.setDocumentCache(cache);
+        return loader.parse(url);
+    }
+
+    private static boolean validate( Grammar g, String doc ) throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        Verifier verifier = new Verifier(new REDocumentDeclaration(g),null);
+        reader.setContentHandler(verifier);
+        reader.parse(new InputSource(new StringReader(doc)));
+        return verifier.isValid();
+    }
+
+    public void testSharedImport() throws Exception {
+        write("common.xsd",COMMON);
+        String a = writeImporter("a.xsd","a");
+        String b = writeImporter("b.xsd","b");
+
+        SchemaDocumentCache cache = new SchemaDocumentCache();
+        Grammar ga = load(a,cache,new Recorder());
+        assertEquals(0,cache.getHitCount());
+        assertEquals(1,cache.getMissCount());
+
+        // the imported document is not parsed again.
+        Grammar gb = load(b,cache,new Recorder());
+        assertEquals(1,cache.getHitCount());
+        assertEquals(1,cache.getMissCount());
+
+        assertTrue(validate(ga,"<a>ABC</a>"));
+        assertFalse(validate(ga,"<a>abc</a>"));
+        assertTrue(validate(gb,"<b>XYZ</b>"));
+        assertFalse(validate(gb,"<b>XY</b>"));
+    }
+
+    public void testParallelLoading() throws Exception {
+        write("common.xsd",COMMON);
+        StringBuffer root = new StringBuffer(
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n");
+        for( int i=0; i<8; i++ ) {
+            write("n"+i+".xsd",
+                "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:c='urn:common'"+
+                " targetNamespace='urn:n"+i+"'>\n"+
+                "  <xs:import namespace='urn:common' schemaLocation='common.xsd'/>\n"+
+                "  <xs:element name='e' type='c:code'/>\n"+
+                "</xs:schema>\n");
+            root.append("  <xs:import namespace='urn:n"+i+"' schemaLocation='n"+i+".xsd'/>\n");
+        }
+        root.append("</xs:schema>\n");
+        String url = write("root.xsd",root.toString());
+
+        SchemaDocumentCache cache = new SchemaDocumentCache();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Grammar g;
+        try {
+            GrammarLoader loader = new GrammarLoader();
+            loader.setController(new Recorder());
+            loader.setDocumentCache(cache);
+            loader.setLoadingExecutor(executor);
+            g = loader.parse(url);
+        } finally {
+            executor.shutdown();
+        }
+
+        // every included document was parsed once, in advance.
+        // The root is parsed only by the reader.
+        assertEquals(9,cache.size());
+        assertEquals(9,cache.getMissCount());
+        assertEquals(9,cache.getHitCount());
+
+        assertTrue(validate(g,"<e xmlns='urn:n5'>ABC</e>"));
+        assertFalse(validate(g,"<e xmlns='urn:n5'>abc</e>"));
+    }
+
+    public void testPrefetchedDocuments() throws Exception {
+        String c = write("c.xsd",
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n"+
+            "  <xs:element name='c'/>\n"+
+            "</xs:schema>\n");
+        String a = write("a.xsd",
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n"+
+            "  <xs:include schemaLocation='c.xsd'/>\n"+
+            "  <xs:element name='a'/>\n"+
+            "</xs:schema>\n");
+        String b = write("b.xsd",
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n"+
+            "  <xs:element name='b'/>\n"+
+            "</xs:schema>\n");
+        String root = write("root.xsd",
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>\n"+
+            "  <xs:include schemaLocation='a.xsd'/>\n"+
+            "  <xs:include schemaLocation='b.xsd'/>\n"+
+            "</xs:schema>\n");
+
+        // system ids of the documents found in the cache.
+        final List<String> hits = new ArrayList<String>();
+        SchemaDocumentCache cache = new SchemaDocumentCache() {
+            public Document get( String key ) {
+                Document doc = super.get(key);
+                if( doc!=null ) {
+                    synchronized(hits) {
+                        hits.add(key.substring(0,key.lastIndexOf('#')));
+                    }
+                }
+                return doc;
+            }
+        };
+
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        final int[] tasks = new int[1];
+        Executor executor = new Executor() {
+            public void execute( Runnable task ) {
+                synchronized(tasks) {
+                    tasks[0]++;
+                }
+                pool.execute(task);
+            }
+        };
+
+        Recorder controller = new Recorder();
+        XMLSchemaReader reader = new XMLSchemaReader(controller);
+        try {
+            reader.setDocumentCache(cache);
+            reader.setLoadingExecutor(executor);
+            reader.parse(root);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(controller.errors.toString(),0,controller.errors.size());
+        assertNotNull(reader.getResult());
+
+        // the included documents are parsed by the tasks, the root only by the reader,
+        // and the reader reads every included document from the cache.
+        assertEquals(3,tasks[0]);
+        assertEquals(4,cache.getMissCount());
+        assertEquals(3,hits.size());
+        assertEquals(a,hits.get(0));
+        assertEquals(c,hits.get(1));
+        assertEquals(b,hits.get(2));
+    }
+
+    public void testModifiedDocument() throws Exception {
+        write("common.xsd",COMMON);
+        String a = writeImporter("a.xsd","a");
+
+        SchemaDocumentCache cache = new SchemaDocumentCache();
+        load(a,cache,new Recorder());
+        write("common.xsd",COMMON.replace("{3}","{2}"));
+        Grammar g = load(a,cache,new Recorder());
+
+        // the changed document is not taken from the cache.
+        assertEquals(0,cache.getHitCount());
+        assertEquals(2,cache.getMissCount());
+        assertTrue(validate(g,"<a>AB</a>"));
+        assertFalse(validate(g,"<a>ABC</a>"));
+    }
+
+    public void testErrorLocation() throws Exception {
+        write("common.xsd",
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:common'>\n"+
+            "  <xs:simpleType name='code'>\n"+
+            "    <xs:restriction base='xs:undefined'/>\n"+
+            "  </xs:simpleType>\n"+
+            "</xs:schema>\n");
+        String a = writeImporter("a.xsd","a");
+
+        SchemaDocumentCache cache = new SchemaDocumentCache();
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        assertNull(load(a,cache,first));
+        assertNull(load(a,cache,second));
+
+        assertEquals(1,cache.getHitCount());
+        assertFalse(first.errors.isEmpty());
+        assertEquals(first.errors,second.errors);
+    }
+
+    public void testMalformedDocument() throws Exception {
+        write("common.xsd","<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>");
+        String a = writeImporter("a.xsd","a");
+
+        SchemaDocumentCache cache = new SchemaDocumentCache();
+        Recorder controller = new Recorder();
+        assertNull(load(a,cache,controller));
+        assertFalse(controller.errors.isEmpty());
+        // a document with a well-formedness error is not kept.
+        assertEquals(0,cache.size());
+    }
+}
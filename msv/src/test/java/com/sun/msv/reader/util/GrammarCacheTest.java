@@ -0,0 +1,166 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.reader.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.sun.msv.grammar.ExpressionPool;
+import com.sun.msv.grammar.Grammar;
+
+/**
+ * tests {@link GrammarCache}.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class GrammarCacheTest extends TestCase {
+
+    public GrammarCacheTest( String name ) { super(name); }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(GrammarCacheTest.class);
+    }
+
+    private File dir;
+
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("msv",".dir");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    protected void tearDown() {
+        File[] files = dir.listFiles();
+        for( int i=0; i<files.length; i++ )
+            files[i].delete();
+        dir.delete();
+    }
+
+    private File write( String name, String content ) throws Exception {
+        File f = new File(dir,name);
+        Writer w = new OutputStreamWriter(new FileOutputStream(f),"UTF-8");
+        w.write(content);
+        w.close();
+        return f;
+    }
+
+    private static String included( String elementName ) {
+        return "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"+
+                "<xs:element name='"+elementName+"'/>"+
+            "</xs:schema>";
+    }
+
+    private String writeSchema() throws Exception {
+        write("included.xsd",included("a"));
+        return write("main.xsd",
+            "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"+
+                "<xs:include schemaLocation='included.xsd'/>"+
+            "</xs:schema>").toURI().toString();
+    }
+
+    private static Grammar load( String url, GrammarCache cache ) throws Exception {
+        GrammarLoader loader = new GrammarLoader();
+        loader.setGrammarCache(cache);
+        return loader.parse(url);
+    }
+
+    public void testRepeatedLoad() throws Exception {
+        String url = writeSchema();
+        GrammarCache cache = new GrammarCache();
+
+        Grammar g = load(url,cache);
+        assertNotNull(g);
+        assertSame(g,load(url,cache));
+        assertEquals(1,cache.getHitCount());
+        assertEquals(1,cache.getMissCount());
+    }
+
+    public void testChangedInclude() throws Exception {
+        String url = writeSchema();
+        GrammarCache cache = new GrammarCache();
+
+        Grammar g = load(url,cache);
+        File f = write("included.xsd",included("b"));
+        f.setLastModified(f.lastModified()+10000);
+
+        Grammar g2 = load(url,cache);
+        assertNotNull(g2);
+        assertNotSame(g,g2);
+        assertEquals(1,cache.getReloadCount());
+        assertSame(g2,load(url,cache));
+    }
+
+    public void testTouchedInclude() throws Exception {
+        String url = writeSchema();
+        GrammarCache cache = new GrammarCache();
+
+        Grammar g = load(url,cache);
+        File f = new File(dir,"included.xsd");
+        f.setLastModified(f.lastModified()+10000);
+
+        // the content is the same, so the grammar is still up to date.
+        assertSame(g,load(url,cache));
+        assertEquals(0,cache.getReloadCount());
+    }
+
+    /**
+     * a document changed right after it was read is detected
+     * even if its time stamp looks the same.
+     */
+    public void testChangedWithinTimestampPrecision() throws Exception {
+        String url = writeSchema();
+        File f = new File(dir,"included.xsd");
+        long t = f.lastModified();
+        GrammarCache cache = new GrammarCache();
+
+        Grammar g = load(url,cache);
+        write("included.xsd",included("b"));
+        f.setLastModified(t);
+
+        Grammar g2 = load(url,cache);
+        assertNotNull(g2);
+        assertNotSame(g,g2);
+        assertEquals(1,cache.getReloadCount());
+    }
+
+    /** schemas given by file names are cached, too. */
+    public void testFileName() throws Exception {
+        writeSchema();
+        String name = new File(dir,"main.xsd").getPath();
+        GrammarCache cache = new GrammarCache();
+
+        Grammar g = load(name,cache);
+        assertNotNull(g);
+        assertSame(g,load(name,cache));
+    }
+
+    public void testPool() throws Exception {
+        String url = writeSchema();
+        GrammarCache cache = new GrammarCache();
+
+        GrammarLoader loader = new GrammarLoader();
+        loader.setGrammarCache(cache);
+        loader.setPool(new ExpressionPool());
+        assertNotNull(loader.parse(url));
+
+        // a grammar built in a given pool is not cached.
+        assertEquals(0,cache.size());
+    }
+}
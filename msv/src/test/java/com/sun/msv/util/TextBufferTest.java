@@ -0,0 +1,103 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * tests TextBuffer.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class TextBufferTest extends TestCase {
+
+    public TextBufferTest( String name ) { super(name); }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(TextBufferTest.class);
+    }
+
+    private static void append( TextBuffer buf, String s ) {
+        char[] ch = ("[["+s+"]]").toCharArray();
+        buf.append(ch,2,s.length());
+    }
+
+    public void testAppend() {
+        TextBuffer buf = new TextBuffer();
+        assertEquals( 0, buf.length() );
+        assertEquals( "", buf.toString() );
+
+        append(buf,"abc");
+        append(buf,"def");
+        assertEquals( "abcdef", buf.toString() );
+        assertEquals( 6, buf.length() );
+        assertEquals( 'd', buf.charAt(3) );
+        assertEquals( "cd", buf.subSequence(2,4).toString() );
+
+        buf.clear();
+        assertEquals( "", buf.toString() );
+
+        // longer than the initial capacity
+        StringBuffer expected = new StringBuffer();
+        for( int i=0; i<200; i++ ) {
+            append(buf,"x"+i);
+            expected.append("x"+i);
+        }
+        assertEquals( expected.toString(), buf.toString() );
+    }
+
+    public void testWhitespace() {
+        TextBuffer buf = new TextBuffer();
+        assertTrue( buf.isWhitespace() );
+        append(buf," \t\r\n");
+        assertTrue( buf.isWhitespace() );
+        append(buf," ");
+        assertFalse( buf.isWhitespace() );
+        append(buf,"\n");
+        assertFalse( buf.isWhitespace() );
+
+        // the state is reset by clear()
+        buf.clear();
+        assertTrue( buf.isWhitespace() );
+        append(buf,"\n  ");
+        append(buf,"  x");
+        assertFalse( buf.isWhitespace() );
+    }
+
+    /** short literals are reused, long ones are not. */
+    public void testLiteralCache() {
+        TextBuffer buf = new TextBuffer();
+        append(buf,"true");
+        String s1 = buf.toString();
+        buf.clear();
+        append(buf,"tr");
+        append(buf,"ue");
+        assertSame( s1, buf.toString() );
+
+        buf.clear();
+        append(buf,"trUe");
+        assertEquals( "trUe", buf.toString() );
+
+        StringBuffer longText = new StringBuffer();
+        for( int i=0; i<100; i++ )
+            longText.append('a');
+        buf.clear();
+        append(buf,longText.toString());
+        String l1 = buf.toString();
+        assertEquals( longText.toString(), l1 );
+        assertNotSame( l1, buf.toString() );
+    }
+}
@@ -1,11 +1,27 @@
 package com.sun.msv.verifier;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.SAXParserFactory;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import util.Checker;
 import util.ResourceChecker;
 
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.verifier.regexp.REDocumentDeclaration;
+
 public class VerifierTest extends TestCase
 {
     public VerifierTest( String name ) { super(name); }
@@ -31,4 +47,60 @@ public class VerifierTest extends TestCase
         
         ResourceChecker.check( Verifier.class, "", checker );
     }
+    
+    private static final String idSchema =
+        "<element name='root' xmlns='http://relaxng.org/ns/structure/1.0' "+
+            "datatypeLibrary='http://relaxng.org/ns/compatibility/datatypes/1.0'>"+
+            "<zeroOrMore><element name='e'>"+
+                "<optional><attribute name='id'><data type='ID'/></attribute></optional>"+
+                "<optional><attribute name='ref'><data type='IDREF'/></attribute></optional>"+
+                "<optional><attribute name='refs'><data type='IDREFS'/></attribute></optional>"+
+            "</element></zeroOrMore>"+
+        "</element>";
+    
+    private static final String idDocument =
+        "<root>"+
+            "<e id=' a ' ref='b'/>"+
+            "<e id='b' refs=' a&#9;b &#10; c'/>"+
+            "<e id='a'/>"+
+            "<e ref=' zz '/>"+
+            "<e refs='a b'/>"+
+        "</root>";
+    
+    /** validates the ID document and returns the sorted error messages. */
+    private static List<String> validateIDs( Grammar grammar, boolean incremental ) throws Exception {
+        final List<String> errors = new ArrayList<String>();
+        Verifier verifier = new Verifier( new REDocumentDeclaration(grammar), new ErrorHandler() {
+            public void error( SAXParseException e ) {
+                errors.add( e.getMessage() );
+            }
+            public void fatalError( SAXParseException e ) throws SAXParseException { throw e; }
+            public void warning( SAXParseException e ) {}
+        });
+        verifier.setIncrementalIDREFCheck(incremental);
+        verifier.setPanicMode(false);
+        
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        reader.setContentHandler(verifier);
+        reader.parse(new InputSource(new StringReader(idDocument)));
+        assertFalse( verifier.isValid() );
+        
+        Collections.sort(errors);
+        return errors;
+    }
+    
+    public void testIDs() throws Exception {
+        Grammar grammar = GrammarLoader.loadSchema( new InputSource(new StringReader(idSchema)) );
+        
+        List<String> expected = new ArrayList<String>();
+        expected.add( Verifier.localizeMessage(Verifier.ERR_DUPLICATE_ID,new Object[]{"a"}) );
+        expected.add( Verifier.localizeMessage(Verifier.ERR_UNSOLD_IDREF,new Object[]{"c"}) );
+        expected.add( Verifier.localizeMessage(Verifier.ERR_UNSOLD_IDREF,new Object[]{"zz"}) );
+        Collections.sort(expected);
+        
+        assertEquals( expected, validateIDs(grammar,true) );
+        assertEquals( expected, validateIDs(grammar,false) );
+    }
 }
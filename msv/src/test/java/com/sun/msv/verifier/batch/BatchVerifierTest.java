@@ -0,0 +1,248 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.verifier.batch;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.verifier.ValidationUnrecoverableException;
+
+/**
+ * tests {@link BatchVerifier}.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class BatchVerifierTest extends TestCase {
+
+    public BatchVerifierTest( String name ) { super(name); }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(BatchVerifierTest.class);
+    }
+
+    private static final String rng =
+        "<grammar xmlns='http://relaxng.org/ns/structure/1.0'>"+
+            "<start><ref name='list'/></start>"+
+            "<define name='list'>"+
+                "<element name='list'>"+
+                    "<zeroOrMore>"+
+                        "<choice>"+
+                            "<element name='item'><attribute name='id'/><text/></element>"+
+                            "<ref name='list'/>"+
+                        "</choice>"+
+                    "</zeroOrMore>"+
+                "</element>"+
+            "</define>"+
+        "</grammar>";
+
+    private static final String xsd =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"+
+            "<xs:element name='root'>"+
+                "<xs:complexType><xs:sequence>"+
+                    "<xs:element name='entry' minOccurs='0' maxOccurs='unbounded'>"+
+                        "<xs:complexType><xs:attribute name='id' type='xs:string'/></xs:complexType>"+
+                    "</xs:element>"+
+                    "<xs:element name='ref' minOccurs='0' maxOccurs='unbounded'>"+
+                        "<xs:complexType><xs:attribute name='to' type='xs:string'/></xs:complexType>"+
+                    "</xs:element>"+
+                "</xs:sequence></xs:complexType>"+
+                "<xs:key name='k'><xs:selector xpath='entry'/><xs:field xpath='@id'/></xs:key>"+
+                "<xs:keyref name='r' refer='k'><xs:selector xpath='ref'/><xs:field xpath='@to'/></xs:keyref>"+
+            "</xs:element>"+
+        "</xs:schema>";
+
+    /** the kind of the i-th test document. */
+    private static final int VALID = 0;
+    private static final int INVALID = 1;
+    private static final int MALFORMED = 2;
+
+    private static SAXParserFactory createFactory() {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory;
+    }
+
+    private static Grammar load( String schema ) throws Exception {
+        Grammar g = GrammarLoader.loadSchema( new InputSource(new StringReader(schema)) );
+        assertNotNull(g);
+        return g;
+    }
+
+    private static InputSource source( String doc, int i ) {
+        InputSource is = new InputSource(new StringReader(doc));
+        is.setSystemId("doc"+i);
+        return is;
+    }
+
+    /** collects results, checking that the listener is never called concurrently. */
+    private static class Collector implements VerificationListener {
+        final List<VerificationResult> results = new ArrayList<VerificationResult>();
+        private boolean busy;
+
+        public void onResult( VerificationResult r ) {
+            assertFalse(busy);
+            busy = true;
+            results.add(r);
+            Thread.yield();
+            busy = false;
+        }
+
+        /** gets the results sorted by their index. */
+        VerificationResult[] sorted( int size ) {
+            assertEquals( size, results.size() );
+            VerificationResult[] a = new VerificationResult[size];
+            for( int i=0; i<size; i++ ) {
+                VerificationResult r = results.get(i);
+                assertNull( a[r.getIndex()] );
+                a[r.getIndex()] = r;
+            }
+            return a;
+        }
+    }
+
+    private static void check( VerificationResult r, int kind, int i ) {
+        assertEquals( "doc"+i, r.getSystemId() );
+        switch(kind) {
+        case VALID:
+            assertTrue( r.isValid() );
+            assertTrue( r.getErrors().isEmpty() );
+            assertNull( r.getException() );
+            break;
+        case INVALID:
+            assertFalse( r.isValid() );
+            assertFalse( r.getErrors().isEmpty() );
+            assertNull( r.getException() );
+            break;
+        case MALFORMED:
+            assertFalse( r.isValid() );
+            assertTrue( r.getException() instanceof SAXParseException );
+            break;
+        default:
+            throw new IllegalArgumentException();
+        }
+    }
+
+    public void testThreads() throws Exception {
+        String[] docs = {
+            "<list><item id='1'>x</item><list><item id='2'/></list></list>",
+            "<list><item>x</item><foo/></list>",
+            "<list><item id='1'>x</item>"
+        };
+
+        BatchVerifier bv = new BatchVerifier( load(rng), createFactory() );
+        bv.setThreadCount(4);
+
+        List<InputSource> sources = new ArrayList<InputSource>();
+        for( int i=0; i<60; i++ )
+            sources.add(source(docs[i%3],i));
+
+        Collector c = new Collector();
+        assertFalse( bv.verify(sources.iterator(),c) );
+
+        VerificationResult[] r = c.sorted(60);
+        for( int i=0; i<r.length; i++ )
+            check( r[i], i%3, i );
+
+        // only valid documents.
+        sources.clear();
+        for( int i=0; i<20; i++ )
+            sources.add(source(docs[0],i));
+        assertTrue( bv.verify(sources.iterator(),null) );
+    }
+
+    public void testExecutor() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            BatchVerifier bv = new BatchVerifier( load(rng), createFactory() );
+            // more workers than the executor can run at once.
+            bv.setThreadCount(3);
+            bv.setExecutor(executor);
+
+            List<InputSource> sources = new ArrayList<InputSource>();
+            for( int i=0; i<30; i++ )
+                sources.add(source("<list><item id='a'/></list>",i));
+
+            Collector c = new Collector();
+            assertTrue( bv.verify(sources.iterator(),c) );
+            c.sorted(30);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * one identity constraint checker is reused for documents,
+     * some of which are abandoned in the middle.
+     */
+    public void testIdentityConstraints() throws Exception {
+        String[] docs = {
+            "<root><entry id='a'/><entry id='b'/><ref to='b'/></root>",
+            "<root><entry id='a'/><ref to='b'/></root>",
+            "<root><entry id='a'/><entry id='b'/><ref to='b'/>"
+        };
+
+        BatchVerifier bv = new BatchVerifier( load(xsd), createFactory() );
+        bv.setThreadCount(1);
+
+        List<InputSource> sources = new ArrayList<InputSource>();
+        int[] kinds = { MALFORMED, VALID, INVALID, MALFORMED, MALFORMED, VALID, VALID, INVALID, VALID };
+        for( int i=0; i<kinds.length; i++ )
+            sources.add(source(docs[kinds[i]],i));
+
+        Collector c = new Collector();
+        assertFalse( bv.verify(sources.iterator(),c) );
+
+        // with one thread, results come in the input order.
+        for( int i=0; i<kinds.length; i++ ) {
+            assertEquals( i, c.results.get(i).getIndex() );
+            check( c.results.get(i), kinds[i], i );
+        }
+    }
+
+    public void testMaxErrors() throws Exception {
+        StringBuffer doc = new StringBuffer("<list>");
+        for( int i=0; i<10; i++ )
+            doc.append("<item/>");
+        doc.append("</list>");
+
+        BatchVerifier bv = new BatchVerifier( load(rng), createFactory() );
+        bv.setThreadCount(1);
+        bv.setPanicMode(false);
+        bv.setMaxErrors(3);
+
+        List<InputSource> sources = new ArrayList<InputSource>();
+        sources.add(source(doc.toString(),0));
+
+        Collector c = new Collector();
+        assertFalse( bv.verify(sources.iterator(),c) );
+
+        VerificationResult r = c.sorted(1)[0];
+        assertEquals( 3, r.getErrors().size() );
+        assertTrue( r.getException() instanceof ValidationUnrecoverableException );
+    }
+}
@@ -1,11 +1,26 @@
 package com.sun.msv.verifier.identity;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.SAXParserFactory;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 import util.Checker;
 import util.ResourceChecker;
 
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.xmlschema.XMLSchemaGrammar;
+import com.sun.msv.reader.util.GrammarLoader;
+
 public class IDConstraintCheckerTest extends TestCase
 {
     public IDConstraintCheckerTest( String name ) { super(name); }
@@ -31,4 +46,177 @@ public class IDConstraintCheckerTest extends TestCase
         
         ResourceChecker.check( IDConstraintChecker.class, "", checker );
     }
+    
+    private static final String schema =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"+
+            "<xs:element name='root'>"+
+                "<xs:complexType><xs:choice minOccurs='0' maxOccurs='unbounded'>"+
+                    "<xs:element name='entry'><xs:complexType>"+
+                        "<xs:attribute name='id' type='xs:string'/>"+
+                        "<xs:attribute name='n' type='xs:integer'/>"+
+                    "</xs:complexType></xs:element>"+
+                    "<xs:element name='ref'><xs:complexType>"+
+                        "<xs:attribute name='to' type='xs:string'/>"+
+                        "<xs:attribute name='n' type='xs:integer'/>"+
+                    "</xs:complexType></xs:element>"+
+                    "<xs:element name='group'>"+
+                        "<xs:complexType><xs:choice minOccurs='0' maxOccurs='unbounded'>"+
+                            "<xs:element name='item'><xs:complexType><xs:attribute name='id' type='xs:int'/></xs:complexType></xs:element>"+
+                            "<xs:element name='use'><xs:complexType><xs:attribute name='to' type='xs:int'/></xs:complexType></xs:element>"+
+                        "</xs:choice></xs:complexType>"+
+                        "<xs:key name='gk'><xs:selector xpath='item'/><xs:field xpath='@id'/></xs:key>"+
+                        "<xs:keyref name='gr' refer='gk'><xs:selector xpath='use'/><xs:field xpath='@to'/></xs:keyref>"+
+                    "</xs:element>"+
+                "</xs:choice></xs:complexType>"+
+                "<xs:key name='k'><xs:selector xpath='entry'/><xs:field xpath='@id'/><xs:field xpath='@n'/></xs:key>"+
+                "<xs:keyref name='r' refer='k'><xs:selector xpath='ref'/><xs:field xpath='@to'/><xs:field xpath='@n'/></xs:keyref>"+
+            "</xs:element>"+
+        "</xs:schema>";
+    
+    /**
+     * creates a document with forward references, dangling references,
+     * and duplicate keys, one element per line.
+     */
+    private static String createDocument() {
+        StringBuffer buf = new StringBuffer("<root>\n");
+        for( int i=0; i<300; i++ ) {
+            buf.append("<entry id='e").append(i).append("' n='").append(i%5).append("'/>\n");
+            // a backward reference, a forward reference, and a dangling one now and then.
+            buf.append("<ref to='e").append(i/2).append("' n='").append((i/2)%5).append("'/>\n");
+            buf.append("<ref to='e").append(i+3).append("' n='").append((i+3)%5).append("'/>\n");
+            if( i%37==0 )
+                buf.append("<ref to='e").append(i).append("' n='9'/>\n");
+            if( i%53==0 )
+                buf.append("<entry id='e").append(i/2).append("' n=' ").append((i/2)%5).append(" '/>\n");
+            if( i%10==0 ) {
+                buf.append("<group>\n");
+                for( int j=0; j<20; j++ ) {
+                    buf.append("<use to='").append(j+1).append("'/>\n");
+                    if( j!=i%20 )
+                        buf.append("<item id='").append(j).append("'/>\n");
+                }
+                buf.append("</group>\n");
+            }
+        }
+        buf.append("</root>");
+        return buf.toString();
+    }
+    
+    /** validates the document and returns the errors in the document order. */
+    private static List<String> validate( XMLSchemaGrammar grammar, int limit, String doc ) throws Exception {
+        final List<String> errors = new ArrayList<String>();
+        IDConstraintChecker checker = new IDConstraintChecker( grammar, new ErrorHandler() {
+            public void error( SAXParseException e ) {
+                errors.add( pad(e.getLineNumber())+":"+e.getMessage() );
+            }
+            public void fatalError( SAXParseException e ) throws SAXParseException { throw e; }
+            public void warning( SAXParseException e ) {}
+        });
+        checker.setKeyStoreLimit(limit,null);
+        
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        reader.setContentHandler(checker);
+        reader.parse(new InputSource(new StringReader(doc)));
+        
+        Collections.sort(errors);
+        return errors;
+    }
+    
+    private static String pad( int i ) {
+        String s = Integer.toString(i);
+        while( s.length()<6 )   s = "0"+s;
+        return s;
+    }
+    
+    /** the bounded key store reports the same errors. */
+    public void testKeyStoreLimit() throws Exception {
+        XMLSchemaGrammar grammar = (XMLSchemaGrammar)
+            GrammarLoader.loadSchema( new InputSource(new StringReader(schema)) );
+        String doc = createDocument();
+        
+        List<String> expected = validate(grammar,0,doc);
+        // 3 dangling references at the end, 9 with a wrong n,
+        // 6 duplicates (2 errors each). In groups, "20" is always missing,
+        // and "10" is missing in half of them.
+        assertEquals( 3+9+6*2+30+15, expected.size() );
+        
+        assertEquals( expected, validate(grammar,8,doc) );
+        assertEquals( expected, validate(grammar,1000,doc) );
+    }
+    
+    private static final String refSchema =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:t='urn:t'"+
+            " targetNamespace='urn:t' elementFormDefault='qualified'>"+
+            "<xs:element name='root'>"+
+                "<xs:complexType><xs:choice minOccurs='0' maxOccurs='unbounded'>"+
+                    "<xs:element name='entry'><xs:complexType>"+
+                        "<xs:attribute name='id' type='xs:string'/>"+
+                        "<xs:attribute name='ns' type='xs:string'/>"+
+                    "</xs:complexType></xs:element>"+
+                    "<xs:element name='ref'><xs:complexType>"+
+                        "<xs:attribute name='to' type='xs:string'/>"+
+                        "<xs:attribute name='ns' type='xs:string'/>"+
+                    "</xs:complexType></xs:element>"+
+                "</xs:choice></xs:complexType>"+
+                "<xs:key name='k'><xs:selector xpath='t:entry'/><xs:field xpath='@id'/><xs:field xpath='@ns'/></xs:key>"+
+                "<xs:keyref name='r' refer='t:k'><xs:selector xpath='t:ref'/><xs:field xpath='@to'/><xs:field xpath='@ns'/></xs:keyref>"+
+            "</xs:element>"+
+        "</xs:schema>";
+
+    /** equal dangling keyrefs are reported once, whether they are spilled or not. */
+    public void testDuplicateKeyRefs() throws Exception {
+        XMLSchemaGrammar grammar = (XMLSchemaGrammar)
+            GrammarLoader.loadSchema( new InputSource(new StringReader(refSchema)) );
+        String doc = "<root xmlns='urn:t'><ref to='3' ns='d'/><ref to='3' ns='d'/></root>";
+
+        List<String> expected = validate(grammar,0,doc);
+        assertEquals( 1, expected.size() );
+        assertEquals( expected, validate(grammar,1,doc) );
+    }
+
+    private static final String pathSchema =
+        "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"+
+            "<xs:complexType name='any' mixed='true'>"+
+                "<xs:sequence><xs:any processContents='lax' minOccurs='0' maxOccurs='unbounded'/></xs:sequence>"+
+                "<xs:anyAttribute processContents='skip'/>"+
+            "</xs:complexType>"+
+            "<xs:element name='root' type='any'>"+
+                "<xs:key name='k'><xs:selector xpath='.//a|c/b'/><xs:field xpath='@x|v'/></xs:key>"+
+                "<xs:unique name='u'><xs:selector xpath='*'/><xs:field xpath='@*'/></xs:unique>"+
+            "</xs:element>"+
+            "<xs:element name='a' type='any'/>"+
+            "<xs:element name='b' type='any'/>"+
+            "<xs:element name='c' type='any'/>"+
+            "<xs:element name='v' type='xs:string'/>"+
+        "</xs:schema>";
+    
+    /** unions, descendants, wildcards, and attribute/element fields. */
+    public void testPaths() throws Exception {
+        XMLSchemaGrammar grammar = (XMLSchemaGrammar)
+            GrammarLoader.loadSchema( new InputSource(new StringReader(pathSchema)) );
+        String doc =
+            "<root>\n"+
+            "<a x='1'/>\n"+
+            "<c>\n"+
+            "<b><v>2</v></b>\n"+
+            "<a><v>1</v></a>\n"+           // duplicate of line 2
+            "</c>\n"+
+            "<b x='3'/>\n"+                // not selected by k
+            "<a x='4'><v>4</v></a>\n"+     // double match
+            "<a/>\n"+                      // missing field
+            "<c y='1' z='2'/>\n"+          // double match, and a duplicate of line 2
+            "<b z='3'/>\n"+                // duplicate of line 7
+            "</root>";
+        
+        List<String> errors = validate(grammar,0,doc);
+        int[] lines = new int[]{2,2,5,7,8,9,10,10,11};
+        assertEquals( lines.length, errors.size() );
+        for( int i=0; i<lines.length; i++ )
+            assertTrue( errors.get(i), errors.get(i).startsWith(pad(lines[i])+":") );
+        
+        // the second run uses the transitions cached by the first one.
+        assertEquals( errors, validate(grammar,0,doc) );
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.verifier.identity;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * tests {@link KeyStore} and {@link SpillFile}.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class KeyStoreTest extends TestCase {
+
+    public KeyStoreTest( String name ) { super(name); }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(KeyStoreTest.class);
+    }
+
+    private File dir;
+
+    protected void setUp() throws Exception {
+        dir = File.createTempFile("keystore","");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    protected void tearDown() {
+        File[] files = dir.listFiles();
+        for( int i=0; i<files.length; i++ )
+            files[i].delete();
+        dir.delete();
+    }
+
+    private static KeyValue value( int i, int line ) {
+        LocatorImpl loc = new LocatorImpl();
+        loc.setSystemId("test.xml");
+        loc.setLineNumber(line);
+        loc.setColumnNumber(i%80);
+        // strings, integers, and something that needs Java serialization.
+        return new KeyValue( new Object[]{ "k"+i, new Integer(i%7), BigInteger.valueOf(i) }, loc );
+    }
+
+    public void testSpill() throws Exception {
+        KeyStore store = new KeyStore(10,dir);
+        for( int i=0; i<1000; i++ )
+            assertNull( store.add(value(i,i+1)) );
+        assertTrue( store.hasSpilled() );
+        assertEquals( 1, dir.listFiles().length );
+
+        for( int i=0; i<1000; i++ ) {
+            KeyValue v = store.find(value(i,0));
+            assertNotNull( v );
+            assertEquals( value(i,0), v );
+            // the location of the value that was added first.
+            assertEquals( i+1, v.locator.getLineNumber() );
+            assertEquals( "test.xml", v.locator.getSystemId() );
+        }
+        assertNull( store.find(value(1000,0)) );
+
+        // duplicates are found on the disk, too.
+        KeyValue dup = store.add(value(3,99));
+        assertNotNull( dup );
+        assertEquals( 4, dup.locator.getLineNumber() );
+
+        store.dispose();
+        assertEquals( 0, dir.listFiles().length );
+    }
+
+    public void testFindMissing() throws Exception {
+        KeyStore keys = new KeyStore(16,dir);
+        KeyStore refs = new KeyStore(16,dir);
+        for( int i=0; i<200; i+=2 )
+            keys.add(value(i,i));
+        for( int i=0; i<200; i++ )
+            refs.add(value(i,i));
+
+        final Set<Object> missing = new HashSet<Object>();
+        refs.findMissing( keys, new KeyStore.Receiver() {
+            public void receive( KeyValue v ) {
+                assertTrue( missing.add(v) );
+            }
+        });
+        assertEquals( 100, missing.size() );
+        for( int i=1; i<200; i+=2 )
+            assertTrue( missing.contains(value(i,0)) );
+
+        // no key at all.
+        missing.clear();
+        refs.findMissing( null, new KeyStore.Receiver() {
+            public void receive( KeyValue v ) {
+                missing.add(v);
+            }
+        });
+        assertEquals( 200, missing.size() );
+
+        keys.dispose();
+        refs.dispose();
+    }
+
+    /** values that can't be serialized stay in memory. */
+    public void testNotSerializable() throws Exception {
+        KeyStore store = new KeyStore(4,dir);
+        for( int i=0; i<100; i++ )
+            assertNull( store.add( new KeyValue( new Object[]{ new Opaque(i) }, null ) ) );
+        assertEquals( 100, countAll(store) );
+        assertNotNull( store.add( new KeyValue( new Object[]{ new Opaque(5) }, null ) ) );
+        store.dispose();
+    }
+
+    private static final class Opaque {
+        private final int v;
+        Opaque( int v ) { this.v = v; }
+        public int hashCode() { return v; }
+        public boolean equals( Object o ) {
+            return (o instanceof Opaque) && ((Opaque)o).v==v;
+        }
+    }
+
+    private static int countAll( KeyStore store ) throws Exception {
+        final int[] count = new int[1];
+        store.findMissing( null, new KeyStore.Receiver() {
+            public void receive( KeyValue v ) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+}
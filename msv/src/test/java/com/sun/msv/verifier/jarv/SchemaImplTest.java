@@ -0,0 +1,155 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.verifier.jarv;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.iso_relax.verifier.Verifier;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import com.sun.msv.reader.util.GrammarLoader;
+
+/**
+ * tests the verifier pool of {@link SchemaImpl}.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class SchemaImplTest extends TestCase {
+
+    public SchemaImplTest( String name ) { super(name); }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(SchemaImplTest.class);
+    }
+
+    private static final String schema =
+        "<element name='list' xmlns='http://relaxng.org/ns/structure/1.0'>"+
+            "<zeroOrMore><element name='item'><attribute name='id'/><text/></element></zeroOrMore>"+
+        "</element>";
+
+    private static final String valid = "<list><item id='1'>x</item></list>";
+    private static final String invalid = "<list><item>x</item></list>";
+    private static final String malformed = "<list><item id='1'>";
+    private static final String external = "<!DOCTYPE list SYSTEM 'no-such.dtd'><list/>";
+
+    private SchemaImpl createSchema() throws Exception {
+        return new SchemaImpl( GrammarLoader.loadSchema(new InputSource(new StringReader(schema))) );
+    }
+
+    private static InputSource source( String doc ) {
+        return new InputSource(new StringReader(doc));
+    }
+
+    /** counts errors. */
+    private static class Counter implements ErrorHandler, EntityResolver {
+        int errors;
+        int resolved;
+        public void error( SAXParseException e ) { errors++; }
+        public void fatalError( SAXParseException e ) throws SAXException { throw e; }
+        public void warning( SAXParseException e ) {}
+        public InputSource resolveEntity( String publicId, String systemId ) {
+            resolved++;
+            return source("");
+        }
+    }
+
+    public void testReuse() throws Exception {
+        SchemaImpl s = createSchema();
+        Verifier v = s.acquireVerifier();
+        assertTrue( v.verify(source(valid)) );
+
+        try {
+            v.verify(source(malformed));
+            fail();
+        } catch( SAXParseException e ) {
+            ; // expected
+        }
+        s.releaseVerifier(v);
+
+        // the document abandoned above doesn't affect the next one.
+        assertSame( v, s.acquireVerifier() );
+        assertTrue( v.verify(source(valid)) );
+        s.releaseVerifier(v);
+
+        Verifier v2 = s.acquireVerifier();
+        Verifier v3 = s.acquireVerifier();
+        assertSame( v, v2 );
+        assertNotSame( v, v3 );
+        assertTrue( v3.verify(source(valid)) );
+    }
+
+    public void testReset() throws Exception {
+        SchemaImpl s = createSchema();
+        Verifier v = s.acquireVerifier();
+
+        Counter c = new Counter();
+        v.setErrorHandler(c);
+        v.setEntityResolver(c);
+        assertFalse( v.verify(source(invalid)) );
+        assertEquals( 1, c.errors );
+        assertTrue( v.verify(source(external)) );
+        assertEquals( 1, c.resolved );
+
+        s.releaseVerifier(v);
+        assertSame( v, s.acquireVerifier() );
+
+        // the default error handler throws an exception.
+        try {
+            v.verify(source(invalid));
+            fail();
+        } catch( SAXParseException e ) {
+            ; // expected
+        }
+        assertEquals( 1, c.errors );
+
+        // the entity resolver is gone, too.
+        try {
+            v.verify(source(external));
+            fail();
+        } catch( IOException e ) {
+            ; // expected
+        }
+        assertEquals( 1, c.resolved );
+    }
+
+    public void testPoolSize() throws Exception {
+        SchemaImpl s = createSchema();
+        s.setPoolSize(1);
+
+        Verifier v1 = s.acquireVerifier();
+        Verifier v2 = s.acquireVerifier();
+        s.releaseVerifier(v1);
+        s.releaseVerifier(v2);
+        assertSame( v1, s.acquireVerifier() );
+        assertNotSame( v2, s.acquireVerifier() );
+
+        // verifiers of other schemas are not pooled.
+        Verifier other = createSchema().newVerifier();
+        s.releaseVerifier(other);
+        assertNotSame( other, s.acquireVerifier() );
+
+        s.setPoolSize(0);
+        s.releaseVerifier(v1);
+        assertNotSame( v1, s.acquireVerifier() );
+    }
+}
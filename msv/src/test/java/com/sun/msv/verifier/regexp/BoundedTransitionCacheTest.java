@@ -0,0 +1,105 @@
+package com.sun.msv.verifier.regexp;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.util.StringPair;
+import com.sun.msv.verifier.DocumentDeclaration;
+import com.sun.msv.verifier.Verifier;
+
+public class BoundedTransitionCacheTest extends TestCase {
+    
+    public BoundedTransitionCacheTest( String name ) { super(name); }
+    
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+    
+    public static Test suite() {
+        return new TestSuite(BoundedTransitionCacheTest.class);
+    }
+    
+    public void testGetAndPut() {
+        TransitionCache cache = new BoundedTransitionCache(10);
+        assertNull( cache.get(new StringPair("","a")) );
+        
+        cache.put(new StringPair("","a"),"1");
+        cache.put(new StringPair("urn:x","a"),"2");
+        assertEquals( "1", cache.get(new StringPair("","a")) );
+        assertEquals( "2", cache.get(new StringPair("urn:x","a")) );
+        
+        // replace
+        cache.put(new StringPair("","a"),"3");
+        assertEquals( "3", cache.get(new StringPair("","a")) );
+        assertEquals( 2, cache.size() );
+    }
+    
+    /** only entries keyed by names that are not in the grammar are discarded. */
+    public void testEviction() {
+        TransitionCache cache = BoundedTransitionCache.createFactory(100).create();
+        Object[] symbols = new Object[1000];
+        for( int i=0; i<symbols.length; i++ ) {
+            symbols[i] = new Object();
+            cache.put(symbols[i],new Integer(i));
+        }
+        for( int i=0; i<1000; i++ )
+            cache.put(new StringPair("","e"+i),new Integer(i));
+        
+        assertTrue( cache.size()<=1100 );
+        for( int i=0; i<symbols.length; i++ )
+            assertEquals( new Integer(i), cache.get(symbols[i]) );
+        assertEquals( new Integer(999), cache.get(new StringPair("","e999")) );
+    }
+    
+    /** transitions of a choice of many elements are all kept in the cache. */
+    public void testLargeChoice() throws Exception {
+        final int size = 400;
+        StringBuffer schema = new StringBuffer();
+        schema.append("<element name='root' xmlns='http://relaxng.org/ns/structure/1.0'>");
+        schema.append("<zeroOrMore><choice>");
+        for( int i=0; i<size; i++ )
+            schema.append("<element name='e"+i+"'><empty/></element>");
+        schema.append("</choice></zeroOrMore></element>");
+        
+        StringBuffer doc = new StringBuffer("<root>");
+        for( int i=0; i<size; i++ )
+            doc.append("<e"+i+"/>");
+        doc.append("</root>");
+        
+        Grammar g = GrammarLoader.loadSchema( new InputSource(new StringReader(schema.toString())) );
+        REDocumentDeclaration decl = new REDocumentDeclaration(g);
+        
+        // the first pass fills the cache.
+        assertTrue( validate(decl,doc.toString()) );
+        long hits = decl.getCacheHitCount();
+        long misses = decl.getCacheMissCount();
+        
+        for( int n=0; n<5; n++ )
+            assertTrue( validate(decl,doc.toString()) );
+        
+        hits = decl.getCacheHitCount()-hits;
+        misses = decl.getCacheMissCount()-misses;
+        assertEquals( 0, misses );
+        assertTrue( hits>=5*size );
+    }
+    
+    private static boolean validate( DocumentDeclaration decl, String doc ) throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        Verifier verifier = new Verifier(decl,null);
+        reader.setContentHandler(verifier);
+        reader.parse(new InputSource(new StringReader(doc)));
+        return verifier.isValid();
+    }
+}
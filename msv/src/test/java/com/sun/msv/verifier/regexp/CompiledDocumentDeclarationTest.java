@@ -0,0 +1,117 @@
+package com.sun.msv.verifier.regexp;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.verifier.DocumentDeclaration;
+import com.sun.msv.verifier.Verifier;
+
+/**
+ * makes sure that {@link CompiledDocumentDeclaration} accepts
+ * exactly the same documents as {@link REDocumentDeclaration}.
+ */
+public class CompiledDocumentDeclarationTest extends TestCase {
+    
+    public CompiledDocumentDeclarationTest( String name ) { super(name); }
+    
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+    
+    public static Test suite() {
+        return new TestSuite(CompiledDocumentDeclarationTest.class);
+    }
+    
+    private static final String schema =
+        "<grammar xmlns='http://relaxng.org/ns/structure/1.0'>"+
+            "<start><ref name='section'/></start>"+
+            "<define name='section'>"+
+                "<element name='section'>"+
+                    "<choice>"+
+                        "<attribute name='id'/>"+
+                        "<group><attribute name='ref'/><attribute name='kind'/></group>"+
+                    "</choice>"+
+                    "<element name='title'><text/></element>"+
+                    "<zeroOrMore>"+
+                        "<choice>"+
+                            "<element name='para'><mixed><zeroOrMore><element name='b'><text/></element></zeroOrMore></mixed></element>"+
+                            "<ref name='section'/>"+
+                        "</choice>"+
+                    "</zeroOrMore>"+
+                    "<optional>"+
+                        "<element><anyName/><empty/></element>"+
+                    "</optional>"+
+                "</element>"+
+            "</define>"+
+        "</grammar>";
+    
+    private static final String[] validDocuments = {
+        "<section id='a'><title>t</title></section>",
+        "<section ref='a' kind='k'><title>t</title><para>x<b>y</b>z</para>"+
+            "<section id='b'><title/><para/></section><para/></section>",
+        "<section id='a'><title>t</title><para/><foo/></section>",
+    };
+    
+    private static final String[] invalidDocuments = {
+        "<section><title>t</title></section>",
+        "<section id='a'><para/></section>",
+        "<section id='a'><title>t</title><para><para/></para></section>",
+        "<section id='a'><title>t</title><foo/><para/></section>",
+        "<section id='a'><title>t</title><title>t</title></section>",
+        "<title/>",
+    };
+    
+    private static Grammar load( String s ) throws Exception {
+        return GrammarLoader.loadSchema( new InputSource(new StringReader(s)) );
+    }
+    
+    private static boolean validate( DocumentDeclaration decl, String doc ) throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        Verifier verifier = new Verifier(decl,null);
+        reader.setContentHandler(verifier);
+        reader.parse(new InputSource(new StringReader(doc)));
+        return verifier.isValid();
+    }
+    
+    public void testSameResult() throws Exception {
+        Grammar g = load(schema);
+        CompiledDocumentDeclaration compiled = new CompiledDocumentDeclaration(g);
+        assertTrue( compiled.isCompiled() );
+        assertTrue( compiled.getStateCount()>0 );
+        
+        // validate twice to exercise the derivative engine cache, too.
+        for( int n=0; n<2; n++ ) {
+            for( int i=0; i<validDocuments.length; i++ ) {
+                assertTrue( validate(new REDocumentDeclaration(g),validDocuments[i]) );
+                assertTrue( validate(compiled,validDocuments[i]) );
+            }
+            for( int i=0; i<invalidDocuments.length; i++ ) {
+                assertFalse( validate(new REDocumentDeclaration(g),invalidDocuments[i]) );
+                assertFalse( validate(compiled,invalidDocuments[i]) );
+            }
+        }
+    }
+    
+    public void testInterleaveIsNotCompiled() throws Exception {
+        Grammar g = load(
+            "<element name='root' xmlns='http://relaxng.org/ns/structure/1.0'>"+
+                "<interleave><element name='a'><empty/></element><element name='b'><empty/></element></interleave>"+
+            "</element>");
+        CompiledDocumentDeclaration compiled = new CompiledDocumentDeclaration(g);
+        assertFalse( compiled.isCompiled() );
+        assertTrue( validate(compiled,"<root><b/><a/></root>") );
+        assertFalse( validate(compiled,"<root><b/></root>") );
+    }
+}
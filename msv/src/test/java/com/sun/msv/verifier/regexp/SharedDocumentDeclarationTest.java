@@ -0,0 +1,125 @@
+package com.sun.msv.verifier.regexp;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import com.sun.msv.grammar.Grammar;
+import com.sun.msv.reader.util.GrammarLoader;
+import com.sun.msv.verifier.DocumentDeclaration;
+import com.sun.msv.verifier.Verifier;
+
+/**
+ * uses one {@link SharedDocumentDeclaration} from several threads.
+ */
+public class SharedDocumentDeclarationTest extends TestCase {
+    
+    public SharedDocumentDeclarationTest( String name ) { super(name); }
+    
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+    
+    public static Test suite() {
+        return new TestSuite(SharedDocumentDeclarationTest.class);
+    }
+    
+    private static final String schema =
+        "<grammar xmlns='http://relaxng.org/ns/structure/1.0'>"+
+            "<start><ref name='list'/></start>"+
+            "<define name='list'>"+
+                "<element name='list'>"+
+                    "<optional><attribute name='name'/></optional>"+
+                    "<zeroOrMore>"+
+                        "<choice>"+
+                            "<element name='item'><attribute name='id'/><text/></element>"+
+                            "<ref name='list'/>"+
+                        "</choice>"+
+                    "</zeroOrMore>"+
+                "</element>"+
+            "</define>"+
+        "</grammar>";
+    
+    private static final String valid =
+        "<list name='a'><item id='1'>x</item><list><item id='2'/></list><item id='3'/></list>";
+    private static final String invalid =
+        "<list name='a'><item>x</item><list><item id='2'/></list><foo/></list>";
+    
+    private static boolean validate( DocumentDeclaration decl, String doc ) throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        XMLReader reader = factory.newSAXParser().getXMLReader();
+        Verifier verifier = new Verifier(decl,null);
+        reader.setContentHandler(verifier);
+        reader.parse(new InputSource(new StringReader(doc)));
+        return verifier.isValid();
+    }
+    
+    public void testLocalDeclaration() throws Exception {
+        Grammar g = GrammarLoader.loadSchema( new InputSource(new StringReader(schema)) );
+        final SharedDocumentDeclaration shared =
+            new SharedDocumentDeclaration(new CompiledDocumentDeclaration(g));
+        
+        REDocumentDeclaration mine = shared.getLocalDeclaration();
+        assertSame( mine, shared.getLocalDeclaration() );
+        assertTrue( mine instanceof CompiledDocumentDeclaration );
+        assertTrue( ((CompiledDocumentDeclaration)mine).isCompiled() );
+        
+        final REDocumentDeclaration[] other = new REDocumentDeclaration[1];
+        Thread t = new Thread() {
+            public void run() {
+                other[0] = shared.getLocalDeclaration();
+            }
+        };
+        t.start();
+        t.join();
+        assertNotNull( other[0] );
+        assertNotSame( mine, other[0] );
+        assertSame( mine.pool, other[0].pool );
+    }
+    
+    public void testConcurrentValidation() throws Exception {
+        Grammar g = GrammarLoader.loadSchema( new InputSource(new StringReader(schema)) );
+        final DocumentDeclaration[] decls = {
+            new SharedDocumentDeclaration(new REDocumentDeclaration(g)),
+            new SharedDocumentDeclaration(new CompiledDocumentDeclaration(g)),
+        };
+        
+        for( int d=0; d<decls.length; d++ ) {
+            final DocumentDeclaration decl = decls[d];
+            final Throwable[] failure = new Throwable[1];
+            Thread[] threads = new Thread[4];
+            for( int i=0; i<threads.length; i++ ) {
+                threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            for( int n=0; n<50; n++ ) {
+                                if( !validate(decl,valid) )
+                                    throw new AssertionError("valid document was rejected");
+                                if( validate(decl,invalid) )
+                                    throw new AssertionError("invalid document was accepted");
+                            }
+                        } catch( Throwable e ) {
+                            synchronized(failure) {
+                                failure[0] = e;
+                            }
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for( int i=0; i<threads.length; i++ )
+                threads[i].join();
+            
+            if( failure[0]!=null )
+                fail( failure[0].toString() );
+        }
+    }
+}
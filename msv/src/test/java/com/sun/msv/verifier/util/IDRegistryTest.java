@@ -0,0 +1,114 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.verifier.util;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * tests {@link IDRegistry}.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class IDRegistryTest extends TestCase {
+
+    public IDRegistryTest( String name ) { super(name); }
+
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static Test suite() {
+        return new TestSuite(IDRegistryTest.class);
+    }
+
+    public void testAddContains() {
+        IDRegistry r = new IDRegistry();
+        Set<String> expected = new HashSet<String>();
+        Random random = new Random(0);
+        for( int i=0; i<100000; i++ ) {
+            String s = Integer.toString(random.nextInt(50000),36);
+            assertEquals( expected.add(s), r.add(s) );
+        }
+        assertEquals( expected.size(), r.size() );
+
+        for( int i=0; i<60000; i++ ) {
+            String s = Integer.toString(i,36);
+            assertEquals( expected.contains(s), r.contains(s) );
+        }
+
+        // the iteration returns the same set in the order of addition.
+        Set<String> found = new HashSet<String>();
+        Iterator<String> itr = r.iterator();
+        while( itr.hasNext() )
+            assertTrue( found.add(itr.next()) );
+        assertEquals( expected, found );
+    }
+
+    public void testSubstring() {
+        IDRegistry r = new IDRegistry();
+        assertTrue( r.add("  abc ",2,5) );
+        assertTrue( r.contains("abc") );
+        assertFalse( r.add("xabcx",1,4) );
+        assertFalse( r.contains("ab") );
+        // empty strings are legal.
+        assertFalse( r.contains("") );
+        assertTrue( r.add("abc",1,1) );
+        assertTrue( r.contains("") );
+        assertEquals( 2, r.size() );
+    }
+
+    /** strings that are longer than a page, or need a long length prefix. */
+    public void testLongStrings() {
+        IDRegistry r = new IDRegistry();
+        StringBuffer buf = new StringBuffer();
+        for( int i=0; i<100000; i++ )
+            buf.append((char)('a'+i%26));
+        String huge = buf.toString();
+        String medium = huge.substring(0,40000);
+
+        assertTrue( r.add("x") );
+        assertTrue( r.add(huge) );
+        assertTrue( r.add(medium) );
+        assertTrue( r.add("y") );
+        assertFalse( r.add(huge) );
+        assertFalse( r.add(medium) );
+        assertFalse( r.contains(huge.substring(1)) );
+
+        Iterator<String> itr = r.iterator();
+        assertEquals( "x", itr.next() );
+        assertEquals( huge, itr.next() );
+        assertEquals( medium, itr.next() );
+        assertEquals( "y", itr.next() );
+        assertFalse( itr.hasNext() );
+    }
+
+    public void testClear() {
+        IDRegistry r = new IDRegistry();
+        for( int i=0; i<10000; i++ )
+            r.add("id"+i);
+        r.clear();
+        assertEquals( 0, r.size() );
+        assertFalse( r.contains("id1") );
+        assertFalse( r.iterator().hasNext() );
+
+        assertTrue( r.add("id1") );
+        assertTrue( r.contains("id1") );
+        Iterator<String> itr = r.iterator();
+        assertEquals( "id1", itr.next() );
+        assertFalse( itr.hasNext() );
+    }
+}
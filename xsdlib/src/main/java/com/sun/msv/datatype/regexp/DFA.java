@@ -0,0 +1,479 @@
+package com.sun.msv.datatype.regexp;
+
+import com.sun.msv.datatype.xsd.regex.RegExp;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link RegExp} that matches a string with a deterministic automaton.
+ *
+ * <p>
+ * The parse tree of a pattern is first compiled into a non-deterministic
+ * automaton (one state per character to be matched, plus epsilon states).
+ * States of the deterministic automaton are sets of NFA states; they are
+ * built lazily, the first time a transition is taken, and then cached.
+ * So the time needed to match a string is linear to its length.
+ *
+ * <p>
+ * Characters are not handled one by one. Code points are partitioned
+ * into classes, so that two code points of the same class are
+ * accepted by exactly the same NFA states. Transitions are
+ * indexed by the class.
+ *
+ * <p>
+ * This object is thread-safe and doesn't lock. The cache is only
+ * written by racy but idempotent writes: two threads that take the same
+ * transition for the first time compute the same DFA state, and
+ * a thread that doesn't see the other's write just computes it again.
+ *
+ * @author Kohsuke Kawaguchi
+ */
+final class DFA implements RegExp {
+
+    /**
+     * thrown if a pattern uses a feature that is not supported by
+     * this engine, or if the automaton would be too large.
+     */
+    static final class UnsupportedPatternException extends Exception {
+        UnsupportedPatternException( String msg ) { super(msg); }
+    }
+
+    /** the maximum number of NFA states. */
+    private static final int MAX_NFA_STATES = 50000;
+    /**
+     * the maximum number of cached DFA states.
+     * Once reached, new states are computed for each transition and
+     * are not kept, so the matching stays linear but becomes slower.
+     */
+    private static final int MAX_DFA_STATES = 5000;
+    /** the maximum number of transitions of all the cached DFA states. */
+    private static final int MAX_TRANSITIONS = 1<<20;
+
+    /** code points below this value are mapped to their class by a table. */
+    private static final int TABLE_SIZE = 128;
+
+    /** '.' matches anything but line terminators, just like {@link RegularExpression}. */
+    private static final int[] DOT_RANGES = {
+        0, '\n'-1,  '\n'+1, '\r'-1,  '\r'+1, 0x2027,  0x202A, Token.UTF16_MAX };
+
+
+    /**
+     * ranges of code points accepted by each NFA state,
+     * in the form of {start,end,start,end,...}.
+     * null for epsilon states and the final state.
+     */
+    private final int[][] ranges;
+    /** the next state of a character state, or the first branch of an epsilon state. -1 if none. */
+    private final int[] next1;
+    /** the second branch of an epsilon state. -1 if none. */
+    private final int[] next2;
+    /** the final state of the NFA. */
+    private final int finalState;
+
+    /** the first code point of each class, in the ascending order. */
+    private final int[] classes;
+    /** the class of each code point smaller than {@link #TABLE_SIZE}. */
+    private final int[] table = new int[TABLE_SIZE];
+
+    /** all the cached DFA states. */
+    private final ConcurrentHashMap<Key,State> states = new ConcurrentHashMap<Key,State>();
+    /** the maximum number of cached DFA states of this automaton. */
+    private final int maxStates;
+    private final State initial;
+    private final State dead;
+
+    DFA( Token tree ) throws UnsupportedPatternException {
+        Builder builder = new Builder();
+        finalState = builder.newState(null,-1,-1);
+        int start = builder.build(tree,finalState);
+
+        int n = builder.size;
+        ranges = new int[n][];
+        next1 = new int[n];
+        next2 = new int[n];
+        System.arraycopy(builder.ranges,0,ranges,0,n);
+        System.arraycopy(builder.next1,0,next1,0,n);
+        System.arraycopy(builder.next2,0,next2,0,n);
+
+        classes = computeClasses(ranges);
+        for( int ch=0; ch<TABLE_SIZE; ch++ )
+            table[ch] = classOf(ch);
+        maxStates = Math.max(2,Math.min(MAX_DFA_STATES,MAX_TRANSITIONS/classes.length));
+
+        dead = intern(new int[0]);
+        initial = intern(closure(new int[]{start},1));
+    }
+
+    public boolean matches( String text ) {
+        State s = initial;
+        final int len = text.length();
+        for( int i=0; i<len; ) {
+            int ch = text.charAt(i++);
+            final int cls;
+            if( ch<TABLE_SIZE )
+                cls = table[ch];
+            else {
+                if( Character.isHighSurrogate((char)ch) && i<len
+                &&  Character.isLowSurrogate(text.charAt(i)) )
+                    ch = Character.toCodePoint((char)ch,text.charAt(i++));
+                cls = classOf(ch);
+            }
+
+            final State[] next = s.next;
+            State t = next!=null ? next[cls] : null;
+            if( t==null )
+                t = computeNext(s,cls);
+            if( t==dead )
+                return false;
+            s = t;
+        }
+        return s.accepting;
+    }
+
+    /** gets the number of states of the NFA. */
+    int getNFASize() {
+        return ranges.length;
+    }
+
+    /** gets the number of cached states of the DFA. */
+    int getDFASize() {
+        return states.size();
+    }
+
+
+
+    /** a state of the deterministic automaton. */
+    private static final class State {
+        /** the sorted NFA states that this state consists of. */
+        final int[] nfaStates;
+        final boolean accepting;
+        /**
+         * transitions, indexed by the class of the character.
+         * null elements are not computed yet.
+         * If this state is not cached, this field is null.
+         */
+        final State[] next;
+
+        State( int[] nfaStates, boolean accepting, State[] next ) {
+            this.nfaStates = nfaStates;
+            this.accepting = accepting;
+            this.next = next;
+        }
+    }
+
+    /** a hash key for a set of NFA states. */
+    private static final class Key {
+        private final int[] nfaStates;
+        private final int hash;
+
+        Key( int[] nfaStates ) {
+            this.nfaStates = nfaStates;
+            this.hash = Arrays.hashCode(nfaStates);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals( Object o ) {
+            return o instanceof Key && Arrays.equals(nfaStates,((Key)o).nfaStates);
+        }
+    }
+
+    /**
+     * computes the transition from the given state by a character of the given class,
+     * and caches it if possible.
+     */
+    private State computeNext( State s, int cls ) {
+        final int ch = classes[cls];
+
+        int[] targets = new int[s.nfaStates.length];
+        int len = 0;
+        for( int i=0; i<s.nfaStates.length; i++ ) {
+            int q = s.nfaStates[i];
+            if( ranges[q]!=null && contains(ranges[q],ch) )
+                targets[len++] = next1[q];
+        }
+
+        State t = intern(closure(targets,len));
+        if( s.next!=null && t.next!=null )
+            s.next[cls] = t;
+        return t;
+    }
+
+    /**
+     * gets the cached DFA state for the given set of NFA states.
+     * If the cache is full, an uncached state is returned.
+     */
+    private State intern( int[] nfaStates ) {
+        Key key = new Key(nfaStates);
+        State s = states.get(key);
+        if( s!=null )   return s;
+
+        boolean accepting = Arrays.binarySearch(nfaStates,finalState)>=0;
+        if( states.size()>=maxStates )
+            return new State(nfaStates,accepting,null);
+
+        s = new State(nfaStates,accepting,new State[classes.length]);
+        State old = states.putIfAbsent(key,s);
+        return old!=null ? old : s;
+    }
+
+    /**
+     * computes the set of the NFA states reachable from the given states
+     * by epsilon transitions. Only character states and the final state
+     * are included in the result.
+     */
+    private int[] closure( int[] starts, int len ) {
+        final boolean[] visited = new boolean[ranges.length];
+        final int[] stack = new int[ranges.length];
+        int sp = 0;
+        for( int i=0; i<len; i++ ) {
+            if( !visited[starts[i]] ) {
+                visited[starts[i]] = true;
+                stack[sp++] = starts[i];
+            }
+        }
+
+        final int[] result = new int[ranges.length];
+        int n = 0;
+        while( sp>0 ) {
+            final int q = stack[--sp];
+            if( ranges[q]!=null || q==finalState ) {
+                result[n++] = q;
+                continue;
+            }
+            if( next1[q]>=0 && !visited[next1[q]] ) {
+                visited[next1[q]] = true;
+                stack[sp++] = next1[q];
+            }
+            if( next2[q]>=0 && !visited[next2[q]] ) {
+                visited[next2[q]] = true;
+                stack[sp++] = next2[q];
+            }
+        }
+
+        int[] r = new int[n];
+        System.arraycopy(result,0,r,0,n);
+        Arrays.sort(r);
+        return r;
+    }
+
+    /**
+     * partitions code points into classes.
+     *
+     * @return the first code point of each class.
+     */
+    private static int[] computeClasses( int[][] ranges ) {
+        int n = 1;
+        for( int i=0; i<ranges.length; i++ )
+            if( ranges[i]!=null )
+                n += ranges[i].length;
+
+        int[] points = new int[n];
+        int len = 0;
+        points[len++] = 0;
+        for( int i=0; i<ranges.length; i++ ) {
+            final int[] r = ranges[i];
+            if( r==null )   continue;
+            for( int j=0; j<r.length; j+=2 ) {
+                points[len++] = r[j];
+                if( r[j+1]<Token.UTF16_MAX )
+                    points[len++] = r[j+1]+1;
+            }
+        }
+        Arrays.sort(points,0,len);
+
+        // remove duplicates
+        int u = 0;
+        for( int i=0; i<len; i++ )
+            if( u==0 || points[u-1]!=points[i] )
+                points[u++] = points[i];
+
+        int[] r = new int[u];
+        System.arraycopy(points,0,r,0,u);
+        return r;
+    }
+
+    private int classOf( int ch ) {
+        int lo = 0, hi = classes.length-1;
+        // find the last class whose first code point is <= ch
+        while( lo<hi ) {
+            int mid = (lo+hi+1)>>>1;
+            if( classes[mid]<=ch )  lo = mid;
+            else                    hi = mid-1;
+        }
+        return lo;
+    }
+
+    /** checks if the code point is in the sorted ranges. */
+    private static boolean contains( int[] ranges, int ch ) {
+        int lo = 0, hi = ranges.length/2-1;
+        while( lo<=hi ) {
+            int mid = (lo+hi)>>>1;
+            if( ch<ranges[mid*2] )          hi = mid-1;
+            else if( ch>ranges[mid*2+1] )   lo = mid+1;
+            else                            return true;
+        }
+        return false;
+    }
+
+
+
+    /** builds the NFA from a parse tree. */
+    private static final class Builder {
+        int size = 0;
+        int[][] ranges = new int[16][];
+        int[] next1 = new int[16];
+        int[] next2 = new int[16];
+
+        int newState( int[] r, int n1, int n2 ) throws UnsupportedPatternException {
+            if( size==MAX_NFA_STATES )
+                throw new UnsupportedPatternException("the pattern is too large");
+            if( size==ranges.length ) {
+                ranges = Arrays.copyOf(ranges,size*2);
+                next1 = Arrays.copyOf(next1,size*2);
+                next2 = Arrays.copyOf(next2,size*2);
+            }
+            ranges[size] = r;
+            next1[size] = n1;
+            next2[size] = n2;
+            return size++;
+        }
+
+        /**
+         * builds states that match the given token and then go to the given state.
+         *
+         * @return
+         *        the first state of the token.
+         */
+        int build( Token t, int next ) throws UnsupportedPatternException {
+            switch(t.type) {
+            case Token.EMPTY:
+                return next;
+
+            case Token.CHAR:
+                return newState(new int[]{t.getChar(),t.getChar()},next,-1);
+
+            case Token.STRING:
+                {
+                    String s = t.getString();
+                    for( int i=s.length(); i>0; ) {
+                        int ch = s.codePointBefore(i);
+                        i -= Character.charCount(ch);
+                        next = newState(new int[]{ch,ch},next,-1);
+                    }
+                    return next;
+                }
+
+            case Token.DOT:
+                return newState(DOT_RANGES,next,-1);
+
+            case Token.RANGE:
+                return newState(normalize(((RangeToken)t).ranges,false),next,-1);
+
+            case Token.NRANGE:
+                return newState(normalize(((RangeToken)t).ranges,true),next,-1);
+
+            case Token.PAREN:
+                return build(t.getChild(0),next);
+
+            case Token.CONCAT:
+                for( int i=t.size()-1; i>=0; i-- )
+                    next = build(t.getChild(i),next);
+                return next;
+
+            case Token.UNION:
+                {
+                    if( t.size()==0 )
+                        // matches nothing
+                        return newState(new int[0],next,-1);
+                    int s = build(t.getChild(t.size()-1),next);
+                    for( int i=t.size()-2; i>=0; i-- )
+                        s = newState(null,build(t.getChild(i),next),s);
+                    return s;
+                }
+
+            case Token.CLOSURE:
+                {
+                    final Token child = t.getChild(0);
+                    int min = t.getMin();
+                    int max = t.getMax();
+                    if( min<0 )     min = 0;    // X*
+
+                    int s;
+                    if( max<0 ) {
+                        // X{min,} : build X* and then prepend 'min' copies
+                        s = newState(null,-1,next);
+                        int body = build(child,s);
+                        next1[s] = body;
+                    } else {
+                        // X{min,max} : (X(X(X)?)?)? with max-min copies
+                        s = next;
+                        for( int i=min; i<max; i++ )
+                            s = newState(null,build(child,s),next);
+                    }
+                    for( int i=0; i<min; i++ )
+                        s = build(child,s);
+                    return s;
+                }
+
+            default:
+                // anchors, back references, look-aheads, etc. are not a part of XML Schema.
+                throw new UnsupportedPatternException("unsupported token type: "+t.type);
+            }
+        }
+
+        /**
+         * sorts and merges ranges.
+         *
+         * @param complement
+         *        if true, the complement of the given ranges is returned.
+         */
+        private static int[] normalize( int[] ranges, boolean complement ) {
+            int n = ranges==null ? 0 : ranges.length/2;
+            long[] pairs = new long[n];
+            for( int i=0; i<n; i++ )
+                pairs[i] = ((long)ranges[i*2]<<32) | ranges[i*2+1];
+            Arrays.sort(pairs);
+
+            int[] merged = new int[n*2];
+            int len = 0;
+            for( int i=0; i<n; i++ ) {
+                int s = (int)(pairs[i]>>>32);
+                int e = (int)pairs[i];
+                if( len>0 && s<=merged[len-1]+1 ) {
+                    if( e>merged[len-1] )   merged[len-1] = e;
+                } else {
+                    merged[len++] = s;
+                    merged[len++] = e;
+                }
+            }
+
+            if( !complement ) {
+                int[] r = new int[len];
+                System.arraycopy(merged,0,r,0,len);
+                return r;
+            }
+
+            int[] r = new int[len+2];
+            int wp = 0;
+            int from = 0;
+            for( int i=0; i<len; i+=2 ) {
+                if( from<merged[i] ) {
+                    r[wp++] = from;
+                    r[wp++] = merged[i]-1;
+                }
+                from = merged[i+1]+1;
+            }
+            if( from<=Token.UTF16_MAX ) {
+                r[wp++] = from;
+                r[wp++] = Token.UTF16_MAX;
+            }
+            int[] c = new int[wp];
+            System.arraycopy(r,0,c,0,wp);
+            return c;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.sun.msv.datatype.regexp;
+
+import com.sun.msv.datatype.xsd.regex.RegExp;
+import com.sun.msv.datatype.xsd.regex.RegExpFactory;
+import java.text.ParseException;
+
+/**
+ * {@link RegExpFactory} that compiles patterns into deterministic automata.
+ *
+ * <p>
+ * Patterns are parsed by the internal copy of Xerces, so the syntax is
+ * the same as {@link InternalImpl}. But since the XML Schema regular expression
+ * has no back reference, a pattern can be matched by a DFA, which runs in
+ * linear time and can be used by many threads at once.
+ *
+ * <p>
+ * In the unlikely case that a pattern can't be compiled into an automaton
+ * (for example, a very large repetition count), the pattern is matched
+ * by {@link InternalImpl} under a lock.
+ *
+ * @author Kohsuke Kawaguchi
+ */
+public final class DFAImpl extends RegExpFactory {
+    public RegExp compile(String exp) throws ParseException {
+        final Token tree;
+
+        try {
+            tree = new ParserForXMLSchema().parse(exp,REUtil.parseOptions("X"));
+        } catch ( com.sun.msv.datatype.regexp.ParseException e ) {
+            throw new ParseException(e.getMessage(),e.getLocation());
+        }
+
+        try {
+            return new DFA(tree);
+        } catch ( DFA.UnsupportedPatternException e ) {
+            final RegExp re = new InternalImpl().compile(exp);
+            return new RegExp() {
+                public synchronized boolean matches(String text) {
+                    return re.matches(text);
+                }
+            };
+        }
+    }
+
+    public boolean isThreadSafe() {
+        return true;
+    }
+}
@@ -33,6 +33,9 @@ public class BooleanType extends BuiltinAtomicType {
         return "true".equals(content) || "false".equals(content)
             || "0".equals(content) || "1".equals(content);
     }
+
+    private static final FirstCharSet firstChars = FirstCharSet.of("tf01");
+    final FirstCharSet getFirstChars() { return firstChars; }
     
     public Object _createValue( String lexicalValue, ValidationContext context ) {
         // for string, lexical space is value space by itself
@@ -33,14 +33,15 @@ public class ByteType extends IntegerDerivedType {
     public Object _createValue( String content, ValidationContext context ) {
         return load(content);
     }
+
+    boolean checkFormat( String content, int start, int end ) {
+        return IntegerScanner.isInRange(content,start,end,Byte.MIN_VALUE,Byte.MAX_VALUE);
+    }
     
     public static Byte load( String s ) {
-        // Implementation of JDK1.2.2/JDK1.3 is suitable enough
-        try {
-            return new Byte(removeOptionalPlus(s));
-        } catch( NumberFormatException e ) {
+        if( !IntegerScanner.isInRange(s,Byte.MIN_VALUE,Byte.MAX_VALUE) )
             return null;
-        }
+        return Byte.valueOf((byte)IntegerScanner.parseLong(s));
     }
     public static String save( Byte v ) {
         return v.toString();
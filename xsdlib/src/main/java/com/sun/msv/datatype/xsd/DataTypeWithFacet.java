@@ -90,6 +90,15 @@ public abstract class DataTypeWithFacet extends XSDatatypeImpl
     }
     
     protected boolean needValueCheck() { return needValueCheckFlag; }
+
+    /** facets only narrow the lexical space of the base type. */
+    final FirstCharSet getFirstChars() {
+        return baseType.getFirstChars();
+    }
+
+    final int getMinLiteralLength() {
+        return baseType.getMinLiteralLength();
+    }
     
     final public DataTypeWithFacet getFacetObject( String facetName ) {
         if(this.facetName.equals(facetName))
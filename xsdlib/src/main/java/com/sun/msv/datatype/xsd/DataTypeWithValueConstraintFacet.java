@@ -26,12 +26,27 @@ abstract class DataTypeWithValueConstraintFacet extends DataTypeWithFacet {
         super( nsUri, typeName, baseType, facetName, _isFixed );
     }
     
-    final protected boolean needValueCheck() { return true; }
+    final protected boolean needValueCheck() { return !countsItems(); }
     
     protected final boolean checkFormat( String literal, ValidationContext context ) {
+        if( countsItems() )
+            // the number of items can be checked without creating the value.
+            return baseType.checkFormat(literal,context)
+                && ((ItemCountFacet)this).checkItemCount(ListTokenizer.countItems(literal));
+        
         return _createValue(literal,context)!=null;
     }
     
+    /**
+     * returns true if this facet can be checked by just counting
+     * the items of a list.
+     */
+    private boolean countsItems() {
+        return this instanceof ItemCountFacet
+            && concreteType instanceof ListType
+            && !baseType.needValueCheck();
+    }
+    
     // serialization support
     private final static long serialVersionUID =  2497055158497151572L;
 }
@@ -45,6 +45,28 @@ abstract class DateTimeBaseType extends BuiltinAtomicType implements Comparator
         }
     }
 
+    /** all the formats start with a year, a month, a day, or an hour. */
+    private static final FirstCharSet firstChars = FirstCharSet.of("-0123456789");
+    final FirstCharSet getFirstChars() { return firstChars; }
+
+    /** computes the length of the shortest literal from the format. */
+    final int getMinLiteralLength() {
+        final String format = getFormat();
+        int len=0;
+        for( int i=0; i<format.length(); i++ ) {
+            if( format.charAt(i)!='%' ) {
+                len++;
+                continue;
+            }
+            switch(format.charAt(++i)) {
+            case 'Y':   len+=4; break;  // at least 4 digits
+            case 'z':   break;          // optional
+            default:    len+=2; break;  // 2 digits
+            }
+        }
+        return len;
+    }
+
     public final Object _createValue(String content, ValidationContext context) {
         // for string, lexical space is value space by itself
         try {
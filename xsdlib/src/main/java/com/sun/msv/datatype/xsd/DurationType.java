@@ -39,6 +39,11 @@ public final class DurationType extends BuiltinAtomicType implements Comparator
             return false;
         }
     }
+
+    private static final FirstCharSet firstChars = FirstCharSet.of("-P");
+    final FirstCharSet getFirstChars() { return firstChars; }
+    /** "P" followed by at least one component. */
+    final int getMinLiteralLength() { return 3; }
     
     public Object _createValue( String content, ValidationContext context ) {
         try {
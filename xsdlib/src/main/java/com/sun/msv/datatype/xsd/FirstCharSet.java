@@ -0,0 +1,70 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.datatype.xsd;
+
+/**
+ * set of characters that a literal of a datatype can start with.
+ *
+ * <p>
+ * This is a cheap, conservative approximation of the lexical space:
+ * a literal that starts with a character outside of this set is never valid,
+ * but a literal that starts with a character in this set may still be invalid.
+ * {@link UnionType} uses it to skip member types that cannot accept a literal.
+ *
+ * <p>
+ * Non-ASCII characters are not distinguished from each other.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+final class FirstCharSet {
+
+    /** the set of all characters. */
+    static final FirstCharSet ANY = new FirstCharSet(-1L,-1L,true);
+
+    /** bit masks of ASCII characters; #x0-#x3F and #x40-#x7F respectively. */
+    private final long low,high;
+
+    /** true if non-ASCII characters are in this set. */
+    private final boolean nonAscii;
+
+    private FirstCharSet( long low, long high, boolean nonAscii ) {
+        this.low = low;
+        this.high = high;
+        this.nonAscii = nonAscii;
+    }
+
+    /**
+     * creates a set that consists of the given ASCII characters.
+     */
+    static FirstCharSet of( String chars ) {
+        long low=0,high=0;
+        for( int i=0; i<chars.length(); i++ ) {
+            final char ch = chars.charAt(i);
+            if( ch>=128 )   throw new IllegalArgumentException(chars);
+            if( ch<64 )     low  |= 1L<<ch;
+            else            high |= 1L<<(ch-64);
+        }
+        return new FirstCharSet(low,high,false);
+    }
+
+    /**
+     * computes the union of two sets.
+     */
+    FirstCharSet union( FirstCharSet rhs ) {
+        if( this==ANY || rhs==ANY )     return ANY;
+        return new FirstCharSet( low|rhs.low, high|rhs.high, nonAscii|rhs.nonAscii );
+    }
+
+    boolean contains( char ch ) {
+        if( ch<64 )     return (low &(1L<<ch))!=0;
+        if( ch<128 )    return (high&(1L<<(ch-64)))!=0;
+        return nonAscii;
+    }
+}
@@ -22,6 +22,10 @@ abstract class FloatingNumberType extends BuiltinAtomicType implements Comparato
         // FloatType and DoubleType checks format by trying to convert it to value object
         return _createValue(lexicalValue,context)!=null;
     }
+
+    /** a number, "NaN", "INF", or "-INF". */
+    private static final FirstCharSet firstChars = FirstCharSet.of("+-.0123456789IN");
+    final FirstCharSet getFirstChars() { return firstChars; }
     
     protected static boolean isDigitOrPeriodOrSign( char ch ) {
         if( '0'<=ch && ch<='9' )    return true;
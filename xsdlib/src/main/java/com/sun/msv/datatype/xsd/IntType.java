@@ -37,14 +37,15 @@ public class IntType extends IntegerDerivedType {
     public Object _createValue( String lexicalValue, ValidationContext context ) {
         return load(lexicalValue);
     }
+
+    boolean checkFormat( String content, int start, int end ) {
+        return IntegerScanner.isInRange(content,start,end,Integer.MIN_VALUE,Integer.MAX_VALUE);
+    }
     
     public static Integer load( String s ) {
-        // Implementation of JDK1.2.2/JDK1.3 is suitable enough
-        try {
-            return new Integer(removeOptionalPlus(s));
-        } catch( NumberFormatException e ) {
+        if( !IntegerScanner.isInRange(s,Integer.MIN_VALUE,Integer.MAX_VALUE) )
             return null;
-        }
+        return Integer.valueOf((int)IntegerScanner.parseLong(s));
     }
     
     public static String save( Integer v ) {
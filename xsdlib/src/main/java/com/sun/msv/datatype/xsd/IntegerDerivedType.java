@@ -51,10 +51,23 @@ abstract class IntegerDerivedType extends BuiltinAtomicType implements Comparato
     }
     
     protected final boolean checkFormat( String content, ValidationContext context ) {
-        // integer-derived types always checks lexical format by trying to convert it to value object
-        return _createValue(content,context)!=null;
+        return checkFormat(content,0,content.length());
     }
     
+    /** list items are checked in place. */
+    final boolean isValid( String literal, int start, int end, ValidationContext context ) {
+        return checkFormat(literal,start,end);
+    }
+    
+    /**
+     * checks the lexical format of the given range of a string,
+     * without creating the value.
+     */
+    abstract boolean checkFormat( String content, int start, int end );
+
+    private static final FirstCharSet firstChars = FirstCharSet.of("+-0123456789");
+    final FirstCharSet getFirstChars() { return firstChars; }
+    
     public String convertToLexicalValue( Object value, SerializationContext context ) {
         if( value instanceof Number || value instanceof IntegerValueType )
             return value.toString();
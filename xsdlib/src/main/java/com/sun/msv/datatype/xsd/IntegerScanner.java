@@ -0,0 +1,167 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ *
+ * This software is the proprietary information of Sun Microsystems, Inc.
+ * Use is subject to license terms.
+ *
+ */
+package com.sun.msv.datatype.xsd;
+
+/**
+ * checks literals of "integer" and its derived types.
+ *
+ * <p>
+ * Literals are scanned in one pass, without creating any object and
+ * without throwing exceptions, so that the lexical check of an integer type
+ * doesn't cost more than looking at its characters. Value objects are only
+ * created when they are actually needed.
+ *
+ * <p>
+ * The lexical space is the one of XML Schema: an optional sign followed by
+ * one or more of the ASCII digits. Unlike {@link Long#parseLong(String)},
+ * other Unicode digits are not accepted.
+ *
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+final class IntegerScanner {
+
+    private IntegerScanner() {}
+
+    /** returned by {@link #signum(String)} if the literal is not an integer. */
+    static final int NOT_AN_INTEGER = 2;
+
+    /**
+     * checks the lexical format of an integer of any size.
+     *
+     * @return
+     *        -1, 0, or 1 as the value is negative, zero, or positive.
+     *        {@link #NOT_AN_INTEGER} if the literal is not an integer.
+     */
+    static int signum( String s ) {
+        return signum(s,0,s.length());
+    }
+
+    /**
+     * checks the lexical format of the integer in the given range of a string.
+     *
+     * @see #signum(String)
+     */
+    static int signum( String s, int start, int end ) {
+        if( start==end )    return NOT_AN_INTEGER;
+
+        int i=start;
+        int sign = 1;
+        switch(s.charAt(start)) {
+        case '-':   sign = -1;  // fall through
+        case '+':   i++;
+        }
+        if( i==end )    return NOT_AN_INTEGER;  // sign only
+
+        boolean zero = true;
+        for( ; i<end; i++ ) {
+            final char ch = s.charAt(i);
+            if( ch<'0' || '9'<ch )  return NOT_AN_INTEGER;
+            if( ch!='0' )           zero = false;
+        }
+        return zero ? 0 : sign;
+    }
+
+    /**
+     * checks if the literal is an integer within the given range.
+     */
+    static boolean isInRange( String s, long min, long max ) {
+        return isInRange(s,0,s.length(),min,max);
+    }
+
+    /**
+     * checks if the given range of a string is an integer within the given range.
+     */
+    static boolean isInRange( String s, int start, int end, long min, long max ) {
+        if( start==end )    return false;
+
+        int i=start;
+        boolean negative = false;
+        switch(s.charAt(start)) {
+        case '-':   negative = true;    // fall through
+        case '+':   i++;
+        }
+        if( i==end )    return false;   // sign only
+
+        // accumulate the value negatively, as Long.parseLong does,
+        // so that Long.MIN_VALUE can be represented.
+        final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        final long multmin = limit/10;
+        long r = 0;
+        for( ; i<end; i++ ) {
+            final int d = s.charAt(i)-'0';
+            if( d<0 || 9<d )        return false;
+            // a value that doesn't fit into a long is out of the range anyway.
+            if( r<multmin )         return false;
+            r *= 10;
+            if( r<limit+d )         return false;
+            r -= d;
+        }
+
+        final long v = negative ? r : -r;
+        return min<=v && v<=max;
+    }
+
+    /**
+     * converts a literal to a long.
+     *
+     * The literal has to be checked by {@link #isInRange(String,long,long)} first.
+     */
+    static long parseLong( String s ) {
+        final int len = s.length();
+        int i=0;
+        boolean negative = false;
+        switch(s.charAt(0)) {
+        case '-':   negative = true;    // fall through
+        case '+':   i++;
+        }
+
+        long r = 0;
+        for( ; i<len; i++ )
+            r = r*10-(s.charAt(i)-'0');
+        return negative ? r : -r;
+    }
+
+    /**
+     * checks if the value of a non-negative integer literal is
+     * less than or equal to the given bound.
+     *
+     * @param s
+     *        a literal whose {@link #signum(String)} is 0 or 1.
+     * @param bound
+     *        the canonical representation of a non-negative integer.
+     */
+    static boolean isAtMost( String s, String bound ) {
+        return isAtMost(s,0,s.length(),bound);
+    }
+
+    /**
+     * checks if the value of the non-negative integer in the given range
+     * of a string is less than or equal to the given bound.
+     *
+     * @see #isAtMost(String,String)
+     */
+    static boolean isAtMost( String s, int start, int end, String bound ) {
+        int i=start;
+        // skip the sign and leading zeros
+        if( s.charAt(i)=='+' || s.charAt(i)=='-' )  i++;
+        while( i<end-1 && s.charAt(i)=='0' )        i++;
+
+        final int digits = end-i;
+        if( digits!=bound.length() )
+            return digits<bound.length();
+
+        for( int j=0; j<digits; j++ ) {
+            final char ch = s.charAt(i+j);
+            final char bh = bound.charAt(j);
+            if( ch!=bh )    return ch<bh;
+        }
+        return true;
+    }
+}
@@ -50,6 +50,10 @@ public class IntegerType extends IntegerDerivedType {
     public Object _createValue( String lexicalValue, ValidationContext context ) {
         return IntegerValueType.create(lexicalValue);
     }
+
+    boolean checkFormat( String content, int start, int end ) {
+        return IntegerScanner.signum(content,start,end)!=IntegerScanner.NOT_AN_INTEGER;
+    }
     
     public Object _createJavaObject( String literal, ValidationContext context ) {
         IntegerValueType o = (IntegerValueType)_createValue(literal,context);
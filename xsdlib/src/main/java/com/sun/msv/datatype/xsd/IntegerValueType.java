@@ -52,57 +52,30 @@ public class IntegerValueType extends Number implements Comparable, java.io.Seri
      *        XML Schema datatype spec.
      */
     public static IntegerValueType create(String nonCanonicalizedValue) {
-        int idx = 0;
-        String v = "";
-        final int len = nonCanonicalizedValue.length();
-
-        if (len == 0)
+        final int sign = IntegerScanner.signum(nonCanonicalizedValue);
+        if (sign == IntegerScanner.NOT_AN_INTEGER)
             return null;
-        switch (nonCanonicalizedValue.charAt(idx)) {
-            case '+' :
-                idx++;
-                break; // ignore the sign
-            case '-' :
-                v += '-';
-                idx++;
-                break;
-            case '0' :
-            case '1' :
-            case '2' :
-            case '3' :
-            case '4' :
-            case '5' :
-            case '6' :
-            case '7' :
-            case '8' :
-            case '9' :
-                break;
-            default :
-                return null;
-        }
-
-        if (idx == len)
-            return null; // just sign only: reject it
+        if (sign == 0)
+            return new IntegerValueType("0");
 
-        // skip leading '0'
-        while (idx < len && nonCanonicalizedValue.charAt(idx) == '0')
+        // skip the sign and leading '0's
+        final int len = nonCanonicalizedValue.length();
+        int idx = 0;
+        final char first = nonCanonicalizedValue.charAt(0);
+        if (first == '+' || first == '-')
+            idx++;
+        while (nonCanonicalizedValue.charAt(idx) == '0')
             idx++;
 
-        if (idx == len) {
-            // all the digits are skipped : that means this value is 0
-            return new IntegerValueType("0");
-        }
-
-        // adding digits
-        while (idx < len) {
-            final char ch = nonCanonicalizedValue.charAt(idx++);
-            if ('0' <= ch && ch <= '9')
-                v += ch;
-            else
-                return null; // illegal char
-        }
+        if (sign > 0)
+            // in the common case, the literal is already canonical.
+            return new IntegerValueType(
+                idx == 0 ? nonCanonicalizedValue : nonCanonicalizedValue.substring(idx));
 
-        return new IntegerValueType(v);
+        if (idx == 1)
+            return new IntegerValueType(nonCanonicalizedValue);
+        return new IntegerValueType(
+            new StringBuffer(len - idx + 1).append('-').append(nonCanonicalizedValue, idx, len).toString());
     }
 
     /**
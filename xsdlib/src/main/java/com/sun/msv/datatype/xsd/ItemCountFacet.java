@@ -0,0 +1,22 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.datatype.xsd;
+
+/**
+ * facets that only constrain the length of a value.
+ * 
+ * For lists, such a facet can be checked by just counting the items.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+interface ItemCountFacet {
+    /** checks the number of items of a list. */
+    public boolean checkItemCount( int count );
+}
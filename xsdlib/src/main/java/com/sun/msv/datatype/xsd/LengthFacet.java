@@ -20,7 +20,7 @@ import org.relaxng.datatype.ValidationContext;
  * 
  * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
  */
-public class LengthFacet extends DataTypeWithValueConstraintFacet {
+public class LengthFacet extends DataTypeWithValueConstraintFacet implements ItemCountFacet {
     public final int length;
     
     protected LengthFacet( String nsUri, String typeName, XSDatatypeImpl baseType, TypeIncubator facets )
@@ -45,6 +45,8 @@ public class LengthFacet extends DataTypeWithValueConstraintFacet {
         // consistency with minLength/maxLength is checked in XSDatatypeImpl.derive method.
     }
     
+    public final boolean checkItemCount( int count ) { return count==length; }
+    
     public Object _createValue( String content, ValidationContext context ) {
         Object o = baseType._createValue(content,context);
         if(o==null || ((Discrete)concreteType).countLength(o)!=length)    return null;
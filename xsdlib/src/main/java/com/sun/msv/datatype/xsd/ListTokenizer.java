@@ -0,0 +1,63 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.datatype.xsd;
+
+/**
+ * splits list literals into items in place, without creating substrings.
+ * 
+ * <p>
+ * Items are separated by the same characters as the default delimiters
+ * of <code>StringTokenizer</code>, which correctly implements
+ * the semantics of whiteSpace="collapse". A typical loop looks like:
+ * 
+ * <pre>
+ * for( int start=skipDelimiters(s,0); start&lt;s.length(); ) {
+ *     int end = skipItem(s,start);
+ *     ... the item is s[start,end) ...
+ *     start = skipDelimiters(s,end);
+ * }
+ * </pre>
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public final class ListTokenizer {
+    
+    private ListTokenizer() {}
+    
+    /** returns true if the character separates items of a list. */
+    public static boolean isDelimiter( char ch ) {
+        return ch==' ' || ch=='\t' || ch=='\n' || ch=='\r' || ch=='\f';
+    }
+    
+    /** returns the index of the first item that starts at or after the given index. */
+    public static int skipDelimiters( String literal, int idx ) {
+        final int len = literal.length();
+        while( idx<len && isDelimiter(literal.charAt(idx)) )
+            idx++;
+        return idx;
+    }
+    
+    /** returns the index just after the item that starts at the given index. */
+    public static int skipItem( String literal, int idx ) {
+        final int len = literal.length();
+        while( idx<len && !isDelimiter(literal.charAt(idx)) )
+            idx++;
+        return idx;
+    }
+    
+    /** counts the number of items without creating them. */
+    public static int countItems( String literal ) {
+        final int len = literal.length();
+        int cnt=0;
+        for( int start=skipDelimiters(literal,0); start<len; start=skipDelimiters(literal,skipItem(literal,start)) )
+            cnt++;
+        return cnt;
+    }
+}
@@ -13,8 +13,6 @@ import com.sun.msv.datatype.SerializationContext;
 import org.relaxng.datatype.DatatypeException;
 import org.relaxng.datatype.ValidationContext;
 
-import java.util.StringTokenizer;
-
 /**
  * List type.
  * 
@@ -40,6 +38,11 @@ public final class ListType extends ConcreteType implements Discrete {
     /** atomic base type */
     final public XSDatatypeImpl itemType;
 
+    /** the first item, or whitespace between items. */
+    FirstCharSet getFirstChars() {
+        return itemType.getFirstChars().union(FirstCharSet.of(" \t\n\r\f"));
+    }
+
     
     public final String displayName() {
         String name = getName();
@@ -99,24 +102,27 @@ public final class ListType extends ConcreteType implements Discrete {
     
     protected final boolean checkFormat( String content, ValidationContext context ) {
         // Are #x9, #xD, and #xA allowed as a separator, or not?
-        StringTokenizer tokens = new StringTokenizer(content);
-        
-        while( tokens.hasMoreTokens() )
-            if(!itemType.isValid(tokens.nextToken(),context))    return false;
+        final int len = content.length();
+        int start = ListTokenizer.skipDelimiters(content,0);
+        while( start<len ) {
+            final int end = ListTokenizer.skipItem(content,start);
+            // items are checked in place, without creating a substring if possible.
+            if(!itemType.isValid(content,start,end,context))    return false;
+            start = ListTokenizer.skipDelimiters(content,end);
+        }
         
         return true;
     }
     
     public Object _createValue( String content, ValidationContext context ) {
-        // StringTokenizer correctly implements the semantics of whiteSpace="collapse"
-        StringTokenizer tokens = new StringTokenizer(content);
-        
-        Object[] values = new Object[tokens.countTokens()];
-        int i=0;
+        Object[] values = new Object[ListTokenizer.countItems(content)];
         
-        while( tokens.hasMoreTokens() ) {
-            if( ( values[i++] = itemType._createValue(tokens.nextToken(),context) )==null )
+        int start = ListTokenizer.skipDelimiters(content,0);
+        for( int i=0; i<values.length; i++ ) {
+            final int end = ListTokenizer.skipItem(content,start);
+            if( ( values[i] = itemType._createValue(content.substring(start,end),context) )==null )
                 return null;
+            start = ListTokenizer.skipDelimiters(content,end);
         }
             
         return new ListValueType(values);
@@ -146,12 +152,12 @@ public final class ListType extends ConcreteType implements Discrete {
     
     /** The current implementation detects which list item is considered wrong. */
     protected void _checkValid(String content, ValidationContext context) throws DatatypeException {
-        // StringTokenizer correctly implements the semantics of whiteSpace="collapse"
-        StringTokenizer tokens = new StringTokenizer(content);
-        
-        while( tokens.hasMoreTokens() ) {
-            String token = tokens.nextToken();
-            itemType.checkValid(token,context);
+        final int len = content.length();
+        int start = ListTokenizer.skipDelimiters(content,0);
+        while( start<len ) {
+            final int end = ListTokenizer.skipItem(content,start);
+            itemType.checkValid(content.substring(start,end),context);
+            start = ListTokenizer.skipDelimiters(content,end);
         }
     }
 
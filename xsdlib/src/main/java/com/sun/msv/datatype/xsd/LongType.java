@@ -37,14 +37,15 @@ public class LongType extends IntegerDerivedType {
     public Object _createValue( String lexicalValue, ValidationContext context ) {
         return load(lexicalValue);
     }
+
+    boolean checkFormat( String content, int start, int end ) {
+        return IntegerScanner.isInRange(content,start,end,Long.MIN_VALUE,Long.MAX_VALUE);
+    }
     
     public static Long load( String s ) {
-        // Implementation of JDK1.2.2/JDK1.3 is suitable enough
-        try {
-            return new Long(removeOptionalPlus(s));
-        } catch( NumberFormatException e ) {
+        if( !IntegerScanner.isInRange(s,Long.MIN_VALUE,Long.MAX_VALUE) )
             return null;
-        }
+        return Long.valueOf(IntegerScanner.parseLong(s));
     }
     
     public static String save( Long v ) {
@@ -17,7 +17,7 @@ import org.relaxng.datatype.ValidationContext;
  * 
  * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
  */
-public class MaxLengthFacet extends DataTypeWithValueConstraintFacet
+public class MaxLengthFacet extends DataTypeWithValueConstraintFacet implements ItemCountFacet
 {
     public final int maxLength;
 
@@ -43,6 +43,8 @@ public class MaxLengthFacet extends DataTypeWithValueConstraintFacet
         // consistency with minLength is checked in XSDatatypeImpl.derive method.
     }
     
+    public final boolean checkItemCount( int count ) { return count<=maxLength; }
+    
     public Object _createValue( String literal, ValidationContext context ) {
         Object o = baseType._createValue(literal,context);
         if(o==null || ((Discrete)concreteType).countLength(o)>maxLength)    return null;
@@ -17,7 +17,7 @@ import org.relaxng.datatype.ValidationContext;
  * 
  * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
  */
-public class MinLengthFacet extends DataTypeWithValueConstraintFacet {
+public class MinLengthFacet extends DataTypeWithValueConstraintFacet implements ItemCountFacet {
     public final int minLength;
     
     protected MinLengthFacet( String nsUri, String typeName, XSDatatypeImpl baseType, TypeIncubator facets )
@@ -42,6 +42,8 @@ public class MinLengthFacet extends DataTypeWithValueConstraintFacet {
         // consistency with maxLength is checked in XSDatatypeImpl.derive method.
     }
     
+    public final boolean checkItemCount( int count ) { return count>=minLength; }
+    
     public Object _createValue( String literal, ValidationContext context ) {
         Object o = baseType._createValue(literal,context);
         if(o==null || ((Discrete)concreteType).countLength(o)<minLength)    return null;
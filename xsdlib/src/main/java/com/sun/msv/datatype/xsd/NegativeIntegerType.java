@@ -44,6 +44,10 @@ public class NegativeIntegerType extends IntegerType {
         return v;
     }
 
+    boolean checkFormat( String content, int start, int end ) {
+        return IntegerScanner.signum(content,start,end)==-1;
+    }
+
     // serialization support
     private static final long serialVersionUID = 1;    
 }
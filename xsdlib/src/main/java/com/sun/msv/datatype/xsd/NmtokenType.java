@@ -32,6 +32,10 @@ public class NmtokenType extends TokenType {
         if(XmlNames.isNmtoken(content))        return content;
         else                                return null;
     }
+    
+    boolean isValid( String literal, int start, int end, ValidationContext context ) {
+        return XmlNames.isNmtoken(literal,start,end);
+    }
 
     // serialization support
     private static final long serialVersionUID = 1;    
@@ -40,6 +40,11 @@ public class NonNegativeIntegerType extends IntegerType {
         return v;
     }
 
+    boolean checkFormat( String content, int start, int end ) {
+        final int sign = IntegerScanner.signum(content,start,end);
+        return sign==0 || sign==1;
+    }
+
     // serialization support
     private static final long serialVersionUID = 1;    
 }
@@ -35,6 +35,9 @@ public class NumberType extends BuiltinAtomicType implements Comparator {
     /** constant */
     private static final BigInteger the10 = new BigInteger("10");
 
+    private static final FirstCharSet firstChars = FirstCharSet.of("+-.0123456789");
+    final FirstCharSet getFirstChars() { return firstChars; }
+
     protected boolean checkFormat( String content, ValidationContext context ) {
         final int len = content.length();
         int i=0;
@@ -10,6 +10,7 @@
 package com.sun.msv.datatype.xsd;
 
 import com.sun.msv.datatype.xsd.regex.RegExp;
+import com.sun.msv.datatype.xsd.regex.RegExpCache;
 import com.sun.msv.datatype.xsd.regex.RegExpFactory;
 import org.relaxng.datatype.DatatypeException;
 import org.relaxng.datatype.ValidationContext;
@@ -39,6 +40,9 @@ public final class PatternFacet extends DataTypeWithLexicalConstraintFacet {
     private transient RegExp[] exps;
     
     public RegExp[] getRegExps() { return exps; }
+
+    /** true if {@link #exps} can be used by many threads at the same time. */
+    private transient boolean threadSafe;
     
     /**
      * string representations of the above RegularExpressions.
@@ -69,12 +73,17 @@ public final class PatternFacet extends DataTypeWithLexicalConstraintFacet {
         }
     }
     
-    /** Compiles all the regular expressions. */
+    /**
+     * Compiles all the regular expressions.
+     * Patterns compiled before by other facets are shared.
+     */
     private void compileRegExps() throws ParseException {
         exps = new RegExp[patterns.length];
         RegExpFactory factory = RegExpFactory.createFactory();
+        threadSafe = factory.isThreadSafe();
+        RegExpCache cache = RegExpCache.getShared();
         for(int i=0;i<exps.length;i++)
-            exps[i] = factory.compile(patterns[i]);
+            exps[i] = cache.compile(factory,patterns[i]);
         
         // loosened facet check is almost impossible for pattern facet.
         // ignore it for now.
@@ -94,13 +103,20 @@ public final class PatternFacet extends DataTypeWithLexicalConstraintFacet {
     protected final boolean checkLexicalConstraint( String literal ) {
         // makes sure that at least one of the patterns is satisfied.
         
+        if( threadSafe )
+            return matches(literal);
+
         // regexp can be not thread-safe. Make sure only one thread uses it
         // at any given time.
         synchronized(this) {
-            for( int i=0; i<exps.length; i++ )
-                if(exps[i].matches(literal))
-                    return true;
+            return matches(literal);
         }
+    }
+
+    private boolean matches( String literal ) {
+        for( int i=0; i<exps.length; i++ )
+            if(exps[i].matches(literal))
+                return true;
         // otherwise fail
         return false;
     }
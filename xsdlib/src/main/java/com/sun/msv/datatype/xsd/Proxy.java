@@ -59,6 +59,14 @@ public class Proxy extends XSDatatypeImpl {
     public boolean checkFormat( String content, ValidationContext context ) {
         return baseType.checkFormat(content,context);
     }
+
+    FirstCharSet getFirstChars() {
+        return baseType.getFirstChars();
+    }
+
+    int getMinLiteralLength() {
+        return baseType.getMinLiteralLength();
+    }
     
     public Object _createValue( String content, ValidationContext context ) {
         return baseType._createValue(content,context);
@@ -36,14 +36,15 @@ public class ShortType extends IntegerDerivedType {
     public Object _createValue( String lexicalValue, ValidationContext context ) {
         return load(lexicalValue);
     }
+
+    boolean checkFormat( String content, int start, int end ) {
+        return IntegerScanner.isInRange(content,start,end,Short.MIN_VALUE,Short.MAX_VALUE);
+    }
     
     public static Short load( String s ) {
-        // Implementation of JDK1.2.2/JDK1.3 is suitable enough
-        try {
-            return new Short(removeOptionalPlus(s));
-        } catch( NumberFormatException e ) {
+        if( !IntegerScanner.isInRange(s,Short.MIN_VALUE,Short.MAX_VALUE) )
             return null;
-        }
+        return Short.valueOf((short)IntegerScanner.parseLong(s));
     }
     
     public static String save( Short v ) {
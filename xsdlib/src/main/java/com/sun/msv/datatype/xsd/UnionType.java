@@ -10,6 +10,8 @@
 package com.sun.msv.datatype.xsd;
 
 import com.sun.msv.datatype.SerializationContext;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import org.relaxng.datatype.DatatypeException;
 import org.relaxng.datatype.ValidationContext;
 
@@ -37,11 +39,72 @@ final public class UnionType extends ConcreteType {
                     ERR_INVALID_MEMBER_TYPE, m[i].displayName() ));
         
         this.memberTypes = m;
+        buildCandidates();
     }
     
     /** member types */
     final public XSDatatypeImpl[] memberTypes;
 
+    /**
+     * indices of the member types that can accept a literal
+     * starting with each ASCII character, in the order of declaration.
+     */
+    private transient int[][] asciiCandidates;
+    /**
+     * indices of the member types that can accept a literal
+     * starting with a non-ASCII character.
+     */
+    private transient int[] otherCandidates;
+    /** indices of all the member types. */
+    private transient int[] allCandidates;
+    /** the length of the shortest literal accepted by each member type. */
+    private transient int[] minLengths;
+
+    /**
+     * computes the member types to be tried for each first character,
+     * so that a literal is only parsed by members that can accept it.
+     */
+    private void buildCandidates() {
+        final FirstCharSet[] firstChars = new FirstCharSet[memberTypes.length];
+        minLengths = new int[memberTypes.length];
+        for( int i=0; i<memberTypes.length; i++ ) {
+            firstChars[i] = memberTypes[i].getFirstChars();
+            minLengths[i] = memberTypes[i].getMinLiteralLength();
+        }
+
+        allCandidates = candidatesOf(firstChars,(char)0,true);
+        asciiCandidates = new int[128][];
+        for( char ch=0; ch<128; ch++ )
+            asciiCandidates[ch] = candidatesOf(firstChars,ch,false);
+        otherCandidates = candidatesOf(firstChars,(char)128,false);
+    }
+
+    private int[] candidatesOf( FirstCharSet[] firstChars, char ch, boolean all ) {
+        int[] r = new int[firstChars.length];
+        int len=0;
+        for( int i=0; i<firstChars.length; i++ )
+            if( all || firstChars[i].contains(ch) )
+                r[len++] = i;
+
+        // most characters are accepted by all or none of the members.
+        if( len==r.length && allCandidates!=null )  return allCandidates;
+        if( len==0 )                                 return EMPTY;
+
+        int[] t = new int[len];
+        System.arraycopy(r,0,t,0,len);
+        return t;
+    }
+
+    private static final int[] EMPTY = new int[0];
+
+    /** gets the indices of the member types that can accept the given literal. */
+    private int[] getCandidates( String content ) {
+        if( content.length()==0 )   return allCandidates;
+        final char ch = content.charAt(0);
+        if( ch<128 )    return asciiCandidates[ch];
+        else            return otherCandidates;
+    }
+
     
     final public XSDatatype getBaseType() {
         return SimpleURType.theInstance;
@@ -91,21 +154,43 @@ final public class UnionType extends ConcreteType {
     }
     
     protected final boolean checkFormat( String content, ValidationContext context ) {
-        for( int i=0; i<memberTypes.length; i++ )
-            if( memberTypes[i].checkFormat(content,context) )    return true;
+        final int[] candidates = getCandidates(content);
+        final int len = content.length();
+        for( int i=0; i<candidates.length; i++ ) {
+            final int m = candidates[i];
+            if( len>=minLengths[m] && memberTypes[m].checkFormat(content,context) )    return true;
+        }
         
         return false;
     }
     
     public Object _createValue( String content, ValidationContext context ) {
+        final int[] candidates = getCandidates(content);
+        final int len = content.length();
         Object o;
-        for( int i=0; i<memberTypes.length; i++ ) {
-            o = memberTypes[i]._createValue(content,context);
+        for( int i=0; i<candidates.length; i++ ) {
+            final int m = candidates[i];
+            if( len<minLengths[m] )     continue;
+            o = memberTypes[m]._createValue(content,context);
             if(o!=null)        return o;
         }
         
         return null;
     }
+
+    FirstCharSet getFirstChars() {
+        FirstCharSet r = memberTypes[0].getFirstChars();
+        for( int i=1; i<memberTypes.length; i++ )
+            r = r.union(memberTypes[i].getFirstChars());
+        return r;
+    }
+
+    int getMinLiteralLength() {
+        int r = memberTypes[0].getMinLiteralLength();
+        for( int i=1; i<memberTypes.length; i++ )
+            r = Math.min(r,memberTypes[i].getMinLiteralLength());
+        return r;
+    }
     public Class getJavaObjectType() {
         // TODO: find the common base type, if it's possible.
         return Object.class;
@@ -130,6 +215,12 @@ final public class UnionType extends ConcreteType {
     }
 
 
+    private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        stream.defaultReadObject();
+        buildCandidates();
+    }
+
+
     // serialization support
     private static final long serialVersionUID = 1;    
 }
@@ -36,16 +36,13 @@ public class UnsignedByteType extends ShortType {
     }
 
     public Object _createValue( String lexicalValue, ValidationContext context ) {
-        // Implementation of JDK1.2.2/JDK1.3 is suitable enough
-        try {
-            Short v = (Short)super._createValue(lexicalValue,context);
-            if( v==null )                        return null;
-            if( v.shortValue()<0 )               return null;
-            if( v.shortValue()>upperBound )      return null;
-            return v;
-        } catch( NumberFormatException e ) {
+        if( !IntegerScanner.isInRange(lexicalValue,0,upperBound) )
             return null;
-        }
+        return Short.valueOf((short)IntegerScanner.parseLong(lexicalValue));
+    }
+
+    boolean checkFormat( String content, int start, int end ) {
+        return IntegerScanner.isInRange(content,start,end,0,upperBound);
     }
 
     // serialization support
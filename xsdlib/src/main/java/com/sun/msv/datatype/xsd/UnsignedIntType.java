@@ -41,16 +41,13 @@ public class UnsignedIntType extends LongType {
     private static final long upperBound = 4294967295L;
     
     public Object _createValue( String lexicalValue, ValidationContext context ) {
-        // Implementation of JDK1.2.2/JDK1.3 is suitable enough
-        try {
-            Long v = (Long)super._createValue(lexicalValue,context);
-            if( v==null )                        return null;
-            if( v.longValue()<0 )               return null;
-            if( v.longValue()>upperBound )      return null;
-            return v;
-        } catch( NumberFormatException e ) {
+        if( !IntegerScanner.isInRange(lexicalValue,0,upperBound) )
             return null;
-        }
+        return Long.valueOf(IntegerScanner.parseLong(lexicalValue));
+    }
+
+    boolean checkFormat( String content, int start, int end ) {
+        return IntegerScanner.isInRange(content,start,end,0,upperBound);
     }
 
     // serialization support
@@ -45,6 +45,11 @@ public class UnsignedLongType extends IntegerType {
         return v;
     }
 
+    boolean checkFormat( String content, int start, int end ) {
+        final int sign = IntegerScanner.signum(content,start,end);
+        return (sign==0 || sign==1) && IntegerScanner.isAtMost(content,start,end,upperBound.toString());
+    }
+
     // serialization support
     private static final long serialVersionUID = 1;    
 }
@@ -40,16 +40,13 @@ public class UnsignedShortType extends IntType {
     private static final int upperBound = 65535;
     
     public Object _createValue( String lexicalValue, ValidationContext context ) {
-        // Implementation of JDK1.2.2/JDK1.3 is suitable enough
-        try {
-            Integer v = (Integer)super._createValue(lexicalValue,context);
-            if(v==null)                        return null;
-            if( v.intValue()<0 )            return null;
-            if( v.intValue()>upperBound )   return null;
-            return v;
-        } catch( NumberFormatException e ) {
+        if( !IntegerScanner.isInRange(lexicalValue,0,upperBound) )
             return null;
-        }
+        return Integer.valueOf((int)IntegerScanner.parseLong(lexicalValue));
+    }
+
+    boolean checkFormat( String content, int start, int end ) {
+        return IntegerScanner.isInRange(content,start,end,0,upperBound);
     }
 
     // serialization support
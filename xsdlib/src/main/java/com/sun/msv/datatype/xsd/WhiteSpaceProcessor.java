@@ -27,6 +27,25 @@ public abstract class WhiteSpaceProcessor implements Serializable {
      */
     public abstract String process(String text);
 
+    /**
+     * returns whitespace normalized text.
+     * 
+     * <p>
+     * This method can be used to process text that is still in a buffer,
+     * without creating an intermediate String.
+     */
+    public String process(CharSequence text) {
+        return process(text.toString());
+    }
+
+    /**
+     * checks if the text is already normalized by this processor,
+     * in which case {@link #process(String)} returns the same String.
+     */
+    public boolean isNormalized(CharSequence text) {
+        return process(text.toString()).contentEquals(text);
+    }
+
     /** higher return value indicates tigher constraint */
     abstract int tightness();
 
@@ -92,6 +111,12 @@ public abstract class WhiteSpaceProcessor implements Serializable {
         public String process(String text) {
             return text;
         }
+        public String process(CharSequence text) {
+            return text.toString();
+        }
+        public boolean isNormalized(CharSequence text) {
+            return true;
+        }
         int tightness() {
             return 0;
         }
@@ -107,18 +132,36 @@ public abstract class WhiteSpaceProcessor implements Serializable {
     private static class Replace extends WhiteSpaceProcessor
     {
         public String process(String text) {
+            // most literals don't have any tab or new line.
+            if (isNormalized(text))
+                return text;
+            return replaceChars(text);
+        }
+        public String process(CharSequence text) {
+            return replaceChars(text);
+        }
+        public boolean isNormalized(CharSequence text) {
             final int len = text.length();
-            StringBuffer result = new StringBuffer(len);
+            for (int i = 0; i < len; i++) {
+                char ch = text.charAt(i);
+                if (ch != ' ' && super.isWhiteSpace(ch))
+                    return false;
+            }
+            return true;
+        }
+        private String replaceChars(CharSequence text) {
+            final int len = text.length();
+            final char[] result = new char[len];
 
             for (int i = 0; i < len; i++) {
                 char ch = text.charAt(i);
                 if (super.isWhiteSpace(ch))
-                    result.append(' ');
+                    result[i] = ' ';
                 else
-                    result.append(ch);
+                    result[i] = ch;
             }
 
-            return result.toString();
+            return new String(result);
         }
         int tightness() {
             return 1;
@@ -134,9 +177,40 @@ public abstract class WhiteSpaceProcessor implements Serializable {
     private static class Collapse extends WhiteSpaceProcessor
     {
         public String process(String text) {
+            // most literals are already collapsed.
+            if (isNormalized(text))
+                return text;
+            return collapseChars(text);
+        }
+        public String process(CharSequence text) {
+            return collapseChars(text);
+        }
+        public boolean isNormalized(CharSequence text) {
+            final int len = text.length();
+            if (len == 0)
+                return true;
+            if (text.charAt(0) == ' ' || text.charAt(len - 1) == ' ')
+                return false;
+
+            boolean prevSpace = false;
+            for (int i = 0; i < len; i++) {
+                char ch = text.charAt(i);
+                if (ch == ' ') {
+                    if (prevSpace)
+                        return false;
+                    prevSpace = true;
+                } else {
+                    if (WhiteSpaceProcessor.isWhiteSpace(ch))
+                        return false;
+                    prevSpace = false;
+                }
+            }
+            return true;
+        }
+        private String collapseChars(CharSequence text) {
             int len = text.length();
-            StringBuffer result = new StringBuffer(len /**enough size*/
-            );
+            char[] result = new char[len]; // enough size
+            int r = 0;
 
             boolean inStripMode = true;
 
@@ -148,20 +222,19 @@ public abstract class WhiteSpaceProcessor implements Serializable {
 
                 inStripMode = b;
                 if (inStripMode)
-                    result.append(' ');
+                    result[r++] = ' ';
                 else
-                    result.append(ch);
+                    result[r++] = ch;
             }
 
             // remove trailing whitespaces
-            len = result.length();
-            if (len > 0 && result.charAt(len - 1) == ' ')
-                result.setLength(len - 1);
             // whitespaces are already collapsed,
             // so all we have to do is to remove the last one character
             // if it's a whitespace.
+            if (r > 0 && result[r - 1] == ' ')
+                r--;
 
-            return result.toString();
+            return new String(result, 0, r);
         }
         int tightness() {
             return 2;
@@ -70,8 +70,53 @@ public abstract class XSDatatypeImpl implements XSDatatype {
 
     final public boolean isValid( String literal, ValidationContext context ) {
         // step.1 white space processing
-        literal = whiteSpace.process(literal);
-        
+        return isValidProcessed(whiteSpace.process(literal),context);
+    }
+    
+    /**
+     * checks if the specified text is valid.
+     * 
+     * <p>
+     * This method is the same as {@link #isValid(String,ValidationContext)},
+     * but it accepts text that is still in a buffer. White space processing
+     * is applied to the buffer directly, so no intermediate String is created.
+     */
+    final public boolean isValid( CharSequence literal, ValidationContext context ) {
+        return isValidProcessed(whiteSpace.process(literal),context);
+    }
+    
+    /**
+     * converts a lexical value in a buffer into the value object.
+     * 
+     * @see #createValue(String,ValidationContext)
+     */
+    final public Object createValue( CharSequence lexicalValue, ValidationContext context ) {
+        return _createValue(whiteSpace.process(lexicalValue),context);
+    }
+    
+    /**
+     * checks the validity of a lexical value in a buffer.
+     * 
+     * @see #checkValid(String,ValidationContext)
+     */
+    final public void checkValid( CharSequence content, ValidationContext context ) throws DatatypeException {
+        _checkValid(whiteSpace.process(content),context);
+    }
+    
+    /**
+     * checks if a part of a string is valid.
+     *
+     * <p>
+     * {@link ListType} uses this method to check its items.
+     * The range never contains whitespace.
+     * The default implementation creates a substring, but types
+     * that can check the range in place override this method.
+     */
+    boolean isValid( String literal, int start, int end, ValidationContext context ) {
+        return isValid(literal.substring(start,end),context);
+    }
+    
+    private boolean isValidProcessed( String literal, ValidationContext context ) {
         if( needValueCheck() )
             // constraint facet that needs computation of value is specified.
             return _createValue(literal,context)!=null;
@@ -89,6 +134,25 @@ public abstract class XSDatatypeImpl implements XSDatatype {
     
     abstract protected boolean checkFormat( String literal, ValidationContext context );
     protected boolean needValueCheck() { return false; }
+
+    /**
+     * gets the set of characters that a non-empty literal accepted by
+     * the checkFormat method or the _createValue method can start with.
+     *
+     * The default implementation returns the set of all characters.
+     * Types override this method so that {@link UnionType} can skip them
+     * without parsing literals that they never accept.
+     */
+    FirstCharSet getFirstChars() { return FirstCharSet.ANY; }
+
+    /**
+     * gets the length of the shortest literal accepted by
+     * the checkFormat method or the _createValue method.
+     *
+     * Like {@link #getFirstChars()}, this is used by {@link UnionType}
+     * and the default implementation doesn't restrict anything.
+     */
+    int getMinLiteralLength() { return 0; }
     
     /**
      * gets the facet object that restricts the specified facet
@@ -122,11 +122,20 @@ public class XmlNames
      */
     public static boolean isNmtoken(String token)
     {
-        if (token == null || token.length() == 0)    return false;
+        if (token == null)    return false;
+        return isNmtoken (token, 0, token.length ());
+    }
 
-        int    length = token.length ();
+    /**
+     * checks if a part of the string is a "name token".
+     *
+     * @see #isNmtoken(String)
+     */
+    public static boolean isNmtoken(String token, int start, int end)
+    {
+        if (start == end)    return false;
 
-        for (int i = 0; i < length; i++)
+        for (int i = start; i < end; i++)
             if (!XmlChars.isNameChar (token.charAt (i)))
                 return false;
         return true;
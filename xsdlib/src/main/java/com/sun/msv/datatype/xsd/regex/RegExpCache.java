@@ -0,0 +1,122 @@
+package com.sun.msv.datatype.xsd.regex;
+
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * keeps compiled regular expressions so that the same pattern
+ * is compiled only once.
+ *
+ * <p>
+ * Large schemas tend to repeat the same patterns (postal codes,
+ * identifiers, and so on) in many types, and a type is compiled again
+ * whenever it is deserialized. With this cache, all of them share
+ * one compiled {@link RegExp}.
+ *
+ * <p>
+ * Since a cached {@link RegExp} can be used by many threads at once,
+ * only those compiled by a {@link RegExpFactory#isThreadSafe() thread-safe}
+ * factory are cached. The cache holds at most a fixed number of patterns,
+ * and discards the least recently used one.
+ *
+ * <p>
+ * This class is thread-safe. One instance can be shared by
+ * the whole process; see {@link #getShared()}.
+ *
+ * @author Kohsuke Kawaguchi
+ */
+public final class RegExpCache {
+    /** the default maximum number of patterns. */
+    public static final int DEFAULT_SIZE = 1024;
+
+    private static final RegExpCache shared = new RegExpCache();
+
+    /** gets the cache shared by the whole process. */
+    public static RegExpCache getShared() {
+        return shared;
+    }
+
+    /** compiled patterns keyed by the factory class name and the pattern. */
+    private final Map<String,RegExp> entries;
+
+    private int hits;
+    private int misses;
+
+    public RegExpCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param maxSize
+     *        the maximum number of patterns kept by this cache.
+     */
+    public RegExpCache( final int maxSize ) {
+        if( maxSize<=0 )
+            throw new IllegalArgumentException("maxSize must be positive");
+        entries = new LinkedHashMap<String,RegExp>(16,0.75f,true) {
+            protected boolean removeEldestEntry( Map.Entry<String,RegExp> eldest ) {
+                return size()>maxSize;
+            }
+        };
+    }
+
+    /**
+     * compiles a pattern by the given factory, or returns the {@link RegExp}
+     * compiled before for the same pattern and the same kind of factory.
+     *
+     * <p>
+     * If the factory is not thread-safe, the pattern is always compiled.
+     */
+    public RegExp compile( RegExpFactory factory, String exp ) throws ParseException {
+        if( !factory.isThreadSafe() )
+            return factory.compile(exp);
+
+        final String key = factory.getClass().getName()+'\u0000'+exp;
+        synchronized(entries) {
+            RegExp re = entries.get(key);
+            if( re!=null ) {
+                hits++;
+                return re;
+            }
+            misses++;
+        }
+
+        // compile outside the lock. If another thread compiles the same
+        // pattern at the same time, one of them is simply discarded.
+        RegExp re = factory.compile(exp);
+        synchronized(entries) {
+            entries.put(key,re);
+        }
+        return re;
+    }
+
+    /** discards all the patterns and resets the statistics. */
+    public void clear() {
+        synchronized(entries) {
+            entries.clear();
+            hits = misses = 0;
+        }
+    }
+
+    /** gets the number of patterns in this cache. */
+    public int size() {
+        synchronized(entries) {
+            return entries.size();
+        }
+    }
+
+    /** gets the number of compilations that found a cached pattern. */
+    public int getHitCount() {
+        synchronized(entries) {
+            return hits;
+        }
+    }
+
+    /** gets the number of compilations that didn't find a cached pattern. */
+    public int getMissCount() {
+        synchronized(entries) {
+            return misses;
+        }
+    }
+}
@@ -8,8 +8,34 @@ import java.text.ParseException;
 public abstract class RegExpFactory {
     public abstract RegExp compile( String exp ) throws ParseException ;
 
+    /**
+     * returns true if {@link RegExp}s compiled by this factory
+     * can be used by more than one thread at the same time.
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /** the factory found by {@link #createFactory()}. */
+    private static volatile RegExpFactory theInstance;
+
+    /**
+     * gets the best available implementation.
+     *
+     * <p>
+     * The implementation is looked up only once. Since factories
+     * have no state, the same object is returned every time.
+     */
     public static RegExpFactory createFactory() {
+        RegExpFactory f = theInstance;
+        if( f==null )
+            theInstance = f = findFactory();
+        return f;
+    }
+
+    private static RegExpFactory findFactory() {
         String[] classList = new String[] {
+            "com.sun.msv.datatype.regexp.DFAImpl",
             "com.sun.msv.datatype.regexp.InternalImpl",
             "com.sun.msv.datatype.xsd.regex.XercesImpl",
             "com.sun.msv.datatype.xsd.regex.JDK50Impl"
@@ -318,6 +318,8 @@ public class XmlChars
         return false;
     if (c >= 'A' && c <= 'Z')
         return true;
+    if (c >= '0' && c <= '9')
+        return true;
 
     //
     // Since the tables are too ridiculous to use in code,
@@ -0,0 +1,104 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.datatype.regexp;
+
+import com.sun.msv.datatype.xsd.regex.RegExp;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * tests DFAImpl by comparing it with InternalImpl.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class DFAImplTest extends TestCase
+{
+    public DFAImplTest( String name ) { super(name); }
+    
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+    
+    public static Test suite() {
+        return new TestSuite(DFAImplTest.class);
+    }
+
+    private static final String[] patterns = {
+        "abc", "a*", "a+b?", "(ab|cd)*e", "[a-z]{2,4}", "x{3}", "x{2,}", "x{0}y",
+        "\\d{3}-\\d{4}", "[^abc]+", "[a-z-[aeiou]]+", ".*", "a.c", "\\i\\c*",
+        "\\p{Lu}\\p{Ll}*", "\\P{L}", "[\\s]*", "\\S+", "\\w+", "\\W",
+        "(\\+|-)?[0-9]+(\\.[0-9]*)?", "\\|\\.\\\\", "((a|b)c?){2,3}", "()", "a|",
+        "[\u0100-\u017F]+", "[\ud800\udc00-\udbff\udfff]?", "\ud800\udc00+"
+    };
+
+    private static final String[] texts = {
+        "", "a", "aa", "ab", "abc", "abcd", "b", "e", "abcde", "cde", "xxx", "xx", "xxxx", "y",
+        "123-4567", "12-34567", "Hello", "hello", "HELLO", "1", "+12.5", "-3", "4.", ".5",
+        "|.\\", "ac", "acbc", "bcbcbc", "a\nc", "a\rc", "a\u2028c", "a c", " \t\n", "_a1",
+        "\u0100\u017e", "\ud800\udc00", "\ud800\udc00\ud800\udc00", "\ud800", "xyz", "bcd", "aeiou",
+    };
+
+    public void testCompatibility() throws Exception {
+        DFAImpl dfa = new DFAImpl();
+        InternalImpl internal = new InternalImpl();
+
+        for( int i=0; i<patterns.length; i++ ) {
+            RegExp r1 = dfa.compile(patterns[i]);
+            RegExp r2 = internal.compile(patterns[i]);
+            assertTrue( r1 instanceof DFA );
+            for( int j=0; j<texts.length; j++ )
+                assertEquals( "/"+patterns[i]+"/ against \""+texts[j]+"\"",
+                    r2.matches(texts[j]), r1.matches(texts[j]) );
+        }
+    }
+
+    public void testParseError() {
+        try {
+            new DFAImpl().compile("a{2,1}");
+            fail();
+        } catch( java.text.ParseException e ) {
+            ; // as expected
+        }
+    }
+
+    /** patterns that makes a backtracking engine run in exponential time. */
+    public void testPathological() throws Exception {
+        RegExp r = new DFAImpl().compile("(a|aa)*c");
+        StringBuffer buf = new StringBuffer();
+        for( int i=0; i<10000; i++ )
+            buf.append('a');
+        assertFalse( r.matches(buf.toString()) );
+        buf.append('c');
+        assertTrue( r.matches(buf.toString()) );
+    }
+
+    /** a pattern too large for an automaton still works. */
+    public void testFallback() throws Exception {
+        RegExp r = new DFAImpl().compile("(a{1000}){100}");
+        assertFalse( r instanceof DFA );
+        assertFalse( r.matches("aaa") );
+    }
+
+    /** the number of cached states is bounded. */
+    public void testStateLimit() throws Exception {
+        // the n-th character from the end must be 'a'. This needs 2^n DFA states.
+        DFA r = (DFA)new DFAImpl().compile("[ab]*a[ab]{15}");
+        java.util.Random rnd = new java.util.Random(0);
+        for( int i=0; i<200; i++ ) {
+            char[] buf = new char[100];
+            for( int j=0; j<buf.length; j++ )
+                buf[j] = rnd.nextBoolean() ? 'a' : 'b';
+            String s = new String(buf);
+            assertEquals( s.charAt(s.length()-16)=='a', r.matches(s) );
+        }
+        assertTrue( r.getDFASize()<=5000 );
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.datatype.xsd;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * tests IntegerScanner and the integer-derived types that use it.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class IntegerScannerTest extends TestCase
+{
+    public IntegerScannerTest( String name ) { super(name); }
+    
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+    
+    public static Test suite() {
+        return new TestSuite(IntegerScannerTest.class);
+    }
+
+    public void testSignum() {
+        assertEquals( 1, IntegerScanner.signum("123") );
+        assertEquals( 1, IntegerScanner.signum("+0010") );
+        assertEquals( -1, IntegerScanner.signum("-99999999999999999999999") );
+        assertEquals( 0, IntegerScanner.signum("-000") );
+        assertEquals( 0, IntegerScanner.signum("0") );
+
+        String[] invalid = { "", "+", "-", "1.0", "+-1", "--1", "1 ", "a", "\u0661" };
+        for( int i=0; i<invalid.length; i++ )
+            assertEquals( invalid[i], IntegerScanner.NOT_AN_INTEGER, IntegerScanner.signum(invalid[i]) );
+    }
+
+    public void testRange() {
+        assertTrue( IntegerScanner.isInRange("9223372036854775807",Long.MIN_VALUE,Long.MAX_VALUE) );
+        assertTrue( IntegerScanner.isInRange("-9223372036854775808",Long.MIN_VALUE,Long.MAX_VALUE) );
+        assertFalse( IntegerScanner.isInRange("9223372036854775808",Long.MIN_VALUE,Long.MAX_VALUE) );
+        assertFalse( IntegerScanner.isInRange("-9223372036854775809",Long.MIN_VALUE,Long.MAX_VALUE) );
+        assertFalse( IntegerScanner.isInRange("100000000000000000000",Long.MIN_VALUE,Long.MAX_VALUE) );
+        assertEquals( Long.MIN_VALUE, IntegerScanner.parseLong("-9223372036854775808") );
+        assertEquals( 42, IntegerScanner.parseLong("+00042") );
+
+        assertTrue( IntegerScanner.isInRange("-128",-128,127) );
+        assertFalse( IntegerScanner.isInRange("128",-128,127) );
+        assertTrue( IntegerScanner.isInRange("-0",0,255) );
+        assertFalse( IntegerScanner.isInRange("+",0,255) );
+    }
+
+    public void testAtMost() {
+        String max = "18446744073709551615";
+        assertTrue( IntegerScanner.isAtMost("18446744073709551615",max) );
+        assertTrue( IntegerScanner.isAtMost("+0018446744073709551615",max) );
+        assertFalse( IntegerScanner.isAtMost("18446744073709551616",max) );
+        assertTrue( IntegerScanner.isAtMost("-0",max) );
+    }
+
+    /** the lexical check and the value creation agree. */
+    public void testTypes() throws Exception {
+        XSDatatypeImpl[] types = {
+            LongType.theInstance, IntType.theInstance, ShortType.theInstance, ByteType.theInstance,
+            UnsignedLongType.theInstance, UnsignedIntType.theInstance,
+            UnsignedShortType.theInstance, UnsignedByteType.theInstance,
+            IntegerType.theInstance, NonNegativeIntegerType.theInstance, PositiveIntegerType.theInstance,
+            NegativeIntegerType.theInstance, NonPositiveIntegerType.theInstance };
+        String[] literals = {
+            "0", "-0", "+0", "1", "-1", "127", "128", "-128", "-129", "255", "256",
+            "32767", "32768", "65535", "65536", "2147483647", "2147483648", "-2147483649",
+            "4294967295", "4294967296", "9223372036854775807", "9223372036854775808",
+            "18446744073709551615", "18446744073709551616", "+007", "", "+", "1e3", "\u0661" };
+
+        for( int i=0; i<types.length; i++ )
+            for( int j=0; j<literals.length; j++ )
+                assertEquals( types[i].getName()+" "+literals[j],
+                    types[i]._createValue(literals[j],null)!=null,
+                    types[i].checkFormat(literals[j],null) );
+
+        assertEquals( new Short((short)-128), ShortType.load("-128") );
+        assertEquals( new Integer(7), IntType.load("+007") );
+        assertNull( ByteType.load("128") );
+        assertEquals( "-12", IntegerValueType.create("-00012").toString() );
+        assertEquals( "12", IntegerValueType.create("+012").toString() );
+        assertEquals( "0", IntegerValueType.create("-000").toString() );
+    }
+}
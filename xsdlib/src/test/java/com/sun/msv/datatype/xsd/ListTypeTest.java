@@ -81,4 +81,61 @@ public class ListTypeTest extends TestCase
         assertEquals(v.values[1],"b");
         assertEquals(v.values[2],"c");
     }
+
+    /** test items checked in place */
+    public void testItems() throws DatatypeException
+    {
+        ListType t = createList("test","int");
+        assertEquals( 0, ListTokenizer.countItems("") );
+        assertEquals( 0, ListTokenizer.countItems(" \t\f") );
+        assertEquals( 3, ListTokenizer.countItems("1 -2\n\r+3") );
+        assertEquals( 2, ListTokenizer.countItems("  1\t2 ") );
+        
+        assertTrue( t.isValid("-2147483648 2147483647",DummyContextProvider.theInstance) );
+        assertTrue(!t.isValid("2147483647 2147483648",DummyContextProvider.theInstance) );
+        assertTrue(!t.isValid("1 - 2",DummyContextProvider.theInstance) );
+        
+        XSDatatype n = DatatypeFactory.getTypeByName("NMTOKENS");
+        assertTrue( n.isValid(" a:b  c.d\te-f ",DummyContextProvider.theInstance) );
+        assertTrue(!n.isValid(" a:b  c/d ",DummyContextProvider.theInstance) );
+        assertTrue(!n.isValid(" \n ",DummyContextProvider.theInstance) );   // minLength=1
+        
+        ListValueType v = (ListValueType)
+            n.createValue(" a:b  c.d ",DummyContextProvider.theInstance);
+        assertEquals( 2, v.values.length );
+        assertEquals( "c.d", v.values[1] );
+    }
+    
+    /** test length facets, which are checked by counting items */
+    public void testLength() throws DatatypeException
+    {
+        TypeIncubator ti = new TypeIncubator(createList(null,"unsignedByte"));
+        ti.addFacet("minLength","2",false,null);
+        ti.addFacet("maxLength","3",false,null);
+        XSDatatype t = ti.derive("","");
+        
+        assertTrue(!t.isValid("1",DummyContextProvider.theInstance) );
+        assertTrue( t.isValid("1 2",DummyContextProvider.theInstance) );
+        assertTrue( t.isValid("1 2 3",DummyContextProvider.theInstance) );
+        assertTrue(!t.isValid("1 2 3 4",DummyContextProvider.theInstance) );
+        assertTrue(!t.isValid("1 256",DummyContextProvider.theInstance) );
+        
+        // items with a value constraint
+        ti = new TypeIncubator(DatatypeFactory.getTypeByName("int"));
+        ti.addFacet("maxInclusive","10",false,null);
+        ti = new TypeIncubator(createList(null,ti.derive("","")));
+        ti.addFacet("length","2",false,null);
+        t = ti.derive("","");
+        
+        assertTrue( t.isValid("9 10",DummyContextProvider.theInstance) );
+        assertTrue(!t.isValid("9 11",DummyContextProvider.theInstance) );
+        assertTrue(!t.isValid("9",DummyContextProvider.theInstance) );
+        
+        // a facet that needs the value on top of the length facet
+        ti = new TypeIncubator(DatatypeFactory.getTypeByName("NMTOKENS"));
+        ti.addFacet("enumeration","a b",false,null);
+        t = ti.derive("","");
+        assertTrue( t.isValid(" a  b ",DummyContextProvider.theInstance) );
+        assertTrue(!t.isValid("a c",DummyContextProvider.theInstance) );
+    }
 }
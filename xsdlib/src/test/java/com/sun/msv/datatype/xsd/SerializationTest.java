@@ -74,4 +74,14 @@ public class SerializationTest extends TestCase
         
         assertTrue( freezeDry(pseudoString)!=StringType.theInstance );
     }
+
+    public void testUnion() throws Exception {
+        XSDatatype u = (XSDatatype)freezeDry(DatatypeFactory.deriveByUnion("","",
+            new XSDatatype[]{ DateType.theInstance, IntegerType.theInstance, TokenType.theInstance }));
+        
+        // member types are looked up again after de-serialization.
+        assertTrue( u.isValid("2001-02-20",null) );
+        assertTrue( u.isValid("-15",null) );
+        assertTrue( u.isValid("abc",null) );
+    }
 }
@@ -92,4 +92,69 @@ public class UnionTypeTest extends TestCase
             tu.createValue("1f5280",DummyContextProvider.theInstance),
             th.createValue("1F5280",DummyContextProvider.theInstance) );
     }
+
+    /** member types are still tried in the order of declaration */
+    public void testDispatch() throws DatatypeException
+    {
+        XSDatatype ti = DatatypeFactory.getTypeByName("integer");
+        XSDatatype tt = DatatypeFactory.getTypeByName("token");
+        XSDatatype td = DatatypeFactory.getTypeByName("date");
+        
+        XSDatatype u1 = createUnion(null, td, ti, tt );
+        assertEquals(
+            u1.createValue("2001-02-20",DummyContextProvider.theInstance),
+            td.createValue("2001-02-20",DummyContextProvider.theInstance) );
+        assertEquals(
+            u1.createValue("-15",DummyContextProvider.theInstance),
+            ti.createValue("-15",DummyContextProvider.theInstance) );
+        assertEquals( "abc", u1.createValue("abc",DummyContextProvider.theInstance) );
+        assertEquals( "", u1.createValue("",DummyContextProvider.theInstance) );
+        
+        // token comes first, so it takes everything.
+        XSDatatype u2 = createUnion(null, tt, ti, td );
+        assertEquals( "-15", u2.createValue("-15",DummyContextProvider.theInstance) );
+        
+        XSDatatype u3 = createUnion(null, "date", "boolean", "duration" );
+        assertTrue( u3.isValid("true",DummyContextProvider.theInstance) );
+        assertTrue( u3.isValid("-P1D",DummyContextProvider.theInstance) );
+        assertTrue( u3.isValid("-2001-02-20",DummyContextProvider.theInstance) );
+        assertTrue( !u3.isValid("abc",DummyContextProvider.theInstance) );
+        assertTrue( !u3.isValid("\u3042",DummyContextProvider.theInstance) );
+    }
+    
+    /**
+     * makes sure that no member type is skipped for a literal
+     * that it accepts.
+     */
+    public void testFirstChars() throws DatatypeException
+    {
+        String[] literals = {
+            "+1", "-1", "0", ".5", "1.5e3", "INF", "-INF", "NaN",
+            "true", "false", "P1Y2M", "-PT1S", "2001-02-20", "-0001-01-01Z",
+            "2001-02-20T12:00:00+09:00", "12:00:00.5", "2001-02", "2001",
+            "--05-20", "---05", "--05--", "P", "PT", "P1D", "abc", "AB+/", "1f5280",
+            "foo:role", "http://www.example.com/", "\u3042", " 1 2 " };
+        
+        for( int i=0; i<Const.builtinTypeNames.length; i++ ) {
+            XSDatatypeImpl t = (XSDatatypeImpl)DatatypeFactory.getTypeByName(Const.builtinTypeNames[i]);
+            XSDatatype l;
+            try {
+                l = DatatypeFactory.deriveByList("","",t);
+            } catch( DatatypeException e ) {
+                l = t;  // list types cannot be itemized again.
+            }
+            XSDatatype u = createUnion(null, t, l, DatatypeFactory.getTypeByName("boolean") );
+            for( int j=0; j<literals.length; j++ ) {
+                if( t.isValid(literals[j],DummyContextProvider.theInstance) ) {
+                    assertTrue( t.getName()+" "+literals[j],
+                        t.getFirstChars().contains(literals[j].charAt(0)) );
+                    assertTrue( t.getName()+" "+literals[j],
+                        t.getMinLiteralLength()<=literals[j].length() );
+                    assertTrue( u.isValid(literals[j],DummyContextProvider.theInstance) );
+                }
+                if( l.isValid(literals[j],DummyContextProvider.theInstance) )
+                    assertTrue( u.isValid(literals[j],DummyContextProvider.theInstance) );
+            }
+        }
+    }
 }
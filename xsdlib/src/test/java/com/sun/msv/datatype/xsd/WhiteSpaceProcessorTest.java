@@ -110,6 +110,41 @@ public class WhiteSpaceProcessorTest extends TestCase
             "abc");
     }
     
+    /** already normalized text must be returned as is. */
+    public void testNormalized() throws DatatypeException
+    {
+        String[] normalized = { "", "test", "a b c", "x y" };
+        for( int i=0; i<normalized.length; i++ ) {
+            assertSame( normalized[i], WhiteSpaceProcessor.theCollapse.process(normalized[i]) );
+            assertSame( normalized[i], WhiteSpaceProcessor.theReplace.process(normalized[i]) );
+            assertTrue( WhiteSpaceProcessor.theCollapse.isNormalized(normalized[i]) );
+        }
+        
+        String[] notCollapsed = { " a", "a ", "a  b", "a\tb", "\n", " " };
+        for( int i=0; i<notCollapsed.length; i++ )
+            assertFalse( notCollapsed[i], WhiteSpaceProcessor.theCollapse.isNormalized(notCollapsed[i]) );
+        
+        assertTrue( WhiteSpaceProcessor.theReplace.isNormalized("  a  b  ") );
+        assertFalse( WhiteSpaceProcessor.theReplace.isNormalized("a\rb") );
+        assertTrue( WhiteSpaceProcessor.thePreserve.isNormalized("\r\n") );
+    }
+    
+    /** the CharSequence version must behave just like the String version. */
+    public void testCharSequence() throws DatatypeException
+    {
+        String[] tests = new String[] {
+            "", "test", "  a  b  c  ", "abc ", "\r\n \ta bb \t\t c   \r\r\n\r  " };
+        WhiteSpaceProcessor[] targets = new WhiteSpaceProcessor[] {
+            WhiteSpaceProcessor.thePreserve,
+            WhiteSpaceProcessor.theReplace,
+            WhiteSpaceProcessor.theCollapse };
+        
+        for( int i=0; i<targets.length; i++ )
+            for( int j=0; j<tests.length; j++ )
+                assertEquals( targets[i].process(tests[j]),
+                    targets[i].process(new StringBuffer(tests[j])) );
+    }
+    
     /** serializes o and then returns de-serialized object. */
     public Object freezeDry( Object o ) throws Exception {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
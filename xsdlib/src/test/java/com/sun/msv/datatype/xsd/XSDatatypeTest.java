@@ -131,4 +131,24 @@ public class XSDatatypeTest extends TestCase
         
         assertTrue( TokenType.theInstance.isDerivedTypeOf(union3,true) );
     }
+    
+    /** the CharSequence versions must agree with the String versions. */
+    public void testCharSequence() throws Exception {
+        XSDatatypeImpl[] types = new XSDatatypeImpl[]{
+            IntType.theInstance, TokenType.theInstance, NmtokenType.theInstance,
+            NumberType.theInstance, StringType.theInstance };
+        String[] values = new String[]{
+            "12", "  -5 ", "1.50", "a  b", "\tabc\n", "", "x y" };
+        
+        for( int i=0; i<types.length; i++ )
+            for( int j=0; j<values.length; j++ ) {
+                StringBuffer buf = new StringBuffer(values[j]);
+                boolean valid = types[i].isValid(values[j],null);
+                assertEquals( types[i].getName()+":"+values[j],
+                    valid, types[i].isValid(buf,null) );
+                if( valid )
+                    assertEquals( types[i].createValue(values[j],null),
+                        types[i].createValue(buf,null) );
+            }
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * @(#)$Id$
+ *
+ * Copyright 2001 Sun Microsystems, Inc. All Rights Reserved.
+ * 
+ * This software is the proprietary information of Sun Microsystems, Inc.  
+ * Use is subject to license terms.
+ * 
+ */
+package com.sun.msv.datatype.xsd.regex;
+
+import com.sun.msv.datatype.regexp.InternalImpl;
+import com.sun.msv.datatype.xsd.PatternFacet;
+import com.sun.msv.datatype.xsd.StringType;
+import com.sun.msv.datatype.xsd.TypeIncubator;
+import com.sun.msv.datatype.xsd.XSDatatype;
+import com.sun.msv.datatype.xsd.XSDatatypeImpl;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * tests RegExpCache.
+ * 
+ * @author <a href="mailto:kohsuke.kawaguchi@eng.sun.com">Kohsuke KAWAGUCHI</a>
+ */
+public class RegExpCacheTest extends TestCase
+{
+    public RegExpCacheTest( String name ) { super(name); }
+    
+    public static void main(java.lang.String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+    
+    public static Test suite() {
+        return new TestSuite(RegExpCacheTest.class);
+    }
+
+    public void testCompile() throws Exception {
+        RegExpCache cache = new RegExpCache(2);
+        RegExpFactory factory = RegExpFactory.createFactory();
+        assertSame( factory, RegExpFactory.createFactory() );
+        assertTrue( factory.isThreadSafe() );
+
+        RegExp a = cache.compile(factory,"[0-9]{5}");
+        assertSame( a, cache.compile(factory,"[0-9]{5}") );
+        assertEquals( 1, cache.getHitCount() );
+        assertEquals( 1, cache.getMissCount() );
+
+        // the least recently used pattern is discarded.
+        cache.compile(factory,"b");
+        cache.compile(factory,"c");
+        assertEquals( 2, cache.size() );
+        assertNotSame( a, cache.compile(factory,"[0-9]{5}") );
+    }
+
+    /** patterns of a factory that isn't thread-safe are never shared. */
+    public void testNotThreadSafe() throws Exception {
+        RegExpCache cache = new RegExpCache();
+        RegExpFactory factory = new InternalImpl();
+        assertNotSame( cache.compile(factory,"a"), cache.compile(factory,"a") );
+        assertEquals( 0, cache.size() );
+    }
+
+    public void testParseError() {
+        RegExpCache cache = new RegExpCache();
+        try {
+            cache.compile(RegExpFactory.createFactory(),"(");
+            fail();
+        } catch( java.text.ParseException e ) {
+            ; // as expected
+        }
+        assertEquals( 0, cache.size() );
+    }
+
+    /** two types with the same pattern share the compiled pattern. */
+    public void testPatternFacet() throws Exception {
+        PatternFacet f1 = derive("zip1");
+        PatternFacet f2 = derive("zip2");
+        assertSame( f1.getRegExps()[0], f2.getRegExps()[0] );
+        assertTrue( f2.isValid("12345",null) );
+        assertFalse( f2.isValid("1234",null) );
+    }
+
+    private static PatternFacet derive( String name ) throws Exception {
+        TypeIncubator inc = new TypeIncubator(StringType.theInstance);
+        inc.addFacet(XSDatatype.FACET_PATTERN,"[0-9]{5}",false,null);
+        XSDatatypeImpl t = inc.derive("",name);
+        return (PatternFacet)t.getFacetObject(XSDatatype.FACET_PATTERN);
+    }
+}